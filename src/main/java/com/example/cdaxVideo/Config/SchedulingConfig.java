@@ -0,0 +1,13 @@
+package com.example.cdaxVideo.Config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Turns on @Scheduled background jobs (pool settings live under
+ * spring.task.scheduling.* in application.properties).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
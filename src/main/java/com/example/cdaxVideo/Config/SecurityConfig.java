@@ -150,6 +150,7 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.GET, "/api/profile/streak").authenticated()
                 
                 // Video progress
+                .requestMatchers(HttpMethod.POST, "/api/videos/progress:batch").authenticated()
                 .requestMatchers(HttpMethod.POST, "/api/videos/{id}/progress").authenticated()
                 .requestMatchers(HttpMethod.POST, "/api/videos/{id}/complete").authenticated()
                 
@@ -1,6 +1,8 @@
     package com.example.cdaxVideo.Controller;
 
+    import com.example.cdaxVideo.DTO.CoursePageDTO;
     import com.example.cdaxVideo.DTO.CourseResponseDTO;
+    import com.example.cdaxVideo.DTO.CourseSearchResultDTO;
     import com.example.cdaxVideo.DTO.ModuleResponseDTO;
     import com.example.cdaxVideo.DTO.StreakDayDTO;
     import com.example.cdaxVideo.DTO.StreakSummaryDTO;
@@ -15,15 +17,31 @@
     import com.example.cdaxVideo.Repository.UserVideoProgressRepository;
     import com.example.cdaxVideo.Entity.Module;
     import com.example.cdaxVideo.Repository.UserCoursePurchaseRepository;
+    import com.example.cdaxVideo.Service.CatalogSnapshot;
+    import com.example.cdaxVideo.Service.CatalogSnapshotService;
+    import com.example.cdaxVideo.Service.CourseDetailPayloadCache;
+    import com.example.cdaxVideo.Service.CourseLockState;
     import com.example.cdaxVideo.Service.CourseService;
+    import com.example.cdaxVideo.Service.CourseUnlockService;
+    import com.example.cdaxVideo.Service.ETagService;
+    import com.example.cdaxVideo.Service.EntitlementService;
+    import com.example.cdaxVideo.Service.PurchasedCourseIds;
     import com.example.cdaxVideo.Service.StreakService;
     import java.time.LocalDate;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
     import org.springframework.http.HttpStatus;
+    import org.springframework.http.MediaType;
     import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 
 import java.util.*;
@@ -59,6 +77,27 @@ import java.util.*;
         @Autowired
         private StreakService streakService;
 
+        @Autowired
+        private ObjectMapper objectMapper;
+
+        @Autowired
+        private ETagService eTagService;
+
+        @Autowired
+        private CatalogSnapshotService catalogSnapshotService;
+
+        @Autowired
+        private CourseUnlockService courseUnlockService;
+
+        @Autowired
+        private CourseDetailPayloadCache courseDetailPayloadCache;
+
+        @Autowired
+        private EntitlementService entitlementService;
+
+        // Page size used internally when streaming the whole catalog
+        private static final int STREAM_PAGE_SIZE = 50;
+
         // ---------------------- COURSE APIs ----------------------
         @PostMapping("/courses")
         public ResponseEntity<Course> createCourse(@RequestBody Course course) {
@@ -73,32 +112,90 @@ import java.util.*;
         }
 
         @GetMapping("/courses")
-        public ResponseEntity<Map<String, Object>> getCourses(
+        public ResponseEntity<?> getCourses(
                 @RequestParam(required = false) Long userId,
-                @RequestParam(required = false) String search
+                @RequestParam(required = false) String search,
+                @RequestParam(required = false) Long cursor,
+                @RequestParam(required = false) Integer limit,
+                @RequestParam(defaultValue = "false") boolean stream,
+                @RequestParam(defaultValue = "false") boolean fuzzy
         ) {
+            boolean searching = search != null && !search.trim().isEmpty();
+
+            // Opt-in: stream the full listing page by page straight to the socket
+            if (stream && !searching) {
+                return streamingResponse(new LinkedHashMap<>(), userId, null);
+            }
+
             List<Course> courses;
+            CoursePageDTO page = null;
 
-            if (search != null && !search.trim().isEmpty()) {
+            if (searching) {
                 // FIXED: Use enhancedSearch instead of searchCourses
-                courses = courseService.enhancedSearch(search);
+                courses = courseService.enhancedSearch(search, fuzzy);
+            } else if (cursor != null || limit != null) {
+                page = courseService.getCoursePage(cursor, limit);
+                courses = page.getCourses();
             } else {
                 courses = courseService.getAllCoursesWithModulesAndVideos();
             }
 
             if (userId != null) {
+                PurchasedCourseIds purchased = entitlementService.getPurchasedCourseIds(userId);
                 for (Course course : courses) {
-                    boolean isPurchased = userCoursePurchaseRepository
-                            .existsByUserIdAndCourseId(userId, course.getId());
-                    course.setPurchased(isPurchased);
+                    course.setPurchased(purchased.contains(course.getId()));
                 }
             }
 
             Map<String, Object> response = new HashMap<>();
             response.put("data", courses);
+            if (page != null) {
+                response.put("nextCursor", page.getNextCursor());
+                response.put("hasMore", page.isHasMore());
+            }
             return ResponseEntity.ok(response);
         }
 
+        /**
+         * Writes {...envelope, "data": [courses...], "total": n} with a Jackson generator,
+         * one keyset page at a time, flushing after each page. Memory use and time to
+         * first byte do not depend on catalog size.
+         */
+        private ResponseEntity<StreamingResponseBody> streamingResponse(Map<String, Object> envelope, Long userId,
+                                                                        String etag) {
+            StreamingResponseBody body = out -> {
+                try (JsonGenerator gen = objectMapper.createGenerator(out, JsonEncoding.UTF8)) {
+                    gen.writeStartObject();
+                    for (Map.Entry<String, Object> entry : envelope.entrySet()) {
+                        gen.writeObjectField(entry.getKey(), entry.getValue());
+                    }
+                    gen.writeArrayFieldStart("data");
+                    int[] total = {0};
+                    PurchasedCourseIds purchased = entitlementService.getPurchasedCourseIds(userId);
+                    courseService.forEachCoursePage(STREAM_PAGE_SIZE, courses -> {
+                        try {
+                            for (Course course : courses) {
+                                course.setPurchased(purchased.contains(course.getId()));
+                                gen.writeObject(course);
+                                total[0]++;
+                            }
+                            gen.flush();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    gen.writeEndArray();
+                    gen.writeNumberField("total", total[0]);
+                    gen.writeEndObject();
+                }
+            };
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+            if (etag != null) {
+                builder.eTag(etag);
+            }
+            return builder.body(body);
+        }
+
         // FIXED: Advanced search endpoint - added missing parameters
         @GetMapping("/courses/advanced-search")
         public ResponseEntity<Map<String, Object>> advancedSearch(
@@ -108,21 +205,23 @@ import java.util.*;
                 @RequestParam(required = false) String level,
                 @RequestParam(required = false) Double minPrice,
                 @RequestParam(required = false) Double maxPrice,
-                @RequestParam(required = false) Double minRating
+                @RequestParam(required = false) Double minRating,
+                @RequestParam(defaultValue = "false") boolean fuzzy
         ) {
-            List<Course> courses = courseService.advancedSearch(
-                search, category, minPrice, maxPrice, minRating, level);
+            CourseSearchResultDTO result = courseService.advancedSearchWithFacets(
+                search, category, minPrice, maxPrice, minRating, level, fuzzy);
+            List<Course> courses = result.getCourses();
             
             if (userId != null) {
+                PurchasedCourseIds purchased = entitlementService.getPurchasedCourseIds(userId);
                 for (Course course : courses) {
-                    boolean isPurchased = userCoursePurchaseRepository
-                            .existsByUserIdAndCourseId(userId, course.getId());
-                    course.setPurchased(isPurchased);
+                    course.setPurchased(purchased.contains(course.getId()));
                 }
             }
 
             Map<String, Object> response = new HashMap<>();
             response.put("data", courses);
+            response.put("facets", result.getFacets());
             return ResponseEntity.ok(response);
         }
 
@@ -157,10 +256,9 @@ import java.util.*;
             List<Course> courses = courseService.getCoursesByTag(tagName);
             
             if (userId != null) {
+                PurchasedCourseIds purchased = entitlementService.getPurchasedCourseIds(userId);
                 for (Course course : courses) {
-                    boolean isPurchased = userCoursePurchaseRepository
-                            .existsByUserIdAndCourseId(userId, course.getId());
-                    course.setPurchased(isPurchased);
+                    course.setPurchased(purchased.contains(course.getId()));
                 }
             }
             
@@ -170,64 +268,25 @@ import java.util.*;
         }
 
 @GetMapping("/courses/{id}")
-public ResponseEntity<Map<String, Object>> getCourse(
+public ResponseEntity<?> getCourse(
         @PathVariable Long id,
-        @RequestParam Long userId) {
+        @RequestParam Long userId,
+        @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
     
     try {
-        Course course = courseService.getCourseForUser(userId, id);
-        
-        // Create response without circular references
-        Map<String, Object> response = new HashMap<>();
-        response.put("id", course.getId());
-        response.put("title", course.getTitle());
-        response.put("description", course.getDescription());
-        response.put("thumbnailUrl", course.getThumbnailUrl());
-        response.put("instructor", course.getInstructor());
-        response.put("isPurchased", course.isPurchased());
-        response.put("isSubscribed", course.isSubscribed());
-        
-        // Add modules without circular references
-        if (course.getModules() != null && !course.getModules().isEmpty()) {
-            List<Map<String, Object>> modules = course.getModules().stream()
-                .map(module -> {
-                    Map<String, Object> moduleMap = new HashMap<>();
-                    moduleMap.put("id", module.getId());
-                    moduleMap.put("title", module.getTitle());
-                    moduleMap.put("durationSec", module.getDurationSec());
-                    moduleMap.put("isLocked", module.isLocked());
-                    moduleMap.put("assessmentLocked", module.isAssessmentLocked());
-                    
-                    // Add videos without circular references
-                    if (module.getVideos() != null) {
-                        List<Map<String, Object>> videos = module.getVideos().stream()
-                            .map(video -> {
-                                Map<String, Object> videoMap = new HashMap<>();
-                                videoMap.put("id", video.getId());
-                                videoMap.put("title", video.getTitle());
-                                videoMap.put("duration", video.getDuration());
-                                videoMap.put("isLocked", video.isLocked());
-                                videoMap.put("isCompleted", video.isCompleted());
-                                videoMap.put("displayOrder", video.getDisplayOrder());
-                                videoMap.put("isPreview", video.getIsPreview());
-                                // ✅ ADD THESE TWO CRITICAL FIELDS:
-                                videoMap.put("videoUrl", video.getVideoUrl());
-                                videoMap.put("youtubeId", video.getYoutubeId());
-                                return videoMap;
-                            })
-                            .collect(Collectors.toList());
-                        moduleMap.put("videos", videos);
-                    }
-                    
-                    return moduleMap;
-                })
-                .collect(Collectors.toList());
-            response.put("modules", modules);
+        // Catalog version + this user's progress version; 304 before any DB work
+        String etag = eTagService.userETag(userId);
+        if (eTagService.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
         }
-        
-        Map<String, Object> finalResponse = new HashMap<>();
-        finalResponse.put("data", response);
-        return ResponseEntity.ok(finalResponse);
+
+        // Shared part is serialized once per catalog version; only the user's
+        // isPurchased/isLocked/isCompleted bits are spliced in per request
+        byte[] body = courseDetailPayloadCache.renderForUser(id, userId);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
         
     } catch (Exception e) {
         Map<String, Object> errorResponse = new HashMap<>();
@@ -246,24 +305,55 @@ public ResponseEntity<Map<String, Object>> getCourse(
         
 // In CourseController.java
 @GetMapping("/courses/public")
-public ResponseEntity<Map<String, Object>> getPublicCourses() {
+public ResponseEntity<?> getPublicCourses(
+        @RequestParam(required = false) Long cursor,
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(defaultValue = "false") boolean stream,
+        @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
     System.out.println("\n📚 GET /api/courses/public called");
     
     try {
-        // Get courses from service
-        List<Course> courses = courseService.getPublicCourses();
+        // Public listing only changes with the catalog version
+        String etag = eTagService.catalogETag();
+        if (eTagService.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        if (stream) {
+            Map<String, Object> envelope = new LinkedHashMap<>();
+            envelope.put("success", true);
+            envelope.put("userAuthenticated", false);
+            envelope.put("message", "Public courses retrieved successfully");
+            envelope.put("timestamp", new Date());
+            return streamingResponse(envelope, null, etag);
+        }
+
+        // Get courses from service (one keyset page when cursor/limit is given)
+        CoursePageDTO page = null;
+        List<Course> courses;
+        if (cursor != null || limit != null) {
+            page = courseService.getCoursePage(cursor, limit);
+            courses = page.getCourses();
+            courses.forEach(c -> c.setPurchased(false));
+        } else {
+            courses = courseService.getPublicCourses();
+        }
         
         // Create response object
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
         response.put("data", courses);
         response.put("total", courses.size());
+        if (page != null) {
+            response.put("nextCursor", page.getNextCursor());
+            response.put("hasMore", page.isHasMore());
+        }
         response.put("userAuthenticated", false);
         response.put("message", "Public courses retrieved successfully");
         response.put("timestamp", new Date());
         
         System.out.println("   ✅ Returning " + courses.size() + " public courses");
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(etag).body(response);
         
     } catch (Exception e) {
         System.out.println("❌ Error in /courses/public endpoint: " + e.getMessage());
@@ -295,16 +385,22 @@ public ResponseEntity<Map<String, Object>> getPublicCourses() {
 @Transactional(readOnly = true) 
 public ResponseEntity<Map<String, Object>> getModulesByCourse(
         @PathVariable Long courseId,
-        @RequestParam Long userId) {
+        @RequestParam Long userId,
+        @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
 
     try {
+        // 0️⃣ Conditional GET: nothing changed for this user since their last poll
+        String etag = eTagService.userETag(userId);
+        if (eTagService.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         // 1️⃣ Fetch course
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new RuntimeException("Course not found"));
 
         // 2️⃣ Check if user purchased the course
-        boolean isPurchased = userCoursePurchaseRepository
-                .existsByUserIdAndCourseId(userId, courseId);
+        boolean isPurchased = entitlementService.isPurchased(userId, courseId);
 
         // 3️⃣ Build response ALWAYS
         Map<String, Object> response = new HashMap<>();
@@ -317,41 +413,8 @@ public ResponseEntity<Map<String, Object>> getModulesByCourse(
         courseDTO.setIsPurchased(isPurchased);
         courseDTO.setIsSubscribed(isPurchased);
 
-        // 5️⃣ Apply progress if purchased, otherwise set defaults
-        if (isPurchased) {
-            applyUserVideoProgress(courseDTO, userId, true);
-        } else {
-            // For non-purchased users:
-            // - First module unlocked
-            // - First 3 videos of first module unlocked
-            // - Everything else locked
-            if (courseDTO.getModules() != null && !courseDTO.getModules().isEmpty()) {
-                for (int i = 0; i < courseDTO.getModules().size(); i++) {
-                    ModuleResponseDTO module = courseDTO.getModules().get(i);
-                    
-                    // First module is unlocked for non-purchased users
-                    module.setIsLocked(i > 0);
-                    
-                    // Handle videos in first module
-                    if (i == 0 && module.getVideos() != null) {
-                        for (int j = 0; j < module.getVideos().size(); j++) {
-                            VideoResponseDTO video = module.getVideos().get(j);
-                            // First video unlocked, others locked
-                            video.setIsLocked(j > 0);
-                            video.setIsCompleted(false);
-                        }
-                    } else {
-                        // Other modules: all videos locked
-                        if (module.getVideos() != null) {
-                            for (VideoResponseDTO video : module.getVideos()) {
-                                video.setIsLocked(true);
-                                video.setIsCompleted(false);
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        // 5️⃣ Apply lock/progress state (preview rules when not purchased)
+        applyUserVideoProgress(courseDTO, userId, isPurchased);
 
         // 6️⃣ Always add modules to response
         response.put("modules", courseDTO.getModules());
@@ -366,7 +429,7 @@ public ResponseEntity<Map<String, Object>> getModulesByCourse(
             response.put("isCompleted", courseDTO.getIsCompleted());
         }
 
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(etag).body(response);
 
     } catch (Exception e) {
         e.printStackTrace();
@@ -379,204 +442,79 @@ public ResponseEntity<Map<String, Object>> getModulesByCourse(
 
 
 private void applyUserVideoProgress(CourseResponseDTO courseDTO, Long userId, boolean isCoursePurchased) {
-    System.out.println("=== APPLY USER VIDEO PROGRESS ===");
-    System.out.println("User ID: " + userId);
-    System.out.println("Course purchased: " + isCoursePurchased);
-    System.out.println("Total modules: " + courseDTO.getModules().size());
-    
-    // Get user's video progress from database
-    List<UserVideoProgress> userProgress = userVideoProgressRepository.findByUserId(userId);
-    System.out.println("User progress records found: " + userProgress.size());
-    
-    // Create a map for quick lookup: videoId -> progress
-    Map<Long, UserVideoProgress> progressMap = userProgress.stream()
-        .collect(Collectors.toMap(
-            up -> up.getVideo().getId(),
-            up -> up
-        ));
-    
-    // Track if previous module was completed
-    boolean previousModuleCompleted = true;
-    
+    logger.debug("Applying video progress - User: {}, Course purchased: {}", userId, isCoursePurchased);
+
+    // Whole-course lock map from the compiled unlock graph, DTOs matched to it by id
+    CatalogSnapshot snapshot = catalogSnapshotService.current();
+    CourseLockState state = courseUnlockService.getLockState(userId, courseDTO.getId(), isCoursePurchased, snapshot);
+
     // Track overall course stats
     int totalCourseVideos = 0;
     int totalCompletedCourseVideos = 0;
     int totalCompletedModules = 0;
-    
-    // Apply progress to videos in DTO
-    for (int moduleIndex = 0; moduleIndex < courseDTO.getModules().size(); moduleIndex++) {
-        ModuleResponseDTO module = courseDTO.getModules().get(moduleIndex);
-        System.out.println("\nProcessing module [" + moduleIndex + "]: " + 
-                          module.getTitle() + " (ID: " + module.getId() + ")");
-        
-        // Determine if this is the first module
-        boolean isFirstModule = moduleIndex == 0;
-        
-        System.out.println("  Is first module: " + isFirstModule);
-        System.out.println("  Is course purchased: " + isCoursePurchased);
-        
-        if (isCoursePurchased) {
-            // If course is purchased, check module sequence
-            if (isFirstModule) {
-                // First module is always unlocked for purchased courses
-                module.setIsLocked(false);
-                System.out.println("  ✓ First module unlocked (course purchased)");
-            } else {
-                // For subsequent modules, check if previous module was completed
-                module.setIsLocked(!previousModuleCompleted);
-                System.out.println("  Module locked status: " + (!previousModuleCompleted) + 
-                                " (previous module completed: " + previousModuleCompleted + ")");
-            }
-        } else {
-            // If course not purchased, only first module is unlocked
-            module.setIsLocked(!isFirstModule);
-            System.out.println("  Module locked (course not purchased): " + (!isFirstModule));
-        }
-        
+
+    List<ModuleResponseDTO> modules = courseDTO.getModules() != null ? courseDTO.getModules() : List.of();
+    for (ModuleResponseDTO module : modules) {
+        int moduleIndex = snapshot.findModule(module.getId()).map(CatalogSnapshot.ModuleNode::getIndex).orElse(-1);
+        boolean moduleLocked = moduleIndex < 0 || state.isModuleLocked(moduleIndex);
+        module.setIsLocked(moduleLocked);
+        module.setAssessmentLocked(moduleIndex < 0 || state.isAssessmentLocked(moduleIndex));
+
         // Initialize module video counters
         int moduleTotalVideos = 0;
         int moduleCompletedVideos = 0;
-        boolean moduleHasUnlockedVideo = false;
-        boolean allVideosCompleted = true;
-        
+
         if (module.getVideos() != null) {
-            System.out.println("  Module has " + module.getVideos().size() + " videos");
-            moduleTotalVideos = module.getVideos().size();
-            totalCourseVideos += moduleTotalVideos;
-            
-            // FOR DEBUGGING: Print all video details
-            System.out.println("  Video list:");
-            for (VideoResponseDTO video : module.getVideos()) {
-                System.out.println("    - ID: " + video.getId() + 
-                                 ", Title: " + video.getTitle() + 
-                                 ", DisplayOrder: " + video.getDisplayOrder() + 
-                                 ", Current isLocked: " + video.getIsLocked());
-            }
-            
             for (VideoResponseDTO video : module.getVideos()) {
-                System.out.println("    Processing video: " + video.getTitle() + 
-                                 " (ID: " + video.getId() + 
-                                 ", DisplayOrder: " + video.getDisplayOrder() + ")");
-                
-                // SPECIAL LOGIC FOR SUBSCRIBED COURSES: Unlock first 3 videos of first module
-                if (isCoursePurchased && isFirstModule && video.getDisplayOrder() <= 3) {
-                    System.out.println("    ✓ Special rule: First 3 videos of first module for subscribed course");
-                    video.setIsLocked(false);
-                    
-                    UserVideoProgress progress = progressMap.get(video.getId());
-                    if (progress != null) {
-                        System.out.println("      Progress exists - Completed: " + progress.isCompleted());
-                        video.setIsCompleted(progress.isCompleted());
-                        if (progress.isCompleted()) {
-                            moduleCompletedVideos++;
-                            totalCompletedCourseVideos++;
-                        }
-                    } else {
-                        System.out.println("      No progress record, marking as not completed");
-                        video.setIsCompleted(false);
-                    }
-                    continue; // Skip the rest of the logic for these videos
-                }
-                
-                UserVideoProgress progress = progressMap.get(video.getId());
-                if (progress != null) {
-                    System.out.println("      Progress found - Unlocked: " + progress.isUnlocked() + 
-                                    ", Completed: " + progress.isCompleted());
-                    
-                    video.setIsLocked(!progress.isUnlocked());
-                    video.setIsCompleted(progress.isCompleted());
-                    
-                    if (progress.isUnlocked()) {
-                        moduleHasUnlockedVideo = true;
-                    }
-                    
-                    // Count completed videos
-                    if (progress.isCompleted()) {
-                        moduleCompletedVideos++;
-                        totalCompletedCourseVideos++;
-                    }
-                    
-                    if (!progress.isCompleted()) {
-                        allVideosCompleted = false;
-                    }
-                } else {
-                    System.out.println("      No progress record found");
-                    
-                    // Apply default logic based on module and purchase status
-                    boolean isFirstVideo = video.getDisplayOrder() == 1;
-                    
-                    System.out.println("      Is first video (displayOrder==1): " + isFirstVideo);
-                    System.out.println("      Module isLocked: " + module.getIsLocked());
-                    
-                    if (Boolean.FALSE.equals(module.getIsLocked()) && isFirstVideo) {
-                        // First video of an unlocked module is unlocked
-                        video.setIsLocked(false);
-                        moduleHasUnlockedVideo = true;
-                        System.out.println("      ✓ First video unlocked (module unlocked)");
-                    } else {
-                        video.setIsLocked(true);
-                        System.out.println("      ✗ Video locked (not first video or module locked)");
-                    }
-                    video.setIsCompleted(false);
-                    allVideosCompleted = false;
-                }
+                int ordinal = snapshot.findVideo(video.getId())
+                        .map(CatalogSnapshot.VideoNode::getCourseOrdinal).orElse(-1);
+                boolean completed = ordinal >= 0 && state.isVideoCompleted(ordinal);
+                video.setIsLocked(ordinal < 0 || state.isVideoLocked(ordinal));
+                video.setIsCompleted(completed);
+
+                moduleTotalVideos++;
+                if (completed) moduleCompletedVideos++;
             }
         }
-        
+        totalCourseVideos += moduleTotalVideos;
+        totalCompletedCourseVideos += moduleCompletedVideos;
+
         // Set module stats using the helper method from ModuleResponseDTO
         module.calculateStatsFromVideos();
-        
+
         // Override with our calculated values
         module.setCompletedVideos(moduleCompletedVideos);
         module.setTotalVideos(moduleTotalVideos);
-        
+
         // Calculate progress percentage
-        int moduleProgressPercent = moduleTotalVideos > 0 ? 
+        int moduleProgressPercent = moduleTotalVideos > 0 ?
             (moduleCompletedVideos * 100) / moduleTotalVideos : 0;
         module.setProgressPercent(moduleProgressPercent);
-        
+
         // Determine if module is completed
-        boolean moduleCompleted = Boolean.FALSE.equals(module.getIsLocked()) && 
-                                 moduleTotalVideos > 0 && 
+        boolean moduleCompleted = !moduleLocked &&
+                                 moduleTotalVideos > 0 &&
                                  moduleCompletedVideos == moduleTotalVideos;
         module.setIsCompleted(moduleCompleted);
-        
+
         if (moduleCompleted) {
             totalCompletedModules++;
         }
-        
-        System.out.println("  Module stats - Completed: " + moduleCompletedVideos + 
-                         "/" + moduleTotalVideos + " videos, Progress: " + 
-                         moduleProgressPercent + "%");
-        
-        // Update module completion tracking
-        previousModuleCompleted = Boolean.FALSE.equals(module.getIsLocked()) && allVideosCompleted;
-        System.out.println("  Module all videos completed: " + allVideosCompleted);
-        System.out.println("  Previous module completed for next: " + previousModuleCompleted);
-        
-        // If module is locked but has an unlocked video from progress, unlock the module
-        if (Boolean.TRUE.equals(module.getIsLocked()) && moduleHasUnlockedVideo) {
-            module.setIsLocked(false);
-            System.out.println("  ✓ Module unlocked (has unlocked videos from progress)");
-        }
     }
-    
+
     // Set course-level stats in CourseResponseDTO
-    int courseProgressPercent = totalCourseVideos > 0 ? 
+    int courseProgressPercent = totalCourseVideos > 0 ?
         (totalCompletedCourseVideos * 100) / totalCourseVideos : 0;
-    
+
     // Update the CourseResponseDTO fields
     courseDTO.setTotalVideos(totalCourseVideos);
     courseDTO.setCompletedVideos(totalCompletedCourseVideos);
     courseDTO.setCompletedModules(totalCompletedModules);  // This is the key field!
     courseDTO.setProgressPercent((double) courseProgressPercent);
     courseDTO.setIsCompleted(totalCompletedCourseVideos == totalCourseVideos && totalCourseVideos > 0);
-    
-    System.out.println("\n=== COURSE STATS ===");
-    System.out.println("Total videos: " + totalCourseVideos);
-    System.out.println("Completed videos: " + totalCompletedCourseVideos);
-    System.out.println("Completed modules: " + totalCompletedModules);
-    System.out.println("Course progress: " + courseProgressPercent + "%");
+
+    logger.debug("Course stats - videos {}/{}, modules completed {}, progress {}%",
+            totalCompletedCourseVideos, totalCourseVideos, totalCompletedModules, courseProgressPercent);
 }
 
 @GetMapping("/modules/{id}")
@@ -1101,12 +1039,12 @@ public ResponseEntity<?> getCourseStreakForMonth(
                 System.out.println("   ├─ User ID: " + userId);
                 System.out.println("   ├─ Course ID: " + (courseId != null ? courseId : "Not specified"));
                 
-                // 1. Get overall progress
-                Map<String, Object> overallProgress = courseService.getUserOverallProgress(userId);
-                
-                // 2. Get course-specific stats
+                // 1. Get course-specific stats (one rollup read)
                 List<Map<String, Object>> courseStats = courseService.getUserCourseStats(userId);
                 
+                // 2. Sum them into the overall progress
+                Map<String, Object> overallProgress = courseService.getUserOverallProgress(userId, courseStats);
+                
                 System.out.println("   ├─ Total courses found: " + courseStats.size());
                 System.out.println("   ├─ Course stats available: " + (courseStats != null));
                 
@@ -6,6 +6,7 @@ import com.example.cdaxVideo.Entity.User;
 import com.example.cdaxVideo.Entity.UserVideoProgress;
 import com.example.cdaxVideo.Repository.UserRepository;
 import com.example.cdaxVideo.Service.VideoService;
+import com.example.cdaxVideo.Service.WatchedIntervals;
 import org.springframework.security.core.Authentication;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -19,6 +20,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -185,8 +187,9 @@ public ResponseEntity<Map<String, Object>> markVideoAsCompleted(
             response.put("watchedSeconds", progress.getWatchedSeconds());
             response.put("lastPositionSeconds", progress.getLastPositionSeconds());
             response.put("forwardJumpsCount", progress.getForwardJumpsCount());
+            response.put("playedSeconds", WatchedIntervals.coveredSeconds(progress.getWatchedIntervals()));
             response.put("completed", progress.isCompleted());
-            response.put("unlocked", progress.isUnlocked());
+            response.put("unlocked", videoService.isUnlocked(progress));
             
             return ResponseEntity.ok(response);
             
@@ -209,6 +212,48 @@ public ResponseEntity<Map<String, Object>> markVideoAsCompleted(
         }
     }
 
+    /**
+     * POST /api/videos/progress:batch
+     * Updates progress of several videos for one user in one request
+     * (playlist/autoplay clients); returns one result per item, in order
+     */
+    @PostMapping("/progress:batch")
+    public ResponseEntity<Map<String, Object>> updateVideoProgressBatch(
+            @RequestParam Long userId,
+            @RequestBody List<VideoProgressDTO> items) {
+        
+        try {
+            logger.debug("Updating video progress batch of {} for user {}", items != null ? items.size() : 0, userId);
+            
+            List<Map<String, Object>> results = videoService.updateVideoProgressBatch(userId, items);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("userId", userId);
+            response.put("results", results);
+            response.put("updated", results.stream().filter(r -> Boolean.TRUE.equals(r.get("success"))).count());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (RuntimeException e) {
+            logger.error("Error updating video progress batch: {}", e.getMessage());
+            
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", e.getMessage());
+            
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        } catch (Exception e) {
+            logger.error("Unexpected error updating video progress batch: {}", e.getMessage(), e);
+            
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "Internal server error");
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
     /**
      * GET /api/videos/{videoId}/progress
      * Gets video progress for a user
@@ -0,0 +1,48 @@
+package com.example.cdaxVideo.DTO;
+
+import com.example.cdaxVideo.Entity.Course;
+
+import java.util.List;
+
+/**
+ * One keyset page of courses. Pass {@code nextCursor} back as {@code cursor}
+ * to get the following page; it is null when there are no more courses.
+ */
+public class CoursePageDTO {
+
+    private List<Course> courses;
+    private Long nextCursor;
+    private boolean hasMore;
+
+    public CoursePageDTO() {}
+
+    public CoursePageDTO(List<Course> courses, Long nextCursor, boolean hasMore) {
+        this.courses = courses;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<Course> getCourses() {
+        return courses;
+    }
+
+    public void setCourses(List<Course> courses) {
+        this.courses = courses;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
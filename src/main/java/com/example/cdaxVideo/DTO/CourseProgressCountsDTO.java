@@ -0,0 +1,51 @@
+package com.example.cdaxVideo.DTO;
+
+/**
+ * Video counts of one purchased course for one user, as returned by
+ * {@code UserVideoProgressRepository.countProgressByCourseForUser}.
+ */
+public class CourseProgressCountsDTO {
+
+    private Long courseId;
+    private int totalVideos;
+    private int completedVideos;
+    private int inProgressVideos;
+
+    public CourseProgressCountsDTO() {}
+
+    public CourseProgressCountsDTO(Long courseId, int totalVideos, int completedVideos, int inProgressVideos) {
+        this.courseId = courseId;
+        this.totalVideos = totalVideos;
+        this.completedVideos = completedVideos;
+        this.inProgressVideos = inProgressVideos;
+    }
+
+    /** From a (courseId, total, completed, inProgress) aggregate row. */
+    public static CourseProgressCountsDTO fromRow(Object[] row) {
+        return new CourseProgressCountsDTO((Long) row[0],
+                ((Number) row[1]).intValue(),
+                ((Number) row[2]).intValue(),
+                ((Number) row[3]).intValue());
+    }
+
+    /** Started (a video completed or partly watched) but not finished. */
+    public boolean isInProgress() {
+        return completedVideos < totalVideos && (completedVideos > 0 || inProgressVideos > 0);
+    }
+
+    public int getProgressPercent() {
+        return totalVideos == 0 ? 0 : completedVideos * 100 / totalVideos;
+    }
+
+    public Long getCourseId() { return courseId; }
+    public void setCourseId(Long courseId) { this.courseId = courseId; }
+
+    public int getTotalVideos() { return totalVideos; }
+    public void setTotalVideos(int totalVideos) { this.totalVideos = totalVideos; }
+
+    public int getCompletedVideos() { return completedVideos; }
+    public void setCompletedVideos(int completedVideos) { this.completedVideos = completedVideos; }
+
+    public int getInProgressVideos() { return inProgressVideos; }
+    public void setInProgressVideos(int inProgressVideos) { this.inProgressVideos = inProgressVideos; }
+}
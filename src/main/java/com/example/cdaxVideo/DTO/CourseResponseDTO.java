@@ -150,6 +150,15 @@ public class CourseResponseDTO {
         this.isCompleted = completedVideosCount == totalVideosCount && totalVideosCount > 0;
     }
     
+    // Video counts from the per-course progress aggregate (transient flags are not set on that path)
+    public void applyProgressCounts(CourseProgressCountsDTO counts) {
+        this.totalVideos = counts.getTotalVideos();
+        this.completedVideos = counts.getCompletedVideos();
+        this.progressPercent = counts.getTotalVideos() > 0
+                ? (double) counts.getCompletedVideos() / counts.getTotalVideos() * 100 : 0.0;
+        this.isCompleted = counts.getTotalVideos() > 0 && counts.getCompletedVideos() == counts.getTotalVideos();
+    }
+    
     // Getters and setters for all fields...
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
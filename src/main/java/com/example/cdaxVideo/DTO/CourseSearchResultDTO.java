@@ -0,0 +1,39 @@
+package com.example.cdaxVideo.DTO;
+
+import com.example.cdaxVideo.Entity.Course;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Courses matching an advanced search plus facet counts over that result:
+ * facet name (category, level, price, rating) -> value -> number of courses.
+ */
+public class CourseSearchResultDTO {
+
+    private List<Course> courses;
+    private Map<String, Map<String, Integer>> facets;
+
+    public CourseSearchResultDTO() {}
+
+    public CourseSearchResultDTO(List<Course> courses, Map<String, Map<String, Integer>> facets) {
+        this.courses = courses;
+        this.facets = facets;
+    }
+
+    public List<Course> getCourses() {
+        return courses;
+    }
+
+    public void setCourses(List<Course> courses) {
+        this.courses = courses;
+    }
+
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(Map<String, Map<String, Integer>> facets) {
+        this.facets = facets;
+    }
+}
@@ -1,9 +1,11 @@
 package com.example.cdaxVideo.Entity;
 
+import com.example.cdaxVideo.Service.UserProgressVersionListener;
 import jakarta.persistence.*;
 import java.util.Date;
 
 @Entity
+@EntityListeners(UserProgressVersionListener.class)
 @Table(name = "user_assessment_progress",
        uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "assessment_id"}))
 public class UserAssessmentProgress {
@@ -0,0 +1,53 @@
+package com.example.cdaxVideo.Entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Per (user, course) progress rollup, kept current by CourseProgressRollupService
+ * in the same transaction as the progress write it summarizes.
+ */
+@Entity
+@Table(name = "user_course_progress",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "course_id"}),
+       indexes = @Index(name = "idx_user_course_progress_user", columnList = "user_id"))
+@Data
+@NoArgsConstructor
+public class UserCourseProgress {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    @Column(name = "completed_videos", nullable = false)
+    private Integer completedVideos = 0;
+
+    @Column(name = "completed_modules", nullable = false)
+    private Integer completedModules = 0;
+
+    @Column(name = "passed_assessments", nullable = false)
+    private Integer passedAssessments = 0;
+
+    @Column(name = "watched_seconds", nullable = false)
+    private Long watchedSeconds = 0L;
+
+    @Column(name = "last_activity_at")
+    private LocalDateTime lastActivityAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public UserCourseProgress(Long userId, Long courseId) {
+        this.userId = userId;
+        this.courseId = courseId;
+    }
+}
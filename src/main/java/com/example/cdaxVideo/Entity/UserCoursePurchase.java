@@ -1,10 +1,12 @@
 package com.example.cdaxVideo.Entity;
 
 
+import com.example.cdaxVideo.Service.UserProgressVersionListener;
 import jakarta.persistence.*;
 import java.util.Date;
 
 @Entity
+@EntityListeners(UserProgressVersionListener.class)
 @Table(name = "user_course_purchase")
 public class UserCoursePurchase {
 
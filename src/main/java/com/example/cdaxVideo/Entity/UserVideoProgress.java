@@ -1,12 +1,18 @@
 package com.example.cdaxVideo.Entity;
 
+import com.example.cdaxVideo.Service.UserProgressVersionListener;
+import com.example.cdaxVideo.Service.WatchedIntervals;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 import java.util.Date;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.DynamicUpdate;
 
 @Entity
+@EntityListeners(UserProgressVersionListener.class)
+// Only changed columns: flags set by upserts in the same transaction are not overwritten
+@DynamicUpdate
 @Table(
     name = "user_video_progress",
     uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "video_id"})
@@ -53,6 +59,11 @@ public class UserVideoProgress {
     @Column(name = "forward_jumps_count")
     private Integer forwardJumpsCount = 0;
 
+    // Merged second ranges actually played (server-tracked), see WatchedIntervals
+    @JsonIgnore
+    @Column(name = "watched_intervals", length = WatchedIntervals.MAX_ENCODED_BYTES)
+    private byte[] watchedIntervals;
+
     /* =========================
        TIMESTAMPS
        ========================= */
@@ -161,6 +172,15 @@ public class UserVideoProgress {
         this.lastUpdatedAt = LocalDateTime.now();
     }
 
+    public byte[] getWatchedIntervals() {
+        return watchedIntervals;
+    }
+
+    public void setWatchedIntervals(byte[] watchedIntervals) {
+        this.watchedIntervals = watchedIntervals;
+        this.lastUpdatedAt = LocalDateTime.now();
+    }
+
     /* ======== MISSING SETTERS (FIX) ======== */
 
     public Date getUnlockedOn() {
@@ -204,14 +224,9 @@ public class UserVideoProgress {
             return false;
         }
 
-        boolean watchedEnough =
-            watchedSeconds != null &&
-            watchedSeconds >= (int) (videoDurationSeconds * 0.95);
-
-        boolean notSkippedTooMuch =
-            forwardJumpsCount == null || forwardJumpsCount < 10;
-
-        return watchedEnough && notSkippedTooMuch;
+        // Played ranges, not the client's counter (skipped parts are never covered)
+        byte[] played = WatchedIntervals.orLegacy(watchedIntervals, watchedSeconds, videoDurationSeconds);
+        return WatchedIntervals.coveredSeconds(played) >= (int) (videoDurationSeconds * 0.95);
     }
 
     /* =========================
@@ -3,8 +3,13 @@ package com.example.cdaxVideo.Repository;
 
 import com.example.cdaxVideo.Entity.Assessment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import java.util.List;
 
 public interface AssessmentRepository extends JpaRepository<Assessment, Long> {
     List<Assessment> findByModuleId(Long moduleId);
+
+    // (assessmentId, moduleId) pairs for the catalog snapshot
+    @Query("SELECT a.id, a.module.id FROM Assessment a WHERE a.module IS NOT NULL")
+    List<Object[]> findAllModuleLinks();
 }
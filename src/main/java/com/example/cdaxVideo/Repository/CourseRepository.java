@@ -1,6 +1,7 @@
 package com.example.cdaxVideo.Repository;
 
 import com.example.cdaxVideo.Entity.Course;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -66,4 +67,18 @@ List<Course> findAllWithModulesAndVideos();
        "WHERE c.id = :courseId " +
        "ORDER BY m.id, v.displayOrder")
 Optional<Course> findByIdWithModulesAndVideos(@Param("courseId") Long courseId);
-} 
\ No newline at end of file
+
+@Query("SELECT DISTINCT c FROM Course c " +
+       "LEFT JOIN FETCH c.modules m " +
+       "WHERE c.id IN :ids " +
+       "ORDER BY c.id, m.id")
+List<Course> findAllByIdInWithModules(@Param("ids") List<Long> ids);
+
+// Keyset pagination, phase 1: just the ids after the cursor (no collection fetch, so LIMIT is safe)
+@Query("SELECT c.id FROM Course c WHERE c.id > :afterId ORDER BY c.id ASC")
+List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+// Flat (courseId, tag) pairs for building the in-memory catalog snapshot
+@Query("SELECT c.id, t FROM Course c JOIN c.tags t")
+List<Object[]> findAllCourseTagPairs();
+}
@@ -35,4 +35,11 @@ public interface UserAssessmentProgressRepository extends JpaRepository<UserAsse
     
     @Query("SELECT uap FROM UserAssessmentProgress uap WHERE uap.user.id = :userId AND uap.assessment.id = :assessmentId AND uap.passed = true")
     Optional<UserAssessmentProgress> findPassedAssessment(@Param("userId") Long userId, @Param("assessmentId") Long assessmentId);
-}
\ No newline at end of file
+
+    // (assessmentId, unlocked, passed) for every assessment row of a user in one course, for progress bitsets
+    @Query("SELECT a.id, uap.unlocked, uap.passed FROM UserAssessmentProgress uap JOIN uap.assessment a WHERE uap.user.id = :userId AND a.module.course.id = :courseId")
+    List<Object[]> findProgressFlagsByUserAndCourse(@Param("userId") Long userId, @Param("courseId") Long courseId);
+
+    @Query("SELECT COUNT(uap) FROM UserAssessmentProgress uap WHERE uap.user.id = :userId AND uap.assessment.module.course.id = :courseId AND uap.passed = true")
+    Long countPassedByUserIdAndCourseId(@Param("userId") Long userId, @Param("courseId") Long courseId);
+}
@@ -0,0 +1,28 @@
+package com.example.cdaxVideo.Repository;
+
+import com.example.cdaxVideo.Entity.UserCourseProgress;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface UserCourseProgressRepository extends JpaRepository<UserCourseProgress, Long> {
+
+    Optional<UserCourseProgress> findByUserIdAndCourseId(Long userId, Long courseId);
+
+    List<UserCourseProgress> findByUserId(Long userId);
+
+    // Hot path: add watch time without reading the row; 0 means the row does not exist yet
+    @Modifying
+    @Query("UPDATE UserCourseProgress r SET r.watchedSeconds = r.watchedSeconds + :delta, " +
+           "r.lastActivityAt = :now, r.updatedAt = :now " +
+           "WHERE r.userId = :userId AND r.courseId = :courseId")
+    int addWatchTime(@Param("userId") Long userId,
+                     @Param("courseId") Long courseId,
+                     @Param("delta") long delta,
+                     @Param("now") LocalDateTime now);
+}
@@ -31,4 +31,11 @@ public interface UserCoursePurchaseRepository extends JpaRepository<UserCoursePu
     
     @Query("SELECT u FROM UserCoursePurchase u WHERE u.user.id = :userId")
     List<UserCoursePurchase> findByUserIdWithQuery(@Param("userId") Long userId);
-}
\ No newline at end of file
+
+    @Query("SELECT u.course.id FROM UserCoursePurchase u WHERE u.user.id = :userId ORDER BY u.id")
+    List<Long> findCourseIdsByUserId(@Param("userId") Long userId);
+
+    // (userId, courseId) of every purchase, for per-enrollment maintenance jobs
+    @Query("SELECT u.user.id, u.course.id FROM UserCoursePurchase u")
+    List<Object[]> findAllUserCoursePairs();
+}
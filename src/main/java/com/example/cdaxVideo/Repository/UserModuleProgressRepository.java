@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UserModuleProgressRepository extends JpaRepository<UserModuleProgress, Long> {
@@ -23,4 +24,14 @@ public interface UserModuleProgressRepository extends JpaRepository<UserModulePr
            "WHERE ump.user.id = :userId AND m.course.id = :courseId AND ump.completed = true")
     Long countCompletedModulesByUserAndCourse(@Param("userId") Long userId, 
                                               @Param("courseId") Long courseId);
-}
\ No newline at end of file
+
+    @Query("SELECT ump FROM UserModuleProgress ump WHERE ump.user.id = :userId AND ump.module.course.id = :courseId")
+    List<UserModuleProgress> findByUserIdAndCourseId(@Param("userId") Long userId, @Param("courseId") Long courseId);
+
+    // (moduleId, unlocked, assessmentPassed) for every module row of a user in one course, for progress bitsets
+    @Query("SELECT m.id, ump.unlocked, ump.assessmentPassed FROM UserModuleProgress ump " +
+           "JOIN ump.module m " +
+           "WHERE ump.user.id = :userId AND m.course.id = :courseId")
+    List<Object[]> findProgressFlagsByUserAndCourse(@Param("userId") Long userId,
+                                                    @Param("courseId") Long courseId);
+}
@@ -28,6 +28,11 @@ public interface UserStreakRepository extends JpaRepository<UserStreak, Long> {
         @Param("courseId") Long courseId,
         @Param("startDate") LocalDate startDate);
     
+    // (courseId, streakDate) of every active day, for the streak calendars
+    @Query("SELECT us.course.id, us.streakDate FROM UserStreak us " +
+           "WHERE us.user.id = :userId AND us.isActiveDay = true")
+    List<Object[]> findActiveDaysByUserId(@Param("userId") Long userId);
+    
     @Query("SELECT COUNT(DISTINCT us.streakDate) FROM UserStreak us " +
            "WHERE us.user.id = :userId AND us.streakDate BETWEEN :startDate AND :endDate " +
            "AND us.isActiveDay = true")
@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -81,6 +82,20 @@ public interface UserVideoProgressRepository extends JpaRepository<UserVideoProg
         @Param("endDateTime") LocalDateTime endDateTime
     );
 
+    // Same for all of the user's courses (streak overview), grouped by course in memory
+    @Query("SELECT uvp FROM UserVideoProgress uvp " +
+           "JOIN FETCH uvp.video v " +
+           "WHERE uvp.user.id = :userId " +
+           "AND uvp.lastUpdatedAt >= :startDateTime " +
+           "AND uvp.lastUpdatedAt < :endDateTime " +
+           "AND uvp.watchedSeconds > 0 " +
+           "ORDER BY uvp.lastUpdatedAt DESC")
+    List<UserVideoProgress> findByUserIdAndDateRangeWithVideo(
+        @Param("userId") Long userId,
+        @Param("startDateTime") LocalDateTime startDateTime,
+        @Param("endDateTime") LocalDateTime endDateTime
+    );
+
     // ✅ 6. Count completed videos (optimized version)
     @Query("SELECT COUNT(uvp) FROM UserVideoProgress uvp " +
            "JOIN uvp.video v " +
@@ -102,4 +117,50 @@ public interface UserVideoProgressRepository extends JpaRepository<UserVideoProg
         @Param("userId") Long userId,
         @Param("limit") int limit
     );
-}
\ No newline at end of file
+
+    // ✅ 8. (videoId, unlocked, completed) for every row of a user in one course, for progress bitsets
+    @Query("SELECT v.id, uvp.unlocked, uvp.completed FROM UserVideoProgress uvp " +
+           "JOIN uvp.video v " +
+           "JOIN v.module m " +
+           "WHERE uvp.user.id = :userId AND m.course.id = :courseId")
+    List<Object[]> findProgressFlagsByUserAndCourse(@Param("userId") Long userId,
+                                                    @Param("courseId") Long courseId);
+
+    // ✅ 9. (total watched seconds, last activity) of a user in one course, for the progress rollup
+    @Query("SELECT COALESCE(SUM(uvp.watchedSeconds), 0), MAX(uvp.lastUpdatedAt) FROM UserVideoProgress uvp " +
+           "JOIN uvp.video v " +
+           "JOIN v.module m " +
+           "WHERE uvp.user.id = :userId AND m.course.id = :courseId")
+    List<Object[]> sumWatchTimeByUserAndCourse(@Param("userId") Long userId,
+                                               @Param("courseId") Long courseId);
+
+    // ✅ 10. (courseId, total videos, completed, in progress) for every course the user purchased,
+    // one GROUP BY: courses -> modules -> videos, left-joined to the user's progress rows. Driven
+    // from the distinct purchased course ids, so a course bought twice is still counted once
+    @Query("SELECT c.id, COUNT(v.id), " +
+           "COALESCE(SUM(CASE WHEN uvp.completed = true THEN 1 ELSE 0 END), 0), " +
+           "COALESCE(SUM(CASE WHEN uvp.completed = false AND (uvp.watchedSeconds > 0 OR uvp.lastPositionSeconds > 0) " +
+           "THEN 1 ELSE 0 END), 0) " +
+           "FROM Course c " +
+           "LEFT JOIN Module m ON m.course = c " +
+           "LEFT JOIN Video v ON v.module = m " +
+           "LEFT JOIN UserVideoProgress uvp ON uvp.video = v AND uvp.user.id = :userId " +
+           "WHERE c.id IN (SELECT p.course.id FROM UserCoursePurchase p WHERE p.user.id = :userId) " +
+           "GROUP BY c.id")
+    List<Object[]> countProgressByCourseForUser(@Param("userId") Long userId);
+
+    // ✅ 11. (watchedSeconds, lastPositionSeconds, forwardJumpsCount, unlocked, completed, manuallyCompleted,
+    // watchedIntervals, lastUpdatedAt) of one row, the baseline a buffered heartbeat entry starts from
+    @Query("SELECT uvp.watchedSeconds, uvp.lastPositionSeconds, uvp.forwardJumpsCount, " +
+           "uvp.unlocked, uvp.completed, uvp.manuallyCompleted, uvp.watchedIntervals, uvp.lastUpdatedAt " +
+           "FROM UserVideoProgress uvp WHERE uvp.user.id = :userId AND uvp.video.id = :videoId")
+    List<Object[]> findWatchStateByUserIdAndVideoId(@Param("userId") Long userId,
+                                                    @Param("videoId") Long videoId);
+
+    // Same columns for many videos, video id first; a projection, so no entity is cached
+    @Query("SELECT uvp.video.id, uvp.watchedSeconds, uvp.lastPositionSeconds, uvp.forwardJumpsCount, " +
+           "uvp.unlocked, uvp.completed, uvp.manuallyCompleted, uvp.watchedIntervals, uvp.lastUpdatedAt " +
+           "FROM UserVideoProgress uvp WHERE uvp.user.id = :userId AND uvp.video.id IN :videoIds")
+    List<Object[]> findWatchStatesByUserIdAndVideoIdIn(@Param("userId") Long userId,
+                                                       @Param("videoIds") Collection<Long> videoIds);
+}
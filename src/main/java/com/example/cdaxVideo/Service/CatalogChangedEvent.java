@@ -0,0 +1,26 @@
+package com.example.cdaxVideo.Service;
+
+/**
+ * Published by {@link CatalogSnapshotService} each time a new snapshot is swapped in.
+ * Listeners (search/suggestion/facet/tag indexes) diff against what they indexed
+ * last and update only the courses that changed.
+ */
+public class CatalogChangedEvent {
+
+    private final CatalogSnapshot previous;
+    private final CatalogSnapshot snapshot;
+
+    public CatalogChangedEvent(CatalogSnapshot previous, CatalogSnapshot snapshot) {
+        this.previous = previous;
+        this.snapshot = snapshot;
+    }
+
+    /** Snapshot that was current before this change (null on the first build). */
+    public CatalogSnapshot getPrevious() {
+        return previous;
+    }
+
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Entity.Course;
+import com.example.cdaxVideo.Entity.Module;
+import com.example.cdaxVideo.Repository.CourseRepository;
+import com.example.cdaxVideo.Repository.ModuleRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the Course -> Module -> Video tree for a set of courses in a fixed number
+ * of queries, no matter how many modules or videos the courses have:
+ *
+ *   1. courses + modules (fetch join)
+ *   2. modules + videos (fetch join, fills the modules loaded by query 1)
+ *
+ * Modules come back ordered by id and videos by displayOrder, matching the
+ * ordering used everywhere else in the app. This is the only place that should
+ * walk the tree from the database; everything else reads the
+ * {@link CatalogSnapshot} built from it.
+ */
+@Service
+public class CatalogGraphLoader {
+
+    private final CourseRepository courseRepository;
+    private final ModuleRepository moduleRepository;
+
+    public CatalogGraphLoader(CourseRepository courseRepository, ModuleRepository moduleRepository) {
+        this.courseRepository = courseRepository;
+        this.moduleRepository = moduleRepository;
+    }
+
+    /** Every course with its modules and videos. */
+    @Transactional(readOnly = true)
+    public List<Course> loadAll() {
+        List<Course> courses = courseRepository.findAllWithModules();
+        fetchVideos(courses.stream().map(Course::getId).collect(Collectors.toList()));
+        return courses;
+    }
+
+    /** The given courses with modules and videos, in the order the ids were passed. */
+    @Transactional(readOnly = true)
+    public List<Course> load(Collection<Long> courseIds) {
+        if (courseIds == null || courseIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(courseIds));
+        List<Course> courses = courseRepository.findAllByIdInWithModules(ids);
+        fetchVideos(ids);
+
+        Map<Long, Course> byId = new HashMap<>();
+        for (Course c : courses) {
+            byId.put(c.getId(), c);
+        }
+        List<Course> ordered = new ArrayList<>(courses.size());
+        for (Long id : ids) {
+            Course c = byId.get(id);
+            if (c != null) ordered.add(c);
+        }
+        return ordered;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Course> load(Long courseId) {
+        return load(List.of(courseId)).stream().findFirst();
+    }
+
+    /** Modules (with videos) of a single course, one query. */
+    @Transactional(readOnly = true)
+    public List<Module> loadModules(Long courseId) {
+        return moduleRepository.findByCourseIdsWithVideos(List.of(courseId));
+    }
+
+    private void fetchVideos(List<Long> courseIds) {
+        if (!courseIds.isEmpty()) {
+            // Same persistence context: this initializes videos on the module instances loaded above
+            moduleRepository.findByCourseIdsWithVideos(courseIds);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Entity.Course;
+import com.example.cdaxVideo.Entity.Module;
+import com.example.cdaxVideo.Entity.Video;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Immutable, versioned view of the whole catalog (Course -> Module -> Video).
+ *
+ * A snapshot is built once by {@link CatalogSnapshotService} and then only read.
+ * Readers never see a half-built tree: the service swaps the reference in one step.
+ * Use {@link #materialize(Long)} / {@link #materializeAll()} to get fresh, detached
+ * entity copies that are safe to decorate with per-user transient flags.
+ */
+public final class CatalogSnapshot {
+
+    private final long version;
+    private final List<CourseNode> courses;
+    private final Map<Long, CourseNode> coursesById;
+    private final Map<Long, ModuleNode> modulesById;
+    private final Map<Long, VideoNode> videosById;
+    private final Map<Long, Long> assessmentToModule;
+    private final int tagCount;
+    private final long buildNanos;
+    private final LocalDateTime builtAt;
+
+    private CatalogSnapshot(long version, List<CourseNode> courses, Map<Long, Long> assessmentToModule,
+                            long buildNanos) {
+        this.version = version;
+        this.courses = Collections.unmodifiableList(courses);
+        this.assessmentToModule = Collections.unmodifiableMap(assessmentToModule);
+        this.buildNanos = buildNanos;
+        this.builtAt = LocalDateTime.now();
+
+        Map<Long, CourseNode> byCourse = new HashMap<>();
+        Map<Long, ModuleNode> byModule = new HashMap<>();
+        Map<Long, VideoNode> byVideo = new HashMap<>();
+        int tags = 0;
+        for (CourseNode c : courses) {
+            byCourse.put(c.id, c);
+            tags += c.tags.size();
+            for (ModuleNode m : c.modules) {
+                byModule.put(m.id, m);
+                for (VideoNode v : m.videos) {
+                    byVideo.put(v.id, v);
+                }
+            }
+        }
+        this.coursesById = Collections.unmodifiableMap(byCourse);
+        this.modulesById = Collections.unmodifiableMap(byModule);
+        this.videosById = Collections.unmodifiableMap(byVideo);
+        this.tagCount = tags;
+    }
+
+    public static CatalogSnapshot empty() {
+        return new CatalogSnapshot(0L, new ArrayList<>(), new HashMap<>(), 0L);
+    }
+
+    /**
+     * Build a snapshot from loaded entities.
+     *
+     * @param courses       courses with modules and videos initialized
+     * @param tagsByCourse  course id -> tags
+     * @param assessmentsByModule module id -> assessment ids
+     */
+    public static CatalogSnapshot build(long version, List<Course> courses,
+                                        Map<Long, List<String>> tagsByCourse,
+                                        Map<Long, List<Long>> assessmentsByModule,
+                                        long buildNanos) {
+        List<Course> sorted = new ArrayList<>(courses);
+        sorted.sort(Comparator.comparing(Course::getId));
+
+        List<CourseNode> nodes = new ArrayList<>(sorted.size());
+        Map<Long, Long> assessmentToModule = new HashMap<>();
+        for (Course course : sorted) {
+            CourseNode node = new CourseNode(course,
+                    tagsByCourse.getOrDefault(course.getId(), Collections.emptyList()),
+                    assessmentsByModule);
+            nodes.add(node);
+            for (ModuleNode m : node.modules) {
+                for (Long assessmentId : m.assessmentIds) {
+                    assessmentToModule.put(assessmentId, m.id);
+                }
+            }
+        }
+        return new CatalogSnapshot(version, nodes, assessmentToModule, buildNanos);
+    }
+
+    // ---------- lookups ----------
+
+    public long getVersion() { return version; }
+    public List<CourseNode> getCourses() { return courses; }
+    public Optional<CourseNode> findCourse(Long courseId) { return Optional.ofNullable(coursesById.get(courseId)); }
+    public Optional<ModuleNode> findModule(Long moduleId) { return Optional.ofNullable(modulesById.get(moduleId)); }
+    public Optional<VideoNode> findVideo(Long videoId) { return Optional.ofNullable(videosById.get(videoId)); }
+    public Optional<ModuleNode> findModuleForAssessment(Long assessmentId) {
+        Long moduleId = assessmentToModule.get(assessmentId);
+        return moduleId == null ? Optional.empty() : findModule(moduleId);
+    }
+
+    public int getCourseCount() { return courses.size(); }
+    public int getModuleCount() { return modulesById.size(); }
+    public int getVideoCount() { return videosById.size(); }
+    public int getTagCount() { return tagCount; }
+    public long getBuildNanos() { return buildNanos; }
+    public LocalDateTime getBuiltAt() { return builtAt; }
+
+    // ---------- materialization ----------
+
+    public List<Course> materializeAll() {
+        List<Course> result = new ArrayList<>(courses.size());
+        for (CourseNode c : courses) {
+            result.add(c.toCourse());
+        }
+        return result;
+    }
+
+    public List<Course> materialize(Collection<Long> courseIds) {
+        List<Course> result = new ArrayList<>(courseIds.size());
+        for (Long id : courseIds) {
+            CourseNode c = coursesById.get(id);
+            if (c != null) result.add(c.toCourse());
+        }
+        return result;
+    }
+
+    public Optional<Course> materialize(Long courseId) {
+        return findCourse(courseId).map(CourseNode::toCourse);
+    }
+
+    // ---------- nodes ----------
+
+    public static final class CourseNode {
+        private final Long id;
+        private final String title;
+        private final String description;
+        private final String thumbnailUrl;
+        private final String shortDescription;
+        private final String instructor;
+        private final String instructorId;
+        private final String bannerImage;
+        private final Double price;
+        private final Double discountPrice;
+        private final Double rating;
+        private final Integer totalRatings;
+        private final Integer enrolledStudents;
+        private final Integer totalDuration;
+        private final String level;
+        private final String category;
+        private final String subCategory;
+        private final Boolean isPublished;
+        private final Boolean isFeatured;
+        private final Boolean isPopular;
+        private final LocalDateTime createdAt;
+        private final LocalDateTime updatedAt;
+        private final LocalDateTime publishedAt;
+        private final List<String> tags;
+        private final List<ModuleNode> modules;
+        private final int videoCount;
+        private final int videoSeconds;
+
+        private CourseNode(Course c, List<String> tags, Map<Long, List<Long>> assessmentsByModule) {
+            this.id = c.getId();
+            this.title = c.getTitle();
+            this.description = c.getDescription();
+            this.thumbnailUrl = c.getThumbnailUrl();
+            this.shortDescription = c.getShortDescription();
+            this.instructor = c.getInstructor();
+            this.instructorId = c.getInstructorId();
+            this.bannerImage = c.getBannerImage();
+            this.price = c.getPrice();
+            this.discountPrice = c.getDiscountPrice();
+            this.rating = c.getRating();
+            this.totalRatings = c.getTotalRatings();
+            this.enrolledStudents = c.getEnrolledStudents();
+            this.totalDuration = c.getTotalDuration();
+            this.level = c.getLevel();
+            this.category = c.getCategory();
+            this.subCategory = c.getSubCategory();
+            this.isPublished = c.getIsPublished();
+            this.isFeatured = c.getIsFeatured();
+            this.isPopular = c.getIsPopular();
+            this.createdAt = c.getCreatedAt();
+            this.updatedAt = c.getUpdatedAt();
+            this.publishedAt = c.getPublishedAt();
+            this.tags = List.copyOf(tags);
+
+            List<Module> sourceModules = new ArrayList<>(c.getModules() != null ? c.getModules() : List.of());
+            sourceModules.sort(Comparator.comparing(Module::getId));
+
+            List<ModuleNode> moduleNodes = new ArrayList<>(sourceModules.size());
+            int courseOrdinal = 0;
+            int seconds = 0;
+            for (int i = 0; i < sourceModules.size(); i++) {
+                Module m = sourceModules.get(i);
+                ModuleNode node = new ModuleNode(m, id, i, courseOrdinal,
+                        assessmentsByModule.getOrDefault(m.getId(), Collections.emptyList()));
+                moduleNodes.add(node);
+                courseOrdinal += node.videos.size();
+                for (VideoNode v : node.videos) {
+                    seconds += v.getDuration() != null ? v.getDuration() : 0;
+                }
+            }
+            this.modules = Collections.unmodifiableList(moduleNodes);
+            this.videoCount = courseOrdinal;
+            this.videoSeconds = seconds;
+        }
+
+        public Long getId() { return id; }
+        public String getTitle() { return title; }
+        public String getDescription() { return description; }
+        public String getThumbnailUrl() { return thumbnailUrl; }
+        public String getInstructor() { return instructor; }
+        public Double getPrice() { return price; }
+        public Double getDiscountPrice() { return discountPrice; }
+        public Double getRating() { return rating; }
+        public Integer getTotalRatings() { return totalRatings; }
+        public Integer getEnrolledStudents() { return enrolledStudents; }
+        public Boolean getIsPopular() { return isPopular; }
+        public Boolean getIsFeatured() { return isFeatured; }
+        public String getLevel() { return level; }
+        public String getCategory() { return category; }
+        public String getSubCategory() { return subCategory; }
+        public List<String> getTags() { return tags; }
+        public List<ModuleNode> getModules() { return modules; }
+        public int getVideoCount() { return videoCount; }
+        /** Sum of the video durations, in seconds */
+        public int getVideoSeconds() { return videoSeconds; }
+
+        public Course toCourse() {
+            Course course = new Course();
+            course.setId(id);
+            course.setTitle(title);
+            course.setDescription(description);
+            course.setThumbnailUrl(thumbnailUrl);
+            course.setShortDescription(shortDescription);
+            course.setInstructor(instructor);
+            course.setInstructorId(instructorId);
+            course.setBannerImage(bannerImage);
+            course.setPrice(price);
+            course.setDiscountPrice(discountPrice);
+            course.setRating(rating);
+            course.setTotalRatings(totalRatings);
+            course.setEnrolledStudents(enrolledStudents);
+            course.setLevel(level);
+            course.setCategory(category);
+            course.setSubCategory(subCategory);
+            course.setTags(new ArrayList<>(tags));
+            course.setIsPublished(isPublished);
+            course.setIsFeatured(isFeatured);
+            course.setIsPopular(isPopular);
+            course.setCreatedAt(createdAt);
+            course.setPublishedAt(publishedAt);
+            for (ModuleNode m : modules) {
+                course.addModule(m.toModule());
+            }
+            // setTotalDuration recalculates derived fields (and touches updatedAt), so restore it last
+            course.setTotalDuration(totalDuration);
+            course.setUpdatedAt(updatedAt);
+            return course;
+        }
+    }
+
+    public static final class ModuleNode {
+        private final Long id;
+        private final Long courseId;
+        private final String title;
+        private final int durationSec;
+        private final int index;
+        private final int firstCourseOrdinal;
+        private final List<VideoNode> videos;
+        private final List<Long> assessmentIds;
+
+        private ModuleNode(Module m, Long courseId, int index, int firstCourseOrdinal, List<Long> assessmentIds) {
+            this.id = m.getId();
+            this.courseId = courseId;
+            this.title = m.getTitle();
+            this.durationSec = m.getDurationSec();
+            this.index = index;
+            this.firstCourseOrdinal = firstCourseOrdinal;
+            this.assessmentIds = List.copyOf(assessmentIds);
+
+            List<Video> sourceVideos = new ArrayList<>(m.getVideos());
+            sourceVideos.sort(Comparator
+                    .comparing(Video::getDisplayOrder, Comparator.nullsLast(Comparator.naturalOrder()))
+                    .thenComparing(Video::getId));
+
+            List<VideoNode> videoNodes = new ArrayList<>(sourceVideos.size());
+            for (int i = 0; i < sourceVideos.size(); i++) {
+                videoNodes.add(new VideoNode(sourceVideos.get(i), id, courseId, i, firstCourseOrdinal + i));
+            }
+            this.videos = Collections.unmodifiableList(videoNodes);
+        }
+
+        public Long getId() { return id; }
+        public Long getCourseId() { return courseId; }
+        public String getTitle() { return title; }
+        public int getDurationSec() { return durationSec; }
+        /** Position of this module inside its course (0-based). */
+        public int getIndex() { return index; }
+        public List<VideoNode> getVideos() { return videos; }
+        public List<Long> getAssessmentIds() { return assessmentIds; }
+        /** Course ordinal of this module's first video; its videos occupy [first, first + size). */
+        public int getFirstCourseOrdinal() { return firstCourseOrdinal; }
+        public int getEndCourseOrdinal() { return firstCourseOrdinal + videos.size(); }
+
+        public Module toModule() {
+            Module module = new Module(title, durationSec);
+            module.setId(id);
+            List<Video> copies = new ArrayList<>(videos.size());
+            for (VideoNode v : videos) {
+                copies.add(v.toVideo());
+            }
+            module.setVideos(copies);
+            return module;
+        }
+    }
+
+    public static final class VideoNode {
+        private final Long id;
+        private final Long moduleId;
+        private final Long courseId;
+        private final String title;
+        private final String videoUrl;
+        private final String youtubeId;
+        private final Integer duration;
+        private final Integer displayOrder;
+        private final Boolean isPreview;
+        private final LocalDateTime createdAt;
+        private final LocalDateTime updatedAt;
+        private final int index;
+        private final int courseOrdinal;
+
+        private VideoNode(Video v, Long moduleId, Long courseId, int index, int courseOrdinal) {
+            this.id = v.getId();
+            this.moduleId = moduleId;
+            this.courseId = courseId;
+            this.title = v.getTitle();
+            this.videoUrl = v.getVideoUrl();
+            this.youtubeId = v.getYoutubeId();
+            this.duration = v.getDuration();
+            this.displayOrder = v.getDisplayOrder();
+            this.isPreview = v.getIsPreview();
+            this.createdAt = v.getCreatedAt();
+            this.updatedAt = v.getUpdatedAt();
+            this.index = index;
+            this.courseOrdinal = courseOrdinal;
+        }
+
+        public Long getId() { return id; }
+        public Long getModuleId() { return moduleId; }
+        public Long getCourseId() { return courseId; }
+        public String getTitle() { return title; }
+        public Integer getDuration() { return duration; }
+        public Integer getDisplayOrder() { return displayOrder; }
+        public Boolean getIsPreview() { return isPreview; }
+        public String getVideoUrl() { return videoUrl; }
+        public String getYoutubeId() { return youtubeId; }
+        /** Position of this video inside its module (0-based). */
+        public int getIndex() { return index; }
+        /** Position of this video across the whole course (0-based), used for per-course bitsets. */
+        public int getCourseOrdinal() { return courseOrdinal; }
+
+        public Video toVideo() {
+            Video video = new Video();
+            video.setId(id);
+            video.setTitle(title);
+            video.setVideoUrl(videoUrl);
+            video.setYoutubeId(youtubeId);
+            video.setDuration(duration);
+            video.setDisplayOrder(displayOrder);
+            video.setIsPreview(isPreview);
+            video.setCreatedAt(createdAt);
+            video.setUpdatedAt(updatedAt);
+            return video;
+        }
+    }
+}
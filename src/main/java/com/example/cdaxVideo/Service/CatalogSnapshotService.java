@@ -0,0 +1,176 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Entity.Course;
+import com.example.cdaxVideo.Repository.AssessmentRepository;
+import com.example.cdaxVideo.Repository.CourseRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Owns the current {@link CatalogSnapshot}.
+ *
+ * The snapshot is built lazily on first read and rebuilt whenever a course, module,
+ * video or assessment is saved. Builds are serialized; reads are lock-free and
+ * always see a complete tree.
+ *
+ * Freshness is tracked with a write generation: each catalog write bumps it once
+ * its transaction has committed, and a snapshot records the generation it was
+ * loaded at. A snapshot older than the current generation is rebuilt; reads inside
+ * an uncommitted write keep the published snapshot, so rolled-back rows are never
+ * published.
+ */
+@Service
+public class CatalogSnapshotService {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshotService.class);
+
+    private final CourseRepository courseRepository;
+    private final CatalogGraphLoader catalogGraphLoader;
+    private final AssessmentRepository assessmentRepository;
+    private final TransactionTemplate readOnlyTx;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Timer buildTimer;
+
+    private final AtomicReference<CatalogSnapshot> current = new AtomicReference<>();
+    private final AtomicLong versionCounter = new AtomicLong();
+    private final AtomicLong writeGeneration = new AtomicLong();
+    // Write generation the published snapshot was loaded at; -1 until the first build
+    private volatile long builtGeneration = -1;
+    private final Object buildLock = new Object();
+
+    public CatalogSnapshotService(CourseRepository courseRepository,
+                                  CatalogGraphLoader catalogGraphLoader,
+                                  AssessmentRepository assessmentRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  ApplicationEventPublisher eventPublisher,
+                                  MeterRegistry meterRegistry) {
+        this.courseRepository = courseRepository;
+        this.catalogGraphLoader = catalogGraphLoader;
+        this.assessmentRepository = assessmentRepository;
+
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.eventPublisher = eventPublisher;
+
+        this.buildTimer = Timer.builder("catalog.snapshot.build")
+                .description("Time taken to rebuild the in-memory catalog snapshot")
+                .register(meterRegistry);
+        Gauge.builder("catalog.snapshot.version", this, s -> s.peek().getVersion()).register(meterRegistry);
+        Gauge.builder("catalog.snapshot.courses", this, s -> s.peek().getCourseCount()).register(meterRegistry);
+        Gauge.builder("catalog.snapshot.modules", this, s -> s.peek().getModuleCount()).register(meterRegistry);
+        Gauge.builder("catalog.snapshot.videos", this, s -> s.peek().getVideoCount()).register(meterRegistry);
+        Gauge.builder("catalog.snapshot.tags", this, s -> s.peek().getTagCount()).register(meterRegistry);
+    }
+
+    /**
+     * Current snapshot, building (or re-building after a failed refresh) if needed.
+     */
+    public CatalogSnapshot current() {
+        CatalogSnapshot snapshot = current.get();
+        if (snapshot == null || builtGeneration != writeGeneration.get()) {
+            return rebuild();
+        }
+        return snapshot;
+    }
+
+    /** Version of the currently published snapshot (0 before the first build). */
+    public long getVersion() {
+        return peek().getVersion();
+    }
+
+    /**
+     * Rebuild the catalog after the surrounding transaction commits, or right away
+     * when there is none. Failures are logged and retried on the next read.
+     */
+    public void refresh() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    writeGeneration.incrementAndGet();
+                    rebuildQuietly();
+                }
+            });
+        } else {
+            writeGeneration.incrementAndGet();
+            rebuildQuietly();
+        }
+    }
+
+    public CatalogSnapshot rebuild() {
+        synchronized (buildLock) {
+            // Another thread may have rebuilt while we were waiting
+            CatalogSnapshot existing = current.get();
+            // Read before loading: a commit landing during the load leaves this build stale
+            long generation = writeGeneration.get();
+            if (existing != null && builtGeneration == generation) {
+                return existing;
+            }
+
+            long start = System.nanoTime();
+            CatalogSnapshot built = readOnlyTx.execute(status -> load(versionCounter.get() + 1, start));
+            versionCounter.set(built.getVersion());
+            CatalogSnapshot previous = current.getAndSet(built);
+            builtGeneration = generation;
+            buildTimer.record(built.getBuildNanos(), TimeUnit.NANOSECONDS);
+
+            logger.info("📦 Catalog snapshot v{} built in {} ms ({} courses, {} modules, {} videos)",
+                    built.getVersion(), built.getBuildNanos() / 1_000_000,
+                    built.getCourseCount(), built.getModuleCount(), built.getVideoCount());
+
+            // Still under buildLock, so listeners see versions in order
+            try {
+                eventPublisher.publishEvent(new CatalogChangedEvent(previous, built));
+            } catch (Exception e) {
+                logger.error("❌ Catalog change listener failed for v{}", built.getVersion(), e);
+            }
+            return built;
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.error("❌ Catalog snapshot rebuild failed, will retry on next read", e);
+        }
+    }
+
+    private CatalogSnapshot peek() {
+        CatalogSnapshot snapshot = current.get();
+        return snapshot != null ? snapshot : CatalogSnapshot.empty();
+    }
+
+    private CatalogSnapshot load(long version, long startNanos) {
+        // 1-2. courses -> modules -> videos
+        List<Course> courses = catalogGraphLoader.loadAll();
+
+        // 3. tags
+        Map<Long, List<String>> tagsByCourse = new HashMap<>();
+        for (Object[] row : courseRepository.findAllCourseTagPairs()) {
+            tagsByCourse.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((String) row[1]);
+        }
+
+        // 4. assessment ids per module
+        Map<Long, List<Long>> assessmentsByModule = new HashMap<>();
+        for (Object[] row : assessmentRepository.findAllModuleLinks()) {
+            assessmentsByModule.computeIfAbsent((Long) row[1], k -> new ArrayList<>()).add((Long) row[0]);
+        }
+
+        return CatalogSnapshot.build(version, courses, tagsByCourse, assessmentsByModule,
+                System.nanoTime() - startNanos);
+    }
+}
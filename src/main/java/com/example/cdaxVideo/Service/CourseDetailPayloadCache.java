@@ -0,0 +1,51 @@
+package com.example.cdaxVideo.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the serialized course detail body once per course and catalog version,
+ * and renders it for a user by splicing in their lock/completion flags.
+ */
+@Service
+public class CourseDetailPayloadCache {
+
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final CourseService courseService;
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<Long, CourseDetailTemplate> templates = new ConcurrentHashMap<>();
+
+    public CourseDetailPayloadCache(CatalogSnapshotService catalogSnapshotService,
+                                    CourseService courseService,
+                                    ObjectMapper objectMapper) {
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.courseService = courseService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * UTF-8 JSON body for GET /api/courses/{id}?userId=...
+     * Template and lock state are both taken from the same snapshot, so their slots line up.
+     */
+    public byte[] renderForUser(Long courseId, Long userId) {
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        CatalogSnapshot.CourseNode course = snapshot.findCourse(courseId)
+                .orElseThrow(() -> new RuntimeException("Course not found"));
+
+        CourseDetailTemplate template = templates.get(courseId);
+        if (template == null || template.getCatalogVersion() != snapshot.getVersion()) {
+            template = CourseDetailTemplate.build(objectMapper, snapshot.getVersion(), course);
+            templates.put(courseId, template);
+        }
+
+        CourseLockState state = courseService.getCourseLockState(userId, courseId, snapshot);
+        return template.render(state);
+    }
+
+    public int getCachedCourseCount() {
+        return templates.size();
+    }
+}
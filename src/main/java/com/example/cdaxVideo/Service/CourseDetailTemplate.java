@@ -0,0 +1,197 @@
+package com.example.cdaxVideo.Service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pre-serialized UTF-8 body of GET /api/courses/{id} for one course and one
+ * catalog version, split at every user-specific boolean.
+ *
+ * Rendering for a user is a single array allocation plus copies: the shared
+ * segments are written as-is and {@code true}/{@code false} is spliced into each
+ * slot from a {@link CourseLockState}. No maps, no reflection.
+ */
+final class CourseDetailTemplate {
+
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+    // Slot kinds
+    private static final byte PURCHASED = 0;
+    private static final byte MODULE_LOCKED = 1;
+    private static final byte ASSESSMENT_LOCKED = 2;
+    private static final byte VIDEO_LOCKED = 3;
+    private static final byte VIDEO_COMPLETED = 4;
+
+    private final long catalogVersion;
+    private final byte[][] segments;   // segments.length == slots + 1
+    private final byte[] slotKinds;
+    private final int[] slotIndexes;
+    private final int fixedLength;
+
+    private CourseDetailTemplate(long catalogVersion, byte[][] segments, byte[] slotKinds, int[] slotIndexes) {
+        this.catalogVersion = catalogVersion;
+        this.segments = segments;
+        this.slotKinds = slotKinds;
+        this.slotIndexes = slotIndexes;
+        int len = 0;
+        for (byte[] segment : segments) {
+            len += segment.length;
+        }
+        this.fixedLength = len;
+    }
+
+    long getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    int getSizeInBytes() {
+        return fixedLength;
+    }
+
+    byte[] render(CourseLockState state) {
+        if (state.getCatalogVersion() != catalogVersion) {
+            throw new IllegalStateException("Lock state is for catalog v" + state.getCatalogVersion()
+                    + " but template is v" + catalogVersion);
+        }
+
+        boolean[] values = new boolean[slotKinds.length];
+        int len = fixedLength;
+        for (int i = 0; i < slotKinds.length; i++) {
+            values[i] = slotValue(state, slotKinds[i], slotIndexes[i]);
+            len += values[i] ? TRUE.length : FALSE.length;
+        }
+
+        byte[] out = new byte[len];
+        int pos = 0;
+        for (int i = 0; i < slotKinds.length; i++) {
+            System.arraycopy(segments[i], 0, out, pos, segments[i].length);
+            pos += segments[i].length;
+            byte[] literal = values[i] ? TRUE : FALSE;
+            System.arraycopy(literal, 0, out, pos, literal.length);
+            pos += literal.length;
+        }
+        byte[] last = segments[segments.length - 1];
+        System.arraycopy(last, 0, out, pos, last.length);
+        return out;
+    }
+
+    private static boolean slotValue(CourseLockState state, byte kind, int index) {
+        switch (kind) {
+            case PURCHASED: return state.isPurchased();
+            case MODULE_LOCKED: return state.isModuleLocked(index);
+            case ASSESSMENT_LOCKED: return state.isAssessmentLocked(index);
+            case VIDEO_LOCKED: return state.isVideoLocked(index);
+            case VIDEO_COMPLETED: return state.isVideoCompleted(index);
+            default: throw new IllegalStateException("Unknown slot kind " + kind);
+        }
+    }
+
+    /**
+     * Serialize the course once with the same shape the controller used to build
+     * from nested maps: {"data": {id, title, ..., modules: [{..., videos: [...]}]}}.
+     */
+    static CourseDetailTemplate build(ObjectMapper objectMapper, long catalogVersion, CatalogSnapshot.CourseNode course) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+        Builder b = new Builder(buffer);
+        try (JsonGenerator gen = objectMapper.createGenerator(buffer, JsonEncoding.UTF8)) {
+            b.gen = gen;
+            gen.writeStartObject();
+            gen.writeFieldName("data");
+            gen.writeStartObject();
+            gen.writeObjectField("id", course.getId());
+            gen.writeObjectField("title", course.getTitle());
+            gen.writeObjectField("description", course.getDescription());
+            gen.writeObjectField("thumbnailUrl", course.getThumbnailUrl());
+            gen.writeObjectField("instructor", course.getInstructor());
+            b.slot("isPurchased", PURCHASED, 0);
+            b.slot("isSubscribed", PURCHASED, 0);
+
+            if (!course.getModules().isEmpty()) {
+                gen.writeArrayFieldStart("modules");
+                for (CatalogSnapshot.ModuleNode module : course.getModules()) {
+                    gen.writeStartObject();
+                    gen.writeObjectField("id", module.getId());
+                    gen.writeObjectField("title", module.getTitle());
+                    gen.writeNumberField("durationSec", module.getDurationSec());
+                    b.slot("isLocked", MODULE_LOCKED, module.getIndex());
+                    b.slot("assessmentLocked", ASSESSMENT_LOCKED, module.getIndex());
+
+                    gen.writeArrayFieldStart("videos");
+                    for (CatalogSnapshot.VideoNode video : module.getVideos()) {
+                        gen.writeStartObject();
+                        gen.writeObjectField("id", video.getId());
+                        gen.writeObjectField("title", video.getTitle());
+                        gen.writeObjectField("duration", video.getDuration());
+                        b.slot("isLocked", VIDEO_LOCKED, video.getCourseOrdinal());
+                        b.slot("isCompleted", VIDEO_COMPLETED, video.getCourseOrdinal());
+                        gen.writeObjectField("displayOrder", video.getDisplayOrder());
+                        gen.writeObjectField("isPreview", video.getIsPreview());
+                        gen.writeObjectField("videoUrl", video.getVideoUrl());
+                        gen.writeObjectField("youtubeId", video.getYoutubeId());
+                        gen.writeEndObject();
+                    }
+                    gen.writeEndArray();
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+            }
+
+            gen.writeEndObject();
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return b.finish(catalogVersion);
+    }
+
+    private static final class Builder {
+        private final ByteArrayOutputStream buffer;
+        private final List<Integer> cuts = new ArrayList<>();
+        private final List<Byte> kinds = new ArrayList<>();
+        private final List<Integer> indexes = new ArrayList<>();
+        private JsonGenerator gen;
+
+        Builder(ByteArrayOutputStream buffer) {
+            this.buffer = buffer;
+        }
+
+        /** Write `"name":` and remember where the value goes. */
+        void slot(String name, byte kind, int index) throws IOException {
+            gen.writeFieldName(name);
+            gen.writeRawValue(""); // emits the ':' and marks the value as written
+            gen.flush();
+            cuts.add(buffer.size());
+            kinds.add(kind);
+            indexes.add(index);
+        }
+
+        CourseDetailTemplate finish(long catalogVersion) {
+            byte[] all = buffer.toByteArray();
+            byte[][] segments = new byte[cuts.size() + 1][];
+            int from = 0;
+            for (int i = 0; i < cuts.size(); i++) {
+                segments[i] = Arrays.copyOfRange(all, from, cuts.get(i));
+                from = cuts.get(i);
+            }
+            segments[cuts.size()] = Arrays.copyOfRange(all, from, all.length);
+
+            byte[] slotKinds = new byte[kinds.size()];
+            int[] slotIndexes = new int[indexes.size()];
+            for (int i = 0; i < slotKinds.length; i++) {
+                slotKinds[i] = kinds.get(i);
+                slotIndexes[i] = indexes.get(i);
+            }
+            return new CourseDetailTemplate(catalogVersion, segments, slotKinds, slotIndexes);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.cdaxVideo.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bitmap index over the catalog for /courses/advanced-search.
+ *
+ * Courses get dense ordinals (their position in the snapshot) and every
+ * category, level, price bucket and rating bucket value owns a bitmap of the
+ * ordinals that carry it. Filters are bitmap intersections; arbitrary
+ * min/max price and min rating bounds are turned into bitmaps by binary search
+ * over ordinals pre-sorted by that field. Facet counts for the final result
+ * set are popcounts of (result AND value bitmap), so no course is visited twice.
+ *
+ * Rebuilt on each {@link CatalogChangedEvent}; a build is a single pass over the snapshot.
+ */
+@Service
+public class CourseFacetIndex {
+    private static final Logger logger = LoggerFactory.getLogger(CourseFacetIndex.class);
+
+    public static final String CATEGORY = "category";
+    public static final String LEVEL = "level";
+    public static final String PRICE = "price";
+    public static final String RATING = "rating";
+
+    // Price buckets: [lower, upper) with labels
+    private static final double[] PRICE_BOUNDS = {0, 0.01, 500, 1000, 5000, Double.MAX_VALUE};
+    private static final String[] PRICE_LABELS = {"free", "under_500", "500_999", "1000_4999", "5000_plus"};
+
+    // Rating buckets are cumulative ("4.0+" includes "4.5+"), as shown in the filter UI
+    private static final double[] RATING_MINIMUMS = {4.5, 4.0, 3.5, 3.0};
+    private static final String[] RATING_LABELS = {"4.5+", "4.0+", "3.5+", "3.0+"};
+
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final AtomicReference<Facets> current = new AtomicReference<>();
+
+    public CourseFacetIndex(CatalogSnapshotService catalogSnapshotService) {
+        this.catalogSnapshotService = catalogSnapshotService;
+    }
+
+    /** Matching course ids (in keyword-rank order when ranked ids were given) plus facet counts. */
+    public static final class Result {
+        private final List<Long> courseIds;
+        private final Map<String, Map<String, Integer>> facets;
+
+        Result(List<Long> courseIds, Map<String, Map<String, Integer>> facets) {
+            this.courseIds = courseIds;
+            this.facets = facets;
+        }
+
+        public List<Long> getCourseIds() { return courseIds; }
+        public Map<String, Map<String, Integer>> getFacets() { return facets; }
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        rebuild(event.getSnapshot());
+    }
+
+    /**
+     * Apply filters to either the whole catalog ({@code rankedIds == null}) or a keyword
+     * result, and count facet values over what is left. Null/empty filters are ignored.
+     */
+    public Result query(List<Long> rankedIds, String category, String level,
+                        Double minPrice, Double maxPrice, Double minRating) {
+        Facets facets = facets();
+
+        BitSet result = new BitSet(facets.size());
+        if (rankedIds == null) {
+            result.set(0, facets.size());
+        } else {
+            for (Long id : rankedIds) {
+                Integer ord = facets.ordinals.get(id);
+                if (ord != null) result.set(ord);
+            }
+        }
+
+        if (category != null && !category.isEmpty()) {
+            result.and(facets.dimension(CATEGORY).bitmap(key(category)));
+        }
+        if (level != null && !level.isEmpty()) {
+            result.and(facets.dimension(LEVEL).bitmap(key(level)));
+        }
+        if (minPrice != null || maxPrice != null) {
+            result.and(facets.prices.range(minPrice, maxPrice));
+        }
+        if (minRating != null) {
+            result.and(facets.ratings.range(minRating, null));
+        }
+
+        List<Long> ids = new ArrayList<>(result.cardinality());
+        if (rankedIds == null) {
+            for (int ord = result.nextSetBit(0); ord >= 0; ord = result.nextSetBit(ord + 1)) {
+                ids.add(facets.courseIds[ord]);
+            }
+        } else {
+            for (Long id : rankedIds) {
+                Integer ord = facets.ordinals.get(id);
+                if (ord != null && result.get(ord)) ids.add(id);
+            }
+        }
+
+        long[] words = result.toLongArray();
+        Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, Dimension> e : facets.dimensions.entrySet()) {
+            counts.put(e.getKey(), e.getValue().counts(words));
+        }
+        return new Result(ids, counts);
+    }
+
+    private Facets facets() {
+        Facets f = current.get();
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        if (f == null || f.catalogVersion < snapshot.getVersion()) {
+            f = rebuild(snapshot);
+        }
+        return f;
+    }
+
+    private Facets rebuild(CatalogSnapshot snapshot) {
+        Facets existing = current.get();
+        if (existing != null && existing.catalogVersion >= snapshot.getVersion()) {
+            return existing;
+        }
+        long start = System.nanoTime();
+        Facets built = Facets.build(snapshot);
+        Facets previous = current.get();
+        while (previous == null || previous.catalogVersion < built.catalogVersion) {
+            if (current.compareAndSet(previous, built)) {
+                logger.info("🧮 Facet index built for catalog v{} in {} ms ({} courses)",
+                        built.catalogVersion, (System.nanoTime() - start) / 1_000_000, built.size());
+                return built;
+            }
+            previous = current.get();
+        }
+        return previous;
+    }
+
+    private static String key(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** All bitmaps for one catalog version. Immutable once built. */
+    private static final class Facets {
+        final long catalogVersion;
+        final long[] courseIds;
+        final Map<Long, Integer> ordinals;
+        final Map<String, Dimension> dimensions = new LinkedHashMap<>();
+        final SortedField prices;
+        final SortedField ratings;
+
+        private Facets(long catalogVersion, long[] courseIds, Map<Long, Integer> ordinals,
+                       SortedField prices, SortedField ratings) {
+            this.catalogVersion = catalogVersion;
+            this.courseIds = courseIds;
+            this.ordinals = ordinals;
+            this.prices = prices;
+            this.ratings = ratings;
+        }
+
+        int size() { return courseIds.length; }
+
+        Dimension dimension(String name) { return dimensions.get(name); }
+
+        static Facets build(CatalogSnapshot snapshot) {
+            List<CatalogSnapshot.CourseNode> courses = snapshot.getCourses();
+            int n = courses.size();
+            long[] ids = new long[n];
+            Map<Long, Integer> ordinals = new HashMap<>(n * 2);
+            double[] prices = new double[n];
+            double[] ratings = new double[n];
+
+            Dimension category = new Dimension();
+            Dimension level = new Dimension();
+            Dimension price = new Dimension(PRICE_LABELS);
+            Dimension rating = new Dimension(RATING_LABELS);
+
+            for (int ord = 0; ord < n; ord++) {
+                CatalogSnapshot.CourseNode c = courses.get(ord);
+                ids[ord] = c.getId();
+                ordinals.put(c.getId(), ord);
+                prices[ord] = c.getPrice() != null ? c.getPrice() : Double.NaN;
+                ratings[ord] = c.getRating() != null ? c.getRating() : Double.NaN;
+
+                if (c.getCategory() != null && !c.getCategory().isBlank()) {
+                    category.add(key(c.getCategory()), c.getCategory().trim(), ord);
+                }
+                if (c.getLevel() != null && !c.getLevel().isBlank()) {
+                    level.add(key(c.getLevel()), c.getLevel().trim(), ord);
+                }
+                if (c.getPrice() != null) {
+                    for (int b = 0; b < PRICE_LABELS.length; b++) {
+                        if (c.getPrice() >= PRICE_BOUNDS[b] && c.getPrice() < PRICE_BOUNDS[b + 1]) {
+                            price.add(PRICE_LABELS[b], PRICE_LABELS[b], ord);
+                            break;
+                        }
+                    }
+                }
+                if (c.getRating() != null) {
+                    for (int b = 0; b < RATING_LABELS.length; b++) {
+                        if (c.getRating() >= RATING_MINIMUMS[b]) {
+                            rating.add(RATING_LABELS[b], RATING_LABELS[b], ord);
+                        }
+                    }
+                }
+            }
+
+            Facets facets = new Facets(snapshot.getVersion(), ids, ordinals,
+                    SortedField.of(prices), SortedField.of(ratings));
+            facets.dimensions.put(CATEGORY, category.freeze());
+            facets.dimensions.put(LEVEL, level.freeze());
+            facets.dimensions.put(PRICE, price.freeze());
+            facets.dimensions.put(RATING, rating.freeze());
+            return facets;
+        }
+    }
+
+    /** Value -> bitmap for one facet. Values keep their first-seen display spelling. */
+    private static final class Dimension {
+        private final Map<String, BitSet> bitmaps = new LinkedHashMap<>();
+        private final Map<String, String> labels = new HashMap<>();
+        private final Map<String, long[]> words = new LinkedHashMap<>();
+
+        Dimension(String... fixedValues) {
+            for (String value : fixedValues) {
+                bitmaps.put(value, new BitSet());
+                labels.put(value, value);
+            }
+        }
+
+        void add(String key, String label, int ord) {
+            bitmaps.computeIfAbsent(key, k -> new BitSet()).set(ord);
+            labels.putIfAbsent(key, label);
+        }
+
+        Dimension freeze() {
+            for (Map.Entry<String, BitSet> e : bitmaps.entrySet()) {
+                words.put(e.getKey(), e.getValue().toLongArray());
+            }
+            return this;
+        }
+
+        BitSet bitmap(String key) {
+            BitSet bits = bitmaps.get(key);
+            return bits != null ? bits : new BitSet();
+        }
+
+        /** Popcount of (result AND value) for every value of this facet. */
+        Map<String, Integer> counts(long[] result) {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (Map.Entry<String, long[]> e : words.entrySet()) {
+                long[] value = e.getValue();
+                int count = 0;
+                int len = Math.min(value.length, result.length);
+                for (int i = 0; i < len; i++) {
+                    count += Long.bitCount(value[i] & result[i]);
+                }
+                counts.put(labels.get(e.getKey()), count);
+            }
+            return counts;
+        }
+    }
+
+    /** Ordinals sorted by a numeric field, for turning range filters into bitmaps. */
+    private static final class SortedField {
+        private final double[] values;   // ascending, nulls (NaN) excluded
+        private final int[] ords;
+
+        private SortedField(double[] values, int[] ords) {
+            this.values = values;
+            this.ords = ords;
+        }
+
+        static SortedField of(double[] byOrdinal) {
+            Integer[] order = new Integer[byOrdinal.length];
+            int n = 0;
+            for (int ord = 0; ord < byOrdinal.length; ord++) {
+                if (!Double.isNaN(byOrdinal[ord])) order[n++] = ord;
+            }
+            Integer[] present = Arrays.copyOf(order, n);
+            Arrays.sort(present, Comparator.comparingDouble(o -> byOrdinal[o]));
+            double[] values = new double[n];
+            int[] ords = new int[n];
+            for (int i = 0; i < n; i++) {
+                ords[i] = present[i];
+                values[i] = byOrdinal[present[i]];
+            }
+            return new SortedField(values, ords);
+        }
+
+        /** Ordinals with min <= value <= max (either bound may be null). */
+        BitSet range(Double min, Double max) {
+            int from = min == null ? 0 : lowerBound(min);
+            int to = max == null ? values.length : upperBound(max);
+            BitSet bits = new BitSet();
+            for (int i = from; i < to; i++) {
+                bits.set(ords[i]);
+            }
+            return bits;
+        }
+
+        private int lowerBound(double v) {
+            int lo = 0, hi = values.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[mid] < v) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        private int upperBound(double v) {
+            int lo = 0, hi = values.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[mid] <= v) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
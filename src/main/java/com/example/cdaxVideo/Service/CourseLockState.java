@@ -0,0 +1,95 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Entity.Module;
+import com.example.cdaxVideo.Entity.Video;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The user-specific bits of a course page for one catalog version:
+ * purchase flag, per-module lock/assessment-lock, per-video lock/completed.
+ *
+ * Module arrays are indexed by module position in the course, video arrays by
+ * {@link CatalogSnapshot.VideoNode#getCourseOrdinal()}.
+ */
+public final class CourseLockState {
+
+    private final long catalogVersion;
+    private final boolean purchased;
+    private final boolean[] moduleLocked;
+    private final boolean[] assessmentLocked;
+    private final boolean[] videoLocked;
+    private final boolean[] videoCompleted;
+
+    public CourseLockState(long catalogVersion, boolean purchased,
+                           boolean[] moduleLocked, boolean[] assessmentLocked,
+                           boolean[] videoLocked, boolean[] videoCompleted) {
+        this.catalogVersion = catalogVersion;
+        this.purchased = purchased;
+        this.moduleLocked = moduleLocked;
+        this.assessmentLocked = assessmentLocked;
+        this.videoLocked = videoLocked;
+        this.videoCompleted = videoCompleted;
+    }
+
+    /**
+     * Copy the flags onto module/video entities (snapshot copies or managed rows),
+     * matched by id through the snapshot this state was computed against. Anything
+     * the snapshot does not know stays locked.
+     */
+    public void applyTo(List<Module> modules, CatalogSnapshot snapshot) {
+        for (Module m : modules) {
+            int index = snapshot.findModule(m.getId()).map(CatalogSnapshot.ModuleNode::getIndex).orElse(-1);
+            boolean known = index >= 0 && index < moduleLocked.length;
+            m.setLocked(!known || moduleLocked[index]);
+            m.setAssessmentLocked(!known || assessmentLocked[index]);
+            if (m.getVideos() == null) continue;
+            for (Video v : m.getVideos()) {
+                int ordinal = snapshot.findVideo(v.getId()).map(CatalogSnapshot.VideoNode::getCourseOrdinal).orElse(-1);
+                boolean knownVideo = ordinal >= 0 && ordinal < videoLocked.length;
+                v.setLocked(!knownVideo || videoLocked[ordinal]);
+                v.setCompleted(knownVideo && videoCompleted[ordinal]);
+            }
+        }
+    }
+
+    public long getCatalogVersion() { return catalogVersion; }
+    public boolean isPurchased() { return purchased; }
+    public boolean isModuleLocked(int moduleIndex) { return moduleLocked[moduleIndex]; }
+    public boolean isAssessmentLocked(int moduleIndex) { return assessmentLocked[moduleIndex]; }
+    public boolean isVideoLocked(int courseOrdinal) { return videoLocked[courseOrdinal]; }
+    public boolean isVideoCompleted(int courseOrdinal) { return videoCompleted[courseOrdinal]; }
+    public int getModuleCount() { return moduleLocked.length; }
+    public int getVideoCount() { return videoLocked.length; }
+
+    /** Same purchase flag and the same flags on every node (catalog version ignored). */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CourseLockState other)) return false;
+        return purchased == other.purchased
+                && Arrays.equals(moduleLocked, other.moduleLocked)
+                && Arrays.equals(assessmentLocked, other.assessmentLocked)
+                && Arrays.equals(videoLocked, other.videoLocked)
+                && Arrays.equals(videoCompleted, other.videoCompleted);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = Boolean.hashCode(purchased);
+        h = 31 * h + Arrays.hashCode(moduleLocked);
+        h = 31 * h + Arrays.hashCode(assessmentLocked);
+        h = 31 * h + Arrays.hashCode(videoLocked);
+        return 31 * h + Arrays.hashCode(videoCompleted);
+    }
+
+    @Override
+    public String toString() {
+        return "CourseLockState{purchased=" + purchased
+                + ", moduleLocked=" + Arrays.toString(moduleLocked)
+                + ", assessmentLocked=" + Arrays.toString(assessmentLocked)
+                + ", videoLocked=" + Arrays.toString(videoLocked)
+                + ", videoCompleted=" + Arrays.toString(videoCompleted) + "}";
+    }
+}
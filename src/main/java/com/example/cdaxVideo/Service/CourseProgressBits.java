@@ -0,0 +1,180 @@
+package com.example.cdaxVideo.Service;
+
+import java.util.Arrays;
+
+/**
+ * One user's video progress in one course as bitsets indexed by
+ * {@link CatalogSnapshot.VideoNode#getCourseOrdinal()}:
+ * <ul>
+ *   <li>{@code tracked}   - a user_video_progress row exists</li>
+ *   <li>{@code unlocked}  - the row's unlocked flag</li>
+ *   <li>{@code completed} - the row's completed flag</li>
+ * </ul>
+ * plus three module-level sets indexed by {@link CatalogSnapshot.ModuleNode#getIndex()}:
+ * a user_module_progress row is unlocked, one of the module's assessments is
+ * passed, one of its assessment rows is unlocked.
+ * Module videos are a contiguous ordinal range, so "all previous videos
+ * completed" and "module fully completed" are range checks done a 64-bit word
+ * at a time. Instances are immutable; {@link #with} returns an updated copy.
+ */
+public final class CourseProgressBits {
+
+    private final long catalogVersion;
+    private final int videoCount;
+    private final long[] tracked;
+    private final long[] unlocked;
+    private final long[] completed;
+
+    private final int moduleCount;
+    private final long[] moduleUnlocked;
+    private final long[] assessmentPassed;
+    private final long[] assessmentUnlocked;
+
+    private CourseProgressBits(long catalogVersion, int videoCount, long[] tracked, long[] unlocked, long[] completed,
+                               int moduleCount, long[] moduleUnlocked, long[] assessmentPassed, long[] assessmentUnlocked) {
+        this.catalogVersion = catalogVersion;
+        this.videoCount = videoCount;
+        this.tracked = tracked;
+        this.unlocked = unlocked;
+        this.completed = completed;
+        this.moduleCount = moduleCount;
+        this.moduleUnlocked = moduleUnlocked;
+        this.assessmentPassed = assessmentPassed;
+        this.assessmentUnlocked = assessmentUnlocked;
+    }
+
+    public static CourseProgressBits empty(long catalogVersion, int videoCount, int moduleCount) {
+        int words = (videoCount + 63) >>> 6;
+        int moduleWords = (moduleCount + 63) >>> 6;
+        return new CourseProgressBits(catalogVersion, videoCount, new long[words], new long[words], new long[words],
+                moduleCount, new long[moduleWords], new long[moduleWords], new long[moduleWords]);
+    }
+
+    private CourseProgressBits copy() {
+        return new CourseProgressBits(catalogVersion, videoCount, tracked.clone(), unlocked.clone(), completed.clone(),
+                moduleCount, moduleUnlocked.clone(), assessmentPassed.clone(), assessmentUnlocked.clone());
+    }
+
+    /** Copy with one video's row state set (used while loading and when a row changes). */
+    public CourseProgressBits with(int ordinal, boolean exists, boolean isUnlocked, boolean isCompleted) {
+        if (ordinal < 0 || ordinal >= videoCount) return this;
+        CourseProgressBits copy = copy();
+        copy.set(ordinal, exists, isUnlocked, isCompleted);
+        return copy;
+    }
+
+    /**
+     * Copy with module-level flags raised. Flags are only ever raised here; a row that
+     * turns a flag off (or is deleted) makes the service reload instead, since another
+     * assessment of the same module may still hold it.
+     */
+    public CourseProgressBits withModuleFlags(int moduleIndex, boolean rowUnlocked, boolean passed,
+                                              boolean assessmentRowUnlocked) {
+        if (moduleIndex < 0 || moduleIndex >= moduleCount) return this;
+        if ((!rowUnlocked || get(moduleUnlocked, moduleIndex))
+                && (!passed || get(assessmentPassed, moduleIndex))
+                && (!assessmentRowUnlocked || get(assessmentUnlocked, moduleIndex))) {
+            return this;
+        }
+        CourseProgressBits copy = copy();
+        copy.raiseModuleFlags(moduleIndex, rowUnlocked, passed, assessmentRowUnlocked);
+        return copy;
+    }
+
+    /**
+     * Copy holding only real events (rows, completions, passes): every persisted
+     * unlocked flag is cleared, so the unlock graph has to derive them.
+     */
+    public CourseProgressBits withoutUnlockRows() {
+        int moduleWords = moduleUnlocked.length;
+        return new CourseProgressBits(catalogVersion, videoCount, tracked.clone(), new long[unlocked.length],
+                completed.clone(), moduleCount, new long[moduleWords], assessmentPassed.clone(), new long[moduleWords]);
+    }
+
+    /** In-place set; only for instances not yet shared (see {@link CourseProgressBitsService}). */
+    void set(int ordinal, boolean exists, boolean isUnlocked, boolean isCompleted) {
+        int w = ordinal >>> 6;
+        long bit = 1L << ordinal;
+        tracked[w] = exists ? tracked[w] | bit : tracked[w] & ~bit;
+        unlocked[w] = exists && isUnlocked ? unlocked[w] | bit : unlocked[w] & ~bit;
+        completed[w] = exists && isCompleted ? completed[w] | bit : completed[w] & ~bit;
+    }
+
+    /** In-place raise; only for instances not yet shared. */
+    void raiseModuleFlags(int moduleIndex, boolean rowUnlocked, boolean passed, boolean assessmentRowUnlocked) {
+        int w = moduleIndex >>> 6;
+        long bit = 1L << moduleIndex;
+        if (rowUnlocked) moduleUnlocked[w] |= bit;
+        if (passed) assessmentPassed[w] |= bit;
+        if (assessmentRowUnlocked) assessmentUnlocked[w] |= bit;
+    }
+
+    public long getCatalogVersion() { return catalogVersion; }
+    public int getVideoCount() { return videoCount; }
+    public int getModuleCount() { return moduleCount; }
+
+    public boolean hasProgress(int ordinal) { return get(tracked, ordinal); }
+    public boolean isUnlocked(int ordinal) { return get(unlocked, ordinal); }
+    public boolean isCompleted(int ordinal) { return get(completed, ordinal); }
+
+    public boolean isModuleRowUnlocked(int moduleIndex) { return get(moduleUnlocked, moduleIndex); }
+    public boolean isAssessmentPassed(int moduleIndex) { return get(assessmentPassed, moduleIndex); }
+    public boolean isAssessmentRowUnlocked(int moduleIndex) { return get(assessmentUnlocked, moduleIndex); }
+
+    /** True when every video in [from, to) is completed (vacuously true for an empty range). */
+    public boolean allCompleted(int from, int to) {
+        if (from >= to) return true;
+        return countCompleted(from, to) == to - from;
+    }
+
+    /** Completed videos in [from, to). */
+    public int countCompleted(int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(videoCount, to);
+        if (from >= to) return 0;
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - ((to - 1) & 63));
+        if (firstWord == lastWord) {
+            return Long.bitCount(completed[firstWord] & firstMask & lastMask);
+        }
+        int count = Long.bitCount(completed[firstWord] & firstMask);
+        for (int w = firstWord + 1; w < lastWord; w++) {
+            count += Long.bitCount(completed[w]);
+        }
+        return count + Long.bitCount(completed[lastWord] & lastMask);
+    }
+
+    public int countCompleted() {
+        return countCompleted(0, videoCount);
+    }
+
+    /** Every video of the module is completed (vacuously true for a module without videos). */
+    public boolean moduleCompleted(CatalogSnapshot.ModuleNode module) {
+        return allCompleted(module.getFirstCourseOrdinal(), module.getEndCourseOrdinal());
+    }
+
+    public int countCompleted(CatalogSnapshot.ModuleNode module) {
+        return countCompleted(module.getFirstCourseOrdinal(), module.getEndCourseOrdinal());
+    }
+
+    /** All videos before {@code indexInModule} in the same module are completed (false for the first video). */
+    public boolean previousVideosCompleted(CatalogSnapshot.ModuleNode module, int indexInModule) {
+        if (indexInModule <= 0) return false;
+        int first = module.getFirstCourseOrdinal();
+        return allCompleted(first, first + indexInModule);
+    }
+
+    private static boolean get(long[] words, int ordinal) {
+        int w = ordinal >>> 6;
+        return ordinal >= 0 && w < words.length && (words[w] & (1L << ordinal)) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CourseProgressBits{v" + catalogVersion + ", videos=" + videoCount
+                + ", completed=" + Arrays.toString(completed)
+                + ", passed=" + Arrays.toString(assessmentPassed) + "}";
+    }
+}
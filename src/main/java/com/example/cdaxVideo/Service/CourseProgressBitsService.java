@@ -0,0 +1,249 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Repository.UserAssessmentProgressRepository;
+import com.example.cdaxVideo.Repository.UserModuleProgressRepository;
+import com.example.cdaxVideo.Repository.UserVideoProgressRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Loads and caches {@link CourseProgressBits} per (user, course).
+ *
+ * A load is one projection query over user_video_progress for the course, plus
+ * one each over user_module_progress and user_assessment_progress for the
+ * module-level flags. Cached bits are kept current by
+ * {@link UserProgressVersionListener}: every committed insert/update/delete of a
+ * progress row is applied to the cached copy, so a completion or a pass is
+ * visible without reloading. A load that overlaps a commit for the same user is
+ * returned but not cached.
+ */
+@Service
+public class CourseProgressBitsService {
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final UserVideoProgressRepository userVideoProgressRepository;
+    private final UserModuleProgressRepository userModuleProgressRepository;
+    private final UserAssessmentProgressRepository userAssessmentProgressRepository;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final UserProgressVersionService userProgressVersionService;
+    private final TransactionTemplate readOnlyTx;
+
+    // (userId, courseId) -> bits, least recently used evicted first
+    private final Map<Key, CourseProgressBits> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CourseProgressBits> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public CourseProgressBitsService(UserVideoProgressRepository userVideoProgressRepository,
+                                     UserModuleProgressRepository userModuleProgressRepository,
+                                     UserAssessmentProgressRepository userAssessmentProgressRepository,
+                                     CatalogSnapshotService catalogSnapshotService,
+                                     UserProgressVersionService userProgressVersionService,
+                                     PlatformTransactionManager transactionManager) {
+        this.userVideoProgressRepository = userVideoProgressRepository;
+        this.userModuleProgressRepository = userModuleProgressRepository;
+        this.userAssessmentProgressRepository = userAssessmentProgressRepository;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.userProgressVersionService = userProgressVersionService;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    private record Key(Long userId, Long courseId) {}
+
+    public CourseProgressBits get(Long userId, Long courseId) {
+        return get(userId, courseId, catalogSnapshotService.current());
+    }
+
+    /** Bits for the user's videos in the course, ordinals taken from {@code snapshot}. */
+    public CourseProgressBits get(Long userId, Long courseId, CatalogSnapshot snapshot) {
+        Key key = new Key(userId, courseId);
+        CourseProgressBits cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null && cached.getCatalogVersion() == snapshot.getVersion()) {
+            return cached;
+        }
+
+        long versionBefore = userProgressVersionService.getVersion(userId);
+        CourseProgressBits loaded = load(userId, courseId, snapshot);
+        if (userProgressVersionService.getVersion(userId) == versionBefore) {
+            synchronized (cache) {
+                cache.put(key, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Bits read straight from the database, bypassing the cache. Inside a transaction
+     * this includes the caller's own uncommitted writes, which cached bits only see
+     * after commit.
+     */
+    public CourseProgressBits loadFresh(Long userId, Long courseId, CatalogSnapshot snapshot) {
+        return load(userId, courseId, snapshot);
+    }
+
+    private CourseProgressBits load(Long userId, Long courseId, CatalogSnapshot snapshot) {
+        Optional<CatalogSnapshot.CourseNode> course = snapshot.findCourse(courseId);
+        int videoCount = course.map(CatalogSnapshot.CourseNode::getVideoCount).orElse(0);
+        int moduleCount = course.map(c -> c.getModules().size()).orElse(0);
+        CourseProgressBits bits = CourseProgressBits.empty(snapshot.getVersion(), videoCount, moduleCount);
+        if (userId == null || moduleCount == 0) return bits;
+
+        readOnlyTx.executeWithoutResult(status -> {
+            if (videoCount > 0) {
+                for (Object[] row : userVideoProgressRepository.findProgressFlagsByUserAndCourse(userId, courseId)) {
+                    Long videoId = (Long) row[0];
+                    snapshot.findVideo(videoId).ifPresent(video -> bits.set(video.getCourseOrdinal(), true,
+                            Boolean.TRUE.equals(row[1]), Boolean.TRUE.equals(row[2])));
+                }
+            }
+            for (Object[] row : userModuleProgressRepository.findProgressFlagsByUserAndCourse(userId, courseId)) {
+                snapshot.findModule((Long) row[0]).ifPresent(module -> bits.raiseModuleFlags(module.getIndex(),
+                        Boolean.TRUE.equals(row[1]), Boolean.TRUE.equals(row[2]), false));
+            }
+            for (Object[] row : userAssessmentProgressRepository.findProgressFlagsByUserAndCourse(userId, courseId)) {
+                snapshot.findModuleForAssessment((Long) row[0]).ifPresent(module -> bits.raiseModuleFlags(
+                        module.getIndex(), false, Boolean.TRUE.equals(row[2]), Boolean.TRUE.equals(row[1])));
+            }
+        });
+        return bits;
+    }
+
+    /**
+     * Apply a UserVideoProgress write to cached bits once the surrounding transaction
+     * commits. {@code exists == false} means the row was deleted.
+     */
+    public void recordVideoProgress(Long userId, Long videoId, boolean exists, boolean unlocked, boolean completed) {
+        if (userId == null || videoId == null) return;
+        afterCommit(() -> apply(userId, videoId, exists, unlocked, completed));
+    }
+
+    /** Apply a UserModuleProgress write after commit (unlocked row, assessment passed). */
+    public void recordModuleProgress(Long userId, Long moduleId, boolean exists, boolean unlocked, boolean passed) {
+        if (userId == null || moduleId == null) return;
+        afterCommit(() -> catalogSnapshotService.current().findModule(moduleId).ifPresent(module ->
+                applyModuleFlags(userId, module, false, exists, unlocked, passed, false)));
+    }
+
+    /** Apply a UserAssessmentProgress write after commit (unlocked row, passed). */
+    public void recordAssessmentProgress(Long userId, Long assessmentId, boolean exists, boolean unlocked, boolean passed) {
+        if (userId == null || assessmentId == null) return;
+        afterCommit(() -> catalogSnapshotService.current().findModuleForAssessment(assessmentId).ifPresent(module ->
+                applyModuleFlags(userId, module, true, exists, unlocked, passed, false)));
+    }
+
+    /**
+     * Apply an upsert of a video row after commit. Upserts only ever set flags, and the
+     * row's other flags are not known, so flags passed as false are left as cached.
+     */
+    public void raiseVideoProgress(Long userId, Long videoId, boolean unlocked, boolean completed) {
+        if (userId == null || videoId == null) return;
+        afterCommit(() -> raise(userId, videoId, unlocked, completed));
+    }
+
+    /** Same for a module row upsert. */
+    public void raiseModuleProgress(Long userId, Long moduleId, boolean unlocked, boolean passed) {
+        if (userId == null || moduleId == null) return;
+        afterCommit(() -> catalogSnapshotService.current().findModule(moduleId).ifPresent(module ->
+                applyModuleFlags(userId, module, false, true, unlocked, passed, true)));
+    }
+
+    /** Same for an assessment row upsert. */
+    public void raiseAssessmentProgress(Long userId, Long assessmentId, boolean unlocked, boolean passed) {
+        if (userId == null || assessmentId == null) return;
+        afterCommit(() -> catalogSnapshotService.current().findModuleForAssessment(assessmentId).ifPresent(module ->
+                applyModuleFlags(userId, module, true, true, unlocked, passed, true)));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /** Drop everything cached for a user (e.g. after a bulk write that bypassed JPA). */
+    public void invalidateUser(Long userId) {
+        synchronized (cache) {
+            cache.keySet().removeIf(k -> Objects.equals(k.userId(), userId));
+        }
+    }
+
+    private void apply(Long userId, Long videoId, boolean exists, boolean unlocked, boolean completed) {
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        snapshot.findVideo(videoId).ifPresent(video -> {
+            Key key = new Key(userId, video.getCourseId());
+            synchronized (cache) {
+                CourseProgressBits cached = cache.get(key);
+                if (cached == null) return;
+                if (cached.getCatalogVersion() != snapshot.getVersion()) {
+                    cache.remove(key);
+                    return;
+                }
+                cache.put(key, cached.with(video.getCourseOrdinal(), exists, unlocked, completed));
+            }
+        });
+    }
+
+    private void raise(Long userId, Long videoId, boolean unlocked, boolean completed) {
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        snapshot.findVideo(videoId).ifPresent(video -> {
+            Key key = new Key(userId, video.getCourseId());
+            int ordinal = video.getCourseOrdinal();
+            synchronized (cache) {
+                CourseProgressBits cached = cache.get(key);
+                if (cached == null) return;
+                if (cached.getCatalogVersion() != snapshot.getVersion()) {
+                    cache.remove(key);
+                    return;
+                }
+                boolean isUnlocked = unlocked || cached.isUnlocked(ordinal);
+                boolean isCompleted = completed || cached.isCompleted(ordinal);
+                if (cached.hasProgress(ordinal) && isUnlocked == cached.isUnlocked(ordinal)
+                        && isCompleted == cached.isCompleted(ordinal)) {
+                    return;
+                }
+                cache.put(key, cached.with(ordinal, true, isUnlocked, isCompleted));
+            }
+        });
+    }
+
+    private void applyModuleFlags(Long userId, CatalogSnapshot.ModuleNode module, boolean assessmentRow,
+                                  boolean exists, boolean unlocked, boolean passed, boolean raiseOnly) {
+        Key key = new Key(userId, module.getCourseId());
+        int index = module.getIndex();
+        synchronized (cache) {
+            CourseProgressBits cached = cache.get(key);
+            if (cached == null) return;
+            // Module flags are ORs over several rows: a row that may have cleared one forces a reload
+            boolean unlockedSet = assessmentRow ? cached.isAssessmentRowUnlocked(index) : cached.isModuleRowUnlocked(index);
+            boolean lowers = !raiseOnly && (!exists || (!unlocked && unlockedSet) || (!passed && cached.isAssessmentPassed(index)));
+            if (lowers || cached.getCatalogVersion() != catalogSnapshotService.current().getVersion()) {
+                cache.remove(key);
+                return;
+            }
+            cache.put(key, cached.withModuleFlags(index, !assessmentRow && unlocked, passed, assessmentRow && unlocked));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Entity.UserCourseProgress;
+import com.example.cdaxVideo.Repository.UserAssessmentProgressRepository;
+import com.example.cdaxVideo.Repository.UserCourseProgressRepository;
+import com.example.cdaxVideo.Repository.UserCoursePurchaseRepository;
+import com.example.cdaxVideo.Repository.UserVideoProgressRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Maintains the user_course_progress rollup.
+ *
+ * Completion and assessment events call {@link #refresh}, which recounts the
+ * user's course from the progress tables inside the caller's transaction, so the
+ * rollup commits or rolls back with the event. These events are rare next to
+ * reads, and a recount is idempotent no matter how many paths report the same
+ * completion. Watch-time updates, the hot path, use {@link #addWatchTime}: one
+ * atomic UPDATE with the delta.
+ *
+ * {@link #rebuildAll()} backfills every purchase (at startup when
+ * {@code progress.rollup.rebuild-on-startup=true}).
+ */
+@Service
+public class CourseProgressRollupService {
+    private static final Logger logger = LoggerFactory.getLogger(CourseProgressRollupService.class);
+
+    private final UserCourseProgressRepository userCourseProgressRepository;
+    private final UserVideoProgressRepository userVideoProgressRepository;
+    private final UserAssessmentProgressRepository userAssessmentProgressRepository;
+    private final UserCoursePurchaseRepository userCoursePurchaseRepository;
+    private final CourseProgressBitsService courseProgressBitsService;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final ProgressUpsertService progressUpsertService;
+    private final EntityManager entityManager;
+    private final TransactionTemplate tx;
+    private final boolean rebuildOnStartup;
+
+    public CourseProgressRollupService(UserCourseProgressRepository userCourseProgressRepository,
+                                       UserVideoProgressRepository userVideoProgressRepository,
+                                       UserAssessmentProgressRepository userAssessmentProgressRepository,
+                                       UserCoursePurchaseRepository userCoursePurchaseRepository,
+                                       CourseProgressBitsService courseProgressBitsService,
+                                       CatalogSnapshotService catalogSnapshotService,
+                                       ProgressUpsertService progressUpsertService,
+                                       EntityManager entityManager,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${progress.rollup.rebuild-on-startup:false}") boolean rebuildOnStartup) {
+        this.userCourseProgressRepository = userCourseProgressRepository;
+        this.userVideoProgressRepository = userVideoProgressRepository;
+        this.userAssessmentProgressRepository = userAssessmentProgressRepository;
+        this.userCoursePurchaseRepository = userCoursePurchaseRepository;
+        this.courseProgressBitsService = courseProgressBitsService;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.progressUpsertService = progressUpsertService;
+        this.entityManager = entityManager;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    public Optional<UserCourseProgress> get(Long userId, Long courseId) {
+        return userCourseProgressRepository.findByUserIdAndCourseId(userId, courseId);
+    }
+
+    /**
+     * Rollup rows of the user's purchased courses, in purchase order: the purchase ids
+     * and the user's rows are one indexed read each. A row missing because it predates
+     * the rollup is built on the spot.
+     */
+    public List<UserCourseProgress> getPurchased(Long userId) {
+        Map<Long, UserCourseProgress> rows = new HashMap<>();
+        for (UserCourseProgress row : userCourseProgressRepository.findByUserId(userId)) {
+            rows.put(row.getCourseId(), row);
+        }
+        List<UserCourseProgress> result = new ArrayList<>();
+        for (Long courseId : new LinkedHashSet<>(userCoursePurchaseRepository.findCourseIdsByUserId(userId))) {
+            UserCourseProgress row = rows.get(courseId);
+            result.add(row != null ? row : tx.execute(status -> refresh(userId, courseId)));
+        }
+        return result;
+    }
+
+    /**
+     * Recount the (user, course) row from the progress tables. Joins the caller's
+     * transaction; pending writes are flushed first, so the counts include them. The
+     * row is written with one upsert, so concurrent first builds (e.g. parallel
+     * dashboard reads) cannot collide on the (user, course) key.
+     */
+    @Transactional
+    public UserCourseProgress refresh(Long userId, Long courseId) {
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        CourseProgressBits bits = courseProgressBitsService.loadFresh(userId, courseId, snapshot);
+
+        int completedModules = 0;
+        for (CatalogSnapshot.ModuleNode module : snapshot.findCourse(courseId)
+                .map(CatalogSnapshot.CourseNode::getModules).orElse(Collections.emptyList())) {
+            boolean videosDone = bits.moduleCompleted(module);
+            boolean assessmentDone = module.getAssessmentIds().isEmpty() || bits.isAssessmentPassed(module.getIndex());
+            if (videosDone && assessmentDone) completedModules++;
+        }
+
+        Long passed = userAssessmentProgressRepository.countPassedByUserIdAndCourseId(userId, courseId);
+        List<Object[]> watch = userVideoProgressRepository.sumWatchTimeByUserAndCourse(userId, courseId);
+        Object[] watchRow = watch.isEmpty() ? new Object[]{0L, null} : watch.get(0);
+
+        progressUpsertService.writeCourseRollup(userId, courseId, bits.countCompleted(), completedModules,
+                passed != null ? passed.intValue() : 0,
+                watchRow[0] != null ? ((Number) watchRow[0]).longValue() : 0L,
+                (LocalDateTime) watchRow[1]);
+
+        // The row may already be managed in this session with the values from before the upsert
+        UserCourseProgress row = userCourseProgressRepository.findByUserIdAndCourseId(userId, courseId)
+                .orElseThrow(() -> new RuntimeException("Progress rollup not written"));
+        entityManager.refresh(row);
+        return row;
+    }
+
+    /** Add watch time (seconds may be negative if a client rewinds its counter). */
+    @Transactional
+    public void addWatchTime(Long userId, Long courseId, long deltaSeconds) {
+        if (userId == null || courseId == null) return;
+        int updated = userCourseProgressRepository.addWatchTime(userId, courseId, deltaSeconds, LocalDateTime.now());
+        if (updated == 0) {
+            refresh(userId, courseId);
+        }
+    }
+
+    /** Same, resolving the course from the catalog snapshot. */
+    @Transactional
+    public void addWatchTimeForVideo(Long userId, Long videoId, long deltaSeconds) {
+        if (deltaSeconds == 0 || videoId == null) return;
+        catalogSnapshotService.current().findVideo(videoId)
+                .ifPresent(video -> addWatchTime(userId, video.getCourseId(), deltaSeconds));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (rebuildOnStartup) {
+            rebuildAll();
+        }
+    }
+
+    /** Recount every purchased (user, course), one transaction each. Returns rows written. */
+    public int rebuildAll() {
+        long start = System.currentTimeMillis();
+        List<Object[]> pairs = tx.execute(status -> userCoursePurchaseRepository.findAllUserCoursePairs());
+        int rebuilt = 0;
+        for (Object[] pair : pairs != null ? pairs : Collections.<Object[]>emptyList()) {
+            Long userId = (Long) pair[0];
+            Long courseId = (Long) pair[1];
+            try {
+                tx.executeWithoutResult(status -> refresh(userId, courseId));
+                rebuilt++;
+            } catch (Exception e) {
+                logger.error("❌ Progress rollup rebuild failed for user {} course {}", userId, courseId, e);
+            }
+        }
+        logger.info("📊 Rebuilt {} progress rollup rows in {}ms", rebuilt, System.currentTimeMillis() - start);
+        return rebuilt;
+    }
+}
@@ -0,0 +1,378 @@
+package com.example.cdaxVideo.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over course title, tags, category, sub-category and
+ * instructor, scored with BM25F (field-weighted BM25).
+ *
+ * The index follows the catalog snapshot incrementally: on every
+ * {@link CatalogChangedEvent} only courses whose indexed fields changed are
+ * removed and re-added. Each query term also matches indexed terms it is a
+ * prefix of ("jav" -> "java", "javascript"), at a reduced weight, which keeps
+ * the old substring search behaviour for partial words. In fuzzy mode terms
+ * additionally match vocabulary words within a small edit distance, found
+ * through a {@link TrigramIndex} over the same vocabulary.
+ *
+ * Documents are addressed by dense int ordinals and postings are flat arrays,
+ * so scoring a query is array arithmetic with no per-hit boxing.
+ */
+@Service
+public class CourseSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(CourseSearchIndex.class);
+
+    static final int TITLE = 0;
+    static final int TAGS = 1;
+    static final int CATEGORY = 2;
+    static final int SUB_CATEGORY = 3;
+    static final int INSTRUCTOR = 4;
+    private static final int FIELD_COUNT = 5;
+
+    // BM25F parameters: per-field boost and length normalization
+    private static final double[] FIELD_WEIGHT = {3.0, 2.0, 1.5, 1.0, 1.0};
+    private static final double[] FIELD_B = {0.75, 0.5, 0.3, 0.3, 0.3};
+    private static final double K1 = 1.2;
+
+    private static final double PREFIX_WEIGHT = 0.7;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    // Weight of a fuzzy match by edit distance (index 1 and 2)
+    private static final double[] FUZZY_WEIGHT = {1.0, 0.5, 0.35};
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // term -> documents containing it
+    private final TreeMap<String, Posting> postings = new TreeMap<>();
+    private final TrigramIndex trigrams = new TrigramIndex();
+
+    // courseId -> ordinal; everything else is indexed by ordinal
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final ArrayDeque<Integer> freeOrdinals = new ArrayDeque<>();
+    private long[] courseIds = new long[64];
+    private int[][] fieldLengths = new int[64][];
+    private String[][] documentTerms = new String[64][];
+    private String[] fingerprints = new String[64];
+    private int ordinalCount = 0;
+
+    private final long[] totalFieldLength = new long[FIELD_COUNT];
+    private volatile long indexedVersion = -1;
+
+    private final CatalogSnapshotService catalogSnapshotService;
+
+    public CourseSearchIndex(CatalogSnapshotService catalogSnapshotService) {
+        this.catalogSnapshotService = catalogSnapshotService;
+    }
+
+    /** A matching course and its score, computed once. Natural order is best first. */
+    public static final class Hit implements Comparable<Hit> {
+        private final Long courseId;
+        private final double score;
+
+        Hit(Long courseId, double score) {
+            this.courseId = courseId;
+            this.score = score;
+        }
+
+        public Long getCourseId() { return courseId; }
+        public double getScore() { return score; }
+
+        @Override
+        public int compareTo(Hit other) {
+            int c = Double.compare(other.score, score);
+            return c != 0 ? c : Long.compare(courseId, other.courseId);
+        }
+    }
+
+    /** Documents for one term: parallel arrays of ordinals and per-field term frequencies. */
+    private static final class Posting {
+        int[] ords = new int[4];
+        int[] tfs = new int[4 * FIELD_COUNT];
+        int size;
+
+        void add(int ord, int[] tf) {
+            if (size == ords.length) {
+                ords = Arrays.copyOf(ords, size * 2);
+                tfs = Arrays.copyOf(tfs, size * 2 * FIELD_COUNT);
+            }
+            ords[size] = ord;
+            System.arraycopy(tf, 0, tfs, size * FIELD_COUNT, FIELD_COUNT);
+            size++;
+        }
+
+        void remove(int ord) {
+            for (int i = 0; i < size; i++) {
+                if (ords[i] == ord) {
+                    int last = size - 1;
+                    ords[i] = ords[last];
+                    System.arraycopy(tfs, last * FIELD_COUNT, tfs, i * FIELD_COUNT, FIELD_COUNT);
+                    size--;
+                    return;
+                }
+            }
+        }
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        sync(event.getSnapshot());
+    }
+
+    /**
+     * Bring the index up to the given snapshot, touching only changed courses.
+     */
+    public void sync(CatalogSnapshot snapshot) {
+        lock.writeLock().lock();
+        try {
+            if (snapshot.getVersion() <= indexedVersion) return;
+
+            int added = 0, removed = 0;
+            Set<Long> seen = new HashSet<>();
+            for (CatalogSnapshot.CourseNode course : snapshot.getCourses()) {
+                seen.add(course.getId());
+                String fingerprint = fingerprint(course);
+                Integer ord = ordinals.get(course.getId());
+                if (ord != null && fingerprint.equals(fingerprints[ord])) continue;
+                if (ord != null) {
+                    removeDocument(course.getId());
+                    removed++;
+                }
+                addDocument(course, fingerprint);
+                added++;
+            }
+            for (Long id : new ArrayList<>(ordinals.keySet())) {
+                if (!seen.contains(id)) {
+                    removeDocument(id);
+                    removed++;
+                }
+            }
+            indexedVersion = snapshot.getVersion();
+            if (added > 0 || removed > 0) {
+                logger.info("🔎 Search index synced to catalog v{} (+{} / -{} docs, {} terms)",
+                        indexedVersion, added, removed, postings.size());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranked hits for a free-text query. All query terms must match (each exactly or
+     * as a prefix); if nothing matches all of them, any-term matches are returned.
+     */
+    public List<Hit> search(String query) {
+        return search(query, false);
+    }
+
+    /**
+     * Same as {@link #search(String)}; with {@code fuzzy} each query term also matches
+     * indexed terms within one edit (two for long words), at a reduced weight.
+     */
+    public List<Hit> search(String query, boolean fuzzy) {
+        List<String> terms = TextNormalizer.tokenize(query);
+        if (terms.isEmpty()) return new ArrayList<>();
+        ensureCurrent();
+
+        lock.readLock().lock();
+        try {
+            List<Map<String, Double>> expansions = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Map<String, Double> expansion = expand(term);
+                if (fuzzy) {
+                    expandFuzzy(term, expansion);
+                }
+                expansions.add(expansion);
+            }
+            return score(expansions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getDocumentCount() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Score a query whose terms are already expanded to weighted index terms. Caller holds the read lock. */
+    private List<Hit> score(List<Map<String, Double>> expandedTerms) {
+        int docCount = ordinals.size();
+        if (docCount == 0) return new ArrayList<>();
+
+        double[] avgLength = new double[FIELD_COUNT];
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            avgLength[f] = Math.max(1.0, (double) totalFieldLength[f] / docCount);
+        }
+
+        double[] total = new double[ordinalCount];
+        int[] matched = new int[ordinalCount];
+        double[] best = new double[ordinalCount];
+        int[] touched = new int[ordinalCount];
+
+        for (Map<String, Double> expansion : expandedTerms) {
+            // Best contribution of this query term per document (exact beats prefix)
+            int touchedCount = 0;
+            for (Map.Entry<String, Double> candidate : expansion.entrySet()) {
+                Posting posting = postings.get(candidate.getKey());
+                if (posting == null) continue;
+                double idf = Math.log(1.0 + (docCount - posting.size + 0.5) / (posting.size + 0.5));
+                double boost = candidate.getValue() * idf;
+                for (int i = 0; i < posting.size; i++) {
+                    int ord = posting.ords[i];
+                    double tf = weightedTf(posting.tfs, i * FIELD_COUNT, fieldLengths[ord], avgLength);
+                    double s = boost * tf / (K1 + tf);
+                    if (best[ord] == 0) touched[touchedCount++] = ord;
+                    if (s > best[ord]) best[ord] = s;
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int ord = touched[i];
+                total[ord] += best[ord];
+                matched[ord]++;
+                best[ord] = 0;
+            }
+        }
+
+        int required = expandedTerms.size();
+        List<Hit> hits = collect(total, matched, required);
+        if (hits.isEmpty() && required > 1) {
+            hits = collect(total, matched, 1);
+        }
+        Collections.sort(hits);
+        return hits;
+    }
+
+    private List<Hit> collect(double[] total, int[] matched, int required) {
+        List<Hit> hits = new ArrayList<>();
+        for (int ord = 0; ord < ordinalCount; ord++) {
+            if (matched[ord] >= required) {
+                hits.add(new Hit(courseIds[ord], total[ord]));
+            }
+        }
+        return hits;
+    }
+
+    /** Exact term at full weight plus up to N indexed terms it prefixes. Caller holds the read lock. */
+    private Map<String, Double> expand(String term) {
+        Map<String, Double> expansion = new HashMap<>();
+        if (postings.containsKey(term)) expansion.put(term, 1.0);
+        int count = 0;
+        for (String candidate : postings.subMap(term, false, term + Character.MAX_VALUE, false).keySet()) {
+            if (count++ >= MAX_PREFIX_EXPANSIONS) break;
+            expansion.put(candidate, PREFIX_WEIGHT);
+        }
+        return expansion;
+    }
+
+    /** Add vocabulary terms within the edit budget of {@code term}. Caller holds the read lock. */
+    private void expandFuzzy(String term, Map<String, Double> expansion) {
+        for (TrigramIndex.Match match : trigrams.lookup(term, TrigramIndex.maxEdits(term))) {
+            expansion.merge(match.term, FUZZY_WEIGHT[match.distance], Math::max);
+        }
+    }
+
+    private void ensureCurrent() {
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        if (snapshot.getVersion() > indexedVersion) {
+            sync(snapshot);
+        }
+    }
+
+    // ---------- index maintenance (write lock held) ----------
+
+    private void addDocument(CatalogSnapshot.CourseNode course, String fingerprint) {
+        int[] lengths = new int[FIELD_COUNT];
+        Map<String, int[]> termFreqs = new HashMap<>();
+
+        addField(termFreqs, lengths, TITLE, course.getTitle());
+        for (String tag : course.getTags()) {
+            addField(termFreqs, lengths, TAGS, tag);
+        }
+        addField(termFreqs, lengths, CATEGORY, course.getCategory());
+        addField(termFreqs, lengths, SUB_CATEGORY, course.getSubCategory());
+        addField(termFreqs, lengths, INSTRUCTOR, course.getInstructor());
+
+        int ord = allocateOrdinal();
+        for (Map.Entry<String, int[]> e : termFreqs.entrySet()) {
+            Posting posting = postings.get(e.getKey());
+            if (posting == null) {
+                posting = new Posting();
+                postings.put(e.getKey(), posting);
+                trigrams.add(e.getKey());
+            }
+            posting.add(ord, e.getValue());
+        }
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            totalFieldLength[f] += lengths[f];
+        }
+        ordinals.put(course.getId(), ord);
+        courseIds[ord] = course.getId();
+        fieldLengths[ord] = lengths;
+        documentTerms[ord] = termFreqs.keySet().toArray(new String[0]);
+        fingerprints[ord] = fingerprint;
+    }
+
+    private void removeDocument(Long id) {
+        Integer ord = ordinals.remove(id);
+        if (ord == null) return;
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            totalFieldLength[f] -= fieldLengths[ord][f];
+        }
+        for (String term : documentTerms[ord]) {
+            Posting posting = postings.get(term);
+            if (posting == null) continue;
+            posting.remove(ord);
+            if (posting.size == 0) {
+                postings.remove(term);
+                trigrams.remove(term);
+            }
+        }
+        fieldLengths[ord] = null;
+        documentTerms[ord] = null;
+        fingerprints[ord] = null;
+        freeOrdinals.push(ord);
+    }
+
+    private int allocateOrdinal() {
+        if (!freeOrdinals.isEmpty()) return freeOrdinals.pop();
+        if (ordinalCount == courseIds.length) {
+            int capacity = ordinalCount * 2;
+            courseIds = Arrays.copyOf(courseIds, capacity);
+            fieldLengths = Arrays.copyOf(fieldLengths, capacity);
+            documentTerms = Arrays.copyOf(documentTerms, capacity);
+            fingerprints = Arrays.copyOf(fingerprints, capacity);
+        }
+        return ordinalCount++;
+    }
+
+    private static void addField(Map<String, int[]> termFreqs, int[] lengths, int field, String text) {
+        for (String token : TextNormalizer.tokenize(text)) {
+            termFreqs.computeIfAbsent(token, k -> new int[FIELD_COUNT])[field]++;
+            lengths[field]++;
+        }
+    }
+
+    private static double weightedTf(int[] tfs, int offset, int[] lengths, double[] avgLength) {
+        double sum = 0;
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            int tf = tfs[offset + f];
+            if (tf == 0) continue;
+            double norm = 1.0 - FIELD_B[f] + FIELD_B[f] * lengths[f] / avgLength[f];
+            sum += FIELD_WEIGHT[f] * tf / norm;
+        }
+        return sum;
+    }
+
+    private static String fingerprint(CatalogSnapshot.CourseNode c) {
+        return c.getTitle() + '\u0001' + String.join("\u0002", c.getTags()) + '\u0001' + c.getCategory()
+                + '\u0001' + c.getSubCategory() + '\u0001' + c.getInstructor();
+    }
+}
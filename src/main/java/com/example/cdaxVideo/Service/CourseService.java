@@ -1,22 +1,30 @@
 package com.example.cdaxVideo.Service;
 
+import com.example.cdaxVideo.DTO.CoursePageDTO;
+import com.example.cdaxVideo.DTO.CourseProgressCountsDTO;
 import com.example.cdaxVideo.DTO.CourseResponseDTO;
+import com.example.cdaxVideo.DTO.CourseSearchResultDTO;
 import com.example.cdaxVideo.Entity.*;
 import com.example.cdaxVideo.Entity.Module;
 import com.example.cdaxVideo.Repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 public class CourseService {
     private static final Logger logger = LoggerFactory.getLogger(VideoService.class);
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
     @Autowired private CourseRepository courseRepository;
     @Autowired private ModuleRepository moduleRepository;
     @Autowired private VideoRepository videoRepository;
@@ -29,72 +37,88 @@ public class CourseService {
     @Autowired private UserModuleProgressRepository userModuleProgressRepository;
     @Autowired private UserAssessmentProgressRepository userAssessmentProgressRepository;
     @Autowired private UserCoursePurchaseRepository userCoursePurchaseRepository;
+    @Autowired private CatalogSnapshotService catalogSnapshotService;
+    @Autowired private CatalogGraphLoader catalogGraphLoader;
+    @Autowired private CourseSearchIndex courseSearchIndex;
+    @Autowired private SearchSuggestionIndex searchSuggestionIndex;
+    @Autowired private CourseFacetIndex courseFacetIndex;
+    @Autowired private PopularTagRanking popularTagRanking;
+    @Autowired private CourseProgressBitsService courseProgressBitsService;
+    @Autowired private CourseUnlockService courseUnlockService;
+    @Autowired private CourseProgressRollupService courseProgressRollupService;
+    @Autowired private EntitlementService entitlementService;
+    @Autowired private VideoProgressBuffer videoProgressBuffer;
+    @Autowired private ProgressUpsertService progressUpsertService;
 
     public List<CourseResponseDTO> getDashboardCourses(Long userId) {
         User user = userRepository.findById(userId)
                                   .orElseThrow(() -> new RuntimeException("User not found"));
-        List<Course> courses;
         if (user.getIsNewUser() != null && user.getIsNewUser() == 1) {
-            courses = courseRepository.findAll();
-        } else {
-            courses = courseRepository.findBySubscribedUsers_Id(userId);
-        }   
-        return courses.stream().map(CourseResponseDTO::new).collect(Collectors.toList());
+            return catalogSnapshotService.current().materializeAll().stream()
+                    .map(CourseResponseDTO::new).collect(Collectors.toList());
+        }
+
+        // Enrolled courses with their video counts: one aggregate query plus snapshot copies
+        Map<Long, CourseProgressCountsDTO> counts = new LinkedHashMap<>();
+        for (CourseProgressCountsDTO c : getCourseProgressCounts(userId)) {
+            counts.put(c.getCourseId(), c);
+        }
+        List<CourseResponseDTO> result = new ArrayList<>();
+        for (Course course : catalogSnapshotService.current().materialize(counts.keySet())) {
+            course.setPurchased(true);
+            CourseResponseDTO dto = new CourseResponseDTO(course);
+            dto.applyProgressCounts(counts.get(course.getId()));
+            result.add(dto);
+        }
+        return result;
+    }
+
+    /**
+     * Total / completed / in-progress video counts of every course the user purchased,
+     * from one GROUP BY query; cost follows the user's courses, not the catalog.
+     */
+    public List<CourseProgressCountsDTO> getCourseProgressCounts(Long userId) {
+        List<CourseProgressCountsDTO> counts = new ArrayList<>();
+        for (Object[] row : userVideoProgressRepository.countProgressByCourseForUser(userId)) {
+            counts.add(CourseProgressCountsDTO.fromRow(row));
+        }
+        return counts;
     }
 
     @Transactional(readOnly = true)
     public List<Course> getSubscribedCourses(Long userId) {
         List<Course> courses = courseRepository.findBySubscribedUsers_Id(userId);
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
 
         for (Course course : courses) {
             course.setPurchased(true);
-            if (course.getModules() == null || course.getModules().isEmpty()) {
+            if (course.getModules() == null || course.getModules().isEmpty()
+                    || snapshot.findCourse(course.getId()).isEmpty()) {
                 continue;
             }
 
-            Module firstModule = course.getModules().get(0);
-            List<Video> videos = firstModule.getVideos();
-
-            if (videos == null) continue;
-
-            for (int i = 0; i < videos.size(); i++) {
-                Video v = videos.get(i);
-                v.setLocked(i >= 3);
-            }
-
-            firstModule.setLocked(false);
-            firstModule.setAssessmentLocked(true);
+            courseUnlockService.getLockState(userId, course.getId(), true, snapshot)
+                    .applyTo(course.getModules(), snapshot);
         }
 
         return courses;
     }
 
     public Course saveCourse(Course course) {
-        return courseRepository.save(course);
+        Course saved = courseRepository.save(course);
+        catalogSnapshotService.refresh();
+        popularTagRanking.courseTagsChanged(saved.getId(), saved.getTags());
+        return saved;
     }
 
-@Transactional(readOnly = true)
+// Served from the immutable catalog snapshot; each call gets its own detached copies
 public List<Course> getAllCoursesWithModulesAndVideos() {
     logger.info("📚 Getting all courses with modules and videos");
     
     try {
-        // Get courses WITHOUT videos initially
-        List<Course> courses = courseRepository.findAllWithModules();
-        logger.info("📚 Found {} courses", courses.size());
-        
-        for (Course course : courses) {
-            logger.debug("   ├─ Loading videos for course: {}", course.getTitle());
-            
-            for (Module module : course.getModules()) {
-                // Get videos separately
-                List<Video> videos = videoRepository.findByModuleId(module.getId());
-                
-                // Use the FIXED setVideos method
-                module.setVideos(videos);
-            }
-        }
-        
-        logger.info("✅ All courses loaded successfully");
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        List<Course> courses = snapshot.materializeAll();
+        logger.info("📚 Found {} courses (catalog v{})", courses.size(), snapshot.getVersion());
         return courses;
         
     } catch (Exception e) {
@@ -107,27 +131,10 @@ public Optional<Course> getCourseByIdWithModulesAndVideos(Long id) {
     logger.info("📚 Getting course with modules and videos for ID: {}", id);
     
     try {
-        // Get course WITHOUT videos initially
-        Optional<Course> optionalCourse = courseRepository.findByIdWithModules(id);
+        Optional<Course> optionalCourse = catalogSnapshotService.current().materialize(id);
         
-        if (optionalCourse.isPresent()) {
-            Course course = optionalCourse.get();
-            logger.info("📚 Course found: {} ({} modules)", 
-                       course.getTitle(), course.getModules().size());
-            
-            // Load videos for each module using the FIXED setVideos method
-            for (Module module : course.getModules()) {
-                // Get videos separately
-                List<Video> videos = videoRepository.findByModuleId(module.getId());
-                logger.debug("   ├─ Module {}: {} videos found", 
-                           module.getId(), videos.size());
-                
-                // Use the FIXED setVideos method that doesn't replace the collection
-                module.setVideos(videos);
-            }
-            
-            logger.info("✅ Course data loaded successfully");
-        }
+        optionalCourse.ifPresent(course -> logger.info("📚 Course found: {} ({} modules)",
+                course.getTitle(), course.getModules().size()));
         
         return optionalCourse;
         
@@ -143,7 +150,7 @@ public List<Course> getPublicCourses() {
     
     try {
         // Get all courses with basic information (without sensitive data)
-        List<Course> courses = courseRepository.findAll();
+        List<Course> courses = catalogSnapshotService.current().materializeAll();
         
         // Clear any user-specific data for public access
         for (Course course : courses) {
@@ -168,137 +175,69 @@ public List<Course> getPublicCourses() {
         return new ArrayList<>(); // Return empty list on error
     }
 }
+
+    /**
+     * Keyset page of courses ordered by id. Two phases: the page's ids (LIMIT-able,
+     * no collection fetch), then the module/video graph for just those ids.
+     */
+    public CoursePageDTO getCoursePage(Long cursor, Integer limit) {
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long afterId = cursor == null ? 0L : cursor;
+
+        // Ask for one extra id to know whether another page exists
+        List<Long> ids = courseRepository.findIdsAfter(afterId, PageRequest.of(0, size + 1));
+        boolean hasMore = ids.size() > size;
+        if (hasMore) {
+            ids = ids.subList(0, size);
+        }
+
+        List<Course> courses = catalogGraphLoader.load(ids);
+        Long nextCursor = hasMore ? ids.get(ids.size() - 1) : null;
+        return new CoursePageDTO(courses, nextCursor, hasMore);
+    }
+
+    /**
+     * Walk the whole catalog page by page, handing each page to the consumer.
+     * Only one page is held in memory at a time.
+     */
+    public void forEachCoursePage(int pageSize, Consumer<List<Course>> consumer) {
+        Long cursor = null;
+        CoursePageDTO page;
+        do {
+            page = getCoursePage(cursor, pageSize);
+            if (!page.getCourses().isEmpty()) {
+                consumer.accept(page.getCourses());
+            }
+            cursor = page.getNextCursor();
+        } while (page.isHasMore());
+    }
     
-    // FIXED: Enhanced search with keyword support
+    // Enhanced search: ranked by the in-memory BM25F index, resolved against the catalog snapshot
     public List<Course> enhancedSearch(String keyword) {
+        return enhancedSearch(keyword, false);
+    }
+
+    // Typo-tolerant variant: fuzzy=true also matches words within a small edit distance
+    public List<Course> enhancedSearch(String keyword, boolean fuzzy) {
         if (keyword == null || keyword.trim().isEmpty()) {
             return getAllCoursesWithModulesAndVideos();
         }
         
-        String searchTerm = keyword.trim().toLowerCase();
-        List<Course> allCourses = getAllCoursesWithModulesAndVideos();
-        
-        return allCourses.stream()
-            .filter(course -> {
-                // Check title
-                if (course.getTitle() != null && course.getTitle().toLowerCase().contains(searchTerm)) {
-                    return true;
-                }
-                
-                // Check tags
-                if (course.getTags() != null) {
-                    for (String tag : course.getTags()) {
-                        if (tag.toLowerCase().contains(searchTerm)) {
-                            return true;
-                        }
-                    }
-                }
-                
-                // Check category
-                if (course.getCategory() != null && course.getCategory().toLowerCase().contains(searchTerm)) {
-                    return true;
-                }
-                
-                // Check subcategory
-                if (course.getSubCategory() != null && course.getSubCategory().toLowerCase().contains(searchTerm)) {
-                    return true;
-                }
-                
-                // Check instructor
-                if (course.getInstructor() != null && course.getInstructor().toLowerCase().contains(searchTerm)) {
-                    return true;
-                }
-                
-                return false;
-            })
-            .sorted((c1, c2) -> {
-                int score1 = calculateRelevance(c1, searchTerm);
-                int score2 = calculateRelevance(c2, searchTerm);
-                return Integer.compare(score2, score1);
-            })
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        List<Long> rankedIds = courseSearchIndex.search(keyword, fuzzy).stream()
+            .map(CourseSearchIndex.Hit::getCourseId)
             .collect(Collectors.toList());
+        return snapshot.materialize(rankedIds);
     }
 
-    // FIXED: Helper method for relevance scoring
-    private int calculateRelevance(Course course, String searchTerm) {
-        int score = 0;
-        String searchLower = searchTerm.toLowerCase();
-        
-        // Title matches
-        if (course.getTitle() != null) {
-            String titleLower = course.getTitle().toLowerCase();
-            if (titleLower.equals(searchLower)) {
-                score += 10;
-            } else if (titleLower.contains(searchLower)) {
-                score += 5;
-            }
-            if (titleLower.startsWith(searchLower)) {
-                score += 3;
-            }
-        }
-        
-        // Tag matches
-        if (course.getTags() != null) {
-            for (String tag : course.getTags()) {
-                String tagLower = tag.toLowerCase();
-                if (tagLower.equals(searchLower)) {
-                    score += 4;
-                } else if (tagLower.contains(searchLower)) {
-                    score += 2;
-                }
-            }
-        }
-        
-        // Category matches
-        if (course.getCategory() != null && course.getCategory().toLowerCase().contains(searchLower)) {
-            score += 2;
-        }
-        
-        // Subcategory matches
-        if (course.getSubCategory() != null && course.getSubCategory().toLowerCase().contains(searchLower)) {
-            score += 1;
-        }
-        
-        return score;
-    }
-
-    // FIXED: Get search suggestions (for autocomplete)
+    // Autocomplete from the in-memory suggestion tries (5 titles + 5 tags, most popular first)
     public List<String> getSearchSuggestions(String query) {
         if (query == null || query.length() < 2) {
             return new ArrayList<>();
         }
         
-        String queryLower = query.toLowerCase();
-        List<String> suggestions = new ArrayList<>();
-        List<Course> allCourses = courseRepository.findAll();
-        
-        // Get course titles starting with query
-        for (Course course : allCourses) {
-            if (suggestions.size() >= 5) break;
-            if (course.getTitle() != null && course.getTitle().toLowerCase().startsWith(queryLower)) {
-                suggestions.add(course.getTitle());
-            }
-        }
-        
-        // Get matching tags
-        Set<String> tagSuggestions = new HashSet<>();
-        for (Course course : allCourses) {
-            if (course.getTags() != null) {
-                for (String tag : course.getTags()) {
-                    if (tag.toLowerCase().contains(queryLower)) {
-                        tagSuggestions.add(tag);
-                    }
-                }
-            }
-        }
-        
-        // Add tags to suggestions (limit to 5)
-        int tagCount = 0;
-        for (String tag : tagSuggestions) {
-            if (tagCount >= 5) break;
-            suggestions.add(tag);
-            tagCount++;
-        }
+        List<String> suggestions = new ArrayList<>(searchSuggestionIndex.suggestTitles(query, 5));
+        suggestions.addAll(searchSuggestionIndex.suggestTags(query, 5));
         
         // If no suggestions, add popular tags
         if (suggestions.isEmpty()) {
@@ -315,26 +254,9 @@ public List<Course> getPublicCourses() {
             .collect(Collectors.toList());
     }
 
-    // FIXED: Get popular tags for display
+    // Popular tags from the incrementally maintained ranking (top-K read, no counting)
     public List<String> getPopularTags() {
-        List<Course> allCourses = getAllCoursesWithModulesAndVideos();
-        Map<String, Integer> tagCount = new HashMap<>();
-        
-        // Count tag occurrences
-        for (Course course : allCourses) {
-            if (course.getTags() != null) {
-                for (String tag : course.getTags()) {
-                    tagCount.put(tag, tagCount.getOrDefault(tag, 0) + 1);
-                }
-            }
-        }
-        
-        // Sort by frequency and get top tags
-        return tagCount.entrySet().stream()
-            .sorted((e1, e2) -> e2.getValue() - e1.getValue())
-            .map(Map.Entry::getKey)
-            .limit(15)
-            .collect(Collectors.toList());
+        return popularTagRanking.getTopTags(15);
     }
 
     // FIXED: Get courses by specific tag
@@ -353,24 +275,30 @@ public List<Course> getPublicCourses() {
     public List<Course> advancedSearch(String keyword, String category, 
                                        Double minPrice, Double maxPrice, 
                                        Double minRating, String level) {
-        // Start with search results or all courses
-        List<Course> results = keyword != null && !keyword.isEmpty() 
-            ? enhancedSearch(keyword) 
-            : getAllCoursesWithModulesAndVideos();
+        return advancedSearch(keyword, category, minPrice, maxPrice, minRating, level, false);
+    }
+
+    public List<Course> advancedSearch(String keyword, String category, 
+                                       Double minPrice, Double maxPrice, 
+                                       Double minRating, String level, boolean fuzzy) {
+        return advancedSearchWithFacets(keyword, category, minPrice, maxPrice, minRating, level, fuzzy).getCourses();
+    }
+
+    // Keyword ranking from the search index, filters and facet counts from the bitmap index
+    public CourseSearchResultDTO advancedSearchWithFacets(String keyword, String category,
+                                                          Double minPrice, Double maxPrice,
+                                                          Double minRating, String level, boolean fuzzy) {
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        List<Long> rankedIds = null;
+        if (keyword != null && !keyword.trim().isEmpty()) {
+            rankedIds = courseSearchIndex.search(keyword, fuzzy).stream()
+                .map(CourseSearchIndex.Hit::getCourseId)
+                .collect(Collectors.toList());
+        }
         
-        // Apply filters
-        return results.stream()
-            .filter(course -> category == null || category.isEmpty() || 
-                     (course.getCategory() != null && course.getCategory().equalsIgnoreCase(category)))
-            .filter(course -> minPrice == null || 
-                     (course.getPrice() != null && course.getPrice() >= minPrice))
-            .filter(course -> maxPrice == null || 
-                     (course.getPrice() != null && course.getPrice() <= maxPrice))
-            .filter(course -> minRating == null || 
-                     (course.getRating() != null && course.getRating() >= minRating))
-            .filter(course -> level == null || level.isEmpty() || 
-                     (course.getLevel() != null && course.getLevel().equalsIgnoreCase(level)))
-            .collect(Collectors.toList());
+        CourseFacetIndex.Result result = courseFacetIndex.query(
+            rankedIds, category, level, minPrice, maxPrice, minRating);
+        return new CourseSearchResultDTO(snapshot.materialize(result.getCourseIds()), result.getFacets());
     }
 
     // FIXED: Keep your original searchCourses method for backward compatibility
@@ -380,10 +308,8 @@ public List<Course> getPublicCourses() {
 
     // Fetch courses user has NOT purchased yet
 public List<CourseResponseDTO> getAvailableCoursesForUser(Long userId) {
-    List<Course> allCourses = courseRepository.findAllWithModules();
-    List<Course> purchased = getCoursesForUser(userId);
-
-    Set<Long> purchasedIds = purchased.stream().map(Course::getId).collect(Collectors.toSet());
+    List<Course> allCourses = catalogSnapshotService.current().materializeAll();
+    PurchasedCourseIds purchasedIds = entitlementService.getPurchasedCourseIds(userId);
 
     List<Course> available = new ArrayList<>();
     for (Course c : allCourses) {
@@ -394,29 +320,22 @@ public List<CourseResponseDTO> getAvailableCoursesForUser(Long userId) {
     return available.stream().map(CourseResponseDTO::new).collect(Collectors.toList());
 }
 
-// Dashboard stats for cards
+// Dashboard stats for cards: totals are over the whole catalog, progress over the user's courses
 public Map<String, Object> getDashboardStats(Long userId) {
-    List<Course> courses = getCoursesForUser(userId);
-
-    int totalCourses = courses.size();
-    int inProgress = (int) courses.stream()
-            .filter(c -> c.getModules().stream()
-                    .anyMatch(m -> m.getVideos().stream().anyMatch(v -> !v.isLocked() && !v.isCompleted()))
-            ).count();
-    int totalVideos = courses.stream()
-            .mapToInt(c -> c.getModules().stream()
-                    .mapToInt(m -> m.getVideos().size()).sum())
-            .sum();
-    int completedVideos = courses.stream()
-            .mapToInt(c -> c.getModules().stream()
-                    .mapToInt(m -> (int) m.getVideos().stream().filter(Video::isCompleted).count()).sum())
-            .sum();
+    CatalogSnapshot snapshot = catalogSnapshotService.current();
+    List<CourseProgressCountsDTO> counts = getCourseProgressCounts(userId);
+
+    int totalCourses = snapshot.getCourseCount();
+    int inProgress = (int) counts.stream().filter(CourseProgressCountsDTO::isInProgress).count();
+    int totalVideos = snapshot.getVideoCount();
+    int completedVideos = counts.stream().mapToInt(CourseProgressCountsDTO::getCompletedVideos).sum();
     int progressPercent = totalVideos == 0 ? 0 : (completedVideos * 100 / totalVideos);
 
     Map<String,Object> stats = new HashMap<>();
     stats.put("totalCourses", totalCourses);
     stats.put("inProgressCourses", inProgress);
     stats.put("totalVideos", totalVideos);
+    stats.put("completedVideos", completedVideos);
     stats.put("progressPercentage", progressPercent);
 
     return stats;
@@ -428,12 +347,17 @@ public Map<String, Object> getDashboardStats(Long userId) {
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid courseId"));
         module.setCourse(course);
-        return moduleRepository.save(module);
+        Module saved = moduleRepository.save(module);
+        catalogSnapshotService.refresh();
+        return saved;
     }
 
-    @Transactional(readOnly = true) 
     public List<Module> getModulesByCourseId(Long courseId) {
-        return moduleRepository.findByCourseId(courseId);
+        return catalogSnapshotService.current().findCourse(courseId)
+                .map(c -> c.getModules().stream()
+                        .map(CatalogSnapshot.ModuleNode::toModule)
+                        .collect(Collectors.toList()))
+                .orElseGet(ArrayList::new);
     }
 
     public Optional<Module> getModuleById(Long id) {
@@ -445,11 +369,17 @@ public Map<String, Object> getDashboardStats(Long userId) {
         Module module = moduleRepository.findById(moduleId)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid moduleId"));
         video.setModule(module);
-        return videoRepository.save(video);
+        Video saved = videoRepository.save(video);
+        catalogSnapshotService.refresh();
+        return saved;
     }
 
     public List<Video> getVideosByModuleId(Long moduleId) {
-        return videoRepository.findByModuleId(moduleId);
+        return catalogSnapshotService.current().findModule(moduleId)
+                .map(m -> m.getVideos().stream()
+                        .map(CatalogSnapshot.VideoNode::toVideo)
+                        .collect(Collectors.toList()))
+                .orElseGet(ArrayList::new);
     }
 
     // ----- ASSESSMENT -----
@@ -457,7 +387,9 @@ public Map<String, Object> getDashboardStats(Long userId) {
         Module module = moduleRepository.findById(moduleId)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid moduleId"));
         assessment.setModule(module);
-        return assessmentRepository.save(assessment);
+        Assessment saved = assessmentRepository.save(assessment);
+        catalogSnapshotService.refresh();
+        return saved;
     }
 
     public List<Assessment> getAssessmentsByModuleId(Long moduleId) {
@@ -509,70 +441,20 @@ public Map<String, Object> submitAssessment(
         }
         
         double percentage = (double) obtainedMarks / totalMarks * 100;
-        boolean passed = percentage >= 70.0;
+        boolean passed = percentage >= CourseUnlockGraph.PASS_PERCENT;
         
         System.out.println("Score: " + obtainedMarks + "/" + totalMarks + " = " + percentage + "%");
         
-        // 3. **FORCE CREATE/UPDATE ASSESSMENT PROGRESS**
-        Optional<UserAssessmentProgress> existing = userAssessmentProgressRepository
-                .findByUserAndAssessment(user, assessment);
-        
-        UserAssessmentProgress progress;
-        
-        if (existing.isPresent()) {
-            progress = existing.get();
-            System.out.println("Found existing progress, ID=" + progress.getId());
-        } else {
-            System.out.println("Creating new assessment progress row");
-            progress = new UserAssessmentProgress();
-            progress.setUser(user);
-            progress.setAssessment(assessment);
-            progress.setUnlocked(true);
-            progress.setUnlockedOn(new Date());
-            progress = userAssessmentProgressRepository.save(progress);
-            System.out.println("New progress saved with ID=" + progress.getId());
-        }
-        
-        // 4. Update assessment progress fields
-        progress.setAttempts(progress.getAttempts() == null ? 1 : progress.getAttempts() + 1);
-        progress.setObtainedMarks(obtainedMarks);
-        progress.setTotalMarks(totalMarks);
-        progress.setPercentage(percentage);
-        progress.setPassed(passed);
-        progress.setSubmittedOn(new Date());
-        
-        if (passed && progress.getPassedOn() == null) {
-            progress.setPassedOn(new Date());
-        }
-        
-        // 5. **FORCE SAVE ASSESSMENT PROGRESS**
-        userAssessmentProgressRepository.saveAndFlush(progress);
-        System.out.println("Assessment progress updated successfully, ID=" + progress.getId());
+        // 3-5. Create or update the assessment progress in one upsert (attempts + 1)
+        progressUpsertService.recordAssessmentAttempt(user.getId(), assessment.getId(),
+                obtainedMarks, totalMarks, percentage, passed);
+        System.out.println("Assessment progress updated successfully");
         
         // 6. **UPDATE MODULE PROGRESS IF ASSESSMENT PASSED**
         boolean moduleCompleted = false;
         if (passed && module != null) {
             try {
-                Optional<UserModuleProgress> moduleProgressOpt = userModuleProgressRepository
-                    .findByUserAndModule(user, module);
-                
-                UserModuleProgress moduleProgress;
-                if (moduleProgressOpt.isPresent()) {
-                    moduleProgress = moduleProgressOpt.get();
-                    System.out.println("Found existing module progress");
-                } else {
-                    moduleProgress = new UserModuleProgress();
-                    moduleProgress.setUser(user);
-                    moduleProgress.setModule(module);
-                    System.out.println("Creating new module progress");
-                }
-                
-                // Mark module as completed
-                moduleProgress.markAsCompleted();
-                moduleProgress.setAssessmentPassed(true);
-                moduleProgress.setAssessmentPassedOn(new Date());
-                
-                userModuleProgressRepository.save(moduleProgress);
+                progressUpsertService.passModule(user.getId(), module.getId());
                 moduleCompleted = true;
                 System.out.println("✅ Module marked as completed!");
                 
@@ -597,7 +479,12 @@ public Map<String, Object> submitAssessment(
             }
         }
         
-        // 8. Return comprehensive response
+        // 8. Recount the course rollup in this transaction
+        if (module != null) {
+            courseProgressRollupService.refresh(userId, module.getCourse().getId());
+        }
+        
+        // 9. Return comprehensive response
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
         response.put("passed", passed);
@@ -636,6 +523,18 @@ public boolean unlockNextModuleAfterPassing(
 ) {
     logger.info("🔓 unlockNextModuleAfterPassing - userId: {}, courseId: {}, currentModuleId: {}", 
                userId, courseId, currentModuleId);
+
+    if (courseUnlockService.isDerivedMode()) {
+        // The persisted pass already opens the next module and its first video
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        boolean hasNext = snapshot.findModule(currentModuleId)
+                .flatMap(m -> snapshot.findCourse(m.getCourseId())
+                        .map(c -> m.getIndex() + 1 < c.getModules().size()))
+                .orElse(false);
+        logger.info("🔓 Derived unlock mode: next module {} from the pass, nothing written",
+                hasNext ? "opens" : "does not exist");
+        return hasNext;
+    }
     
     try {
         User user = userRepository.findById(userId)
@@ -682,46 +581,15 @@ public boolean unlockNextModuleAfterPassing(
         logger.info("🎯 Next module to unlock: ID={}, Title={}", 
                    nextModule.getId(), nextModule.getTitle());
 
-        // Check if already unlocked
-        Optional<UserModuleProgress> existingProgress =
-                userModuleProgressRepository.findByUserAndModule(user, nextModule);
-
-        if (existingProgress.isPresent() && existingProgress.get().isUnlocked()) {
-            logger.info("ℹ️ Next module already unlocked");
-            return true;
-        }
-
-        // Unlock next module WITHOUT touching videos collection
-        UserModuleProgress moduleProgress = existingProgress.orElseGet(() -> {
-            UserModuleProgress p = new UserModuleProgress();
-            p.setUser(user);
-            p.setModule(nextModule);
-            return p;
-        });
-
-        moduleProgress.setUnlocked(true);
-        moduleProgress.setUnlockedOn(new Date());
-        userModuleProgressRepository.save(moduleProgress);
+        // Unlock next module WITHOUT touching videos collection (no-op if already unlocked)
+        progressUpsertService.unlockModule(user.getId(), nextModule.getId());
 
         logger.info("✅ Next module unlocked");
 
-        // Unlock first video separately
-        List<Video> nextVideos = videoRepository.findByModuleId(nextModule.getId());
-        if (!nextVideos.isEmpty()) {
-            Video firstVideo = nextVideos.get(0);
-
-            UserVideoProgress videoProgress =
-                    userVideoProgressRepository.findByUserAndVideo(user, firstVideo)
-                            .orElseGet(() -> {
-                                UserVideoProgress v = new UserVideoProgress();
-                                v.setUser(user);
-                                v.setVideo(firstVideo);
-                                return v;
-                            });
-
-            videoProgress.setUnlocked(true);
-            videoProgress.setUnlockedOn(new Date());
-            userVideoProgressRepository.save(videoProgress);
+        // Unlock first video separately (display order, as the unlock graph sees it)
+        List<Long> nextVideoIds = videoIdsInUnlockOrder(nextModule.getId());
+        if (!nextVideoIds.isEmpty()) {
+            progressUpsertService.unlockVideo(user.getId(), nextVideoIds.get(0));
 
             logger.info("🎬 First video unlocked for module {}", nextModule.getId());
         }
@@ -753,9 +621,12 @@ public Map<String, Object> getAssessmentStatus(Long userId, Long assessmentId) {
     status.put("assessmentTitle", assessment.getTitle());
     status.put("totalMarks", assessment.getTotalMarks());
     
+    // Unlocked by an override row or by the rules (derived mode writes no row for the latter)
+    boolean unlocked = courseUnlockService.isAssessmentUnlocked(userId, assessmentId);
+    
     if (progressOpt.isPresent()) {
         UserAssessmentProgress progress = progressOpt.get();
-        status.put("unlocked", progress.getUnlocked());
+        status.put("unlocked", unlocked);
         status.put("attempts", progress.getAttempts());
         status.put("passed", progress.isPassed());
         status.put("obtainedMarks", progress.getObtainedMarks());
@@ -766,10 +637,10 @@ public Map<String, Object> getAssessmentStatus(Long userId, Long assessmentId) {
         status.put("unlockedOn", progress.getUnlockedOn());
         
         // Calculate if user can retake
-        boolean canRetake = Boolean.TRUE.equals(progress.getUnlocked()) && !progress.isPassed();
+        boolean canRetake = unlocked && !progress.isPassed();
         status.put("canRetake", canRetake);
     } else {
-        status.put("unlocked", false);
+        status.put("unlocked", unlocked);
         status.put("attempts", 0);
         status.put("passed", false);
         status.put("canRetake", false);
@@ -802,24 +673,8 @@ public boolean canAttemptAssessment(Long userId, Long assessmentId) {
         return true;
     }
     
-    // Check if all videos in module are completed
-    List<Video> moduleVideos = videoRepository.findByModuleId(module.getId());
-    if (moduleVideos.isEmpty()) {
-        return false;
-    }
-    
-    int completedVideos = 0;
-    for (Video video : moduleVideos) {
-        Optional<UserVideoProgress> videoProgress = userVideoProgressRepository
-                .findByUserAndVideo(user, video);
-        
-        if (videoProgress.isPresent() && videoProgress.get().isCompleted()) {
-            completedVideos++;
-        }
-    }
-    
-    // All videos must be completed to attempt assessment
-    return completedVideos == moduleVideos.size();
+    // All videos in the module must be completed to attempt assessment
+    return checkIfAllVideosCompleted(userId, module.getId());
 }
 
 /**
@@ -908,6 +763,7 @@ public String purchaseCourse(Long userId, Long courseId) {
     ucp.setCourse(course);
 
     purchaseRepository.save(ucp);
+    entitlementService.invalidate(userId);
 
     // ✅ ADD THIS: Mark user as NOT new after purchase
     if (user.getIsNewUser() != null && user.getIsNewUser() == 1) {
@@ -916,46 +772,31 @@ public String purchaseCourse(Long userId, Long courseId) {
         logger.info("✅ User {} marked as NOT new after purchasing course: {}", user.getId(), course.getTitle());
     }
 
-    // --- Unlock first module and first 3 videos for the user ---
-    List<Module> modules = moduleRepository.findByCourseId(courseId);
-    if (!modules.isEmpty()) {
-        Module firstModule = modules.get(0);
+    // --- Write the grants the unlock graph gives on purchase: first module and its free videos ---
+    // (derived mode: nothing to write, the graph opens them from the purchase alone)
+    Optional<CourseUnlockGraph> graph = courseUnlockService.getGraph(courseId, catalogSnapshotService.current());
+    if (!courseUnlockService.isDerivedMode() && graph.isPresent() && graph.get().getModuleCount() > 0) {
+        CourseUnlockGraph g = graph.get();
 
         // create or update module progress (unlocked)
-        UserModuleProgress ump = userModuleProgressRepository.findByUserAndModule(user, firstModule)
-                .orElseGet(() -> {
-                    UserModuleProgress nm = new UserModuleProgress();
-                    nm.setUser(user);
-                    nm.setModule(firstModule);
-                    return nm;
-                });
-        ump.setUnlocked(true);
-        ump.setUnlockedOn(new Date());
-        userModuleProgressRepository.save(ump);
-
-        // unlock first 3 videos (or fewer if module has fewer videos)
-        List<Video> videos = videoRepository.findByModuleId(firstModule.getId());
-        int toUnlock = Math.min(3, videos.size());
-        for (int i = 0; i < toUnlock; i++) {
-            Video v = videos.get(i);
-            UserVideoProgress uvp = userVideoProgressRepository.findByUserAndVideo(user, v)
-                    .orElseGet(() -> {
-                        UserVideoProgress nv = new UserVideoProgress();
-                        nv.setUser(user);
-                        nv.setVideo(v);
-                        return nv;
-                    });
-            uvp.setUnlocked(true);
-            uvp.setUnlockedOn(new Date());
-            userVideoProgressRepository.save(uvp);
+        progressUpsertService.unlockModule(userId, g.getModuleId(0));
+
+        // unlock the free videos (fewer if the module is shorter)
+        int first = g.getModuleFirstOrdinal(0);
+        for (int i = 0; i < g.getInitialVideoCount(); i++) {
+            progressUpsertService.unlockVideo(userId, g.getVideoId(first + i));
         }
     }
 
+    // start the progress rollup row so later watch-time deltas are single UPDATEs
+    courseProgressRollupService.refresh(userId, courseId);
+
     return "Purchase successful";
 }
 
     /**
      * Return courses for user with transient flags applied so frontend can render locked/unlocked/completed state.
+     * Purchased courses also carry their progress percentage from the per-course aggregate.
      */
 public List<Course> getCoursesForUser(Long userId) {
     System.out.println("=== GET COURSES FOR USER " + userId + " ===");
@@ -965,11 +806,19 @@ public List<Course> getCoursesForUser(Long userId) {
     
     System.out.println("Total courses found: " + courses.size());
     
+    PurchasedCourseIds purchasedIds = entitlementService.getPurchasedCourseIds(userId);
+    Map<Long, CourseProgressCountsDTO> counts = new HashMap<>();
+    for (CourseProgressCountsDTO c : getCourseProgressCounts(userId)) {
+        counts.put(c.getCourseId(), c);
+    }
     for (Course course : courses) {
         // Check if user purchased the course
-        boolean isPurchased = userCoursePurchaseRepository
-                .existsByUserIdAndCourseId(userId, course.getId());
+        boolean isPurchased = purchasedIds.contains(course.getId());
         course.setPurchased(isPurchased);
+        CourseProgressCountsDTO courseCounts = counts.get(course.getId());
+        if (courseCounts != null) {
+            course.setProgressPercentage(courseCounts.getProgressPercent());
+        }
         
         // Debug: Check modules
         System.out.println("Course: " + course.getTitle() + 
@@ -996,35 +845,36 @@ public List<Course> getCoursesForUser(Long userId) {
 
         Course course = getCourseByIdWithModulesAndVideos(courseId).orElseThrow();
 
-        boolean purchased = purchaseRepository.existsByUserIdAndCourseId(userId, course.getId());
+        boolean purchased = entitlementService.isPurchased(userId, course.getId());
         course.setPurchased(purchased);
 
-        // Ensure videos loaded and then apply user progress
-        for (Module m : course.getModules()) {
-            m.setVideos(videoRepository.findByModuleId(m.getId()));
-        }
-
+        // Snapshot copies already carry their videos; just apply user progress
         applyUserProgressToCourse(course, userId);
 
         return course;
     }
 
+    /** Whether the user can play the video now (unlock row or unlock rules). */
+    public boolean isVideoUnlockedForUser(Long userId, Long videoId) {
+        return courseUnlockService.isVideoUnlocked(userId, videoId);
+    }
+
+    /**
+     * User-specific flags of a course page, computed against the given snapshot so the
+     * ordinals match templates built from that same snapshot.
+     */
+    public CourseLockState getCourseLockState(Long userId, Long courseId, CatalogSnapshot snapshot) {
+        boolean purchased = entitlementService.isPurchased(userId, courseId);
+        return courseUnlockService.getLockState(userId, courseId, purchased, snapshot);
+    }
+
 
     // Unlock a specific video for a user (creates or updates a progress record)
     @Transactional
     public boolean unlockVideoForUser(Long userId, Long courseId, Long moduleId, Long videoId) {
         User user = userRepository.findById(userId).orElseThrow();
         Video video = videoRepository.findById(videoId).orElseThrow();
-        Optional<UserVideoProgress> opt = userVideoProgressRepository.findByUserAndVideo(user, video);
-        UserVideoProgress p = opt.orElseGet(() -> {
-            UserVideoProgress newP = new UserVideoProgress();
-            newP.setUser(user);
-            newP.setVideo(video);
-            return newP;
-        });
-        p.setUnlocked(true);
-        p.setUnlockedOn(new Date());
-        userVideoProgressRepository.save(p);
+        progressUpsertService.unlockVideo(user.getId(), video.getId());
         return true;
     }
 
@@ -1037,99 +887,83 @@ public boolean completeVideoAndUnlockNext(Long userId, Long courseId, Long modul
     User user = userRepository.findById(userId).orElseThrow();
     Video current = videoRepository.findById(videoId).orElseThrow();
 
-    // mark current as completed
-    UserVideoProgress currentProgress = userVideoProgressRepository.findByUserAndVideo(user, current)
-        .orElseGet(() -> {
-            UserVideoProgress nv = new UserVideoProgress();
-            nv.setUser(user);
-            nv.setVideo(current);
-            return nv;
-        });
-        
-    currentProgress.setUnlocked(true);
-    currentProgress.setCompleted(true);
-    currentProgress.setCompletedOn(new Date());
-    userVideoProgressRepository.save(currentProgress);
+    // mark current as completed (one upsert, so concurrent completions cannot collide)
+    progressUpsertService.completeVideo(user.getId(), current.getId());
+    videoProgressBuffer.markCompleted(userId, videoId);
 
-    // Find module and its videos (fetch fresh list)
+    // Find module and its videos in display order (the order the unlock graph uses)
     Module module = moduleRepository.findById(moduleId).orElseThrow();
-    List<Video> moduleVideos = videoRepository.findByModuleId(module.getId());
+    List<Long> moduleVideoIds = videoIdsInUnlockOrder(module.getId());
 
-    int idx = -1;
-    for (int i = 0; i < moduleVideos.size(); i++) {
-        if (moduleVideos.get(i).getId().equals(current.getId())) {
-            idx = i;
-            break;
-        }
-    }
+    int idx = moduleVideoIds.indexOf(current.getId());
 
-    // 1. Unlock next video if exists
-    if (idx >= 0 && idx + 1 < moduleVideos.size()) {
-        Video next = moduleVideos.get(idx + 1);
-        UserVideoProgress nextProgress = userVideoProgressRepository.findByUserAndVideo(user, next)
-                .orElseGet(() -> {
-                    UserVideoProgress nv = new UserVideoProgress();
-                    nv.setUser(user);
-                    nv.setVideo(next);
-                    return nv;
-                });
-        if (!nextProgress.isUnlocked()) {
-            nextProgress.setUnlocked(true);
-            nextProgress.setUnlockedOn(new Date());
-            userVideoProgressRepository.save(nextProgress);
-        }
+    // 1. Unlock next video if exists (derived mode: the completion above already opens it)
+    if (!courseUnlockService.isDerivedMode() && idx >= 0 && idx + 1 < moduleVideoIds.size()) {
+        progressUpsertService.unlockVideo(user.getId(), moduleVideoIds.get(idx + 1));
     }
     
-    // 2. Check if ALL videos in module are completed
-    boolean allVideosCompleted = checkIfAllVideosCompleted(userId, moduleId);
+    // 2. Check if ALL videos in module are completed (cached bits see this completion only after commit)
+    boolean allVideosCompleted = checkIfAllVideosCompleted(userId, moduleId, videoId);
     
     // 3. Only unlock assessment if ALL videos are completed
     if (allVideosCompleted) {
-        unlockAssessmentForModule(userId, moduleId);
+        if (!courseUnlockService.isDerivedMode()) {
+            unlockAssessmentForModule(userId, moduleId);
+        }
         logger.info("✅ All videos completed in module {}, assessment unlocked", moduleId);
     } else {
         logger.info("ℹ️ Module {}: {}/{} videos completed, assessment remains locked", 
-                   moduleId, getCompletedVideosCount(userId, moduleId), moduleVideos.size());
+                   moduleId, getCompletedVideosCount(userId, moduleId), moduleVideoIds.size());
     }
 
+    // 4. Recount the course rollup in this transaction
+    courseProgressRollupService.refresh(userId, module.getCourse().getId());
+
     return true;
 }
 
+/**
+ * Video ids of a module in display order, from the catalog snapshot the unlock graph
+ * is compiled from (the repository query has no ORDER BY)
+ */
+private List<Long> videoIdsInUnlockOrder(Long moduleId) {
+    return catalogSnapshotService.current().findModule(moduleId)
+            .map(module -> module.getVideos().stream().map(CatalogSnapshot.VideoNode::getId).toList())
+            .orElse(Collections.emptyList());
+}
+
 /**
  * Check if ALL videos in a module are completed by the user
  */
 private boolean checkIfAllVideosCompleted(Long userId, Long moduleId) {
-    User user = userRepository.findById(userId).orElseThrow();
-    List<Video> moduleVideos = videoRepository.findByModuleId(moduleId);
+    return checkIfAllVideosCompleted(userId, moduleId, null);
+}
+
+// Same, counting justCompletedVideoId as completed
+private boolean checkIfAllVideosCompleted(Long userId, Long moduleId, Long justCompletedVideoId) {
+    CatalogSnapshot snapshot = catalogSnapshotService.current();
+    Optional<CatalogSnapshot.ModuleNode> module = snapshot.findModule(moduleId);
     
-    if (moduleVideos.isEmpty()) {
+    if (module.isEmpty() || module.get().getVideos().isEmpty()) {
         return false;
     }
     
-    for (Video video : moduleVideos) {
-        Optional<UserVideoProgress> progress = userVideoProgressRepository.findByUserAndVideo(user, video);
-        if (progress.isEmpty() || !progress.get().isCompleted()) {
-            return false; // Found a video that's not completed
-        }
+    CourseProgressBits bits = courseProgressBitsService.get(userId, module.get().getCourseId(), snapshot);
+    if (justCompletedVideoId != null) {
+        int ordinal = snapshot.findVideo(justCompletedVideoId).map(CatalogSnapshot.VideoNode::getCourseOrdinal).orElse(-1);
+        bits = bits.with(ordinal, true, true, true);
     }
-    return true; // All videos completed
+    return bits.moduleCompleted(module.get());
 }
 
 /**
  * Get count of completed videos in a module
  */
 private int getCompletedVideosCount(Long userId, Long moduleId) {
-    User user = userRepository.findById(userId).orElseThrow();
-    List<Video> moduleVideos = videoRepository.findByModuleId(moduleId);
-    
-    int completedCount = 0;
-    for (Video video : moduleVideos) {
-        Optional<UserVideoProgress> progress = userVideoProgressRepository.findByUserAndVideo(user, video);
-        if (progress.isPresent() && progress.get().isCompleted()) {
-            completedCount++;
-        }
-    }
-    return completedCount;
+    CatalogSnapshot snapshot = catalogSnapshotService.current();
+    return snapshot.findModule(moduleId)
+            .map(module -> courseProgressBitsService.get(userId, module.getCourseId(), snapshot).countCompleted(module))
+            .orElse(0);
 }
 
 
@@ -1141,46 +975,28 @@ private int getCompletedVideosCount(Long userId, Long moduleId) {
  @Transactional
 public boolean unlockAssessmentForModule(Long userId, Long moduleId) {
 
+    // Derived mode persists only overrides: nothing to write if the rules already open it
+    if (courseUnlockService.isDerivedMode()) {
+        List<Long> assessmentIds = catalogSnapshotService.current().findModule(moduleId)
+                .map(CatalogSnapshot.ModuleNode::getAssessmentIds)
+                .orElse(Collections.emptyList());
+        if (!assessmentIds.isEmpty() && courseUnlockService.isAssessmentUnlocked(userId, assessmentIds.get(0))) {
+            return true;
+        }
+    }
+
     User user = userRepository.findById(userId).orElseThrow();
     Module module = moduleRepository.findById(moduleId).orElseThrow();
 
     List<Assessment> assessments = assessmentRepository.findByModuleId(module.getId());
 
     for (Assessment a : assessments) {
-
-        UserAssessmentProgress ap = userAssessmentProgressRepository
-                .findByUserAndAssessment(user, a)
-                .orElseGet(() -> {
-                    UserAssessmentProgress newAP = new UserAssessmentProgress();
-                    newAP.setUser(user);
-                    newAP.setAssessment(a);
-                    newAP.setAttempts(0);   // <-- FIXED
-                    newAP.setPassed(false);
-                    newAP.setPassedOn(null);
-                    newAP.setUnlocked(true);
-                    return newAP;
-                });
-
-        // 🔥 FINAL SAFETY — in case old row had null
-        if (ap.getAttempts() == null) ap.setAttempts(0);
-
-        ap.setUnlocked(true);
-        userAssessmentProgressRepository.save(ap);
+        // new rows start with 0 attempts, not passed
+        progressUpsertService.unlockAssessment(user.getId(), a.getId());
     }
 
     // unlock module also
-    UserModuleProgress mp = userModuleProgressRepository
-            .findByUserAndModule(user, module)
-            .orElseGet(() -> {
-                UserModuleProgress nm = new UserModuleProgress();
-                nm.setUser(user);
-                nm.setModule(module);
-                return nm;
-            });
-
-    mp.setUnlocked(true);
-    mp.setUnlockedOn(new Date());
-    userModuleProgressRepository.save(mp);
+    progressUpsertService.unlockModule(user.getId(), module.getId());
 
     return true;
 }
@@ -1239,44 +1055,17 @@ public boolean unlockNextModuleForUser(Long userId, Long courseId, Long currentM
         User user = userRepository.findById(userId)
             .orElseThrow(() -> new RuntimeException("User not found"));
         
-        // 7. Create or get module progress WITHOUT touching videos collection
-        UserModuleProgress moduleProgress = userModuleProgressRepository
-            .findByUserAndModule(user, nextModule)
-            .orElseGet(() -> {
-                UserModuleProgress progress = new UserModuleProgress();
-                progress.setUser(user);
-                progress.setModule(nextModule);
-                return progress;
-            });
-        
-        // 8. Update only what we need
-        moduleProgress.setUnlocked(true);
-        moduleProgress.setUnlockedOn(new Date());
-        
-        // 9. Save module progress
-        userModuleProgressRepository.save(moduleProgress);
+        // 7-9. Create or update module progress WITHOUT touching videos collection
+        progressUpsertService.unlockModule(user.getId(), nextModule.getId());
         logger.info("✅ Module {} unlocked successfully", nextModule.getId());
         
-        // 10. Unlock first video separately
-        List<Video> nextVideos = videoRepository.findByModuleId(nextModule.getId());
-        if (!nextVideos.isEmpty()) {
-            Video firstVideo = nextVideos.get(0);
-            
-            UserVideoProgress videoProgress = userVideoProgressRepository
-                .findByUserAndVideo(user, firstVideo)
-                .orElseGet(() -> {
-                    UserVideoProgress progress = new UserVideoProgress();
-                    progress.setUser(user);
-                    progress.setVideo(firstVideo);
-                    return progress;
-                });
-            
-            videoProgress.setUnlocked(true);
-            videoProgress.setUnlockedOn(new Date());
-            userVideoProgressRepository.save(videoProgress);
+        // 10. Unlock first video separately (display order, as the unlock graph sees it)
+        List<Long> nextVideoIds = videoIdsInUnlockOrder(nextModule.getId());
+        if (!nextVideoIds.isEmpty()) {
+            progressUpsertService.unlockVideo(user.getId(), nextVideoIds.get(0));
             
             logger.info("✅ First video {} unlocked for module {}", 
-                       firstVideo.getId(), nextModule.getId());
+                       nextVideoIds.get(0), nextModule.getId());
         }
         
         logger.info("🎉 Next module unlock completed successfully");
@@ -1291,149 +1080,23 @@ public boolean unlockNextModuleForUser(Long userId, Long courseId, Long currentM
 
     /**
      * Populate transient flags (isLocked/isCompleted/assessmentLocked) on modules & videos
-     * based on user progress repositories so frontend can render correct state.
+     * so frontend can render correct state.
      *
-     * Important: this uses existence of progress rows:
-     *  - moduleUnlocked = exists(user,module)
-     *  - assessmentUnlocked = exists(user,assessment)
-     *  - video unlocked/completed = values from UserVideoProgress
+     * The flags come from the course's compiled unlock graph evaluated over the user's
+     * cached progress bits (see {@link CourseUnlockGraph} for the rules).
      */
 private void applyUserProgressToCourse(Course course, Long userId) {
     if (course == null) return;
 
-    // ✅ FIRST: check purchase status
-    boolean isPurchased =
-        userCoursePurchaseRepository.existsByUserIdAndCourseId(userId, course.getId());
-
-    System.out.println("🎯 DEBUG PURCHASE CHECK:");
-    System.out.println("   ├─ User ID: " + userId);
-    System.out.println("   ├─ Course ID: " + course.getId());
-    System.out.println("   ├─ Course Title: " + course.getTitle());
-    System.out.println("✅ Final purchase status: " + isPurchased);
-
-    // ===============================
-    // 🚫 NOT PURCHASED COURSE LOGIC
-    // ===============================
-    if (!isPurchased) {
-        for (Module module : course.getModules()) {
-            boolean isFirstModule = course.getModules().indexOf(module) == 0;
-            module.setLocked(!isFirstModule);
-
-            List<Video> videos = videoRepository.findByModuleId(module.getId());
-            module.getVideos().clear();
-            module.getVideos().addAll(videos);
-
-            for (int i = 0; i < videos.size(); i++) {
-                Video video = videos.get(i);
-
-                // Only FIRST video of FIRST module unlocked
-                if (isFirstModule && i == 0) {
-                    video.setLocked(false);
-                } else {
-                    video.setLocked(true);
-                }
-
-                video.setCompleted(false);
-            }
-        }
-        return; // ⛔ stop here
-    }
-
-    // ===============================
-    // ✅ PURCHASED COURSE LOGIC
-    // ===============================
-
-    Optional<User> userOpt = userRepository.findById(userId);
-    if (userOpt.isEmpty()) {
-        System.out.println("⚠️ WARNING: User not found with ID: " + userId);
-        return;
-    }
-    User user = userOpt.get();
-
-    for (Module module : course.getModules()) {
-// FIX: Check if module is actually unlocked in database
-Optional<UserModuleProgress> moduleProgress = userModuleProgressRepository.findByUserAndModule(user, module);
-boolean moduleUnlocked = moduleProgress.map(UserModuleProgress::isUnlocked).orElse(false);
-
-// First module always unlocked for purchased courses
-if (course.getModules().indexOf(module) == 0) {
-    moduleUnlocked = true;
-}
-
-        module.setLocked(!moduleUnlocked);
-
-        List<Video> videos = videoRepository.findByModuleId(module.getId());
-        module.getVideos().clear();
-        module.getVideos().addAll(videos);
-
-        for (int i = 0; i < videos.size(); i++) {
-            Video video = videos.get(i);
-            Optional<UserVideoProgress> up =
-                userVideoProgressRepository.findByUserAndVideo(user, video);
-
-            if (up.isPresent()) {
-                UserVideoProgress uvp = up.get();
-                video.setLocked(!uvp.isUnlocked());
-                video.setCompleted(uvp.isCompleted());
-            } else {
-                if (moduleUnlocked) {
-                    if (course.getModules().indexOf(module) == 0) {
-                        // First module: first 3 videos unlocked
-                        if (i < 3) {
-                            video.setLocked(false);
-                        } else {
-                            boolean prevCompleted =
-                                checkPreviousVideosCompleted(user, module, i);
-                            video.setLocked(!prevCompleted);
-                        }
-                    } else {
-                        boolean prevModuleCompleted =
-                            checkPreviousModuleCompleted(user, course, module);
-                        video.setLocked(!(prevModuleCompleted && i == 0));
-                    }
-                } else {
-                    video.setLocked(true);
-                }
-                video.setCompleted(false);
-            }
-        }
-    }
-}
-
+    boolean isPurchased = entitlementService.isPurchased(userId, course.getId());
+    course.setPurchased(isPurchased);
 
-private boolean checkPreviousVideosCompleted(User user, Module module, int currentVideoIndex) {
-    if (currentVideoIndex == 0) return false; // First video
-    
-    List<Video> videos = videoRepository.findByModuleId(module.getId());
-    
-    // Check if all previous videos are completed
-    for (int i = 0; i < currentVideoIndex; i++) {
-        Video previousVideo = videos.get(i);
-        Optional<UserVideoProgress> progress = userVideoProgressRepository.findByUserAndVideo(user, previousVideo);
-        
-        if (progress.isEmpty() || !progress.get().isCompleted()) {
-            return false; // Previous video not completed
-        }
-    }
-    return true; // All previous videos completed
-}
+    System.out.println("🎯 Applying progress: user " + userId + ", course " + course.getId()
+            + " | Purchased: " + isPurchased);
 
-private boolean checkPreviousModuleCompleted(User user, Course course, Module currentModule) {
-    int currentIndex = course.getModules().indexOf(currentModule);
-    if (currentIndex <= 0) return false; // First module
-    
-    Module previousModule = course.getModules().get(currentIndex - 1);
-    List<Video> previousVideos = videoRepository.findByModuleId(previousModule.getId());
-    
-    // Check if all videos in previous module are completed
-    for (Video video : previousVideos) {
-        Optional<UserVideoProgress> progress = userVideoProgressRepository.findByUserAndVideo(user, video);
-        
-        if (progress.isEmpty() || !progress.get().isCompleted()) {
-            return false; // Video not completed
-        }
-    }
-    return true; // All videos in previous module completed
+    CatalogSnapshot snapshot = catalogSnapshotService.current();
+    courseUnlockService.getLockState(userId, course.getId(), isPurchased, snapshot)
+            .applyTo(course.getModules(), snapshot);
 }
 
     // private void applyUserProgressToCourse(Course course, Long userId) {
@@ -1507,76 +1170,19 @@ private boolean checkPreviousModuleCompleted(User user, Course course, Module cu
 
 
     public List<Module> getModulesForUser(Long userId, Long courseId) {
-    List<Module> modules = moduleRepository.findByCourseId(courseId);
-
-    Optional<User> userOpt = userRepository.findById(userId);
-    if (userOpt.isEmpty()) return modules;
-    User user = userOpt.get();
-
-    boolean isPurchased = userCoursePurchaseRepository.existsByUserIdAndCourseId(userId, courseId);
-
-    for (int mIndex = 0; mIndex < modules.size(); mIndex++) {
-        Module module = modules.get(mIndex);
-
-        boolean moduleUnlocked = isPurchased &&
-                (mIndex == 0 || checkPreviousModuleCompleted(user, modules, mIndex));
-
-        module.setLocked(!moduleUnlocked);
-
-        List<Video> videos = videoRepository.findByModuleId(module.getId());
-        module.getVideos().clear();
-        module.getVideos().addAll(videos);
-
-        for (int vIndex = 0; vIndex < videos.size(); vIndex++) {
-            Video video = videos.get(vIndex);
-
-            Optional<UserVideoProgress> progress = userVideoProgressRepository.findByUserAndVideo(user, video);
-            if (progress.isPresent()) {
-                video.setLocked(!progress.get().isUnlocked());
-                video.setCompleted(progress.get().isCompleted());
-            } else {
-                if (moduleUnlocked) {
-                    // first module, first 3 videos unlocked
-                    if (mIndex == 0 && vIndex < 3) {
-                        video.setLocked(false);
-                    } else {
-                        // unlock only if all previous videos in module completed
-                        video.setLocked(!checkPreviousVideosCompleted(user, module, vIndex));
-                    }
-                } else {
-                    video.setLocked(true);
-                }
-                video.setCompleted(false);
-            }
-        }
-    }
-
+    CatalogSnapshot snapshot = catalogSnapshotService.current();
+    List<Module> modules = snapshot.materialize(courseId)
+            .map(Course::getModules)
+            .orElseGet(ArrayList::new);
+    if (modules.isEmpty() || !userRepository.existsById(userId)) return modules;
+
+    boolean isPurchased = entitlementService.isPurchased(userId, courseId);
+    courseUnlockService.getLockState(userId, courseId, isPurchased, snapshot).applyTo(modules, snapshot);
     return modules;
 }
 
-// Helper for module page
-private boolean checkPreviousModuleCompleted(User user, List<Module> modules, int currentIndex) {
-    if (currentIndex == 0) return true;
-    Module prev = modules.get(currentIndex - 1);
-    List<Video> prevVideos = videoRepository.findByModuleId(prev.getId());
-    for (Video v : prevVideos) {
-        Optional<UserVideoProgress> p = userVideoProgressRepository.findByUserAndVideo(user, v);
-        if (p.isEmpty() || !p.get().isCompleted()) return false;
-    }
-    return true;
-}
-
     public List<Module> getModulesByCourseForUser(Long courseId, Long userId) {
-    List<Module> modules = moduleRepository.findByCourseId(courseId);
-
-    // Load videos for each module
-    for (Module m : modules) {
-        List<Video> videos = videoRepository.findByModuleId(m.getId());
-        m.getVideos().clear();
-        m.getVideos().addAll(videos);
-    }
-
-    // Fetch the course to reuse existing logic
+    // Fetch the course (modules + videos) to reuse existing logic
     Course course = getCourseByIdWithModulesAndVideos(courseId).orElseThrow();
     applyUserProgressToCourse(course, userId);
 
@@ -1589,47 +1195,45 @@ private boolean checkPreviousModuleCompleted(User user, List<Module> modules, in
 
 // In CourseService.java
 /**
- * Calculate detailed progress for a user's course
+ * Calculate detailed progress for a user's course.
+ * Course totals come from the user_course_progress rollup; the per-module breakdown
+ * from the cached progress bits and unlock graph, plus one query for assessment scores.
  */
 public Map<String, Object> calculateCourseProgress(Long userId, Long courseId) {
     System.out.println("🎯 Calculating progress for user " + userId + ", course " + courseId);
     
-    User user = userRepository.findById(userId)
-            .orElseThrow(() -> new RuntimeException("User not found"));
+    if (!userRepository.existsById(userId)) {
+        throw new RuntimeException("User not found");
+    }
     
-    Course course = getCourseByIdWithModulesAndVideos(courseId)
+    CatalogSnapshot snapshot = catalogSnapshotService.current();
+    CatalogSnapshot.CourseNode course = snapshot.findCourse(courseId)
             .orElseThrow(() -> new RuntimeException("Course not found"));
     
-    int totalVideos = 0;
-    int completedVideos = 0;
-    int totalModules = course.getModules().size();
-    int completedModules = 0;
-    boolean isCourseCompleted = true;
+    boolean coursePurchased = entitlementService.isPurchased(userId, courseId);
+    UserCourseProgress rollup = courseProgressRollupService.get(userId, courseId)
+            .orElseGet(() -> coursePurchased
+                    ? courseProgressRollupService.refresh(userId, courseId)
+                    : new UserCourseProgress(userId, courseId));
+    
+    CourseProgressBits bits = courseProgressBitsService.get(userId, courseId, snapshot);
+    CourseLockState lockState = courseUnlockService.getLockState(userId, courseId, coursePurchased, snapshot);
+    
+    Map<Long, UserAssessmentProgress> assessmentProgress = new HashMap<>();
+    for (UserAssessmentProgress ap : userAssessmentProgressRepository.findByUserIdAndCourseId(userId, courseId)) {
+        assessmentProgress.put(ap.getAssessment().getId(), ap);
+    }
     
     List<Map<String, Object>> moduleProgressList = new ArrayList<>();
     
-    // Calculate progress for each module
-    for (Module module : course.getModules()) {
+    // Per-module breakdown
+    for (CatalogSnapshot.ModuleNode module : course.getModules()) {
         Map<String, Object> moduleProgress = new HashMap<>();
         moduleProgress.put("moduleId", module.getId());
         moduleProgress.put("moduleTitle", module.getTitle());
         
-        // Get all videos in this module
-        List<Video> videos = videoRepository.findByModuleId(module.getId());
-        int moduleTotalVideos = videos.size();
-        int moduleCompletedVideos = 0;
-        
-        // Check video completion
-        for (Video video : videos) {
-            totalVideos++;
-            Optional<UserVideoProgress> videoProgress = userVideoProgressRepository
-                    .findByUserAndVideo(user, video);
-            
-            if (videoProgress.isPresent() && videoProgress.get().isCompleted()) {
-                completedVideos++;
-                moduleCompletedVideos++;
-            }
-        }
+        int moduleTotalVideos = module.getVideos().size();
+        int moduleCompletedVideos = bits.countCompleted(module);
         
         // Calculate module video completion percentage
         double moduleVideoPercent = moduleTotalVideos > 0 ? 
@@ -1639,79 +1243,65 @@ public Map<String, Object> calculateCourseProgress(Long userId, Long courseId) {
         moduleProgress.put("completedVideos", moduleCompletedVideos);
         moduleProgress.put("videoProgress", Math.round(moduleVideoPercent));
         
-        // Check if module is completed (all videos + assessment if exists)
+        // Module is completed when all videos are and its assessment (if any) is passed
         boolean moduleCompleted = moduleCompletedVideos == moduleTotalVideos;
-        
-        // Check assessment completion if module has assessment
-        if (moduleCompleted) {
-            List<Assessment> assessments = assessmentRepository.findByModuleId(module.getId());
-            if (!assessments.isEmpty()) {
-                for (Assessment assessment : assessments) {
-                    Optional<UserAssessmentProgress> assessmentProgress = userAssessmentProgressRepository
-                            .findByUserAndAssessment(user, assessment);
-                    
-                    boolean assessmentPassed = assessmentProgress.isPresent() && 
-                                              assessmentProgress.get().isPassed();
-                    moduleCompleted = moduleCompleted && assessmentPassed;
-                    
-                    moduleProgress.put("assessmentPassed", assessmentPassed);
-                    moduleProgress.put("assessmentScore", assessmentProgress
-                            .map(ap -> ap.getPercentage())
-                            .orElse(0.0));
-                }
+        if (moduleCompleted && !module.getAssessmentIds().isEmpty()) {
+            for (Long assessmentId : module.getAssessmentIds()) {
+                UserAssessmentProgress ap = assessmentProgress.get(assessmentId);
+                boolean assessmentPassed = ap != null && ap.isPassed();
+                moduleCompleted = moduleCompleted && assessmentPassed;
+                
+                moduleProgress.put("assessmentPassed", assessmentPassed);
+                moduleProgress.put("assessmentScore", ap != null && ap.getPercentage() != null ? ap.getPercentage() : 0.0);
             }
         }
         
-        // Check module progress in user_module_progress
-        Optional<UserModuleProgress> userModuleProgress = userModuleProgressRepository
-                .findByUserAndModule(user, module);
-        
-        boolean moduleMarkedCompleted = userModuleProgress
-                .map(UserModuleProgress::isCompleted)
-                .orElse(false);
-        
-        moduleProgress.put("completed", moduleCompleted || moduleMarkedCompleted);
-        moduleProgress.put("unlocked", userModuleProgress
-                .map(UserModuleProgress::isUnlocked)
-                .orElse(false));
-        
-        if (moduleCompleted || moduleMarkedCompleted) {
-            completedModules++;
-        } else {
-            isCourseCompleted = false;
-        }
+        moduleProgress.put("completed", moduleCompleted);
+        moduleProgress.put("unlocked", !lockState.isModuleLocked(module.getIndex()));
         
         moduleProgressList.add(moduleProgress);
     }
     
-    // Calculate overall course progress
+    Map<String, Object> result = courseProgressSummary(rollup, course);
+    result.put("courseDescription", course.getDescription());
+    result.put("purchased", coursePurchased);
+    result.put("moduleProgress", moduleProgressList);
+    
+    System.out.println("📊 Progress Calculation Result:");
+    System.out.println("   ├─ Total Videos: " + result.get("totalVideos"));
+    System.out.println("   ├─ Completed Videos: " + result.get("completedVideos"));
+    System.out.println("   ├─ Progress: " + result.get("progressPercent") + "%");
+    System.out.println("   ├─ Total Modules: " + result.get("totalModules"));
+    System.out.println("   ├─ Completed Modules: " + result.get("completedModules"));
+    System.out.println("   └─ Course Completed: " + result.get("isCompleted"));
+    
+    return result;
+}
+
+/**
+ * Course-level progress of one rollup row, totals from the catalog snapshot
+ */
+private Map<String, Object> courseProgressSummary(UserCourseProgress rollup, CatalogSnapshot.CourseNode course) {
+    int totalVideos = course.getVideoCount();
+    int totalModules = course.getModules().size();
+    int completedVideos = Math.min(rollup.getCompletedVideos(), totalVideos);
+    int completedModules = Math.min(rollup.getCompletedModules(), totalModules);
+    
     double overallProgress = totalVideos > 0 ? 
             ((double) completedVideos / totalVideos) * 100 : 0.0;
     
-    // Check if course is marked as completed in database
-    boolean coursePurchased = purchaseRepository.existsByUserIdAndCourseId(userId, courseId);
-    
     Map<String, Object> result = new HashMap<>();
-    result.put("courseId", courseId);
+    result.put("courseId", course.getId());
     result.put("courseTitle", course.getTitle());
-    result.put("courseDescription", course.getDescription());
-    result.put("purchased", coursePurchased);
     result.put("totalModules", totalModules);
     result.put("completedModules", completedModules);
     result.put("totalVideos", totalVideos);
     result.put("completedVideos", completedVideos);
+    result.put("passedAssessments", rollup.getPassedAssessments());
+    result.put("watchedSeconds", rollup.getWatchedSeconds());
+    result.put("lastActivityAt", rollup.getLastActivityAt());
     result.put("progressPercent", Math.round(overallProgress));
-    result.put("isCompleted", isCourseCompleted);
-    result.put("moduleProgress", moduleProgressList);
-    
-    System.out.println("📊 Progress Calculation Result:");
-    System.out.println("   ├─ Total Videos: " + totalVideos);
-    System.out.println("   ├─ Completed Videos: " + completedVideos);
-    System.out.println("   ├─ Progress: " + Math.round(overallProgress) + "%");
-    System.out.println("   ├─ Total Modules: " + totalModules);
-    System.out.println("   ├─ Completed Modules: " + completedModules);
-    System.out.println("   └─ Course Completed: " + isCourseCompleted);
-    
+    result.put("isCompleted", completedModules == totalModules);
     return result;
 }
 
@@ -1719,27 +1309,26 @@ public Map<String, Object> calculateCourseProgress(Long userId, Long courseId) {
  * Get overall progress for a user across all courses
  */
 public Map<String, Object> getUserOverallProgress(Long userId) {
+    if (!userRepository.existsById(userId)) {
+        throw new RuntimeException("User not found");
+    }
+    return getUserOverallProgress(userId, getUserCourseStats(userId));
+}
+
+/**
+ * Overall progress summed from already loaded per-course stats ({@link #getUserCourseStats})
+ */
+public Map<String, Object> getUserOverallProgress(Long userId, List<Map<String, Object>> courseStats) {
     System.out.println("🎯 Calculating overall progress for user " + userId);
     
-    User user = userRepository.findById(userId)
-            .orElseThrow(() -> new RuntimeException("User not found"));
-    
-    // Get all purchased courses
-    List<Course> purchasedCourses = courseRepository.findBySubscribedUsers_Id(userId);
-    
-    int totalCourses = purchasedCourses.size();
+    int totalCourses = courseStats.size();
     int completedCourses = 0;
     int totalVideos = 0;
     int completedVideos = 0;
     int totalModules = 0;
     int completedModules = 0;
     
-    List<Map<String, Object>> courseProgressList = new ArrayList<>();
-    
-    for (Course course : purchasedCourses) {
-        Map<String, Object> courseProgress = calculateCourseProgress(userId, course.getId());
-        courseProgressList.add(courseProgress);
-        
+    for (Map<String, Object> courseProgress : courseStats) {
         totalVideos += (int) courseProgress.get("totalVideos");
         completedVideos += (int) courseProgress.get("completedVideos");
         totalModules += (int) courseProgress.get("totalModules");
@@ -1772,7 +1361,7 @@ public Map<String, Object> getUserOverallProgress(Long userId) {
     result.put("overallVideoProgress", Math.round(overallVideoProgress));
     result.put("overallModuleProgress", Math.round(overallModuleProgress));
     result.put("overallCourseProgress", Math.round(overallCourseProgress));
-    result.put("courseProgress", courseProgressList);
+    result.put("courseProgress", courseStats);
     
     System.out.println("📊 Overall Progress Summary:");
     System.out.println("   ├─ Total Courses: " + totalCourses);
@@ -1785,79 +1374,16 @@ public Map<String, Object> getUserOverallProgress(Long userId) {
     return result;
 }
 
+/**
+ * Per-course progress of every purchased course, read from the rollup table
+ */
 public List<Map<String, Object>> getUserCourseStats(Long userId) {
     List<Map<String, Object>> courseStats = new ArrayList<>();
+    CatalogSnapshot snapshot = catalogSnapshotService.current();
     
-    // Get user's enrolled courses
-    List<Course> enrolledCourses = courseRepository.findBySubscribedUsers_Id(userId);
-    
-    // Get user entity
-    Optional<User> userOpt = userRepository.findById(userId);
-    if (userOpt.isEmpty()) {
-        return courseStats;
-    }
-    User user = userOpt.get();
-    
-    for (Course course : enrolledCourses) {
-        Map<String, Object> stat = new HashMap<>();
-        
-        // Basic course info
-        stat.put("courseId", course.getId());
-        stat.put("courseTitle", course.getTitle());
-        
-        // Get total videos in course
-        Long totalVideos = videoRepository.countByCourseId(course.getId());
-        
-        // Get completed videos from UserVideoProgress
-        int completedVideos = 0;
-        
-        // Get all modules in course
-        List<Module> modules = moduleRepository.findByCourseId(course.getId());
-        
-        for (Module module : modules) {
-            // Get all videos in module
-            List<Video> videos = videoRepository.findByModuleId(module.getId());
-            
-            for (Video video : videos) {
-                Optional<UserVideoProgress> videoProgress = userVideoProgressRepository
-                    .findByUserAndVideo(user, video);
-                
-                if (videoProgress.isPresent() && videoProgress.get().isCompleted()) {
-                    completedVideos++;
-                }
-            }
-        }
-        
-        // Get total and completed modules
-        Long totalModules = moduleRepository.countByCourseId(course.getId());
-        
-        int completedModules = 0;
-        for (Module module : modules) {
-            Optional<UserModuleProgress> moduleProgress = userModuleProgressRepository
-                .findByUserAndModule(user, module);
-            
-            if (moduleProgress.isPresent() && moduleProgress.get().isCompleted()) {
-                completedModules++;
-            }
-        }
-        
-        // Calculate progress percentage
-        int progressPercent = 0;
-        if (totalVideos > 0) {
-            progressPercent = (int) ((completedVideos * 100) / totalVideos);
-        }
-        
-        boolean isCompleted = progressPercent >= 100;
-        
-        // Add to stats
-        stat.put("totalVideos", totalVideos);
-        stat.put("completedVideos", completedVideos);
-        stat.put("totalModules", totalModules);
-        stat.put("completedModules", completedModules);
-        stat.put("progressPercent", progressPercent);
-        stat.put("isCompleted", isCompleted);
-        
-        courseStats.add(stat);
+    for (UserCourseProgress rollup : courseProgressRollupService.getPurchased(userId)) {
+        snapshot.findCourse(rollup.getCourseId())
+                .ifPresent(course -> courseStats.add(courseProgressSummary(rollup, course)));
     }
     
     return courseStats;
@@ -0,0 +1,137 @@
+package com.example.cdaxVideo.Service;
+
+import java.util.List;
+
+/**
+ * The unlock rules of one course, compiled once per catalog version into a
+ * prerequisite DAG over module, video and assessment nodes:
+ * <ul>
+ *   <li>module 0 is open on purchase; module k opens when module k-1's assessment
+ *       is passed (score &ge; {@value #PASS_PERCENT}%), or, when k-1 has no
+ *       assessment, when all of k-1's videos are completed</li>
+ *   <li>the first {@value #FREE_VIDEOS} videos of module 0 and the first video of
+ *       every other module open with their module</li>
+ *   <li>any other video opens when the video before it is completed</li>
+ *   <li>a module's assessment opens when all of the module's videos are completed</li>
+ * </ul>
+ * A persisted unlocked row (module, video or assessment) also opens its node, so
+ * manual unlocks keep working. Edges only point to lower module indexes / video
+ * ordinals, so modules in index order with their videos in ordinal order is a
+ * topological order and {@link #evaluate} is one pass over the nodes with no queries.
+ */
+public final class CourseUnlockGraph {
+
+    public static final int FREE_VIDEOS = 3;
+    public static final double PASS_PERCENT = 70.0;
+
+    private final long catalogVersion;
+    private final Long courseId;
+    private final long[] moduleIds;
+    private final long[] videoIds;
+    private final int[] moduleFirst;        // module index -> first video ordinal
+    private final int[] moduleEnd;          // module index -> end video ordinal (exclusive)
+    private final boolean[] hasAssessment;  // module index -> gate to the next module is its assessment
+    private final int[] videoPrereq;        // ordinal -> ordinal whose completion opens it, -1 if it opens with its module
+
+    private CourseUnlockGraph(long catalogVersion, Long courseId, long[] moduleIds, long[] videoIds,
+                              int[] moduleFirst, int[] moduleEnd, boolean[] hasAssessment, int[] videoPrereq) {
+        this.catalogVersion = catalogVersion;
+        this.courseId = courseId;
+        this.moduleIds = moduleIds;
+        this.videoIds = videoIds;
+        this.moduleFirst = moduleFirst;
+        this.moduleEnd = moduleEnd;
+        this.hasAssessment = hasAssessment;
+        this.videoPrereq = videoPrereq;
+    }
+
+    public static CourseUnlockGraph compile(long catalogVersion, CatalogSnapshot.CourseNode course) {
+        List<CatalogSnapshot.ModuleNode> modules = course.getModules();
+        int moduleCount = modules.size();
+        int videoCount = course.getVideoCount();
+
+        long[] moduleIds = new long[moduleCount];
+        long[] videoIds = new long[videoCount];
+        int[] moduleFirst = new int[moduleCount];
+        int[] moduleEnd = new int[moduleCount];
+        boolean[] hasAssessment = new boolean[moduleCount];
+        int[] videoPrereq = new int[videoCount];
+
+        for (int m = 0; m < moduleCount; m++) {
+            CatalogSnapshot.ModuleNode module = modules.get(m);
+            moduleIds[m] = module.getId();
+            moduleFirst[m] = module.getFirstCourseOrdinal();
+            moduleEnd[m] = module.getEndCourseOrdinal();
+            hasAssessment[m] = !module.getAssessmentIds().isEmpty();
+
+            int freeInModule = m == 0 ? FREE_VIDEOS : 1;
+            for (CatalogSnapshot.VideoNode video : module.getVideos()) {
+                int ordinal = video.getCourseOrdinal();
+                videoIds[ordinal] = video.getId();
+                videoPrereq[ordinal] = video.getIndex() < freeInModule ? -1 : ordinal - 1;
+            }
+        }
+        return new CourseUnlockGraph(catalogVersion, course.getId(), moduleIds, videoIds,
+                moduleFirst, moduleEnd, hasAssessment, videoPrereq);
+    }
+
+    /** Lock state of the whole course for one user; {@code bits} is ignored when not purchased. */
+    public CourseLockState evaluate(CourseProgressBits bits, boolean purchased) {
+        int moduleCount = moduleIds.length;
+        int videoCount = videoIds.length;
+        boolean[] moduleLocked = new boolean[moduleCount];
+        boolean[] assessmentLocked = new boolean[moduleCount];
+        boolean[] videoLocked = new boolean[videoCount];
+        boolean[] videoCompleted = new boolean[videoCount];
+
+        if (!purchased || bits == null) {
+            // Preview: module 0 visible, only its first video playable
+            for (int m = 0; m < moduleCount; m++) {
+                moduleLocked[m] = m > 0;
+                assessmentLocked[m] = true;
+            }
+            for (int v = 0; v < videoCount; v++) {
+                videoLocked[v] = !(moduleCount > 0 && v == moduleFirst[0] && v < moduleEnd[0]);
+            }
+            return new CourseLockState(catalogVersion, purchased, moduleLocked, assessmentLocked, videoLocked, videoCompleted);
+        }
+
+        boolean previousDone = true;
+        for (int m = 0; m < moduleCount; m++) {
+            boolean open = m == 0 || previousDone || bits.isModuleRowUnlocked(m);
+            moduleLocked[m] = !open;
+
+            boolean allCompleted = true;
+            for (int v = moduleFirst[m]; v < moduleEnd[m]; v++) {
+                boolean completed = bits.isCompleted(v);
+                videoCompleted[v] = completed;
+                allCompleted &= completed;
+
+                int prereq = videoPrereq[v];
+                boolean byRule = open && (prereq < 0 || videoCompleted[prereq]);
+                videoLocked[v] = !(byRule || bits.isUnlocked(v));
+            }
+
+            assessmentLocked[m] = !hasAssessment[m]
+                    || !((open && allCompleted) || bits.isAssessmentRowUnlocked(m));
+            previousDone = hasAssessment[m] ? bits.isAssessmentPassed(m) : open && allCompleted;
+        }
+        return new CourseLockState(catalogVersion, true, moduleLocked, assessmentLocked, videoLocked, videoCompleted);
+    }
+
+    /** Videos a purchase opens before any progress exists (module 0's free videos), as course ordinals. */
+    public int getInitialVideoCount() {
+        if (moduleIds.length == 0) return 0;
+        return Math.min(FREE_VIDEOS, moduleEnd[0] - moduleFirst[0]);
+    }
+
+    public long getCatalogVersion() { return catalogVersion; }
+    public Long getCourseId() { return courseId; }
+    public int getModuleCount() { return moduleIds.length; }
+    public int getVideoCount() { return videoIds.length; }
+    public long getModuleId(int moduleIndex) { return moduleIds[moduleIndex]; }
+    public long getVideoId(int ordinal) { return videoIds[ordinal]; }
+    public int getModuleFirstOrdinal(int moduleIndex) { return moduleFirst[moduleIndex]; }
+    public int getModuleEndOrdinal(int moduleIndex) { return moduleEnd[moduleIndex]; }
+    public boolean hasAssessment(int moduleIndex) { return hasAssessment[moduleIndex]; }
+}
@@ -0,0 +1,102 @@
+package com.example.cdaxVideo.Service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single source of lock/unlock state. Holds one {@link CourseUnlockGraph} per
+ * course, compiled on first use against the current catalog version and dropped
+ * on {@link CatalogChangedEvent}; a user's lock map is then one pass of that graph
+ * over their cached {@link CourseProgressBits}.
+ *
+ * {@code progress.unlock.mode} picks what the write paths persist:
+ * <ul>
+ *   <li>{@code materialized} - every rule-driven unlock is also written as an
+ *       unlocked progress row (the historical behaviour)</li>
+ *   <li>{@code derived} - only real events are written (completions, passes,
+ *       attempts, manual unlocks); everything else the graph derives from the
+ *       completion frontier</li>
+ * </ul>
+ * The graph ORs persisted unlock rows into its own result, so both modes read
+ * the same way and can be switched without a data migration
+ * ({@link UnlockRowMigration} only removes rows derived mode no longer needs).
+ */
+@Service
+public class CourseUnlockService {
+
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final CourseProgressBitsService courseProgressBitsService;
+    private final EntitlementService entitlementService;
+    private final boolean derivedMode;
+
+    private final ConcurrentHashMap<Long, CourseUnlockGraph> graphs = new ConcurrentHashMap<>();
+
+    public CourseUnlockService(CatalogSnapshotService catalogSnapshotService,
+                               CourseProgressBitsService courseProgressBitsService,
+                               EntitlementService entitlementService,
+                               @Value("${progress.unlock.mode:materialized}") String unlockMode) {
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.courseProgressBitsService = courseProgressBitsService;
+        this.entitlementService = entitlementService;
+        this.derivedMode = "derived".equalsIgnoreCase(unlockMode.trim());
+    }
+
+    /** True when rule-driven unlocks are computed, not written. */
+    public boolean isDerivedMode() {
+        return derivedMode;
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        graphs.clear();
+    }
+
+    /** Compiled rules of a course for the given snapshot, empty if the course is not in it. */
+    public Optional<CourseUnlockGraph> getGraph(Long courseId, CatalogSnapshot snapshot) {
+        CourseUnlockGraph graph = graphs.get(courseId);
+        if (graph != null && graph.getCatalogVersion() == snapshot.getVersion()) {
+            return Optional.of(graph);
+        }
+        return snapshot.findCourse(courseId).map(course -> {
+            CourseUnlockGraph compiled = CourseUnlockGraph.compile(snapshot.getVersion(), course);
+            // Never let a request on an older snapshot replace a newer graph
+            graphs.merge(courseId, compiled,
+                    (old, fresh) -> old.getCatalogVersion() > fresh.getCatalogVersion() ? old : fresh);
+            return compiled;
+        });
+    }
+
+    public CourseLockState getLockState(Long userId, Long courseId, boolean purchased) {
+        return getLockState(userId, courseId, purchased, catalogSnapshotService.current());
+    }
+
+    /** Lock map of the course for the user, indexed like the snapshot's modules and video ordinals. */
+    public CourseLockState getLockState(Long userId, Long courseId, boolean purchased, CatalogSnapshot snapshot) {
+        CourseUnlockGraph graph = getGraph(courseId, snapshot)
+                .orElseThrow(() -> new RuntimeException("Course not found"));
+        CourseProgressBits bits = purchased ? courseProgressBitsService.get(userId, courseId, snapshot) : null;
+        return graph.evaluate(bits, purchased);
+    }
+
+    /** Whether the user can play the video right now (false for unknown videos). */
+    public boolean isVideoUnlocked(Long userId, Long videoId) {
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        return snapshot.findVideo(videoId).map(video -> {
+            boolean purchased = entitlementService.isPurchased(userId, video.getCourseId());
+            return !getLockState(userId, video.getCourseId(), purchased, snapshot).isVideoLocked(video.getCourseOrdinal());
+        }).orElse(false);
+    }
+
+    /** Whether the user can open the assessment right now (false for unknown assessments). */
+    public boolean isAssessmentUnlocked(Long userId, Long assessmentId) {
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        return snapshot.findModuleForAssessment(assessmentId).map(module -> {
+            boolean purchased = entitlementService.isPurchased(userId, module.getCourseId());
+            return !getLockState(userId, module.getCourseId(), purchased, snapshot).isAssessmentLocked(module.getIndex());
+        }).orElse(false);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.cdaxVideo.Service;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * Builds strong ETags for course endpoints and evaluates If-None-Match.
+ *
+ * Catalog-only responses are tagged with the catalog version; per-user responses
+ * add the user's progress version. Both include a boot id because the versions
+ * are counted in memory and restart from zero.
+ */
+@Service
+public class ETagService {
+
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final UserProgressVersionService userProgressVersionService;
+
+    public ETagService(CatalogSnapshotService catalogSnapshotService,
+                       UserProgressVersionService userProgressVersionService) {
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.userProgressVersionService = userProgressVersionService;
+    }
+
+    /** Tag for responses that depend only on the catalog. */
+    public String catalogETag() {
+        return "\"c" + bootId + "-" + catalogSnapshotService.current().getVersion() + "\"";
+    }
+
+    /** Tag for responses that depend on the catalog and on one user's progress. */
+    public String userETag(Long userId) {
+        return "\"u" + bootId + "-" + catalogSnapshotService.current().getVersion()
+                + "-" + userId + "-" + userProgressVersionService.getVersion(userId) + "\"";
+    }
+
+    /** True when the If-None-Match header lists this tag (weak comparison, per RFC 9110) or "*". */
+    public boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
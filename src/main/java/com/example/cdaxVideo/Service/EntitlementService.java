@@ -0,0 +1,98 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Repository.UserCoursePurchaseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * "Has the user bought this course?" answered from one set per user.
+ *
+ * The user's purchased course ids are loaded with one query and cached for
+ * {@code entitlements.cache-ttl-ms}; a listing then tests every course against the
+ * set instead of running an exists query per course. Purchases call
+ * {@link #invalidate(Long)}, which drops the entry after commit, so a buyer sees the
+ * course at once. A load that overlaps an invalidation is returned but not cached.
+ */
+@Service
+public class EntitlementService {
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final UserCoursePurchaseRepository userCoursePurchaseRepository;
+    private final long ttlNanos;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private record Entry(PurchasedCourseIds ids, long loadedAtNanos) {}
+
+    // userId -> purchased ids, least recently used evicted first
+    private final Map<Long, Entry> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public EntitlementService(UserCoursePurchaseRepository userCoursePurchaseRepository,
+                              @Value("${entitlements.cache-ttl-ms:30000}") long ttlMs) {
+        this.userCoursePurchaseRepository = userCoursePurchaseRepository;
+        this.ttlNanos = ttlMs * 1_000_000L;
+    }
+
+    /** Purchased course ids of the user (empty for a null user). */
+    public PurchasedCourseIds getPurchasedCourseIds(Long userId) {
+        if (userId == null) return PurchasedCourseIds.EMPTY;
+
+        Entry cached;
+        synchronized (cache) {
+            cached = cache.get(userId);
+        }
+        if (cached != null && System.nanoTime() - cached.loadedAtNanos() < ttlNanos) {
+            return cached.ids();
+        }
+
+        long invalidationsBefore = invalidations.get();
+        PurchasedCourseIds ids = load(userId);
+        if (invalidations.get() == invalidationsBefore) {
+            synchronized (cache) {
+                cache.put(userId, new Entry(ids, System.nanoTime()));
+            }
+        }
+        return ids;
+    }
+
+    public boolean isPurchased(Long userId, Long courseId) {
+        return getPurchasedCourseIds(userId).contains(courseId);
+    }
+
+    /** Straight from the database, for decisions that must not act on a stale set (checkout). */
+    public PurchasedCourseIds load(Long userId) {
+        if (userId == null) return PurchasedCourseIds.EMPTY;
+        return PurchasedCourseIds.of(userCoursePurchaseRepository.findCourseIdsByUserId(userId));
+    }
+
+    /** Drop the user's cached set now and again once the current transaction commits. */
+    public void invalidate(Long userId) {
+        evict(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userId);
+                }
+            });
+        }
+    }
+
+    private void evict(Long userId) {
+        invalidations.incrementAndGet();
+        synchronized (cache) {
+            cache.remove(userId);
+        }
+    }
+}
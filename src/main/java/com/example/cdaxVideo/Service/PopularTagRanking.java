@@ -0,0 +1,186 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Repository.CourseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Tag usage counts kept in rank order, so the most used tags are read
+ * without counting anything.
+ *
+ * Counts live in a map and a sorted set ordered by (count desc, tag asc). When
+ * a course is saved only the difference between its old and new tag lists is
+ * applied (O(changed tags * log T)); reading the top K walks the first K
+ * entries of the set. A scheduled recount rebuilds everything from
+ * course_tags in one query to repair drift from writes that bypass
+ * {@link CourseService#saveCourse}, such as bulk imports.
+ */
+@Service
+public class PopularTagRanking {
+    private static final Logger logger = LoggerFactory.getLogger(PopularTagRanking.class);
+
+    private final CourseRepository courseRepository;
+    private final TransactionTemplate readOnlyTx;
+
+    // What is currently counted for each course, to diff against on save
+    private final Map<Long, List<String>> tagsByCourse = new HashMap<>();
+    private final Map<String, TagCount> counts = new HashMap<>();
+    private final TreeSet<TagCount> ranking = new TreeSet<>();
+    private boolean loaded = false;
+
+    public PopularTagRanking(CourseRepository courseRepository, PlatformTransactionManager transactionManager) {
+        this.courseRepository = courseRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    private static final class TagCount implements Comparable<TagCount> {
+        final String tag;
+        final int count;
+
+        TagCount(String tag, int count) {
+            this.tag = tag;
+            this.count = count;
+        }
+
+        @Override
+        public int compareTo(TagCount other) {
+            int c = Integer.compare(other.count, count);
+            return c != 0 ? c : tag.compareTo(other.tag);
+        }
+    }
+
+    /** The {@code k} most used tags, most used first. */
+    public synchronized List<String> getTopTags(int k) {
+        ensureLoaded();
+        List<String> top = new ArrayList<>(Math.min(k, ranking.size()));
+        for (TagCount tc : ranking) {
+            if (top.size() >= k) break;
+            top.add(tc.tag);
+        }
+        return top;
+    }
+
+    public synchronized int getCount(String tag) {
+        ensureLoaded();
+        TagCount tc = counts.get(tag);
+        return tc != null ? tc.count : 0;
+    }
+
+    /**
+     * Record a course's current tags. Inside a transaction the update is applied
+     * after commit, so a rolled-back save never moves the counts.
+     */
+    public void courseTagsChanged(Long courseId, List<String> tags) {
+        if (courseId == null) return;
+        List<String> copy = tags != null ? new ArrayList<>(tags) : new ArrayList<>();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyCourseTags(courseId, copy);
+                }
+            });
+        } else {
+            applyCourseTags(courseId, copy);
+        }
+    }
+
+    private synchronized void applyCourseTags(Long courseId, List<String> tags) {
+        // Not loaded yet: the first read recounts from the database, which already has this save
+        if (!loaded) return;
+        List<String> previous = tagsByCourse.getOrDefault(courseId, Collections.emptyList());
+        for (String tag : previous) {
+            adjust(tag, -1);
+        }
+        for (String tag : tags) {
+            adjust(tag, +1);
+        }
+        if (tags.isEmpty()) {
+            tagsByCourse.remove(courseId);
+        } else {
+            tagsByCourse.put(courseId, tags);
+        }
+    }
+
+    private void adjust(String tag, int delta) {
+        if (tag == null) return;
+        TagCount old = counts.remove(tag);
+        if (old != null) ranking.remove(old);
+        int count = (old != null ? old.count : 0) + delta;
+        if (count > 0) {
+            TagCount updated = new TagCount(tag, count);
+            counts.put(tag, updated);
+            ranking.add(updated);
+        }
+    }
+
+    /**
+     * Rebuild all counts from course_tags. Runs on a schedule and can be called
+     * directly after an import.
+     */
+    @Scheduled(fixedDelayString = "${catalog.tags.recount-interval-ms:3600000}",
+               initialDelayString = "${catalog.tags.recount-interval-ms:3600000}")
+    public void recount() {
+        try {
+            List<Object[]> pairs = readOnlyTx.execute(status -> courseRepository.findAllCourseTagPairs());
+            rebuildFrom(pairs != null ? pairs : Collections.emptyList());
+        } catch (Exception e) {
+            logger.error("❌ Tag recount failed", e);
+        }
+    }
+
+    private synchronized void rebuildFrom(List<Object[]> pairs) {
+        Map<Long, List<String>> freshTags = new HashMap<>();
+        Map<String, Integer> freshCounts = new HashMap<>();
+        for (Object[] row : pairs) {
+            Long courseId = (Long) row[0];
+            String tag = (String) row[1];
+            if (tag == null) continue;
+            freshTags.computeIfAbsent(courseId, id -> new ArrayList<>()).add(tag);
+            freshCounts.merge(tag, 1, Integer::sum);
+        }
+
+        int drift = 0;
+        if (loaded) {
+            Set<String> all = new HashSet<>(counts.keySet());
+            all.addAll(freshCounts.keySet());
+            for (String tag : all) {
+                TagCount tc = counts.get(tag);
+                if ((tc != null ? tc.count : 0) != freshCounts.getOrDefault(tag, 0)) drift++;
+            }
+        }
+
+        tagsByCourse.clear();
+        tagsByCourse.putAll(freshTags);
+        counts.clear();
+        ranking.clear();
+        for (Map.Entry<String, Integer> e : freshCounts.entrySet()) {
+            TagCount tc = new TagCount(e.getKey(), e.getValue());
+            counts.put(tc.tag, tc);
+            ranking.add(tc);
+        }
+
+        if (drift > 0) {
+            logger.warn("⚠️ Tag recount corrected {} drifted tag counts", drift);
+        } else {
+            logger.info("🏷️ Tag counts recounted ({} tags over {} courses)", counts.size(), tagsByCourse.size());
+        }
+        loaded = true;
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            List<Object[]> pairs = readOnlyTx.execute(status -> courseRepository.findAllCourseTagPairs());
+            rebuildFrom(pairs != null ? pairs : Collections.emptyList());
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.cdaxVideo.Service;
+
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Single-statement upserts for the per-user progress tables (user_video_progress,
+ * user_module_progress, user_assessment_progress, user_streaks and the
+ * user_course_progress rollup).
+ *
+ * Each write is one INSERT that turns into an UPDATE of the existing row on its
+ * unique key: {@code ON DUPLICATE KEY UPDATE} on MySQL/MariaDB (and H2 in MySQL
+ * mode), {@code ON CONFLICT (...) DO UPDATE} on PostgreSQL. Concurrent first writes
+ * of the same row therefore serialize on the key instead of failing with a
+ * constraint violation, and there is no read before the write.
+ *
+ * The update parts only use values of the existing row and parameters, and assign
+ * a column only after every expression that reads it: MySQL evaluates assignments
+ * left to right on the new values, PostgreSQL on the old ones, and both then agree.
+ *
+ * Pending JPA changes are flushed before each statement, so they reach the row first.
+ * The statements bypass the entity listener, so each one reports the flags it set to
+ * the cached progress bits and bumps the user's progress version (both after commit);
+ * streak writes mark the day in the cached streak calendar.
+ */
+@Service
+public class ProgressUpsertService {
+    private static final Logger logger = LoggerFactory.getLogger(ProgressUpsertService.class);
+
+    /** Watch columns of one user_video_progress row. */
+    public record WatchState(long userId, long videoId, int watchedSeconds, int lastPositionSeconds,
+                             int forwardJumpsCount, byte[] watchedIntervals) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final CourseProgressBitsService courseProgressBitsService;
+    private final UserProgressVersionService userProgressVersionService;
+    private final StreakCalendarService streakCalendarService;
+
+    private volatile Statements statements;
+
+    public ProgressUpsertService(JdbcTemplate jdbcTemplate,
+                                 EntityManager entityManager,
+                                 CourseProgressBitsService courseProgressBitsService,
+                                 UserProgressVersionService userProgressVersionService,
+                                 StreakCalendarService streakCalendarService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.courseProgressBitsService = courseProgressBitsService;
+        this.userProgressVersionService = userProgressVersionService;
+        this.streakCalendarService = streakCalendarService;
+    }
+
+    // ========== user_video_progress ==========
+
+    /** Make sure the row exists (an empty, locked one if not); an existing row is left as is. */
+    public void ensureVideoRow(Long userId, Long videoId) {
+        flushPending();
+        jdbcTemplate.update(statements().videoRow, userId, videoId);
+        courseProgressBitsService.raiseVideoProgress(userId, videoId, false, false);
+        userProgressVersionService.bump(userId);
+    }
+
+    public void unlockVideo(Long userId, Long videoId) {
+        Timestamp now = now();
+        flushPending();
+        jdbcTemplate.update(statements().videoUnlock, userId, videoId, now, now);
+        courseProgressBitsService.raiseVideoProgress(userId, videoId, true, false);
+        userProgressVersionService.bump(userId);
+    }
+
+    /** Completed (and unlocked); the first completion time is kept. */
+    public void completeVideo(Long userId, Long videoId) {
+        Timestamp now = now();
+        flushPending();
+        jdbcTemplate.update(statements().videoComplete, userId, videoId, now, now);
+        courseProgressBitsService.raiseVideoProgress(userId, videoId, true, true);
+        userProgressVersionService.bump(userId);
+    }
+
+    /** Write the watch columns of several rows in one batch; flags are never touched. */
+    public void writeWatchStates(List<WatchState> states) {
+        if (states.isEmpty()) return;
+        Timestamp now = now();
+        flushPending();
+        jdbcTemplate.batchUpdate(statements().watchState, states, states.size(), (ps, s) -> {
+            ps.setLong(1, s.userId());
+            ps.setLong(2, s.videoId());
+            ps.setInt(3, s.watchedSeconds());
+            ps.setInt(4, s.lastPositionSeconds());
+            ps.setInt(5, s.forwardJumpsCount());
+            ps.setBytes(6, s.watchedIntervals());
+            ps.setTimestamp(7, now);
+            ps.setInt(8, s.watchedSeconds());
+            ps.setInt(9, s.lastPositionSeconds());
+            ps.setInt(10, s.forwardJumpsCount());
+            ps.setBytes(11, s.watchedIntervals());
+            ps.setTimestamp(12, now);
+        });
+        Set<Long> users = new HashSet<>();
+        for (WatchState s : states) {
+            courseProgressBitsService.raiseVideoProgress(s.userId(), s.videoId(), false, false);
+            users.add(s.userId());
+        }
+        for (Long userId : users) {
+            userProgressVersionService.bump(userId);
+        }
+    }
+
+    // ========== user_module_progress ==========
+
+    public void unlockModule(Long userId, Long moduleId) {
+        Timestamp now = now();
+        flushPending();
+        jdbcTemplate.update(statements().moduleUnlock, userId, moduleId, now, now);
+        courseProgressBitsService.raiseModuleProgress(userId, moduleId, true, false);
+        userProgressVersionService.bump(userId);
+    }
+
+    /** Assessment passed, which completes the module. */
+    public void passModule(Long userId, Long moduleId) {
+        Timestamp now = now();
+        flushPending();
+        jdbcTemplate.update(statements().modulePass, userId, moduleId, now, now, now, now);
+        courseProgressBitsService.raiseModuleProgress(userId, moduleId, false, true);
+        userProgressVersionService.bump(userId);
+    }
+
+    // ========== user_assessment_progress ==========
+
+    public void unlockAssessment(Long userId, Long assessmentId) {
+        Timestamp now = now();
+        flushPending();
+        jdbcTemplate.update(statements().assessmentUnlock, userId, assessmentId, now, now);
+        courseProgressBitsService.raiseAssessmentProgress(userId, assessmentId, true, false);
+        userProgressVersionService.bump(userId);
+    }
+
+    /**
+     * One submitted attempt: the attempt count goes up by one and the result replaces the
+     * previous one; the first pass time is kept.
+     */
+    public void recordAssessmentAttempt(Long userId, Long assessmentId, int obtainedMarks, int totalMarks,
+                                        double percentage, boolean passed) {
+        Timestamp now = now();
+        Timestamp passedOn = passed ? now : null;
+        flushPending();
+        jdbcTemplate.update(statements().assessmentAttempt,
+                userId, assessmentId, passed, passedOn, now, now, obtainedMarks, totalMarks, percentage,
+                passed, passedOn, now, now, obtainedMarks, totalMarks, percentage);
+        // passed may have gone back to false, so the module flags are recounted from the row
+        courseProgressBitsService.recordAssessmentProgress(userId, assessmentId, true, true, passed);
+        userProgressVersionService.bump(userId);
+    }
+
+    // ========== user_streaks ==========
+
+    /**
+     * Add watch time (and a completion) of a video to the user's streak day. A new day
+     * takes the given course totals; an existing one keeps its totals unless they were
+     * never set. The video's seconds are appended to the day's per-video breakdown
+     * ({@link StreakVideoDetails}).
+     *
+     * The day's row usually exists, so this is one atomic UPDATE of the counters; only
+     * the first write of a day falls back to the upsert (which on MySQL also takes an
+     * auto-increment value each time, even when it updates).
+     */
+    public void addStreakActivity(Long userId, Long courseId, LocalDate day, Long videoId, int watchedSeconds,
+                                  boolean completed, int totalAvailableSeconds, int totalVideosCount) {
+        Timestamp now = now();
+        String detail = StreakVideoDetails.record(videoId, watchedSeconds, completed);
+        Date streakDate = Date.valueOf(day);
+        int completedDelta = completed ? 1 : 0;
+        flushPending();
+        int updated = jdbcTemplate.update(statements().streakIncrement,
+                watchedSeconds, totalAvailableSeconds, totalVideosCount, totalAvailableSeconds,
+                watchedSeconds, completedDelta, now, detail, userId, courseId, streakDate);
+        if (updated == 0) {
+            double percentage = totalAvailableSeconds > 0 ? watchedSeconds * 100.0 / totalAvailableSeconds : 0.0;
+            jdbcTemplate.update(statements().streakActivity,
+                    userId, courseId, streakDate, watchedSeconds, totalAvailableSeconds, percentage,
+                    completedDelta, totalVideosCount, detail, now, now,
+                    watchedSeconds, totalAvailableSeconds, totalVideosCount, totalAvailableSeconds,
+                    watchedSeconds, completedDelta, now, detail);
+        }
+        streakCalendarService.markActive(userId, courseId, day);
+    }
+
+    // ========== user_course_progress ==========
+
+    /**
+     * Write the recounted rollup of a (user, course); the rollup has no cached copy to
+     * notify. last_activity_at only moves forward.
+     */
+    public void writeCourseRollup(Long userId, Long courseId, int completedVideos, int completedModules,
+                                  int passedAssessments, long watchedSeconds, LocalDateTime lastActivityAt) {
+        Timestamp now = now();
+        SqlParameterValue lastActivity = new SqlParameterValue(Types.TIMESTAMP,
+                lastActivityAt != null ? Timestamp.valueOf(lastActivityAt) : null);
+        flushPending();
+        jdbcTemplate.update(statements().courseRollup,
+                userId, courseId, completedVideos, completedModules, passedAssessments, watchedSeconds,
+                lastActivity, now,
+                completedVideos, completedModules, passedAssessments, watchedSeconds,
+                lastActivity, lastActivity, now);
+    }
+
+    // ========== SQL ==========
+
+    private void flushPending() {
+        if (TransactionSynchronizationManager.isActualTransactionActive() && entityManager.isJoinedToTransaction()) {
+            entityManager.flush();
+        }
+    }
+
+    private static Timestamp now() {
+        return Timestamp.valueOf(LocalDateTime.now());
+    }
+
+    private Statements statements() {
+        Statements s = statements;
+        if (s == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) con ->
+                    con.getMetaData().getDatabaseProductName());
+            boolean postgres = product != null && product.toLowerCase().contains("postgres");
+            s = new Statements(postgres);
+            statements = s;
+            logger.info("🗄️ Progress upserts use {} syntax ({})", postgres ? "ON CONFLICT" : "ON DUPLICATE KEY", product);
+        }
+        return s;
+    }
+
+    // The statements in the connected database's syntax
+    private static final class Statements {
+        final String videoRow;
+        final String videoUnlock;
+        final String videoComplete;
+        final String watchState;
+        final String moduleUnlock;
+        final String modulePass;
+        final String assessmentUnlock;
+        final String assessmentAttempt;
+        final String streakActivity;
+        final String streakIncrement;
+        final String courseRollup;
+
+        Statements(boolean postgres) {
+            String videoInsert = "INSERT INTO user_video_progress (user_id, video_id, unlocked, completed, " +
+                    "manually_completed, watched_seconds, last_position_seconds, forward_jumps_count";
+            videoRow = upsert(postgres, "user_id, video_id",
+                    videoInsert + ") VALUES (?, ?, false, false, false, 0, 0, 0)",
+                    "user_id = user_video_progress.user_id");
+            videoUnlock = upsert(postgres, "user_id, video_id",
+                    videoInsert + ", unlocked_on) VALUES (?, ?, true, false, false, 0, 0, 0, ?)",
+                    "unlocked = true, unlocked_on = COALESCE(user_video_progress.unlocked_on, ?)");
+            videoComplete = upsert(postgres, "user_id, video_id",
+                    videoInsert + ", completed_on) VALUES (?, ?, true, true, false, 0, 0, 0, ?)",
+                    "unlocked = true, completed = true, " +
+                    "completed_on = COALESCE(user_video_progress.completed_on, ?)");
+            watchState = upsert(postgres, "user_id, video_id",
+                    videoInsert + ", watched_intervals, last_updated_at) " +
+                    "VALUES (?, ?, false, false, false, ?, ?, ?, ?, ?)",
+                    "watched_seconds = ?, last_position_seconds = ?, forward_jumps_count = ?, " +
+                    "watched_intervals = ?, last_updated_at = ?");
+
+            moduleUnlock = upsert(postgres, "user_id, module_id",
+                    "INSERT INTO user_module_progress (user_id, module_id, unlocked, assessment_passed, completed, " +
+                    "unlocked_on) VALUES (?, ?, true, false, false, ?)",
+                    "unlocked = true, unlocked_on = COALESCE(user_module_progress.unlocked_on, ?)");
+            modulePass = upsert(postgres, "user_id, module_id",
+                    "INSERT INTO user_module_progress (user_id, module_id, unlocked, assessment_passed, completed, " +
+                    "completed_on, assessment_passed_on) VALUES (?, ?, false, true, true, ?, ?)",
+                    "assessment_passed = true, completed = true, completed_on = ?, assessment_passed_on = ?");
+
+            assessmentUnlock = upsert(postgres, "user_id, assessment_id",
+                    "INSERT INTO user_assessment_progress (user_id, assessment_id, attempts, passed, unlocked, " +
+                    "unlocked_on) VALUES (?, ?, 0, false, true, ?)",
+                    "unlocked = true, unlocked_on = COALESCE(user_assessment_progress.unlocked_on, ?)");
+            assessmentAttempt = upsert(postgres, "user_id, assessment_id",
+                    "INSERT INTO user_assessment_progress (user_id, assessment_id, attempts, passed, passed_on, " +
+                    "unlocked, unlocked_on, submitted_on, obtained_marks, total_marks, percentage) " +
+                    "VALUES (?, ?, 1, ?, ?, true, ?, ?, ?, ?, ?)",
+                    "attempts = COALESCE(user_assessment_progress.attempts, 0) + 1, passed = ?, " +
+                    "passed_on = COALESCE(user_assessment_progress.passed_on, ?), unlocked = true, " +
+                    "unlocked_on = COALESCE(user_assessment_progress.unlocked_on, ?), submitted_on = ?, " +
+                    "obtained_marks = ?, total_marks = ?, percentage = ?");
+
+            // progress_percentage and the totals read columns assigned after them
+            String streakCounters =
+                    "progress_percentage = COALESCE((user_streaks.watched_seconds + ?) * 100.0 / NULLIF(" +
+                    "CASE WHEN user_streaks.total_available_seconds > 0 THEN user_streaks.total_available_seconds " +
+                    "ELSE ? END, 0), user_streaks.progress_percentage), " +
+                    "total_videos_count = CASE WHEN user_streaks.total_available_seconds > 0 " +
+                    "THEN user_streaks.total_videos_count ELSE ? END, " +
+                    "total_available_seconds = CASE WHEN user_streaks.total_available_seconds > 0 " +
+                    "THEN user_streaks.total_available_seconds ELSE ? END, " +
+                    "watched_seconds = user_streaks.watched_seconds + ?, " +
+                    "completed_videos_count = user_streaks.completed_videos_count + ?, " +
+                    "is_active_day = true, updated_at = ?, " +
+                    "video_details = CASE WHEN LENGTH(COALESCE(user_streaks.video_details, '')) < " +
+                    StreakVideoDetails.MAX_LENGTH + " THEN CONCAT(COALESCE(user_streaks.video_details, ''), ?) " +
+                    "ELSE user_streaks.video_details END";
+            streakIncrement = "UPDATE user_streaks SET " + streakCounters +
+                    " WHERE user_id = ? AND course_id = ? AND streak_date = ?";
+            streakActivity = upsert(postgres, "user_id, course_id, streak_date",
+                    "INSERT INTO user_streaks (user_id, course_id, streak_date, watched_seconds, " +
+                    "total_available_seconds, progress_percentage, completed_videos_count, total_videos_count, " +
+                    "video_details, is_active_day, created_at, updated_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, true, ?, ?)",
+                    streakCounters);
+
+            courseRollup = upsert(postgres, "user_id, course_id",
+                    "INSERT INTO user_course_progress (user_id, course_id, completed_videos, completed_modules, " +
+                    "passed_assessments, watched_seconds, last_activity_at, updated_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                    "completed_videos = ?, completed_modules = ?, passed_assessments = ?, watched_seconds = ?, " +
+                    "last_activity_at = CASE WHEN user_course_progress.last_activity_at IS NULL " +
+                    "OR user_course_progress.last_activity_at < ? THEN ? " +
+                    "ELSE user_course_progress.last_activity_at END, updated_at = ?");
+        }
+
+        private static String upsert(boolean postgres, String key, String insert, String update) {
+            return postgres
+                    ? insert + " ON CONFLICT (" + key + ") DO UPDATE SET " + update
+                    : insert + " ON DUPLICATE KEY UPDATE " + update;
+        }
+    }
+}
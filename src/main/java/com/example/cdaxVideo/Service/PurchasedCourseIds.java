@@ -0,0 +1,55 @@
+package com.example.cdaxVideo.Service;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable set of a user's purchased course ids, kept as a sorted long[] so a
+ * membership test is a binary search with no boxing.
+ */
+public final class PurchasedCourseIds {
+
+    public static final PurchasedCourseIds EMPTY = new PurchasedCourseIds(new long[0]);
+
+    private final long[] ids;
+
+    private PurchasedCourseIds(long[] ids) {
+        this.ids = ids;
+    }
+
+    public static PurchasedCourseIds of(Collection<Long> courseIds) {
+        if (courseIds == null || courseIds.isEmpty()) return EMPTY;
+        long[] ids = new long[courseIds.size()];
+        int n = 0;
+        for (Long id : courseIds) {
+            if (id != null) ids[n++] = id;
+        }
+        Arrays.sort(ids, 0, n);
+        // drop duplicates (a course bought twice)
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || ids[unique - 1] != ids[i]) ids[unique++] = ids[i];
+        }
+        return new PurchasedCourseIds(Arrays.copyOf(ids, unique));
+    }
+
+    public boolean contains(Long courseId) {
+        return courseId != null && contains(courseId.longValue());
+    }
+
+    public boolean contains(long courseId) {
+        return Arrays.binarySearch(ids, courseId) >= 0;
+    }
+
+    public int size() { return ids.length; }
+
+    public boolean isEmpty() { return ids.length == 0; }
+
+    /** Copy of the ids, ascending. */
+    public long[] toArray() { return ids.clone(); }
+
+    @Override
+    public String toString() {
+        return "PurchasedCourseIds" + Arrays.toString(ids);
+    }
+}
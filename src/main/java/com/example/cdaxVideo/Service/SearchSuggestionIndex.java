@@ -0,0 +1,268 @@
+package com.example.cdaxVideo.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Autocomplete for /courses/search/suggestions.
+ *
+ * Course titles and tags are loaded into two immutable prefix tries. Every
+ * word start of an entry is a key ("Spring Boot Basics" is reachable from "spr",
+ * "boo" and "bas"), and every trie node stores its top-K entries by a popularity
+ * weight computed at build time. A lookup walks the prefix and returns that
+ * node's list: O(prefix length + K), no database access.
+ *
+ * On each {@link CatalogChangedEvent} the tries are rebuilt on the application
+ * task executor and swapped in atomically; queries keep using the previous
+ * tries until then.
+ */
+@Service
+public class SearchSuggestionIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SearchSuggestionIndex.class);
+
+    static final int TOP_K = 10;
+    // Keys are cut here; longer prefixes are checked against the deepest node's top-K
+    private static final int MAX_KEY_LENGTH = 32;
+
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final Executor executor;
+
+    private final AtomicReference<Suggestions> current = new AtomicReference<>();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean(false);
+
+    public SearchSuggestionIndex(CatalogSnapshotService catalogSnapshotService,
+                                 @Qualifier("applicationTaskExecutor") Executor executor) {
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.executor = executor;
+    }
+
+    /** Title and tag tries built from one catalog version. */
+    private static final class Suggestions {
+        final long catalogVersion;
+        final Trie titles;
+        final Trie tags;
+
+        Suggestions(long catalogVersion, Trie titles, Trie tags) {
+            this.catalogVersion = catalogVersion;
+            this.titles = titles;
+            this.tags = tags;
+        }
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        scheduleRebuild();
+    }
+
+    /** Up to {@code limit} course titles whose words start with the prefix, most popular first. */
+    public List<String> suggestTitles(String prefix, int limit) {
+        return suggestions().titles.complete(prefix, limit);
+    }
+
+    /** Up to {@code limit} tags whose words start with the prefix, most used first. */
+    public List<String> suggestTags(String prefix, int limit) {
+        return suggestions().tags.complete(prefix, limit);
+    }
+
+    public long getCatalogVersion() {
+        Suggestions s = current.get();
+        return s != null ? s.catalogVersion : -1;
+    }
+
+    private Suggestions suggestions() {
+        Suggestions s = current.get();
+        if (s == null) {
+            // First request after startup: build inline rather than answer empty
+            s = rebuild();
+        }
+        return s;
+    }
+
+    private void scheduleRebuild() {
+        if (!rebuildScheduled.compareAndSet(false, true)) return;
+        try {
+            executor.execute(() -> {
+                rebuildScheduled.set(false);
+                try {
+                    rebuild();
+                } catch (Exception e) {
+                    logger.error("❌ Failed to rebuild suggestion index", e);
+                }
+            });
+        } catch (RuntimeException e) {
+            rebuildScheduled.set(false);
+            logger.error("❌ Could not schedule suggestion index rebuild", e);
+        }
+    }
+
+    private Suggestions rebuild() {
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        Suggestions existing = current.get();
+        if (existing != null && existing.catalogVersion >= snapshot.getVersion()) {
+            return existing;
+        }
+
+        long start = System.nanoTime();
+        Map<String, Double> titleWeights = new HashMap<>();
+        Map<String, Double> tagWeights = new HashMap<>();
+        for (CatalogSnapshot.CourseNode course : snapshot.getCourses()) {
+            double weight = popularity(course);
+            if (course.getTitle() != null && !course.getTitle().isBlank()) {
+                titleWeights.merge(course.getTitle(), weight, Math::max);
+            }
+            for (String tag : course.getTags()) {
+                if (tag != null && !tag.isBlank()) {
+                    tagWeights.merge(tag, weight, Double::sum);
+                }
+            }
+        }
+
+        Suggestions built = new Suggestions(snapshot.getVersion(), Trie.build(titleWeights), Trie.build(tagWeights));
+        Suggestions previous = current.get();
+        while (previous == null || previous.catalogVersion < built.catalogVersion) {
+            if (current.compareAndSet(previous, built)) {
+                logger.info("🔤 Suggestion index built for catalog v{} in {} ms ({} titles, {} tags)",
+                        built.catalogVersion, (System.nanoTime() - start) / 1_000_000,
+                        titleWeights.size(), tagWeights.size());
+                return built;
+            }
+            previous = current.get();
+        }
+        return previous;
+    }
+
+    /** Higher for courses with more students and better-rated reviews. */
+    private static double popularity(CatalogSnapshot.CourseNode course) {
+        double weight = 1.0;
+        if (course.getEnrolledStudents() != null) {
+            weight += 2.0 * Math.log1p(Math.max(0, course.getEnrolledStudents()));
+        }
+        if (course.getRating() != null && course.getTotalRatings() != null) {
+            weight += course.getRating() * Math.log1p(Math.max(0, course.getTotalRatings()));
+        }
+        if (Boolean.TRUE.equals(course.getIsPopular())) weight += 2.0;
+        if (Boolean.TRUE.equals(course.getIsFeatured())) weight += 1.0;
+        return weight;
+    }
+
+    /**
+     * Immutable prefix trie whose nodes carry their top-K entries, best first.
+     */
+    static final class Trie {
+        private final String[] entries;
+        private final String[] normalizedEntries;
+        private final Node root;
+
+        private static final class Node {
+            final char[] labels;      // sorted
+            final Node[] children;
+            final int[] top;          // entry ids, best first
+
+            Node(char[] labels, Node[] children, int[] top) {
+                this.labels = labels;
+                this.children = children;
+                this.top = top;
+            }
+
+            Node child(char c) {
+                int i = Arrays.binarySearch(labels, c);
+                return i >= 0 ? children[i] : null;
+            }
+        }
+
+        private Trie(String[] entries, String[] normalizedEntries, Node root) {
+            this.entries = entries;
+            this.normalizedEntries = normalizedEntries;
+            this.root = root;
+        }
+
+        static Trie build(Map<String, Double> weights) {
+            // Entry ids are assigned in weight order, so "better" is simply "smaller id"
+            List<Map.Entry<String, Double>> sorted = new ArrayList<>(weights.entrySet());
+            sorted.sort(Map.Entry.<String, Double>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey()));
+
+            String[] entries = new String[sorted.size()];
+            String[] normalized = new String[sorted.size()];
+            MutableNode root = new MutableNode();
+            for (int id = 0; id < entries.length; id++) {
+                entries[id] = sorted.get(id).getKey();
+                normalized[id] = TextNormalizer.normalize(entries[id]);
+                String text = normalized[id];
+                for (int start = 0; start < text.length(); start++) {
+                    if (start == 0 || text.charAt(start - 1) == ' ') {
+                        root.insert(text, start, id);
+                    }
+                }
+            }
+            return new Trie(entries, normalized, root.freeze());
+        }
+
+        List<String> complete(String prefix, int limit) {
+            String key = TextNormalizer.normalize(prefix);
+            List<String> result = new ArrayList<>();
+            if (key.isEmpty()) return result;
+
+            Node node = root;
+            int depth = Math.min(key.length(), MAX_KEY_LENGTH);
+            for (int i = 0; i < depth && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) return result;
+
+            boolean truncated = key.length() > MAX_KEY_LENGTH;
+            for (int id : node.top) {
+                if (result.size() >= limit) break;
+                if (truncated && !(" " + normalizedEntries[id]).contains(" " + key)) continue;
+                result.add(entries[id]);
+            }
+            return result;
+        }
+
+        /** Build-time node. Entries are inserted best first, so the first K distinct ids to reach a node are its top-K. */
+        private static final class MutableNode {
+            final TreeMap<Character, MutableNode> children = new TreeMap<>();
+            int[] ids = new int[0];   // entries ending in or passing through this node, deduped, best first
+
+            void insert(String text, int start, int id) {
+                MutableNode node = this;
+                int end = Math.min(text.length(), start + MAX_KEY_LENGTH);
+                for (int i = start; i < end; i++) {
+                    node = node.children.computeIfAbsent(text.charAt(i), c -> new MutableNode());
+                    node.offer(id);
+                }
+            }
+
+            /** One entry can reach the same node through several word starts, so keep ids distinct. */
+            private void offer(int id) {
+                if (ids.length >= TOP_K) return;
+                if (ids.length > 0 && ids[ids.length - 1] == id) return;
+                for (int existing : ids) {
+                    if (existing == id) return;
+                }
+                ids = Arrays.copyOf(ids, ids.length + 1);
+                ids[ids.length - 1] = id;
+            }
+
+            Node freeze() {
+                char[] labels = new char[children.size()];
+                Node[] frozen = new Node[children.size()];
+                int i = 0;
+                for (Map.Entry<Character, MutableNode> e : children.entrySet()) {
+                    labels[i] = e.getKey();
+                    frozen[i] = e.getValue().freeze();
+                    i++;
+                }
+                return new Node(labels, frozen, ids);
+            }
+        }
+    }
+}
@@ -24,15 +24,18 @@ public class ShoppingCartService {
     private final CourseRepository courseRepository;
     private final UserRepository userRepository;
     private final UserCoursePurchaseRepository purchaseRepository;
+    private final EntitlementService entitlementService;
     
     public ShoppingCartService(ShoppingCartRepository cartRepository,
                               CourseRepository courseRepository,
                               UserRepository userRepository,
-                              UserCoursePurchaseRepository purchaseRepository) {
+                              UserCoursePurchaseRepository purchaseRepository,
+                              EntitlementService entitlementService) {
         this.cartRepository = cartRepository;
         this.courseRepository = courseRepository;
         this.userRepository = userRepository;
         this.purchaseRepository = purchaseRepository;
+        this.entitlementService = entitlementService;
     }
     
     // ========== CRITICAL FIXES ==========
@@ -53,7 +56,7 @@ public class ShoppingCartService {
         }
         
         // Check if user already purchased this course
-        boolean alreadyPurchased = purchaseRepository.existsByUserIdAndCourseId(userId, courseId);
+        boolean alreadyPurchased = entitlementService.isPurchased(userId, courseId);
         if (alreadyPurchased) {
             throw new RuntimeException("You already own this course");
         }
@@ -193,6 +196,9 @@ public class ShoppingCartService {
             return CheckoutResponseDTO.failure("Your cart is empty");
         }
         
+        // Owned courses, read fresh once for the whole cart
+        PurchasedCourseIds owned = entitlementService.load(userId);
+        
         // Process each course in cart
         for (CartItemDTO cartItem : cartItems) {
             // Check if course still exists
@@ -200,7 +206,7 @@ public class ShoppingCartService {
                 .orElseThrow(() -> new RuntimeException("Course not found: " + cartItem.getCourseId()));
             
             // Check if already purchased (in case of race condition)
-            boolean alreadyPurchased = purchaseRepository.existsByUserIdAndCourseId(userId, cartItem.getCourseId());
+            boolean alreadyPurchased = owned.contains(cartItem.getCourseId());
             if (alreadyPurchased) {
                 // Remove from cart but don't purchase again
                 cartRepository.deleteByUserIdAndCourseId(userId, cartItem.getCourseId());
@@ -227,6 +233,7 @@ public class ShoppingCartService {
         if (purchasedCourseTitles.isEmpty()) {
             return CheckoutResponseDTO.failure("No courses were purchased");
         }
+        entitlementService.invalidate(userId);
         
         // Generate order ID
         String orderId = "ORD-" + System.currentTimeMillis() + "-" + userId;
@@ -0,0 +1,152 @@
+package com.example.cdaxVideo.Service;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The active days of one (user, course) as a packed day bitmap: bit {@code i} of
+ * word {@code w} is epoch day {@code (firstWord + w) * 64 + i}. Words are aligned to
+ * multiples of 64 epoch days, so a year of history is six longs.
+ *
+ * Queries work a word at a time: active days in a range are a popcount of the
+ * masked words, the run ending on a day is a leading-zero count of the inverted
+ * word, and the longest run is a scan over the runs of each word. Calendars are
+ * immutable; {@link #with} returns a copy with one more day.
+ */
+public final class StreakCalendar {
+
+    public static final StreakCalendar EMPTY = new StreakCalendar(0, new long[0]);
+
+    private final long firstWord;
+    private final long[] words;
+
+    private StreakCalendar(long firstWord, long[] words) {
+        this.firstWord = firstWord;
+        this.words = words;
+    }
+
+    public static StreakCalendar of(Collection<LocalDate> days) {
+        if (days.isEmpty()) return EMPTY;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (LocalDate day : days) {
+            long epochDay = day.toEpochDay();
+            min = Math.min(min, epochDay);
+            max = Math.max(max, epochDay);
+        }
+        long first = Math.floorDiv(min, 64);
+        long[] words = new long[(int) (Math.floorDiv(max, 64) - first + 1)];
+        for (LocalDate day : days) {
+            long index = day.toEpochDay() - first * 64;
+            words[(int) (index >>> 6)] |= 1L << index;
+        }
+        return new StreakCalendar(first, words);
+    }
+
+    /** This calendar with {@code day} active. */
+    public StreakCalendar with(LocalDate day) {
+        if (isActive(day)) return this;
+        if (words.length == 0) return of(List.of(day));
+        long word = Math.floorDiv(day.toEpochDay(), 64);
+        long first = Math.min(firstWord, word);
+        long last = Math.max(firstWord + words.length - 1, word);
+        long[] grown = new long[(int) (last - first + 1)];
+        System.arraycopy(words, 0, grown, (int) (firstWord - first), words.length);
+        grown[(int) (word - first)] |= 1L << day.toEpochDay();
+        return new StreakCalendar(first, grown);
+    }
+
+    public boolean isActive(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        int w = wordIndex(epochDay);
+        return w >= 0 && w < words.length && (words[w] & (1L << epochDay)) != 0;
+    }
+
+    public boolean isEmpty() {
+        return words.length == 0;
+    }
+
+    /** Active days in [from, to], both inclusive. */
+    public int activeDays(LocalDate from, LocalDate to) {
+        long start = Math.max(from.toEpochDay(), firstWord * 64);
+        long end = Math.min(to.toEpochDay(), (firstWord + words.length) * 64 - 1);
+        if (start > end) return 0;
+        int first = wordIndex(start);
+        int last = wordIndex(end);
+        long lowMask = -1L << start;
+        long highMask = -1L >>> (63 - Math.floorMod(end, 64));
+        if (first == last) return Long.bitCount(words[first] & lowMask & highMask);
+        int count = Long.bitCount(words[first] & lowMask) + Long.bitCount(words[last] & highMask);
+        for (int w = first + 1; w < last; w++) {
+            count += Long.bitCount(words[w]);
+        }
+        return count;
+    }
+
+    /** Length of the run of consecutive active days ending on {@code day}; 0 if it is not active. */
+    public int runEndingAt(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        int w = wordIndex(epochDay);
+        if (w < 0 || w >= words.length) return 0;
+        int bit = (int) Math.floorMod(epochDay, 64);
+        int run = 0;
+        while (w >= 0) {
+            // Bit `bit` moved to the top: the leading ones are the run down from it
+            int ones = Math.min(Long.numberOfLeadingZeros(~(words[w] << (63 - bit))), bit + 1);
+            run += ones;
+            if (ones < bit + 1) break;
+            w--;
+            bit = 63;
+        }
+        return run;
+    }
+
+    /** Length of the longest run of consecutive active days. */
+    public int longestRun() {
+        int best = 0;
+        int run = 0;
+        for (long word : words) {
+            if (word == -1L) {
+                run += 64;
+                continue;
+            }
+            // Ones at the bottom continue the run from the previous word
+            int low = Long.numberOfTrailingZeros(~word);
+            best = Math.max(best, run + low);
+            run = 0;
+            long rest = word >>> low;
+            int shift = low;
+            while (rest != 0) {
+                int zeros = Long.numberOfTrailingZeros(rest);
+                rest >>>= zeros;
+                shift += zeros;
+                int ones = Long.numberOfTrailingZeros(~rest);
+                shift += ones;
+                if (shift == 64) {
+                    // Reaches the top bit: may continue into the next word
+                    run = ones;
+                    break;
+                }
+                best = Math.max(best, ones);
+                rest >>>= ones;
+            }
+        }
+        return Math.max(best, run);
+    }
+
+    /** The latest active day, or {@code null} for an empty calendar. */
+    public LocalDate lastActive() {
+        for (int w = words.length - 1; w >= 0; w--) {
+            if (words[w] != 0) {
+                return LocalDate.ofEpochDay((firstWord + w) * 64 + 63 - Long.numberOfLeadingZeros(words[w]));
+            }
+        }
+        return null;
+    }
+
+    private int wordIndex(long epochDay) {
+        long w = Math.floorDiv(epochDay, 64) - firstWord;
+        return w < Integer.MIN_VALUE || w > Integer.MAX_VALUE ? -1 : (int) w;
+    }
+}
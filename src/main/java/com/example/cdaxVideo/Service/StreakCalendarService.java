@@ -0,0 +1,119 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Repository.UserStreakRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads and caches the {@link StreakCalendar}s of a user, one per course.
+ *
+ * A load is one projection query over the user's active user_streaks days, all
+ * courses and all history at once. Cached calendars are kept current by
+ * {@link #markActive}, applied when the writing transaction commits; a load that
+ * overlaps such a commit for the same user is returned but not cached.
+ */
+@Service
+public class StreakCalendarService {
+
+    private static final int MAX_USERS = 10_000;
+
+    private final UserStreakRepository userStreakRepository;
+    private final TransactionTemplate readOnlyTx;
+
+    // userId -> (courseId -> calendar), least recently used evicted first
+    private final Map<Long, Map<Long, StreakCalendar>> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Map<Long, StreakCalendar>> eldest) {
+            return size() > MAX_USERS;
+        }
+    };
+    // userId -> number of committed marks, to detect loads racing a commit
+    private final Map<Long, AtomicLong> marks = new ConcurrentHashMap<>();
+
+    public StreakCalendarService(UserStreakRepository userStreakRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this.userStreakRepository = userStreakRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /** The user's calendar for one course; empty if the user was never active in it. */
+    public StreakCalendar get(Long userId, Long courseId) {
+        return getAll(userId).getOrDefault(courseId, StreakCalendar.EMPTY);
+    }
+
+    /** The user's calendars by course id, for every course with at least one active day. */
+    public Map<Long, StreakCalendar> getAll(Long userId) {
+        synchronized (cache) {
+            Map<Long, StreakCalendar> cached = cache.get(userId);
+            if (cached != null) return cached;
+        }
+
+        long marksBefore = markCount(userId);
+        Map<Long, StreakCalendar> loaded = load(userId);
+        if (markCount(userId) == marksBefore) {
+            synchronized (cache) {
+                cache.put(userId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /** Mark {@code day} active in the cached calendar once the surrounding transaction commits. */
+    public void markActive(Long userId, Long courseId, LocalDate day) {
+        if (userId == null || courseId == null || day == null) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(userId, courseId, day);
+                }
+            });
+        } else {
+            apply(userId, courseId, day);
+        }
+    }
+
+    private void apply(Long userId, Long courseId, LocalDate day) {
+        marks.computeIfAbsent(userId, k -> new AtomicLong()).incrementAndGet();
+        synchronized (cache) {
+            Map<Long, StreakCalendar> cached = cache.get(userId);
+            if (cached == null) return;
+            StreakCalendar calendar = cached.getOrDefault(courseId, StreakCalendar.EMPTY);
+            if (calendar.isActive(day)) return;
+            // Copy on write: callers may still be reading the previous map
+            Map<Long, StreakCalendar> updated = new HashMap<>(cached);
+            updated.put(courseId, calendar.with(day));
+            cache.put(userId, Map.copyOf(updated));
+        }
+    }
+
+    private long markCount(Long userId) {
+        AtomicLong count = marks.get(userId);
+        return count != null ? count.get() : 0;
+    }
+
+    private Map<Long, StreakCalendar> load(Long userId) {
+        Map<Long, List<LocalDate>> daysByCourse = new HashMap<>();
+        readOnlyTx.executeWithoutResult(status -> {
+            for (Object[] row : userStreakRepository.findActiveDaysByUserId(userId)) {
+                daysByCourse.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((LocalDate) row[1]);
+            }
+        });
+        Map<Long, StreakCalendar> calendars = new HashMap<>();
+        daysByCourse.forEach((courseId, days) -> calendars.put(courseId, StreakCalendar.of(days)));
+        return Map.copyOf(calendars);
+    }
+}
@@ -24,8 +24,9 @@ public class StreakService {
     private final UserVideoProgressRepository userVideoProgressRepository;
     private final CourseRepository courseRepository;
     private final UserRepository userRepository;
-    private final VideoRepository videoRepository;
-    private final ModuleRepository moduleRepository;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final ProgressUpsertService progressUpsertService;
+    private final StreakCalendarService streakCalendarService;
     
     private static final Logger logger = LoggerFactory.getLogger(StreakService.class);
     private static final int STREAK_CYCLE_DAYS = 30;
@@ -35,80 +36,35 @@ public class StreakService {
     @Transactional
     public void updateStreakForVideoWatch(Long userId, Long courseId, Long videoId, 
                                           Integer watchedSeconds, boolean isCompleted) {
+        updateStreakForVideoWatch(userId, courseId, videoId, watchedSeconds, isCompleted, LocalDate.now());
+    }
+
+    /**
+     * Same, on the day the watch happened (replayed watch events may be from an earlier day)
+     */
+    @Transactional
+    public void updateStreakForVideoWatch(Long userId, Long courseId, Long videoId,
+                                          Integer watchedSeconds, boolean isCompleted, LocalDate today) {
         
         try {
             logger.info("🎯 Starting streak update for user: {}, course: {}, video: {}", 
                        userId, courseId, videoId);
             
-            User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-            Course course = courseRepository.findById(courseId)
-                .orElseThrow(() -> new RuntimeException("Course not found"));
-            Video video = videoRepository.findById(videoId)
-                .orElseThrow(() -> new RuntimeException("Video not found"));
-            
-            LocalDate today = LocalDate.now();
-            
-            logger.info("📅 Today's date: {}", today);
-            
-            // Get or create streak for today
-            UserStreak streak = userStreakRepository
-                .findByUserIdAndCourseIdAndStreakDate(userId, courseId, today)
-                .orElseGet(() -> {
-                    logger.info("📝 Creating new streak record for user {} on {}", userId, today);
-                    UserStreak newStreak = new UserStreak();
-                    newStreak.setUser(user);
-                    newStreak.setCourse(course);
-                    newStreak.setStreakDate(today);
-                    newStreak.setCreatedAt(LocalDateTime.now());
-                    newStreak.setIsActiveDay(false);
-                    newStreak.setWatchedSeconds(0);
-                    newStreak.setCompletedVideosCount(0);
-                    newStreak.setProgressPercentage(0.0);
-                    return newStreak;
-                });
-            
-            // ✅ CRITICAL FIX: Set isActiveDay to true
-            streak.setIsActiveDay(true);
-            streak.setUpdatedAt(LocalDateTime.now());
-            
-            // Update watched seconds
-            int previousWatched = streak.getWatchedSeconds();
-            streak.addWatchedSeconds(watchedSeconds);
-            logger.info("⏱️ Updated watched seconds: {} -> {}", previousWatched, streak.getWatchedSeconds());
-            
-            // Update total available seconds if not set
-            if (streak.getTotalAvailableSeconds() == 0) {
-                logger.info("📊 Calculating total available seconds for course: {}", course.getTitle());
-                
-                int[] totals = calculateCourseTotals(courseId);
-                streak.setTotalAvailableSeconds(totals[0]);
-                streak.setTotalVideosCount(totals[1]);
-                
-                logger.info("📈 Course has {} videos with total {} seconds", totals[1], totals[0]);
-            }
-            
-            // Update video counts
-            if (isCompleted) {
-                int previousCompleted = streak.getCompletedVideosCount();
-                streak.setCompletedVideosCount(previousCompleted + 1);
-                logger.info("✅ Incremented completed videos: {} -> {}", 
-                          previousCompleted, streak.getCompletedVideosCount());
+            // Course totals are a cached aggregate of the catalog snapshot, no queries
+            if (catalogSnapshotService.current().findCourse(courseId).isEmpty()) {
+                throw new RuntimeException("Course not found");
             }
             
-            // ✅ Calculate progress percentage
-            if (streak.getTotalAvailableSeconds() > 0) {
-                double progress = ((double) streak.getWatchedSeconds() / streak.getTotalAvailableSeconds()) * 100;
-                streak.setProgressPercentage(progress);
-                logger.info("📊 Progress percentage: {}% ({} / {} seconds)", 
-                          String.format("%.2f", progress), 
-                          streak.getWatchedSeconds(), 
-                          streak.getTotalAvailableSeconds());
-            }
+            logger.info("📅 Today's date: {}", today);
             
-            // Save the streak
-            UserStreak savedStreak = userStreakRepository.save(streak);
-            logger.info("💾 Saved streak record with ID: {}", savedStreak.getId());
+            // Add to today's streak with atomic increments (one UPDATE once the day exists):
+            // concurrent watches of the same day add up instead of losing increments
+            int seconds = watchedSeconds != null && watchedSeconds > 0 ? watchedSeconds : 0;
+            int[] totals = calculateCourseTotals(courseId);
+            progressUpsertService.addStreakActivity(userId, courseId, today, videoId, seconds, isCompleted,
+                    totals[0], totals[1]);
+            logger.info("⏱️ Added {}s to streak of {} (completed: {}, course total {}s in {} videos)",
+                      seconds, today, isCompleted, totals[0], totals[1]);
             
             logger.info("✅ Streak updated successfully for user {} in course {}", userId, courseId);
             
@@ -135,7 +91,10 @@ public class StreakService {
         logger.info("📅 Found {} streak records between {} and {}", 
                    streaks.size(), startDate, endDate);
         
-        return buildStreakSummary(userId, courseId, streaks, startDate, endDate, false);
+        Map<LocalDate, List<VideoProgressDetailDTO>> legacyDetails = hasLegacyDays(streaks)
+            ? getVideoDetailsByDay(userId, courseId, startDate, endDate) : Map.of();
+        
+        return buildStreakSummary(userId, courseId, streaks, legacyDetails, startDate, endDate, false);
     }
     
     /**
@@ -160,7 +119,11 @@ public class StreakService {
         logger.info("📅 Found {} streak records for month {}-{}", 
                    streaks.size(), monthDate.getYear(), monthDate.getMonth());
         
-        return buildStreakSummary(userId, courseId, streaks, firstDay, lastDay, true);
+        // Days written before the breakdown was stored: one query for the month, split by day
+        Map<LocalDate, List<VideoProgressDetailDTO>> legacyDetails = hasLegacyDays(streaks)
+            ? getVideoDetailsByDay(userId, courseId, firstDay, lastDay) : Map.of();
+        
+        return buildStreakSummary(userId, courseId, streaks, legacyDetails, firstDay, lastDay, true);
     }
     
     /**
@@ -178,28 +141,33 @@ public class StreakService {
         
         logger.info("📅 Found {} total streak records for user {}", allStreaks.size(), userId);
         
-        // Group by course
-        Map<Course, List<UserStreak>> streaksByCourse = allStreaks.stream()
-            .collect(Collectors.groupingBy(UserStreak::getCourse));
+        // Group by course id (the lazy course itself would be one query per course)
+        Map<Long, List<UserStreak>> streaksByCourse = allStreaks.stream()
+            .collect(Collectors.groupingBy(UserStreak::getCourseId, LinkedHashMap::new, Collectors.toList()));
+        
+        // Days without a stored breakdown: every course in one query, grouped by course and day
+        Map<Long, Map<LocalDate, List<VideoProgressDetailDTO>>> legacyDetailsByCourse = hasLegacyDays(allStreaks)
+            ? getVideoDetailsByCourseAndDay(userId, startDate, endDate) : Map.of();
         
         List<StreakSummaryDTO> courseSummaries = new ArrayList<>();
         
-        for (Map.Entry<Course, List<UserStreak>> entry : streaksByCourse.entrySet()) {
-            Course course = entry.getKey();
+        for (Map.Entry<Long, List<UserStreak>> entry : streaksByCourse.entrySet()) {
+            Long courseId = entry.getKey();
             List<UserStreak> courseStreaks = entry.getValue();
             
             logger.info("📚 Processing course: {} with {} streak records", 
-                       course.getTitle(), courseStreaks.size());
+                       courseId, courseStreaks.size());
             
             StreakSummaryDTO summary = buildStreakSummary(
-                userId, course.getId(), courseStreaks, startDate, endDate, false);
+                userId, courseId, courseStreaks, legacyDetailsByCourse.getOrDefault(courseId, Map.of()),
+                startDate, endDate, false);
             courseSummaries.add(summary);
         }
         
         // Calculate overall stats
-        int totalActiveDays = (int) allStreaks.stream()
-            .filter(UserStreak::getIsActiveDay)
-            .count();
+        int totalActiveDays = streakCalendarService.getAll(userId).values().stream()
+            .mapToInt(calendar -> calendar.activeDays(startDate, endDate))
+            .sum();
         
         Map<String, Object> response = new HashMap<>();
         response.put("courseSummaries", courseSummaries);
@@ -235,8 +203,12 @@ public class StreakService {
         
         StreakDayDTO dto = convertToDayDTO(streak);
         
-        // Fetch and set video details
-        List<VideoProgressDetailDTO> videoDetails = getVideoDetailsForDay(userId, courseId, date);
+        // The day's breakdown is stored on the row; older rows fall back to progress timestamps
+        List<VideoProgressDetailDTO> videoDetails = readVideoDetails(streak);
+        if (videoDetails == null) {
+            videoDetails = getVideoDetailsByDay(userId, courseId, date, date)
+                .getOrDefault(date, new ArrayList<>());
+        }
         dto.setVideoDetails(videoDetails);
         
         logger.info("📊 Returning {} video details for date {}", videoDetails.size(), date);
@@ -252,10 +224,12 @@ public class StreakService {
     @Transactional(readOnly = true)  // ADD THIS
     private StreakSummaryDTO buildStreakSummary(Long userId, Long courseId, 
                                                 List<UserStreak> streaks, 
+                                                Map<LocalDate, List<VideoProgressDetailDTO>> legacyDetails,
                                                 LocalDate startDate, LocalDate endDate,
                                                 boolean isMonthView) {
         
-        Course course = courseRepository.findById(courseId)
+        // Title from the catalog snapshot, no query
+        CatalogSnapshot.CourseNode course = catalogSnapshotService.current().findCourse(courseId)
             .orElseThrow(() -> new RuntimeException("Course not found"));
         
         logger.info("📅 Building {} streak summary for course: {}", 
@@ -274,10 +248,11 @@ public class StreakService {
             if (streak != null) {
                 StreakDayDTO dayDTO = convertToDayDTO(streak);
                 
-                // Fetch video details for active days
+                // Video details for active days: the stored breakdown, else fetched for the range
                 if (Boolean.TRUE.equals(streak.getIsActiveDay())) {
-                    List<VideoProgressDetailDTO> videoDetails = getVideoDetailsForDay(userId, courseId, currentDate);
-                    dayDTO.setVideoDetails(videoDetails);
+                    List<VideoProgressDetailDTO> videoDetails = readVideoDetails(streak);
+                    dayDTO.setVideoDetails(videoDetails != null ? videoDetails
+                        : legacyDetails.getOrDefault(currentDate, new ArrayList<>()));
                 }
                 
                 days.add(dayDTO);
@@ -287,9 +262,10 @@ public class StreakService {
             currentDate = currentDate.plusDays(1);
         }
         
-        // Calculate streak stats
-        int currentStreak = calculateCurrentStreak(days);
-        int longestStreak = calculateLongestStreak(days);
+        // Streak stats come from the full-history calendar, not just the days shown
+        StreakCalendar calendar = streakCalendarService.get(userId, courseId);
+        int currentStreak = calculateCurrentStreak(userId, courseId, calendar, streakMap);
+        int longestStreak = calendar.longestRun();
         
         // Calculate progress
         double overallProgress = calculateOverallProgress(days);
@@ -301,7 +277,7 @@ public class StreakService {
         summary.setCurrentStreakDays(currentStreak);
         summary.setLongestStreakDays(longestStreak);
         summary.setOverallProgress(overallProgress);
-        summary.setLastActiveDate(getLastActiveDate(streaks));
+        summary.setLastActiveDate(calendar.lastActive());
         
         // Set appropriate day list
         if (isMonthView) {
@@ -312,9 +288,7 @@ public class StreakService {
             summary.setYear(startDate.getYear());
             
             // Calculate month-specific stats
-            int activeDays = (int) days.stream()
-                .filter(day -> Boolean.TRUE.equals(day.getIsActiveDay()))
-                .count();
+            int activeDays = calendar.activeDays(startDate, endDate);
             summary.setActiveDaysInMonth(activeDays);
             summary.setTotalDaysInMonth(startDate.lengthOfMonth());
             
@@ -356,80 +330,125 @@ public class StreakService {
     }
     
     /**
-     * Get video progress details for a specific day
+     * Video details from the breakdown stored on the streak day, titles and durations
+     * from the catalog snapshot. {@code null} for days written before it was stored.
      */
-    @Transactional(readOnly = true)  // ADD THIS - CRITICAL FIX
-    private List<VideoProgressDetailDTO> getVideoDetailsForDay(Long userId, Long courseId, LocalDate date) {
-        try {
-            LocalDateTime startOfDay = date.atStartOfDay();
-            LocalDateTime endOfDay = date.plusDays(1).atStartOfDay();
+    private List<VideoProgressDetailDTO> readVideoDetails(UserStreak streak) {
+        if (streak.getVideoDetails() == null) return null;
+        
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        List<VideoProgressDetailDTO> details = new ArrayList<>();
+        for (StreakVideoDetails.Entry entry : StreakVideoDetails.read(streak.getVideoDetails())) {
+            Optional<CatalogSnapshot.VideoNode> video = snapshot.findVideo(entry.videoId());
+            Integer duration = video.map(CatalogSnapshot.VideoNode::getDuration).orElse(null);
             
+            VideoProgressDetailDTO dto = new VideoProgressDetailDTO();
+            dto.setVideoId(entry.videoId());
+            dto.setVideoTitle(video.map(CatalogSnapshot.VideoNode::getTitle).orElse(null));
+            dto.setWatchedSeconds(entry.watchedSeconds());
+            dto.setVideoDuration(duration);
+            dto.setVideoProgress(duration != null && duration > 0 ? (entry.watchedSeconds() * 100.0) / duration : 0.0);
+            dto.setIsCompleted(entry.completions() > 0);
+            dto.setWatchedDate(streak.getStreakDate());
+            details.add(dto);
+        }
+        return details;
+    }
+    
+    private boolean hasLegacyDays(List<UserStreak> streaks) {
+        return streaks.stream()
+            .anyMatch(streak -> Boolean.TRUE.equals(streak.getIsActiveDay()) && streak.getVideoDetails() == null);
+    }
+    
+    /**
+     * Video progress details for a range of days, grouped by the day each video was
+     * last watched. One query for the whole range.
+     */
+    private Map<LocalDate, List<VideoProgressDetailDTO>> getVideoDetailsByDay(Long userId, Long courseId,
+                                                                              LocalDate startDate, LocalDate endDate) {
+        try {
             List<UserVideoProgress> progressList = userVideoProgressRepository
-                .findByUserIdAndCourseIdAndDateRangeWithVideo(userId, courseId, startOfDay, endOfDay);
+                .findByUserIdAndCourseIdAndDateRangeWithVideo(userId, courseId,
+                    startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay());
+            
+            logger.info("📹 Found {} video progress records between {} and {}", 
+                       progressList.size(), startDate, endDate);
             
-            if (progressList == null || progressList.isEmpty()) {
-                logger.info("📭 No video progress found for date {}", date);
-                return new ArrayList<>();
+            Map<LocalDate, List<VideoProgressDetailDTO>> detailsByDay = new HashMap<>();
+            for (UserVideoProgress progress : progressList) {
+                addVideoDetail(detailsByDay, progress);
             }
+            return detailsByDay;
             
-            logger.info("📹 Found {} video progress records for date {}", progressList.size(), date);
+        } catch (Exception e) {
+            logger.error("❌ Error getting video details for {} to {}: {}", startDate, endDate, e.getMessage(), e);
+            return new HashMap<>();
+        }
+    }
+    
+    /**
+     * Same for all of the user's courses at once (overview), grouped by course then day
+     */
+    private Map<Long, Map<LocalDate, List<VideoProgressDetailDTO>>> getVideoDetailsByCourseAndDay(
+            Long userId, LocalDate startDate, LocalDate endDate) {
+        try {
+            List<UserVideoProgress> progressList = userVideoProgressRepository
+                .findByUserIdAndDateRangeWithVideo(userId, startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay());
+            
+            logger.info("📹 Found {} video progress records between {} and {}", 
+                       progressList.size(), startDate, endDate);
             
-            List<VideoProgressDetailDTO> details = new ArrayList<>();
+            CatalogSnapshot snapshot = catalogSnapshotService.current();
+            Map<Long, Map<LocalDate, List<VideoProgressDetailDTO>>> detailsByCourse = new HashMap<>();
             for (UserVideoProgress progress : progressList) {
-                try {
-                    Video video = progress.getVideo();  // ✅ Now this works within transaction
-                    
-                    VideoProgressDetailDTO dto = new VideoProgressDetailDTO();
-                    dto.setVideoId(video.getId());
-                    dto.setVideoTitle(video.getTitle());
-                    dto.setWatchedSeconds(progress.getWatchedSeconds());
-                    dto.setVideoDuration(video.getDuration());
-                    
-                    // Calculate progress percentage
-                    double videoProgress = 0.0;
-                    if (video.getDuration() != null && video.getDuration() > 0) {
-                        videoProgress = (progress.getWatchedSeconds() * 100.0) / video.getDuration();
-                    }
-                    dto.setVideoProgress(videoProgress);
-                    dto.setIsCompleted(progress.isCompleted());
-                    
-                    if (progress.getLastUpdatedAt() != null) {
-                        dto.setWatchedDate(progress.getLastUpdatedAt().toLocalDate());
-                    }
-                    
-                    details.add(dto);
-                    
-                } catch (Exception e) {
-                    logger.error("❌ Error converting progress {}: {}", progress.getId(), e.getMessage());
-                }
+                snapshot.findVideo(progress.getVideo().getId()).ifPresent(video -> addVideoDetail(
+                    detailsByCourse.computeIfAbsent(video.getCourseId(), k -> new HashMap<>()), progress));
+            }
+            return detailsByCourse;
+            
+        } catch (Exception e) {
+            logger.error("❌ Error getting video details for {} to {}: {}", startDate, endDate, e.getMessage(), e);
+            return new HashMap<>();
+        }
+    }
+    
+    private void addVideoDetail(Map<LocalDate, List<VideoProgressDetailDTO>> detailsByDay,
+                                UserVideoProgress progress) {
+        try {
+            Video video = progress.getVideo();  // fetched with the progress row
+            
+            VideoProgressDetailDTO dto = new VideoProgressDetailDTO();
+            dto.setVideoId(video.getId());
+            dto.setVideoTitle(video.getTitle());
+            dto.setWatchedSeconds(progress.getWatchedSeconds());
+            dto.setVideoDuration(video.getDuration());
+            
+            // Calculate progress percentage
+            double videoProgress = 0.0;
+            if (video.getDuration() != null && video.getDuration() > 0) {
+                videoProgress = (progress.getWatchedSeconds() * 100.0) / video.getDuration();
             }
+            dto.setVideoProgress(videoProgress);
+            dto.setIsCompleted(progress.isCompleted());
+            
+            LocalDate watchedDate = progress.getLastUpdatedAt().toLocalDate();
+            dto.setWatchedDate(watchedDate);
             
-            return details;
+            detailsByDay.computeIfAbsent(watchedDate, k -> new ArrayList<>()).add(dto);
             
         } catch (Exception e) {
-            logger.error("❌ Error getting video details for day {}: {}", date, e.getMessage(), e);
-            return new ArrayList<>();
+            logger.error("❌ Error converting progress {}: {}", progress.getId(), e.getMessage());
         }
     }
     
     /**
      * Calculate course totals (duration and video count)
      */
-    @Transactional(readOnly = true)  // ADD THIS
     private int[] calculateCourseTotals(Long courseId) {
-        List<Module> modules = moduleRepository.findByCourseId(courseId);
-        int totalDuration = 0;
-        int totalVideos = 0;
-        
-        for (Module module : modules) {
-            List<Video> moduleVideos = videoRepository.findByModuleId(module.getId());
-            totalVideos += moduleVideos.size();
-            for (Video v : moduleVideos) {
-                totalDuration += v.getDuration();
-            }
-        }
-        
-        return new int[]{totalDuration, totalVideos};
+        // Aggregated once per catalog snapshot (rebuilt when the catalog changes)
+        return catalogSnapshotService.current().findCourse(courseId)
+            .map(course -> new int[]{course.getVideoSeconds(), course.getVideoCount()})
+            .orElse(new int[]{0, 0});
     }
     
     /**
@@ -445,59 +464,24 @@ public class StreakService {
     }
     
     /**
-     * Calculate current streak from days list
+     * Current streak as of today, over the whole history. Today only counts once it
+     * has significant progress; until then the streak shows 0.
      */
-    private int calculateCurrentStreak(List<StreakDayDTO> days) {
-        int streak = 0;
+    private int calculateCurrentStreak(Long userId, Long courseId, StreakCalendar calendar,
+                                       Map<LocalDate, UserStreak> streakMap) {
         LocalDate today = LocalDate.now();
+        if (!calendar.isActive(today)) return 0;
         
-        // Sort days newest first
-        List<StreakDayDTO> sortedDays = new ArrayList<>(days);
-        sortedDays.sort((a, b) -> b.getDate().compareTo(a.getDate()));
-        
-        for (StreakDayDTO day : sortedDays) {
-            if (day.getDate().isAfter(today)) {
-                continue; // Skip future dates
-            }
-            
-            if (day.getDate().equals(today)) {
-                // Today - check if there's significant progress
-                if (day.getProgressPercentage() != null && day.getProgressPercentage() >= 5.0) {
-                    streak++;
-                } else {
-                    break;
-                }
-            } else if (Boolean.TRUE.equals(day.getIsActiveDay())) {
-                streak++;
-            } else {
-                break;
-            }
+        // Today's row is in the map unless a past month is shown
+        UserStreak todayStreak = streakMap.get(today);
+        if (todayStreak == null) {
+            todayStreak = getTodayStreak(userId, courseId);
         }
-        
-        return streak;
-    }
-    
-    /**
-     * Calculate longest streak from days list
-     */
-    private int calculateLongestStreak(List<StreakDayDTO> days) {
-        int maxStreak = 0;
-        int currentStreak = 0;
-        
-        // Sort chronologically
-        List<StreakDayDTO> sortedDays = new ArrayList<>(days);
-        sortedDays.sort(Comparator.comparing(StreakDayDTO::getDate));
-        
-        for (StreakDayDTO day : sortedDays) {
-            if (Boolean.TRUE.equals(day.getIsActiveDay())) {
-                currentStreak++;
-                maxStreak = Math.max(maxStreak, currentStreak);
-            } else {
-                currentStreak = 0;
-            }
+        if (todayStreak == null || todayStreak.getProgressPercentage() == null
+                || todayStreak.getProgressPercentage() < 5.0) {
+            return 0;
         }
-        
-        return maxStreak;
+        return calendar.runEndingAt(today);
     }
     
     /**
@@ -512,17 +496,6 @@ public class StreakService {
             .orElse(0.0);
     }
     
-    /**
-     * Get last active date from streaks
-     */
-    private LocalDate getLastActiveDate(List<UserStreak> streaks) {
-        return streaks.stream()
-            .filter(streak -> Boolean.TRUE.equals(streak.getIsActiveDay()))
-            .map(UserStreak::getStreakDate)
-            .max(LocalDate::compareTo)
-            .orElse(null);
-    }
-    
     /**
      * Get month name from month number
      */
@@ -593,6 +566,7 @@ public class StreakService {
             }
             
             UserStreak saved = userStreakRepository.save(streak);
+            streakCalendarService.markActive(userId, courseId, date);
             logger.info("✅ Created test streak with ID: {}", saved.getId());
             
             return saved;
@@ -0,0 +1,91 @@
+package com.example.cdaxVideo.Service;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The per-video breakdown of one streak day, stored in user_streaks.video_details.
+ *
+ * Each streak update appends one record: the video id and
+ * {@code seconds << 1 | completed}, both unsigned LEB128 varints, in unpadded
+ * URL-safe base64 and terminated by {@code '.'}. A record is typically four to
+ * eight characters. The column is TEXT, and appending keeps the write a single
+ * atomic UPDATE ({@code CONCAT} in SQL); {@link #read} folds the records per video.
+ */
+public final class StreakVideoDetails {
+
+    // TEXT holds 65535 bytes; a day this long keeps its records and takes no more
+    public static final int MAX_LENGTH = 60_000;
+
+    private static final char SEPARATOR = '.';
+
+    /** Seconds watched and completions of one video on the day. */
+    public record Entry(long videoId, int watchedSeconds, int completions) {}
+
+    private StreakVideoDetails() {}
+
+    /** One record to append; empty when there is no video. */
+    public static String record(Long videoId, int watchedSeconds, boolean completed) {
+        if (videoId == null || videoId < 0) return "";
+        byte[] out = new byte[15];
+        int pos = writeVarint(out, 0, videoId);
+        pos = writeVarint(out, pos, ((long) Math.max(watchedSeconds, 0) << 1) | (completed ? 1 : 0));
+        byte[] bytes = new byte[pos];
+        System.arraycopy(out, 0, bytes, 0, pos);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes) + SEPARATOR;
+    }
+
+    /** The records folded per video, in order of first appearance; {@code null} reads as empty. */
+    public static List<Entry> read(String details) {
+        if (details == null || details.isEmpty()) return List.of();
+        Map<Long, int[]> totals = new LinkedHashMap<>();
+        int start = 0;
+        while (start < details.length()) {
+            int end = details.indexOf(SEPARATOR, start);
+            if (end < 0) break; // a truncated last record
+            try {
+                byte[] bytes = Base64.getUrlDecoder().decode(details.substring(start, end));
+                long videoId = readVarint(bytes, 0);
+                long value = readVarint(bytes, varintEnd(bytes, 0));
+                int[] total = totals.computeIfAbsent(videoId, k -> new int[2]);
+                total[0] += (int) (value >>> 1);
+                total[1] += (int) (value & 1);
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                // Skip a damaged record, keep the rest of the day
+            }
+            start = end + 1;
+        }
+        List<Entry> entries = new ArrayList<>(totals.size());
+        totals.forEach((videoId, total) -> entries.add(new Entry(videoId, total[0], total[1])));
+        return entries;
+    }
+
+    private static int writeVarint(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long readVarint(byte[] in, int pos) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in[pos++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0 && shift < 64);
+        return value;
+    }
+
+    private static int varintEnd(byte[] in, int pos) {
+        while (in[pos] < 0) pos++;
+        return pos + 1;
+    }
+}
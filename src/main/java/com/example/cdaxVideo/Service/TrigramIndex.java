@@ -0,0 +1,120 @@
+package com.example.cdaxVideo.Service;
+
+import java.util.*;
+
+/**
+ * Character trigram index over the search vocabulary, used for typo-tolerant
+ * lookups. Candidates are found by counting shared trigrams and pruned with the
+ * q-gram bound (one edit destroys at most three trigrams); only survivors are
+ * checked with a banded Levenshtein distance. The vocabulary is never scanned.
+ *
+ * Not thread-safe; {@link CourseSearchIndex} guards it with its own lock.
+ */
+final class TrigramIndex {
+
+    private static final char PAD = '$';
+
+    // trigram -> terms containing it
+    private final Map<String, Set<String>> grams = new HashMap<>();
+
+    /** A vocabulary term within the allowed distance of the query term. */
+    static final class Match {
+        final String term;
+        final int distance;
+
+        Match(String term, int distance) {
+            this.term = term;
+            this.distance = distance;
+        }
+    }
+
+    void add(String term) {
+        for (String gram : trigrams(term)) {
+            grams.computeIfAbsent(gram, g -> new HashSet<>()).add(term);
+        }
+    }
+
+    void remove(String term) {
+        for (String gram : trigrams(term)) {
+            Set<String> terms = grams.get(gram);
+            if (terms == null) continue;
+            terms.remove(term);
+            if (terms.isEmpty()) grams.remove(gram);
+        }
+    }
+
+    /** Terms within {@code maxDistance} edits of {@code term}, excluding the term itself. */
+    List<Match> lookup(String term, int maxDistance) {
+        List<Match> matches = new ArrayList<>();
+        if (maxDistance <= 0) return matches;
+
+        Set<String> queryGrams = trigrams(term);
+        int required = queryGrams.size() - 3 * maxDistance;
+        if (required < 1) required = 1;
+
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : queryGrams) {
+            Set<String> terms = grams.get(gram);
+            if (terms == null) continue;
+            for (String candidate : terms) {
+                shared.merge(candidate, 1, Integer::sum);
+            }
+        }
+
+        for (Map.Entry<String, Integer> e : shared.entrySet()) {
+            String candidate = e.getKey();
+            if (e.getValue() < required || candidate.equals(term)) continue;
+            if (Math.abs(candidate.length() - term.length()) > maxDistance) continue;
+            int distance = boundedDistance(term, candidate, maxDistance);
+            if (distance <= maxDistance) matches.add(new Match(candidate, distance));
+        }
+        return matches;
+    }
+
+    /** Allowed edits for a query term: none for very short words, more for longer ones. */
+    static int maxEdits(String term) {
+        if (term.length() <= 3) return 0;
+        if (term.length() <= 7) return 1;
+        return 2;
+    }
+
+    /** "java" -> {$ja, jav, ava, va$} */
+    private static Set<String> trigrams(String term) {
+        String padded = PAD + term + PAD;
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    /**
+     * Levenshtein distance restricted to a diagonal band of width 2k+1.
+     * Returns k+1 as soon as the distance is known to exceed k.
+     */
+    static int boundedDistance(String a, String b, int k) {
+        int n = a.length(), m = b.length();
+        if (Math.abs(n - m) > k) return k + 1;
+        int inf = k + 1;
+        int[] prev = new int[m + 1];
+        int[] curr = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j <= k ? j : inf;
+
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - k);
+            int to = Math.min(m, i + k);
+            Arrays.fill(curr, inf);
+            curr[0] = i <= k ? i : inf;
+            int rowMin = curr[0];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int v = Math.min(prev[j - 1] + cost, Math.min(prev[j] + 1, curr[j - 1] + 1));
+                curr[j] = Math.min(v, inf);
+                rowMin = Math.min(rowMin, curr[j]);
+            }
+            if (rowMin > k) return inf;
+            int[] t = prev; prev = curr; curr = t;
+        }
+        return Math.min(prev[m], inf);
+    }
+}
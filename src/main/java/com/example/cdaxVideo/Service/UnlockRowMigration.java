@@ -0,0 +1,200 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Entity.UserAssessmentProgress;
+import com.example.cdaxVideo.Entity.UserModuleProgress;
+import com.example.cdaxVideo.Entity.UserVideoProgress;
+import com.example.cdaxVideo.Repository.UserAssessmentProgressRepository;
+import com.example.cdaxVideo.Repository.UserCoursePurchaseRepository;
+import com.example.cdaxVideo.Repository.UserModuleProgressRepository;
+import com.example.cdaxVideo.Repository.UserVideoProgressRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One-off collapse of unlock-only progress rows for {@code progress.unlock.mode=derived}.
+ *
+ * For each purchase, the user's real events (completions, passes, attempts, watch
+ * progress) are run through the course's {@link CourseUnlockGraph}. A row that
+ * carries no event and whose unlock the graph already derives is deleted; an
+ * unlock the graph would not give (a manual override) is kept. Because the graph
+ * ORs rows into its result, lock maps are the same before and after.
+ *
+ * Runs at startup when {@code progress.unlock.collapse-on-startup=true}, or on demand
+ * via {@link #collapseAll()}; each enrollment is its own transaction, so the job can
+ * be interrupted and rerun.
+ */
+@Service
+public class UnlockRowMigration {
+    private static final Logger logger = LoggerFactory.getLogger(UnlockRowMigration.class);
+
+    private final UserCoursePurchaseRepository userCoursePurchaseRepository;
+    private final UserVideoProgressRepository userVideoProgressRepository;
+    private final UserModuleProgressRepository userModuleProgressRepository;
+    private final UserAssessmentProgressRepository userAssessmentProgressRepository;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final CourseUnlockService courseUnlockService;
+    private final CourseProgressBitsService courseProgressBitsService;
+    private final UserProgressVersionService userProgressVersionService;
+    private final TransactionTemplate tx;
+    private final boolean collapseOnStartup;
+
+    public UnlockRowMigration(UserCoursePurchaseRepository userCoursePurchaseRepository,
+                              UserVideoProgressRepository userVideoProgressRepository,
+                              UserModuleProgressRepository userModuleProgressRepository,
+                              UserAssessmentProgressRepository userAssessmentProgressRepository,
+                              CatalogSnapshotService catalogSnapshotService,
+                              CourseUnlockService courseUnlockService,
+                              CourseProgressBitsService courseProgressBitsService,
+                              UserProgressVersionService userProgressVersionService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${progress.unlock.collapse-on-startup:false}") boolean collapseOnStartup) {
+        this.userCoursePurchaseRepository = userCoursePurchaseRepository;
+        this.userVideoProgressRepository = userVideoProgressRepository;
+        this.userModuleProgressRepository = userModuleProgressRepository;
+        this.userAssessmentProgressRepository = userAssessmentProgressRepository;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.courseUnlockService = courseUnlockService;
+        this.courseProgressBitsService = courseProgressBitsService;
+        this.userProgressVersionService = userProgressVersionService;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.collapseOnStartup = collapseOnStartup;
+    }
+
+    /** Rows deleted, by table. */
+    public record Result(int enrollments, int videoRows, int moduleRows, int assessmentRows) {
+        Result plus(Result other) {
+            return new Result(enrollments + other.enrollments, videoRows + other.videoRows,
+                    moduleRows + other.moduleRows, assessmentRows + other.assessmentRows);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (collapseOnStartup) {
+            collapseAll();
+        }
+    }
+
+    public Result collapseAll() {
+        long start = System.currentTimeMillis();
+        List<Object[]> pairs = tx.execute(status -> userCoursePurchaseRepository.findAllUserCoursePairs());
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+
+        Result total = new Result(0, 0, 0, 0);
+        for (Object[] pair : pairs != null ? pairs : Collections.<Object[]>emptyList()) {
+            Long userId = (Long) pair[0];
+            Long courseId = (Long) pair[1];
+            try {
+                Result one = tx.execute(status -> collapse(userId, courseId, snapshot));
+                if (one != null) total = total.plus(one);
+            } catch (Exception e) {
+                logger.error("❌ Unlock row collapse failed for user {} course {}", userId, courseId, e);
+            }
+        }
+
+        logger.info("🧹 Collapsed unlock-only rows over {} enrollments in {}ms: {} video, {} module, {} assessment",
+                total.enrollments(), System.currentTimeMillis() - start,
+                total.videoRows(), total.moduleRows(), total.assessmentRows());
+        return total;
+    }
+
+    // Must run inside a transaction
+    Result collapse(Long userId, Long courseId, CatalogSnapshot snapshot) {
+        CourseUnlockGraph graph = courseUnlockService.getGraph(courseId, snapshot).orElse(null);
+        if (graph == null) return new Result(0, 0, 0, 0);
+
+        List<UserVideoProgress> videoRows = userVideoProgressRepository.findByUserIdAndCourseIdWithDetails(userId, courseId);
+        List<UserModuleProgress> moduleRows = userModuleProgressRepository.findByUserIdAndCourseId(userId, courseId);
+        List<UserAssessmentProgress> assessmentRows = userAssessmentProgressRepository.findByUserIdAndCourseId(userId, courseId);
+
+        // What the rules give from real events alone
+        CourseProgressBits events = CourseProgressBits.empty(snapshot.getVersion(),
+                graph.getVideoCount(), graph.getModuleCount());
+        for (UserVideoProgress row : videoRows) {
+            int ordinal = videoOrdinal(snapshot, row);
+            if (ordinal >= 0) events.set(ordinal, true, false, row.isCompleted());
+        }
+        for (UserModuleProgress row : moduleRows) {
+            int index = moduleIndex(snapshot, row);
+            if (index >= 0) events.raiseModuleFlags(index, false, row.isAssessmentPassed(), false);
+        }
+        for (UserAssessmentProgress row : assessmentRows) {
+            int index = assessmentModuleIndex(snapshot, row);
+            if (index >= 0) events.raiseModuleFlags(index, false, row.isPassed(), false);
+        }
+        CourseLockState derived = graph.evaluate(events, true);
+
+        List<Long> videoIds = new ArrayList<>();
+        for (UserVideoProgress row : videoRows) {
+            int ordinal = videoOrdinal(snapshot, row);
+            if (ordinal >= 0 && isUnlockOnly(row) && (!row.isUnlocked() || !derived.isVideoLocked(ordinal))) {
+                videoIds.add(row.getId());
+            }
+        }
+        List<Long> moduleIds = new ArrayList<>();
+        for (UserModuleProgress row : moduleRows) {
+            int index = moduleIndex(snapshot, row);
+            if (index >= 0 && !row.isCompleted() && !row.isAssessmentPassed()
+                    && (!row.isUnlocked() || !derived.isModuleLocked(index))) {
+                moduleIds.add(row.getId());
+            }
+        }
+        List<Long> assessmentIds = new ArrayList<>();
+        for (UserAssessmentProgress row : assessmentRows) {
+            int index = assessmentModuleIndex(snapshot, row);
+            if (index >= 0 && isUnlockOnly(row)
+                    && (!Boolean.TRUE.equals(row.getUnlocked()) || !derived.isAssessmentLocked(index))) {
+                assessmentIds.add(row.getId());
+            }
+        }
+
+        // Batch deletes skip the entity listener, so drop cached state by hand
+        if (!videoIds.isEmpty()) userVideoProgressRepository.deleteAllByIdInBatch(videoIds);
+        if (!moduleIds.isEmpty()) userModuleProgressRepository.deleteAllByIdInBatch(moduleIds);
+        if (!assessmentIds.isEmpty()) userAssessmentProgressRepository.deleteAllByIdInBatch(assessmentIds);
+        if (!videoIds.isEmpty() || !moduleIds.isEmpty() || !assessmentIds.isEmpty()) {
+            courseProgressBitsService.invalidateUser(userId);
+            userProgressVersionService.bump(userId);
+        }
+        return new Result(1, videoIds.size(), moduleIds.size(), assessmentIds.size());
+    }
+
+    private static boolean isUnlockOnly(UserVideoProgress row) {
+        return !row.isCompleted()
+                && !Boolean.TRUE.equals(row.getManuallyCompleted())
+                && isZero(row.getWatchedSeconds())
+                && isZero(row.getLastPositionSeconds())
+                && isZero(row.getForwardJumpsCount());
+    }
+
+    private static boolean isUnlockOnly(UserAssessmentProgress row) {
+        return !row.isPassed() && isZero(row.getAttempts()) && row.getSubmittedOn() == null;
+    }
+
+    private static boolean isZero(Integer value) {
+        return value == null || value == 0;
+    }
+
+    private static int videoOrdinal(CatalogSnapshot snapshot, UserVideoProgress row) {
+        return snapshot.findVideo(row.getVideo().getId()).map(CatalogSnapshot.VideoNode::getCourseOrdinal).orElse(-1);
+    }
+
+    private static int moduleIndex(CatalogSnapshot snapshot, UserModuleProgress row) {
+        return snapshot.findModule(row.getModule().getId()).map(CatalogSnapshot.ModuleNode::getIndex).orElse(-1);
+    }
+
+    private static int assessmentModuleIndex(CatalogSnapshot snapshot, UserAssessmentProgress row) {
+        return snapshot.findModuleForAssessment(row.getAssessment().getId())
+                .map(CatalogSnapshot.ModuleNode::getIndex).orElse(-1);
+    }
+}
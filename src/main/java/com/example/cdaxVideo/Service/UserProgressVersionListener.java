@@ -0,0 +1,74 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Entity.*;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA listener on the per-user progress/purchase entities. Any write bumps the
+ * owning user's progress version, whichever service performed it, and video,
+ * module and assessment progress writes are also applied to the cached progress
+ * bitsets.
+ */
+@Component
+public class UserProgressVersionListener {
+
+    // Provider so JPA slices without the service (e.g. @DataJpaTest) can still create the listener
+    private final ObjectProvider<UserProgressVersionService> userProgressVersionService;
+    private final ObjectProvider<CourseProgressBitsService> courseProgressBitsService;
+
+    public UserProgressVersionListener(ObjectProvider<UserProgressVersionService> userProgressVersionService,
+                                       ObjectProvider<CourseProgressBitsService> courseProgressBitsService) {
+        this.userProgressVersionService = userProgressVersionService;
+        this.courseProgressBitsService = courseProgressBitsService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onChange(Object entity) {
+        onChange(entity, true);
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        onChange(entity, false);
+    }
+
+    private void onChange(Object entity, boolean exists) {
+        User user = null;
+        if (entity instanceof UserVideoProgress p) {
+            user = p.getUser();
+            if (user != null && p.getVideo() != null) {
+                Long userId = user.getId();
+                Long videoId = p.getVideo().getId();
+                courseProgressBitsService.ifAvailable(service -> service.recordVideoProgress(
+                        userId, videoId, exists, p.isUnlocked(), p.isCompleted()));
+            }
+        } else if (entity instanceof UserModuleProgress p) {
+            user = p.getUser();
+            if (user != null && p.getModule() != null) {
+                Long userId = user.getId();
+                Long moduleId = p.getModule().getId();
+                courseProgressBitsService.ifAvailable(service -> service.recordModuleProgress(
+                        userId, moduleId, exists, p.isUnlocked(), p.isAssessmentPassed()));
+            }
+        } else if (entity instanceof UserAssessmentProgress p) {
+            user = p.getUser();
+            if (user != null && p.getAssessment() != null) {
+                Long userId = user.getId();
+                Long assessmentId = p.getAssessment().getId();
+                courseProgressBitsService.ifAvailable(service -> service.recordAssessmentProgress(
+                        userId, assessmentId, exists, Boolean.TRUE.equals(p.getUnlocked()), p.isPassed()));
+            }
+        } else if (entity instanceof UserCoursePurchase p) {
+            user = p.getUser();
+        }
+        if (user != null) {
+            Long userId = user.getId();
+            userProgressVersionService.ifAvailable(service -> service.bump(userId));
+        }
+    }
+}
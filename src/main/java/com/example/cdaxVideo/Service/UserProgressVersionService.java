@@ -0,0 +1,50 @@
+package com.example.cdaxVideo.Service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user counter that moves forward whenever something the user sees on a
+ * course page changes (video/module/assessment progress, purchases).
+ * Combined with the catalog version it gives per-user ETags.
+ *
+ * Versions live in memory, so ETags built from them also carry a boot id
+ * (see {@link ETagService}) to stay unique across restarts.
+ */
+@Service
+public class UserProgressVersionService {
+
+    private final ConcurrentHashMap<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public long getVersion(Long userId) {
+        if (userId == null) return 0L;
+        AtomicLong v = versions.get(userId);
+        return v == null ? 0L : v.get();
+    }
+
+    /**
+     * Bump the user's version once the current transaction commits (immediately if
+     * there is none), so a reader never pairs the new version with old data.
+     */
+    public void bump(Long userId) {
+        if (userId == null) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(userId);
+                }
+            });
+        } else {
+            increment(userId);
+        }
+    }
+
+    private void increment(Long userId) {
+        versions.computeIfAbsent(userId, k -> new AtomicLong()).incrementAndGet();
+    }
+}
@@ -0,0 +1,362 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Repository.UserRepository;
+import com.example.cdaxVideo.Repository.UserVideoProgressRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind buffer for player heartbeats.
+ *
+ * Each (user, video) has one entry holding the newest watchedSeconds,
+ * lastPositionSeconds and forwardJumpsCount, plus the {@link WatchedIntervals} set
+ * the position advances add to; a heartbeat only updates it in memory. Dirty
+ * entries are written in upsert batches every {@code progress.buffer.flush-interval-ms},
+ * as soon as {@code progress.buffer.max-dirty} entries are waiting, and on shutdown.
+ * An entry starts from the stored row (one read), so the completed flag is known
+ * without a query per heartbeat: {@link #record} reports when a heartbeat crosses the
+ * completion threshold and the caller then writes it synchronously through the
+ * normal completion flow, after taking the entry out with {@link #takePending}.
+ *
+ * The batch only touches the watch columns, so flags written elsewhere (unlocked,
+ * completed) are never overwritten. Paths that do write watch columns take the
+ * entry first.
+ *
+ * Each entry keeps the {@link WatchEventLog} sequences merged into it and reports
+ * them applied once the batch (or the taker's transaction) commits.
+ */
+@Service
+public class VideoProgressBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(VideoProgressBuffer.class);
+
+    private static final String ROLLUP_SQL =
+            "UPDATE user_course_progress SET watched_seconds = watched_seconds + ?, " +
+            "last_activity_at = ?, updated_at = ? WHERE user_id = ? AND course_id = ?";
+
+    private final UserVideoProgressRepository progressRepository;
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ProgressUpsertService progressUpsertService;
+    private final WatchEventLog watchEventLog;
+    private final TransactionTemplate tx;
+    private final Executor executor;
+    private final boolean enabled;
+    private final int maxDirty;
+    private final long idleEvictMs;
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger dirtyCount = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+
+    public VideoProgressBuffer(UserVideoProgressRepository progressRepository,
+                               UserRepository userRepository,
+                               JdbcTemplate jdbcTemplate,
+                               ProgressUpsertService progressUpsertService,
+                               WatchEventLog watchEventLog,
+                               PlatformTransactionManager transactionManager,
+                               @Qualifier("applicationTaskExecutor") Executor executor,
+                               @Value("${progress.buffer.enabled:true}") boolean enabled,
+                               @Value("${progress.buffer.max-dirty:500}") int maxDirty,
+                               @Value("${progress.buffer.idle-evict-ms:300000}") long idleEvictMs) {
+        this.progressRepository = progressRepository;
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.progressUpsertService = progressUpsertService;
+        this.watchEventLog = watchEventLog;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.executor = executor;
+        this.enabled = enabled;
+        this.maxDirty = maxDirty;
+        this.idleEvictMs = idleEvictMs;
+    }
+
+    private record Key(long userId, long videoId) {}
+
+    private static final class Entry {
+        final Key key;
+        final long courseId;
+        int watched;
+        int position;
+        int jumps;
+        byte[] intervals;
+        long positionAt;        // when the position was last reported
+        int persistedWatched;   // watched seconds last written, base of the rollup delta
+        boolean unlocked;
+        boolean completed;
+        boolean dirty;
+        boolean removed;
+        long touchedAt;
+        List<Long> eventSeqs = new ArrayList<>();   // log events not yet in the database
+
+        Entry(Key key, long courseId) {
+            this.key = key;
+            this.courseId = courseId;
+        }
+
+        Progress view(boolean crossesCompletion) {
+            return new Progress(watched, position, jumps, intervals, positionAt, unlocked, completed, crossesCompletion);
+        }
+    }
+
+    /** Newest values of one (user, video), as a heartbeat response reports them. */
+    public record Progress(int watchedSeconds, int lastPositionSeconds, int forwardJumpsCount, byte[] watchedIntervals,
+                           long positionAtMillis, boolean unlocked, boolean completed, boolean crossesCompletion) {}
+
+    // Values taken out of an entry for one batch
+    private record Pending(Entry entry, int watched, int position, int jumps, byte[] intervals, int watchedDelta,
+                           List<Long> eventSeqs) {}
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Merge a heartbeat (null fields keep their value); a position advance is credited
+     * to the played ranges. When the ranges reach the completion threshold of a video
+     * that is not completed yet, the result has {@code crossesCompletion} set and
+     * nothing is queued: the caller must write it synchronously. {@code eventSeq} is
+     * the heartbeat's watch-event log sequence (0 if none).
+     */
+    public Progress record(Long userId, Long videoId, Long courseId, Integer watchedSeconds,
+                           Integer lastPositionSeconds, Integer forwardJumpsCount, int durationSeconds,
+                           long eventSeq) {
+        Key key = new Key(userId, videoId);
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                Entry loaded = load(key, courseId, durationSeconds);
+                entry = entries.putIfAbsent(key, loaded);
+                if (entry == null) entry = loaded;
+            }
+
+            Progress result;
+            synchronized (entry) {
+                if (entry.removed) continue;
+                if (eventSeq > 0) entry.eventSeqs.add(eventSeq);
+                long now = System.currentTimeMillis();
+                if (watchedSeconds != null) entry.watched = watchedSeconds;
+                if (lastPositionSeconds != null) {
+                    entry.intervals = WatchedIntervals.recordPlayback(entry.intervals, entry.position,
+                            lastPositionSeconds, now - entry.positionAt, durationSeconds);
+                    entry.position = lastPositionSeconds;
+                    entry.positionAt = now;
+                }
+                if (forwardJumpsCount != null) entry.jumps = forwardJumpsCount;
+                entry.touchedAt = now;
+
+                if (!entry.completed && VideoService.meetsCompletionRule(entry.intervals, durationSeconds)) {
+                    return entry.view(true);
+                }
+                if (!entry.dirty) {
+                    entry.dirty = true;
+                    dirtyCount.incrementAndGet();
+                }
+                result = entry.view(false);
+            }
+
+            if (dirtyCount.get() >= maxDirty) {
+                requestFlush();
+            }
+            return result;
+        }
+    }
+
+    /** Buffered values of the (user, video), if any. */
+    public Optional<Progress> peek(Long userId, Long videoId) {
+        Entry entry = entries.get(new Key(userId, videoId));
+        if (entry == null) return Optional.empty();
+        synchronized (entry) {
+            return entry.removed ? Optional.empty() : Optional.of(entry.view(false));
+        }
+    }
+
+    /**
+     * Remove the (user, video) entry before a synchronous write of the same row and
+     * return its unwritten values. Waits for a batch in flight, so that batch cannot
+     * land after the caller's write. Call it inside the writing transaction: the
+     * entry's log events are reported applied when it commits.
+     */
+    public Optional<Progress> takePending(Long userId, Long videoId) {
+        synchronized (flushLock) {
+            Entry entry = entries.remove(new Key(userId, videoId));
+            if (entry == null) return Optional.empty();
+            synchronized (entry) {
+                entry.removed = true;
+                watchEventLog.appliedOnCommit(entry.eventSeqs);
+                if (!entry.dirty) return Optional.empty();
+                entry.dirty = false;
+                dirtyCount.decrementAndGet();
+                return Optional.of(entry.view(false));
+            }
+        }
+    }
+
+    /** Note a completion written elsewhere, so later heartbeats do not report a crossing again. */
+    public void markCompleted(Long userId, Long videoId) {
+        Entry entry = entries.get(new Key(userId, videoId));
+        if (entry == null) return;
+        synchronized (entry) {
+            entry.completed = true;
+            entry.unlocked = true;
+        }
+    }
+
+    private Entry load(Key key, Long courseId, int durationSeconds) {
+        Entry entry = new Entry(key, courseId != null ? courseId : 0L);
+        List<Object[]> rows = progressRepository.findWatchStateByUserIdAndVideoId(key.userId(), key.videoId());
+        if (rows.isEmpty()) {
+            if (!userRepository.existsById(key.userId())) {
+                throw new RuntimeException("User not found with ID: " + key.userId());
+            }
+        } else {
+            Object[] row = rows.get(0);
+            entry.watched = intValue(row[0]);
+            entry.position = intValue(row[1]);
+            entry.jumps = intValue(row[2]);
+            entry.unlocked = Boolean.TRUE.equals(row[3]);
+            entry.completed = Boolean.TRUE.equals(row[4]) || Boolean.TRUE.equals(row[5]);
+            entry.intervals = WatchedIntervals.orLegacy((byte[]) row[6], entry.watched, durationSeconds);
+            entry.positionAt = row[7] != null
+                    ? ((LocalDateTime) row[7]).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+        }
+        entry.persistedWatched = entry.watched;
+        entry.touchedAt = System.currentTimeMillis();
+        return entry;
+    }
+
+    private static int intValue(Object value) {
+        return value != null ? ((Number) value).intValue() : 0;
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    flush();
+                } finally {
+                    flushRequested.set(false);
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${progress.buffer.flush-interval-ms:5000}",
+               initialDelayString = "${progress.buffer.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        if (!enabled) return;
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("❌ Progress buffer flush failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        int written = flush();
+        logger.info("💾 Progress buffer flushed {} entries on shutdown", written);
+    }
+
+    /** Write every dirty entry in one transaction; returns the number of rows written. */
+    public int flush() {
+        synchronized (flushLock) {
+            List<Pending> batch = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            for (Entry entry : entries.values()) {
+                synchronized (entry) {
+                    if (entry.removed) continue;
+                    if (entry.dirty) {
+                        batch.add(new Pending(entry, entry.watched, entry.position, entry.jumps, entry.intervals,
+                                entry.watched - entry.persistedWatched, entry.eventSeqs));
+                        entry.eventSeqs = new ArrayList<>();
+                        entry.dirty = false;
+                        dirtyCount.decrementAndGet();
+                    } else if (now - entry.touchedAt > idleEvictMs) {
+                        entry.removed = true;
+                        entries.remove(entry.key, entry);
+                    }
+                }
+            }
+            if (batch.isEmpty()) return 0;
+
+            long start = System.currentTimeMillis();
+            try {
+                tx.executeWithoutResult(status -> write(batch));
+            } catch (Exception e) {
+                logger.error("❌ Progress buffer batch of {} failed, keeping it for the next flush", batch.size(), e);
+                for (Pending p : batch) {
+                    synchronized (p.entry()) {
+                        if (p.entry().removed) continue;
+                        p.entry().eventSeqs.addAll(0, p.eventSeqs());
+                        if (!p.entry().dirty) {
+                            p.entry().dirty = true;
+                            dirtyCount.incrementAndGet();
+                        }
+                    }
+                }
+                return 0;
+            }
+
+            for (Pending p : batch) {
+                synchronized (p.entry()) {
+                    p.entry().persistedWatched = p.watched();
+                }
+                watchEventLog.applied(p.eventSeqs());
+            }
+            logger.debug("💾 Flushed {} progress heartbeats in {}ms", batch.size(), System.currentTimeMillis() - start);
+            return batch.size();
+        }
+    }
+
+    // Runs inside the flush transaction
+    private void write(List<Pending> batch) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        // One upsert batch; a row that vanished since it was read is inserted again
+        List<ProgressUpsertService.WatchState> states = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            states.add(new ProgressUpsertService.WatchState(p.entry().key.userId(), p.entry().key.videoId(),
+                    p.watched(), p.position(), p.jumps(), p.intervals()));
+        }
+        progressUpsertService.writeWatchStates(states);
+
+        // Course rollup watch time, one delta per (user, course); missing rows are built on first read
+        Map<List<Long>, Long> deltas = new HashMap<>();
+        for (Pending p : batch) {
+            if (p.watchedDelta() != 0 && p.entry().courseId != 0) {
+                deltas.merge(List.of(p.entry().key.userId(), p.entry().courseId), (long) p.watchedDelta(), Long::sum);
+            }
+        }
+        if (!deltas.isEmpty()) {
+            jdbcTemplate.batchUpdate(ROLLUP_SQL, new ArrayList<>(deltas.entrySet()), deltas.size(), (ps, d) -> {
+                ps.setLong(1, d.getValue());
+                ps.setTimestamp(2, now);
+                ps.setTimestamp(3, now);
+                ps.setLong(4, d.getKey().get(0));
+                ps.setLong(5, d.getKey().get(1));
+            });
+        }
+    }
+}
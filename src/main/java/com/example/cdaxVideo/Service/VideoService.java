@@ -11,11 +11,24 @@ import com.example.cdaxVideo.Repository.UserVideoProgressRepository;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class VideoService {
@@ -27,17 +40,38 @@ public class VideoService {
     private final UserVideoProgressRepository progressRepository;
     private final StreakService streakService;
     private final CourseService courseService; // ✅ ADDED: Inject CourseService
+    private final CourseProgressRollupService courseProgressRollupService;
+    private final VideoProgressBuffer progressBuffer;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final WatchEventLog watchEventLog;
+    private final ProgressUpsertService progressUpsertService;
+    private final TransactionTemplate tx;
+    private final int maxBatchItems;
 
     public VideoService(VideoRepository videoRepository,
                        UserRepository userRepository,
                        UserVideoProgressRepository progressRepository,
                        StreakService streakService,
-                       @Lazy CourseService courseService) { // ✅ ADDED: CourseService parameter
+                       @Lazy CourseService courseService, // ✅ ADDED: CourseService parameter
+                       CourseProgressRollupService courseProgressRollupService,
+                       VideoProgressBuffer progressBuffer,
+                       CatalogSnapshotService catalogSnapshotService,
+                       WatchEventLog watchEventLog,
+                       ProgressUpsertService progressUpsertService,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${progress.batch.max-items:50}") int maxBatchItems) {
         this.videoRepository = videoRepository;
         this.userRepository = userRepository;
         this.progressRepository = progressRepository;
         this.streakService = streakService;
         this.courseService = courseService; // ✅ INITIALIZE
+        this.courseProgressRollupService = courseProgressRollupService;
+        this.progressBuffer = progressBuffer;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.watchEventLog = watchEventLog;
+        this.progressUpsertService = progressUpsertService;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.maxBatchItems = maxBatchItems;
     }
 
     /**
@@ -56,6 +90,10 @@ public UserVideoProgress markVideoAsCompleted(VideoCompletionRequestDTO request)
     User user = userRepository.findById(request.getUserId())
             .orElseThrow(() -> new RuntimeException("User not found with ID: " + request.getUserId()));
     
+    // On disk before we answer; the database has it once this transaction ends
+    watchEventLog.appliedAfterCompletion(watchEventLog.append(WatchEventLog.Event.completion(
+            user.getId(), video.getId(), request.getCourseId(), completionThreshold(video.getDuration()))));
+    
     // ✅ ADD THIS: Mark user as NOT new after completing video
     if (user.getIsNewUser() != null && user.getIsNewUser() == 1) {
         user.setIsNewUser(0); // Set to 0 (false) - user is no longer new
@@ -63,18 +101,27 @@ public UserVideoProgress markVideoAsCompleted(VideoCompletionRequestDTO request)
         logger.info("✅ User {} marked as NOT new after completing video {}", user.getId(), video.getId());
     }
     
-    UserVideoProgress progress = progressRepository
-            .findByUserIdAndVideoId(user.getId(), video.getId())
-            .orElseGet(() -> createNewProgressRecord(user, video));
+    UserVideoProgress progress = loadOrCreateProgress(user.getId(), video.getId());
+    applyPendingHeartbeat(progress);
+    
+    // Completion needs the played ranges to cover 95% of the video, whatever the client reports
+    byte[] played = WatchedIntervals.orLegacy(progress.getWatchedIntervals(), progress.getWatchedSeconds(), video.getDuration());
+    if (!progress.isCompleted() && !meetsCompletionRule(played, video.getDuration())) {
+        logger.warn("⚠️ Video {} not completed for user {}: {}s of {}s played",
+                video.getId(), user.getId(), WatchedIntervals.coveredSeconds(played), video.getDuration());
+        progress.setWatchedIntervals(played);
+        return progressRepository.save(progress);
+    }
     
     // Mark as completed
     progress.setCompleted(true);
     progress.setUnlocked(true); // Video should be unlocked when completed
+    progress.setWatchedIntervals(played);
     
-    // Update watch time if needed
-    if (progress.getWatchedSeconds() == null || 
-        progress.getWatchedSeconds() < (int)(video.getDuration() * 0.95)) {
-        progress.setWatchedSeconds((int)(video.getDuration() * 0.95));
+    // Watch time is at least what was actually played
+    int coveredSeconds = WatchedIntervals.coveredSeconds(played);
+    if (progress.getWatchedSeconds() == null || progress.getWatchedSeconds() < coveredSeconds) {
+        progress.setWatchedSeconds(coveredSeconds);
     }
     
     // Save progress first
@@ -155,7 +202,6 @@ private void updateStreakForVideoCompletion(VideoCompletionRequestDTO request,
     /**
      * Updates video progress (watch time, position, forward jumps)
      */
-    @Transactional
     public UserVideoProgress updateVideoProgress(VideoProgressDTO progressDTO) {
         logger.debug("Updating video progress: {}", progressDTO);
         
@@ -164,6 +210,47 @@ private void updateStreakForVideoCompletion(VideoCompletionRequestDTO request,
             throw new RuntimeException("Video ID and User ID are required");
         }
         
+        // Logged to disk before anything is acknowledged, so buffered heartbeats survive a crash
+        Optional<CatalogSnapshot.VideoNode> node = catalogSnapshotService.current().findVideo(progressDTO.getVideoId());
+        long eventSeq = watchEventLog.append(WatchEventLog.Event.progress(
+                progressDTO.getUserId(), progressDTO.getVideoId(), node.map(CatalogSnapshot.VideoNode::getCourseId).orElse(null),
+                progressDTO.getWatchedSeconds(), progressDTO.getLastPositionSeconds(), progressDTO.getForwardJumpsCount()));
+        
+        // Heartbeats go to the write-behind buffer; completions are still written here and now
+        byte[] bufferedIntervals = null;
+        if (progressBuffer.isEnabled() && node.isPresent() && node.get().getDuration() != null) {
+            VideoProgressBuffer.Progress buffered;
+            try {
+                buffered = progressBuffer.record(
+                        progressDTO.getUserId(), progressDTO.getVideoId(), node.get().getCourseId(),
+                        progressDTO.getWatchedSeconds(), progressDTO.getLastPositionSeconds(),
+                        progressDTO.getForwardJumpsCount(), node.get().getDuration(), eventSeq);
+            } catch (RuntimeException e) {
+                watchEventLog.applied(eventSeq);
+                throw e;
+            }
+            if (!buffered.crossesCompletion()) {
+                updateStreakForVideoProgress(progressDTO, null);
+                return bufferedView(progressDTO.getUserId(), progressDTO.getVideoId(), buffered);
+            }
+            bufferedIntervals = buffered.watchedIntervals();
+            progressDTO.setWatchedSeconds(buffered.watchedSeconds());
+            progressDTO.setLastPositionSeconds(buffered.lastPositionSeconds());
+            progressDTO.setForwardJumpsCount(buffered.forwardJumpsCount());
+        }
+        byte[] crossingIntervals = bufferedIntervals;
+        return tx.execute(status -> {
+            watchEventLog.appliedAfterCompletion(eventSeq);
+            if (crossingIntervals != null) {
+                progressBuffer.takePending(progressDTO.getUserId(), progressDTO.getVideoId());
+            }
+            return writeVideoProgress(progressDTO, crossingIntervals);
+        });
+    }
+
+    // Synchronous path: load, update and save the row in the caller's transaction. bufferedIntervals
+    // are the played ranges of a buffered entry that already include this heartbeat.
+    private UserVideoProgress writeVideoProgress(VideoProgressDTO progressDTO, byte[] bufferedIntervals) {
         // Find video
         Video video = videoRepository.findById(progressDTO.getVideoId())
                 .orElseThrow(() -> new RuntimeException("Video not found with ID: " + progressDTO.getVideoId()));
@@ -173,11 +260,21 @@ private void updateStreakForVideoCompletion(VideoCompletionRequestDTO request,
                 .orElseThrow(() -> new RuntimeException("User not found with ID: " + progressDTO.getUserId()));
         
         // Find or create progress record
-        UserVideoProgress progress = progressRepository
-                .findByUserIdAndVideoId(user.getId(), video.getId())
-                .orElseGet(() -> createNewProgressRecord(user, video));
+        UserVideoProgress progress = loadOrCreateProgress(user.getId(), video.getId());
         
         // Update progress fields
+        int previousWatched = progress.getWatchedSeconds() != null ? progress.getWatchedSeconds() : 0;
+        boolean wasCompleted = progress.isCompleted();
+        byte[] played = WatchedIntervals.orLegacy(progress.getWatchedIntervals(), progress.getWatchedSeconds(), video.getDuration());
+        if (bufferedIntervals != null) {
+            played = WatchedIntervals.union(played, bufferedIntervals);
+        } else if (progressDTO.getLastPositionSeconds() != null && video.getDuration() != null) {
+            played = WatchedIntervals.recordPlayback(played, progress.getLastPositionSeconds(),
+                    progressDTO.getLastPositionSeconds(), millisSinceLastUpdate(progress), video.getDuration());
+        }
+        if (played != progress.getWatchedIntervals()) {
+            progress.setWatchedIntervals(played);
+        }
         if (progressDTO.getWatchedSeconds() != null) {
             progress.setWatchedSeconds(progressDTO.getWatchedSeconds());
         }
@@ -196,7 +293,194 @@ private void updateStreakForVideoCompletion(VideoCompletionRequestDTO request,
         // ✅ Update streak for progress (optional - for significant watch time)
         updateStreakForVideoProgress(progressDTO, video);
         
-        return progressRepository.save(progress);
+        UserVideoProgress saved = progressRepository.save(progress);
+        
+        // Keep the course rollup current: a completion recounts it, plain watch time is a delta
+        if (saved.isCompleted() && !wasCompleted) {
+            courseProgressRollupService.refresh(user.getId(), video.getModule().getCourse().getId());
+        } else {
+            int watched = saved.getWatchedSeconds() != null ? saved.getWatchedSeconds() : 0;
+            courseProgressRollupService.addWatchTimeForVideo(user.getId(), video.getId(), watched - previousWatched);
+        }
+        return saved;
+    }
+
+    // One video's row as the batch builds it
+    private static final class BatchRow {
+        final CatalogSnapshot.VideoNode video;
+        int watched;
+        int position;
+        int jumps;
+        byte[] intervals;
+        long positionAt;
+        int storedWatched;
+        boolean unlocked;
+        boolean completed;
+        boolean completing;
+
+        BatchRow(CatalogSnapshot.VideoNode video) {
+            this.video = video;
+        }
+    }
+
+    /**
+     * Apply several heartbeats of one user in one transaction: the videos come from
+     * the catalog snapshot, the stored rows from one IN query, and all rows are written
+     * in one JDBC batch. Each item then gets the same completion check as a single
+     * heartbeat; a completed video runs the normal unlocking flow. Returns one result
+     * per item, in order; an unknown video fails only its own item.
+     */
+    public List<Map<String, Object>> updateVideoProgressBatch(Long userId, List<VideoProgressDTO> items) {
+        if (userId == null) {
+            throw new RuntimeException("User ID is required");
+        }
+        if (items == null || items.isEmpty()) {
+            throw new RuntimeException("At least one progress item is required");
+        }
+        if (items.size() > maxBatchItems) {
+            throw new RuntimeException("At most " + maxBatchItems + " progress items per batch");
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new RuntimeException("User not found with ID: " + userId);
+        }
+
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        List<WatchEventLog.Event> events = new ArrayList<>();
+        for (VideoProgressDTO item : items) {
+            item.setUserId(userId);
+            if (item.getVideoId() == null) continue;
+            events.add(WatchEventLog.Event.progress(userId, item.getVideoId(),
+                    snapshot.findVideo(item.getVideoId()).map(CatalogSnapshot.VideoNode::getCourseId).orElse(null),
+                    item.getWatchedSeconds(), item.getLastPositionSeconds(), item.getForwardJumpsCount()));
+        }
+        List<Long> eventSeqs = watchEventLog.appendAll(events);
+
+        Map<Long, BatchRow> rows = tx.execute(status -> {
+            eventSeqs.forEach(watchEventLog::appliedAfterCompletion);
+            return writeVideoProgressBatch(userId, items, snapshot);
+        });
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (VideoProgressDTO item : items) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("videoId", item.getVideoId());
+            BatchRow row = item.getVideoId() != null ? rows.get(item.getVideoId()) : null;
+            if (row == null) {
+                result.put("success", false);
+                result.put("error", item.getVideoId() == null
+                        ? "Video ID is required" : "Video not found with ID: " + item.getVideoId());
+            } else {
+                result.put("success", true);
+                result.put("watchedSeconds", row.watched);
+                result.put("lastPositionSeconds", row.position);
+                result.put("forwardJumpsCount", row.jumps);
+                result.put("playedSeconds", WatchedIntervals.coveredSeconds(row.intervals));
+                result.put("completed", row.completed);
+                result.put("unlocked", row.unlocked || row.completed
+                        || courseService.isVideoUnlockedForUser(userId, item.getVideoId()));
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    // Runs inside the batch transaction; returns the final row per known video
+    private Map<Long, BatchRow> writeVideoProgressBatch(Long userId, List<VideoProgressDTO> items,
+                                                        CatalogSnapshot snapshot) {
+        Map<Long, BatchRow> rows = new LinkedHashMap<>();
+        for (VideoProgressDTO item : items) {
+            if (item.getVideoId() == null || rows.containsKey(item.getVideoId())) continue;
+            snapshot.findVideo(item.getVideoId()).ifPresent(video -> rows.put(video.getId(), new BatchRow(video)));
+        }
+        if (rows.isEmpty()) return rows;
+
+        // Stored rows, then anything still buffered for them (newer than the rows)
+        for (Object[] state : progressRepository.findWatchStatesByUserIdAndVideoIdIn(userId, rows.keySet())) {
+            BatchRow row = rows.get((Long) state[0]);
+            row.watched = state[1] != null ? ((Number) state[1]).intValue() : 0;
+            row.position = state[2] != null ? ((Number) state[2]).intValue() : 0;
+            row.jumps = state[3] != null ? ((Number) state[3]).intValue() : 0;
+            row.unlocked = Boolean.TRUE.equals(state[4]);
+            row.completed = Boolean.TRUE.equals(state[5]) || Boolean.TRUE.equals(state[6]);
+            row.intervals = WatchedIntervals.orLegacy((byte[]) state[7], row.watched, row.video.getDuration());
+            row.positionAt = state[8] != null
+                    ? ((LocalDateTime) state[8]).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+        }
+        for (BatchRow row : rows.values()) {
+            row.storedWatched = row.watched;
+            progressBuffer.takePending(userId, row.video.getId()).ifPresent(buffered -> {
+                row.watched = buffered.watchedSeconds();
+                row.position = buffered.lastPositionSeconds();
+                row.jumps = buffered.forwardJumpsCount();
+                row.intervals = WatchedIntervals.union(row.intervals, buffered.watchedIntervals());
+                row.positionAt = buffered.positionAtMillis();
+            });
+        }
+
+        // Items in request order, each followed by the completion check
+        long nowMillis = System.currentTimeMillis();
+        for (VideoProgressDTO item : items) {
+            BatchRow row = item.getVideoId() != null ? rows.get(item.getVideoId()) : null;
+            if (row == null) continue;
+            if (item.getWatchedSeconds() != null) row.watched = item.getWatchedSeconds();
+            if (item.getLastPositionSeconds() != null) {
+                if (row.video.getDuration() != null) {
+                    row.intervals = WatchedIntervals.recordPlayback(row.intervals, row.position,
+                            item.getLastPositionSeconds(), nowMillis - row.positionAt, row.video.getDuration());
+                }
+                row.position = item.getLastPositionSeconds();
+                row.positionAt = nowMillis;
+            }
+            if (item.getForwardJumpsCount() != null) row.jumps = item.getForwardJumpsCount();
+            if (!row.completed && meetsCompletionRule(row.intervals, row.video.getDuration())) {
+                row.completed = true;
+                row.completing = true;
+                row.unlocked = true;
+            }
+        }
+
+        // One upsert batch: rows created by another request meanwhile are simply updated
+        List<ProgressUpsertService.WatchState> states = new ArrayList<>();
+        for (BatchRow r : rows.values()) {
+            states.add(new ProgressUpsertService.WatchState(userId, r.video.getId(), r.watched, r.position, r.jumps,
+                    r.intervals));
+        }
+        progressUpsertService.writeWatchStates(states);
+
+        // Completions go through the unlocking flow (which also recounts the course rollup),
+        // after the batch so it loads the rows as written; other rows add their watch time
+        Map<Long, Long> watchDeltas = new HashMap<>();
+        Set<Long> recounted = new HashSet<>();
+        for (BatchRow row : rows.values()) {
+            if (row.completing) {
+                recounted.add(row.video.getCourseId());
+                try {
+                    courseService.completeVideoAndUnlockNext(userId, row.video.getCourseId(),
+                            row.video.getModuleId(), row.video.getId());
+                } catch (Exception e) {
+                    logger.error("Error calling CourseService for auto-completion: {}", e.getMessage());
+                }
+            } else if (row.watched != row.storedWatched) {
+                watchDeltas.merge(row.video.getCourseId(), (long) (row.watched - row.storedWatched), Long::sum);
+            }
+        }
+        watchDeltas.keySet().removeAll(recounted);
+        watchDeltas.forEach((courseId, delta) -> courseProgressRollupService.addWatchTime(userId, courseId, delta));
+        return rows;
+    }
+
+    // Transient row carrying the buffered values, for the heartbeat response
+    private UserVideoProgress bufferedView(Long userId, Long videoId, VideoProgressBuffer.Progress buffered) {
+        UserVideoProgress view = new UserVideoProgress();
+        view.setUser(userRepository.getReferenceById(userId));
+        view.setVideo(videoRepository.getReferenceById(videoId));
+        view.setWatchedSeconds(buffered.watchedSeconds());
+        view.setLastPositionSeconds(buffered.lastPositionSeconds());
+        view.setForwardJumpsCount(buffered.forwardJumpsCount());
+        view.setWatchedIntervals(buffered.watchedIntervals());
+        view.setUnlocked(buffered.unlocked());
+        view.setCompleted(buffered.completed());
+        return view;
     }
 
     /**
@@ -232,13 +516,30 @@ private void updateStreakForVideoCompletion(VideoCompletionRequestDTO request,
             dto.setLastPositionSeconds(progress.getLastPositionSeconds());
             dto.setForwardJumpsCount(progress.getForwardJumpsCount());
             dto.setCompleted(progress.isCompleted());
-            dto.setUnlocked(progress.isUnlocked());
+            dto.setUnlocked(isUnlocked(progress));
             // Note: completedOn is not included in VideoProgressDTO
         }
         
+        // Heartbeats not yet written are newer than the row
+        progressBuffer.peek(userId, videoId).ifPresent(buffered -> {
+            dto.setWatchedSeconds(buffered.watchedSeconds());
+            dto.setLastPositionSeconds(buffered.lastPositionSeconds());
+            dto.setForwardJumpsCount(buffered.forwardJumpsCount());
+        });
+        
         return dto;
     }
 
+    /**
+     * Whether the row's video is playable: its own unlocked flag, or the course unlock
+     * rules (in derived unlock mode most playable videos have no unlocked row).
+     */
+    public boolean isUnlocked(UserVideoProgress progress) {
+        if (progress.isUnlocked()) return true;
+        if (progress.getUser() == null || progress.getVideo() == null) return false;
+        return courseService.isVideoUnlockedForUser(progress.getUser().getId(), progress.getVideo().getId());
+    }
+
     /**
      * Manually marks a video as completed (admin/instructor override)
      */
@@ -250,9 +551,11 @@ private void updateStreakForVideoCompletion(VideoCompletionRequestDTO request,
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
-        UserVideoProgress progress = progressRepository
-                .findByUserIdAndVideoId(userId, videoId)
-                .orElseGet(() -> createNewProgressRecord(user, video));
+        watchEventLog.appliedAfterCompletion(watchEventLog.append(WatchEventLog.Event.completion(
+                userId, videoId, video.getModule().getCourse().getId(), video.getDuration())));
+        
+        UserVideoProgress progress = loadOrCreateProgress(user.getId(), video.getId());
+        applyPendingHeartbeat(progress);
         
         progress.setCompleted(true);
         progress.setUnlocked(true);
@@ -284,13 +587,10 @@ private void updateStreakForVideoCompletion(VideoCompletionRequestDTO request,
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
-        UserVideoProgress progress = progressRepository
-                .findByUserIdAndVideoId(userId, videoId)
-                .orElseGet(() -> createNewProgressRecord(user, video));
+        progressUpsertService.unlockVideo(user.getId(), video.getId());
         
-        progress.setUnlocked(true);
-        
-        return progressRepository.save(progress);
+        return progressRepository.findByUserIdAndVideoId(userId, videoId)
+                .orElseThrow(() -> new RuntimeException("Progress not found after unlock"));
     }
 
     /**
@@ -312,18 +612,45 @@ private void updateStreakForVideoCompletion(VideoCompletionRequestDTO request,
     }
 
     /**
-     * Helper method to create new progress record
+     * Take the row's buffered heartbeat into this write, so a later batch cannot
+     * overwrite what is saved here
      */
-    private UserVideoProgress createNewProgressRecord(User user, Video video) {
-        UserVideoProgress progress = new UserVideoProgress();
-        progress.setUser(user);
-        progress.setVideo(video);
-        progress.setUnlocked(false);
-        progress.setCompleted(false);
-        progress.setWatchedSeconds(0);
-        progress.setLastPositionSeconds(0);
-        progress.setForwardJumpsCount(0);
-        return progress;
+    private void applyPendingHeartbeat(UserVideoProgress progress) {
+        progressBuffer.takePending(progress.getUser().getId(), progress.getVideo().getId()).ifPresent(buffered -> {
+            progress.setWatchedSeconds(buffered.watchedSeconds());
+            progress.setLastPositionSeconds(buffered.lastPositionSeconds());
+            progress.setForwardJumpsCount(buffered.forwardJumpsCount());
+            progress.setWatchedIntervals(buffered.watchedIntervals());
+        });
+    }
+
+    /** The played ranges cover 95% of the video (skipped parts never count) */
+    static boolean meetsCompletionRule(byte[] watchedIntervals, Integer durationSeconds) {
+        return durationSeconds != null
+                && WatchedIntervals.coveredSeconds(watchedIntervals) >= completionThreshold(durationSeconds);
+    }
+
+    // Time since the row's position was last stored; a new row has none, so only the step cap applies
+    private static long millisSinceLastUpdate(UserVideoProgress progress) {
+        if (progress.getId() == null || progress.getLastUpdatedAt() == null) return Long.MAX_VALUE;
+        return Duration.between(progress.getLastUpdatedAt(), LocalDateTime.now()).toMillis();
+    }
+
+    /** Watched seconds at which a video counts as completed (95% of its duration) */
+    static int completionThreshold(int durationSeconds) {
+        return (int) (durationSeconds * 0.95);
+    }
+
+    /**
+     * Helper method to load the progress record, creating it with an upsert if missing
+     * (concurrent first writes of the same row then cannot collide)
+     */
+    private UserVideoProgress loadOrCreateProgress(Long userId, Long videoId) {
+        return progressRepository.findByUserIdAndVideoId(userId, videoId).orElseGet(() -> {
+            progressUpsertService.ensureVideoRow(userId, videoId);
+            return progressRepository.findByUserIdAndVideoId(userId, videoId)
+                    .orElseThrow(() -> new RuntimeException("Progress not found after upsert"));
+        });
     }
 
     /**
@@ -333,9 +660,7 @@ private void updateStreakForVideoCompletion(VideoCompletionRequestDTO request,
         // Only check if not already completed
         if (!progress.isCompleted() && !Boolean.TRUE.equals(progress.getManuallyCompleted())) {
             // Check if watched enough (95%) and not skipped too much (<10 forward jumps)
-            if (progress.getWatchedSeconds() != null && 
-                progress.getWatchedSeconds() >= (int)(video.getDuration() * 0.95) &&
-                (progress.getForwardJumpsCount() == null || progress.getForwardJumpsCount() < 10)) {
+            if (meetsCompletionRule(progress.getWatchedIntervals(), video.getDuration())) {
                 
                 progress.setCompleted(true);
                 progress.setUnlocked(true);
@@ -371,13 +696,12 @@ private void updateStreakForVideoCompletion(VideoCompletionRequestDTO request,
             User user = userRepository.findById(userId)
                     .orElseThrow(() -> new RuntimeException("User not found"));
             
-            UserVideoProgress progress = progressRepository
-                    .findByUserIdAndVideoId(userId, videoId)
-                    .orElseGet(() -> createNewProgressRecord(user, video));
+            boolean unlocked = progressRepository.findByUserIdAndVideoId(user.getId(), video.getId())
+                    .map(UserVideoProgress::isUnlocked)
+                    .orElse(false);
             
-            if (!progress.isUnlocked()) {
-                progress.setUnlocked(true);
-                progressRepository.save(progress);
+            if (!unlocked) {
+                progressUpsertService.unlockVideo(user.getId(), video.getId());
                 logger.info("Unlocked video {} for user {}", videoId, userId);
                 return true;
             }
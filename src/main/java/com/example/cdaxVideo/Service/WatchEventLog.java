@@ -0,0 +1,422 @@
+package com.example.cdaxVideo.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only log of player progress and completion events.
+ *
+ * VideoService appends every event before it answers, so a heartbeat that only
+ * reached {@link VideoProgressBuffer} survives a crash. The log is a directory of
+ * memory-mapped segment files of {@code progress.log.segment-bytes}, each named by
+ * the sequence number of its first record; a full segment is forced and a new one
+ * started. A record is {@code [payload length][CRC32 of payload][payload]}; a zero
+ * length ends a segment, and a record whose CRC does not match (a torn write) ends
+ * it too.
+ *
+ * fsync is grouped: {@link #append} returns once the record is forced, and one
+ * force covers every record appended before it, so concurrent appenders share it.
+ *
+ * Every appended sequence stays pending until its writer reports it in the database
+ * ({@link #applied}, {@link #appliedOnCommit}). {@link #compact} stores everything
+ * below the oldest pending sequence as the checkpoint and deletes the segments it
+ * covers. At startup the records after the checkpoint are kept for
+ * {@link WatchEventReplay}.
+ *
+ * The log is off unless {@code progress.log.enabled} is set, and then needs an
+ * absolute {@code progress.log.dir}, so a deployment never maps files into
+ * whatever its working directory happens to be.
+ */
+@Service
+public class WatchEventLog {
+    private static final Logger logger = LoggerFactory.getLogger(WatchEventLog.class);
+
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = HEADER_BYTES + Event.PAYLOAD_BYTES;
+    private static final String SEGMENT_SUFFIX = ".wlog";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    private final Object compactLock = new Object();
+    // Segments no longer written: first sequence -> last sequence (guarded by appendLock)
+    private final TreeMap<Long, Long> sealed = new TreeMap<>();
+    private final ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<>();
+
+    private MappedByteBuffer active;
+    private long activeFirstSeq;
+    private long lastSeq;
+    private volatile long syncedSeq;
+    private long checkpoint;
+    private List<Event> recovered = List.of();
+
+    public WatchEventLog(@Value("${progress.log.enabled:false}") boolean enabled,
+                         @Value("${progress.log.dir:}") String dir,
+                         @Value("${progress.log.segment-bytes:16777216}") int segmentBytes) {
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        if (enabled && !this.dir.isAbsolute()) {
+            throw new IllegalStateException("progress.log.dir must be an absolute path when the watch-event log " +
+                    "is enabled, got '" + dir + "'");
+        }
+        this.segmentBytes = Math.max(segmentBytes, RECORD_BYTES + HEADER_BYTES);
+    }
+
+    /** One progress or completion event; {@link #UNSET} marks a heartbeat field that was not sent. */
+    public record Event(byte type, long seq, long userId, long videoId, long courseId,
+                        int watchedSeconds, int lastPositionSeconds, int forwardJumpsCount, long timestampMillis) {
+        public static final byte PROGRESS = 1;
+        public static final byte COMPLETION = 2;
+        public static final int UNSET = -1;
+
+        static final int PAYLOAD_BYTES = 1 + 8 * 4 + 4 * 3 + 8;
+
+        public static Event progress(Long userId, Long videoId, Long courseId,
+                                     Integer watchedSeconds, Integer lastPositionSeconds, Integer forwardJumpsCount) {
+            return new Event(PROGRESS, 0, userId, videoId, courseId != null ? courseId : 0,
+                    orUnset(watchedSeconds), orUnset(lastPositionSeconds), orUnset(forwardJumpsCount),
+                    System.currentTimeMillis());
+        }
+
+        public static Event completion(Long userId, Long videoId, Long courseId, Integer watchedSeconds) {
+            return new Event(COMPLETION, 0, userId, videoId, courseId != null ? courseId : 0,
+                    orUnset(watchedSeconds), UNSET, UNSET, System.currentTimeMillis());
+        }
+
+        public boolean isCompletion() {
+            return type == COMPLETION;
+        }
+
+        private static int orUnset(Integer value) {
+            return value != null && value >= 0 ? value : UNSET;
+        }
+
+        Event withSeq(long seq) {
+            return new Event(type, seq, userId, videoId, courseId, watchedSeconds, lastPositionSeconds,
+                    forwardJumpsCount, timestampMillis);
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            buffer.put(type).putLong(seq).putLong(userId).putLong(videoId).putLong(courseId)
+                    .putInt(watchedSeconds).putInt(lastPositionSeconds).putInt(forwardJumpsCount)
+                    .putLong(timestampMillis);
+        }
+
+        static Event readFrom(ByteBuffer buffer) {
+            return new Event(buffer.get(), buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                    buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getLong());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) return;
+        Files.createDirectories(dir);
+        checkpoint = readCheckpoint();
+        lastSeq = checkpoint;
+
+        List<Event> events = new ArrayList<>();
+        for (Path segment : listSegments()) {
+            long first = firstSeqOf(segment);
+            long last = first - 1;
+            for (Event event : readSegment(segment)) {
+                last = event.seq();
+                if (event.seq() > checkpoint) events.add(event);
+            }
+            sealed.put(first, last);
+            lastSeq = Math.max(lastSeq, last);
+        }
+        syncedSeq = lastSeq;
+        for (Event event : events) {
+            pending.add(event.seq());
+        }
+        recovered = events;
+        logger.info("📼 Watch-event log at {}: {} segments, checkpoint {}, {} events to replay",
+                dir.toAbsolutePath(), sealed.size(), checkpoint, events.size());
+    }
+
+    /** Events found after the checkpoint at startup, in log order. */
+    public List<Event> recoveredEvents() {
+        return recovered;
+    }
+
+    /**
+     * Append the event and wait until it is on disk. Returns its sequence number
+     * (0 when the log is disabled), which the caller reports once the database has it.
+     */
+    public long append(Event event) {
+        return appendAll(List.of(event)).get(0);
+    }
+
+    /** Append several events with one wait for the disk; returns their sequences in order. */
+    public List<Long> appendAll(List<Event> events) {
+        if (!enabled || events.isEmpty()) return events.stream().map(e -> 0L).toList();
+        List<Long> seqs = new ArrayList<>(events.size());
+        synchronized (appendLock) {
+            for (Event event : events) {
+                long seq = lastSeq + 1;
+                ByteBuffer record = encode(event.withSeq(seq));
+                if (active == null || active.remaining() < record.remaining()) {
+                    rotate(seq);
+                }
+                active.put(record);
+                lastSeq = seq;
+                pending.add(seq);
+                seqs.add(seq);
+            }
+        }
+        sync(seqs.get(seqs.size() - 1));
+        return seqs;
+    }
+
+    /** The database has the event (its values or newer ones). */
+    public void applied(long seq) {
+        if (seq > 0) pending.remove(seq);
+    }
+
+    public void applied(Collection<Long> seqs) {
+        for (Long seq : seqs) {
+            applied(seq);
+        }
+    }
+
+    /**
+     * Report the events applied when the current transaction commits; on rollback they
+     * stay pending and are replayed at the next start.
+     */
+    public void appliedOnCommit(Collection<Long> seqs) {
+        if (seqs.isEmpty()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applied(seqs);
+            return;
+        }
+        List<Long> copy = List.copyOf(seqs);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                applied(copy);
+            }
+        });
+    }
+
+    /**
+     * Report the caller's own event done when the current transaction ends either way:
+     * after a rollback the caller answered with an error, so nothing was acknowledged.
+     */
+    public void appliedAfterCompletion(long seq) {
+        if (seq <= 0) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applied(seq);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                applied(seq);
+            }
+        });
+    }
+
+    // One force covers every record appended so far; callers queued behind it find theirs covered
+    private void sync(long seq) {
+        synchronized (syncLock) {
+            if (syncedSeq >= seq) return;
+            MappedByteBuffer buffer;
+            long upTo;
+            synchronized (appendLock) {
+                buffer = active;
+                upTo = lastSeq;
+            }
+            buffer.force();
+            syncedSeq = upTo;
+        }
+    }
+
+    // Caller holds appendLock; the full segment is forced before the new one takes records
+    private void rotate(long firstSeq) {
+        try {
+            if (active != null) {
+                active.force();
+                sealed.put(activeFirstSeq, lastSeq);
+            }
+            Path path = dir.resolve(segmentName(firstSeq));
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                active = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            }
+            activeFirstSeq = firstSeq;
+            forceDirectory();
+            logger.debug("📼 Started watch-event segment {}", path.getFileName());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot start watch-event log segment", e);
+        }
+    }
+
+    /**
+     * Move the checkpoint up to the oldest pending event and delete the segments
+     * below it. Returns the checkpoint.
+     */
+    @Scheduled(fixedDelayString = "${progress.log.compact-interval-ms:60000}",
+               initialDelayString = "${progress.log.compact-interval-ms:60000}")
+    public long compact() {
+        if (!enabled) return 0;
+        synchronized (compactLock) {
+            long upTo;
+            synchronized (appendLock) {
+                Iterator<Long> oldest = pending.iterator();
+                upTo = oldest.hasNext() ? oldest.next() - 1 : lastSeq;
+            }
+            if (upTo <= checkpoint) return checkpoint;
+
+            try {
+                writeCheckpoint(upTo);
+            } catch (IOException e) {
+                logger.error("❌ Cannot write watch-event log checkpoint", e);
+                return checkpoint;
+            }
+            checkpoint = upTo;
+
+            List<Long> covered = new ArrayList<>();
+            synchronized (appendLock) {
+                for (Map.Entry<Long, Long> segment : sealed.entrySet()) {
+                    if (segment.getValue() <= upTo) covered.add(segment.getKey());
+                }
+                covered.forEach(sealed::remove);
+            }
+            for (Long first : covered) {
+                try {
+                    Files.deleteIfExists(dir.resolve(segmentName(first)));
+                } catch (IOException e) {
+                    logger.warn("⚠️ Cannot delete watch-event segment {}: {}", segmentName(first), e.getMessage());
+                }
+            }
+            if (!covered.isEmpty()) {
+                logger.info("🧹 Watch-event log compacted to {}, deleted {} segments", upTo, covered.size());
+            }
+            return upTo;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) return;
+        synchronized (appendLock) {
+            if (active != null) active.force();
+        }
+        compact();
+    }
+
+    private static ByteBuffer encode(Event event) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        record.putInt(Event.PAYLOAD_BYTES).putInt(0);
+        event.writeTo(record);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_BYTES, Event.PAYLOAD_BYTES);
+        record.putInt(4, (int) crc.getValue());
+        return record.flip();
+    }
+
+    private List<Event> readSegment(Path segment) throws IOException {
+        List<Event> events = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int length = buffer.getInt();
+            if (length == 0) break;
+            int expected = buffer.getInt();
+            if (length != Event.PAYLOAD_BYTES || buffer.remaining() < length) {
+                logger.warn("⚠️ Watch-event segment {} has a bad record length at {}, ignoring the rest",
+                        segment.getFileName(), buffer.position() - HEADER_BYTES);
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), length);
+            if ((int) crc.getValue() != expected) {
+                logger.warn("⚠️ Watch-event segment {} has a torn record at {}, ignoring the rest",
+                        segment.getFileName(), buffer.position() - HEADER_BYTES);
+                break;
+            }
+            events.add(Event.readFrom(buffer));
+        }
+        return events;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+    }
+
+    private static String segmentName(long firstSeq) {
+        return String.format("%020d%s", firstSeq, SEGMENT_SUFFIX);
+    }
+
+    private static long firstSeqOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) return 0;
+        byte[] bytes = Files.readAllBytes(file);
+        return bytes.length == 8 ? ByteBuffer.wrap(bytes).getLong() : 0;
+    }
+
+    // Written aside and renamed over the old one, so a crash leaves either checkpoint whole
+    private void writeCheckpoint(long seq) throws IOException {
+        Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(8).putLong(0, seq));
+            channel.force(true);
+        }
+        Files.move(tmp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+    }
+
+    // Make file creation and renames durable (not supported on every platform)
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Directory fsync not supported: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Repository.UserRepository;
+import com.example.cdaxVideo.Repository.UserVideoProgressRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Replays the watch-event log into user_video_progress and user_streaks at startup,
+ * before the web server takes requests.
+ *
+ * Events are folded per (user, video) in log order into the newest watch values,
+ * then written with one guarded statement: a row changed after the last event
+ * already holds newer values and is left alone, so replaying events the database
+ * had anyway is harmless. Position advances between the events are credited to the
+ * played ranges with the event timestamps, and the ranges are merged into the
+ * stored ones (a union, so always safe). When the ranges reach the completion
+ * threshold of a row not yet completed, the normal completion flow and the streak
+ * update run. Each (user, video) is one transaction; once replayed, its
+ * events are reported applied and the log is compacted.
+ */
+@Service
+public class WatchEventReplay implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(WatchEventReplay.class);
+
+    private static final String UPDATE_SQL =
+            "UPDATE user_video_progress SET watched_seconds = COALESCE(?, watched_seconds), " +
+            "last_position_seconds = COALESCE(?, last_position_seconds), " +
+            "forward_jumps_count = COALESCE(?, forward_jumps_count), last_updated_at = ? " +
+            "WHERE user_id = ? AND video_id = ? AND (last_updated_at IS NULL OR last_updated_at < ?)";
+    private static final String INSERT_SQL =
+            "INSERT INTO user_video_progress (user_id, video_id, unlocked, completed, manually_completed, " +
+            "watched_seconds, last_position_seconds, forward_jumps_count, last_updated_at) " +
+            "VALUES (?, ?, false, false, false, ?, ?, ?, ?)";
+    private static final String INTERVALS_SQL =
+            "UPDATE user_video_progress SET watched_intervals = ? WHERE user_id = ? AND video_id = ?";
+
+    private final WatchEventLog watchEventLog;
+    private final JdbcTemplate jdbcTemplate;
+    private final UserVideoProgressRepository progressRepository;
+    private final UserRepository userRepository;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final CourseService courseService;
+    private final StreakService streakService;
+    private final CourseProgressBitsService courseProgressBitsService;
+    private final CourseProgressRollupService courseProgressRollupService;
+    private final UserProgressVersionService userProgressVersionService;
+    private final TransactionTemplate tx;
+
+    public WatchEventReplay(WatchEventLog watchEventLog,
+                            JdbcTemplate jdbcTemplate,
+                            UserVideoProgressRepository progressRepository,
+                            UserRepository userRepository,
+                            CatalogSnapshotService catalogSnapshotService,
+                            @Lazy CourseService courseService,
+                            StreakService streakService,
+                            CourseProgressBitsService courseProgressBitsService,
+                            CourseProgressRollupService courseProgressRollupService,
+                            UserProgressVersionService userProgressVersionService,
+                            PlatformTransactionManager transactionManager) {
+        this.watchEventLog = watchEventLog;
+        this.jdbcTemplate = jdbcTemplate;
+        this.progressRepository = progressRepository;
+        this.userRepository = userRepository;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.courseService = courseService;
+        this.streakService = streakService;
+        this.courseProgressBitsService = courseProgressBitsService;
+        this.courseProgressRollupService = courseProgressRollupService;
+        this.userProgressVersionService = userProgressVersionService;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    // Newest values of one (user, video) across its events
+    private static final class Folded {
+        final long userId;
+        final long videoId;
+        final Integer duration;
+        long courseId;
+        Integer watched;
+        Integer position;
+        long positionAt;
+        Integer jumps;
+        byte[] intervals;
+        long lastAt;
+        final List<Long> seqs = new ArrayList<>();
+
+        Folded(WatchEventLog.Event first, Integer duration) {
+            this.userId = first.userId();
+            this.videoId = first.videoId();
+            this.duration = duration;
+        }
+
+        void merge(WatchEventLog.Event event) {
+            if (event.courseId() != 0) courseId = event.courseId();
+            if (event.watchedSeconds() != WatchEventLog.Event.UNSET) {
+                watched = event.isCompletion() && watched != null
+                        ? Math.max(watched, event.watchedSeconds()) : event.watchedSeconds();
+            }
+            if (event.lastPositionSeconds() != WatchEventLog.Event.UNSET) {
+                if (position != null && duration != null) {
+                    intervals = WatchedIntervals.recordPlayback(intervals, position, event.lastPositionSeconds(),
+                            event.timestampMillis() - positionAt, duration);
+                }
+                position = event.lastPositionSeconds();
+                positionAt = event.timestampMillis();
+            }
+            if (event.forwardJumpsCount() != WatchEventLog.Event.UNSET) jumps = event.forwardJumpsCount();
+            lastAt = Math.max(lastAt, event.timestampMillis());
+            seqs.add(event.seq());
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<WatchEventLog.Event> events = watchEventLog.recoveredEvents();
+        if (events.isEmpty()) return;
+        replay(events);
+        watchEventLog.compact();
+    }
+
+    /** Apply the events; returns the number of (user, video) rows replayed. */
+    public int replay(List<WatchEventLog.Event> events) {
+        long start = System.currentTimeMillis();
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        Map<List<Long>, Folded> folded = new LinkedHashMap<>();
+        for (WatchEventLog.Event event : events) {
+            folded.computeIfAbsent(List.of(event.userId(), event.videoId()), k -> new Folded(event,
+                    snapshot.findVideo(event.videoId()).map(CatalogSnapshot.VideoNode::getDuration).orElse(null)))
+                    .merge(event);
+        }
+
+        int replayed = 0;
+        for (Folded f : folded.values()) {
+            try {
+                tx.executeWithoutResult(status -> apply(f));
+                replayed++;
+            } catch (DataAccessResourceFailureException | CannotCreateTransactionException e) {
+                // Database unreachable: keep the rest pending for the next start
+                logger.error("❌ Watch-event replay stopped, database unavailable: {}", e.getMessage());
+                break;
+            } catch (Exception e) {
+                // Would fail again on every start (e.g. user deleted): drop it
+                logger.error("❌ Watch-event replay failed for user {} video {}, skipping", f.userId, f.videoId, e);
+            }
+            watchEventLog.applied(f.seqs);
+        }
+        logger.info("📼 Replayed {} events into {} progress rows in {}ms",
+                events.size(), replayed, System.currentTimeMillis() - start);
+        return replayed;
+    }
+
+    // Runs inside one transaction per (user, video)
+    private void apply(Folded f) {
+        Optional<CatalogSnapshot.VideoNode> node = catalogSnapshotService.current().findVideo(f.videoId);
+        if (node.isEmpty()) {
+            logger.warn("⚠️ Watch events for unknown video {}, skipping", f.videoId);
+            return;
+        }
+        Long courseId = node.get().getCourseId();
+        Timestamp at = new Timestamp(f.lastAt);
+
+        Integer duration = node.get().getDuration();
+        List<Object[]> rows = progressRepository.findWatchStateByUserIdAndVideoId(f.userId, f.videoId);
+        boolean completed;
+        byte[] played;
+        if (rows.isEmpty()) {
+            if (!userRepository.existsById(f.userId)) {
+                logger.warn("⚠️ Watch events for unknown user {}, skipping", f.userId);
+                return;
+            }
+            jdbcTemplate.update(INSERT_SQL, f.userId, f.videoId, orZero(f.watched), orZero(f.position),
+                    orZero(f.jumps), at);
+            completed = false;
+            played = f.intervals;
+        } else {
+            Object[] row = rows.get(0);
+            jdbcTemplate.update(UPDATE_SQL, f.watched, f.position, f.jumps, at, f.userId, f.videoId, at);
+            completed = Boolean.TRUE.equals(row[4]) || Boolean.TRUE.equals(row[5]);
+            Integer storedWatched = row[0] != null ? ((Number) row[0]).intValue() : null;
+            played = WatchedIntervals.union(WatchedIntervals.orLegacy((byte[]) row[6], storedWatched, duration),
+                    f.intervals);
+        }
+        if (played != null) {
+            jdbcTemplate.update(INTERVALS_SQL, played, f.userId, f.videoId);
+        }
+        courseProgressBitsService.invalidateUser(f.userId);
+        userProgressVersionService.bump(f.userId);
+
+        if (completed || !VideoService.meetsCompletionRule(played, duration)) {
+            courseProgressRollupService.refresh(f.userId, courseId);
+            return;
+        }
+
+        // Completion flow also recounts the course rollup
+        courseService.completeVideoAndUnlockNext(f.userId, courseId, node.get().getModuleId(), f.videoId);
+        LocalDate day = Instant.ofEpochMilli(f.lastAt).atZone(ZoneId.systemDefault()).toLocalDate();
+        int watched = f.watched != null ? f.watched : (duration != null ? duration : 0);
+        streakService.updateStreakForVideoWatch(f.userId, courseId, f.videoId, watched, true, day);
+        logger.info("✅ Replayed completion of video {} for user {}", f.videoId, f.userId);
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+}
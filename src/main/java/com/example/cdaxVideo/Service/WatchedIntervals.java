@@ -0,0 +1,190 @@
+package com.example.cdaxVideo.Service;
+
+import java.util.Arrays;
+
+/**
+ * The parts of a video a user has actually played, as a merged set of
+ * half-open second ranges [start, end), stored in user_video_progress.watched_intervals.
+ *
+ * Encoding: for each range in order, the gap since the previous range's end (the
+ * first from 0) and the range length, both unsigned LEB128 varints. A typical
+ * watch is one or two ranges, i.e. two to six bytes; an empty set is {@code null}.
+ *
+ * {@link #add} merges one range in a single pass over the encoded bytes. A range
+ * that is already covered returns the same array; otherwise the merge writes into
+ * a per-thread scratch buffer and allocates only the result. Sets are never
+ * modified in place.
+ *
+ * Heartbeats only report positions, so {@link #recordPlayback} decides which
+ * position advance counts as played: forward, at most {@link #MAX_PLAYBACK_RATE}
+ * times the wall-clock time since the previous position (plus
+ * {@link #SLACK_SECONDS}), and at most {@link #MAX_STEP_SECONDS}. Anything else is
+ * a seek and credits nothing.
+ */
+public final class WatchedIntervals {
+
+    public static final int MAX_PLAYBACK_RATE = 2;
+    public static final int SLACK_SECONDS = 2;
+    public static final int MAX_STEP_SECONDS = 60;
+    // Column size; a set that would outgrow it keeps its current ranges
+    public static final int MAX_ENCODED_BYTES = 4096;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+    private WatchedIntervals() {}
+
+    /**
+     * Credit playback from {@code fromPosition} to {@code toPosition} if it is a
+     * plausible advance in {@code elapsedMillis}; positions are clamped to the duration.
+     */
+    public static byte[] recordPlayback(byte[] set, int fromPosition, int toPosition, long elapsedMillis,
+                                        int durationSeconds) {
+        int end = Math.min(toPosition, durationSeconds);
+        int start = Math.max(fromPosition, 0);
+        int step = end - start;
+        if (step <= 0) return set;
+        long allowed = Math.min(Math.max(elapsedMillis, 0), 3_600_000L) * MAX_PLAYBACK_RATE / 1000 + SLACK_SECONDS;
+        if (step > allowed || step > MAX_STEP_SECONDS) return set;
+        return add(set, start, end);
+    }
+
+    /** The set with [start, end) merged in. */
+    public static byte[] add(byte[] set, int start, int end) {
+        if (end <= start || start < 0) return set;
+        if (covers(set, start, end)) return set;
+
+        int length = set != null ? set.length : 0;
+        byte[] out = scratch(length + 16);
+        int outPos = 0;
+        int outPrevEnd = 0;
+        boolean placed = false;
+
+        int pos = 0;
+        int prevEnd = 0;
+        while (pos < length) {
+            long gap = readVarint(set, pos);
+            pos = (int) gap;
+            long len = readVarint(set, pos);
+            pos = (int) len;
+            int s = prevEnd + (int) (gap >>> 32);
+            int e = s + (int) (len >>> 32);
+            prevEnd = e;
+
+            if (e < start) {
+                outPos = writeRange(out, outPos, outPrevEnd, s, e);
+                outPrevEnd = e;
+            } else if (s > end) {
+                if (!placed) {
+                    outPos = writeRange(out, outPos, outPrevEnd, start, end);
+                    outPrevEnd = end;
+                    placed = true;
+                }
+                outPos = writeRange(out, outPos, outPrevEnd, s, e);
+                outPrevEnd = e;
+            } else {
+                // Overlapping or touching: absorb into the new range
+                start = Math.min(start, s);
+                end = Math.max(end, e);
+            }
+        }
+        if (!placed) {
+            outPos = writeRange(out, outPos, outPrevEnd, start, end);
+        }
+        if (outPos > MAX_ENCODED_BYTES) return set;
+        return Arrays.copyOf(out, outPos);
+    }
+
+    /** The union of two sets. */
+    public static byte[] union(byte[] a, byte[] b) {
+        if (a == null || a.length == 0) return b;
+        byte[] result = a;
+        int pos = 0;
+        int prevEnd = 0;
+        while (b != null && pos < b.length) {
+            long gap = readVarint(b, pos);
+            long len = readVarint(b, (int) gap);
+            pos = (int) len;
+            int s = prevEnd + (int) (gap >>> 32);
+            int e = s + (int) (len >>> 32);
+            prevEnd = e;
+            result = add(result, s, e);
+        }
+        return result;
+    }
+
+    /** Whether [start, end) lies inside one range of the set. */
+    public static boolean covers(byte[] set, int start, int end) {
+        int pos = 0;
+        int prevEnd = 0;
+        while (set != null && pos < set.length) {
+            long gap = readVarint(set, pos);
+            long len = readVarint(set, (int) gap);
+            pos = (int) len;
+            int s = prevEnd + (int) (gap >>> 32);
+            int e = s + (int) (len >>> 32);
+            if (s > start) return false;
+            if (e >= end) return true;
+            prevEnd = e;
+        }
+        return false;
+    }
+
+    /** Seconds covered by the set. */
+    public static int coveredSeconds(byte[] set) {
+        int total = 0;
+        int pos = 0;
+        while (set != null && pos < set.length) {
+            long gap = readVarint(set, pos);
+            long len = readVarint(set, (int) gap);
+            pos = (int) len;
+            total += (int) (len >>> 32);
+        }
+        return total;
+    }
+
+    /**
+     * Rows written before ranges were tracked have no set: they start from
+     * [0, watchedSeconds), the watch time they reported.
+     */
+    public static byte[] orLegacy(byte[] set, Integer watchedSeconds, Integer durationSeconds) {
+        if (set != null || watchedSeconds == null || watchedSeconds <= 0) return set;
+        int end = durationSeconds != null ? Math.min(watchedSeconds, durationSeconds) : watchedSeconds;
+        return add(null, 0, end);
+    }
+
+    private static byte[] scratch(int capacity) {
+        byte[] buffer = SCRATCH.get();
+        if (buffer.length < capacity) {
+            buffer = new byte[Math.max(capacity, buffer.length * 2)];
+            SCRATCH.set(buffer);
+        }
+        return buffer;
+    }
+
+    private static int writeRange(byte[] out, int pos, int prevEnd, int start, int end) {
+        pos = writeVarint(out, pos, start - prevEnd);
+        return writeVarint(out, pos, end - start);
+    }
+
+    private static int writeVarint(byte[] out, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    // Value in the high 32 bits, position after it in the low 32 (no allocation per read)
+    private static long readVarint(byte[] in, int pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in[pos++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0 && shift < 35);
+        return ((long) value << 32) | (pos & 0xFFFFFFFFL);
+    }
+}
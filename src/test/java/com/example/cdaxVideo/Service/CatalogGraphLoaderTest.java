@@ -0,0 +1,112 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Entity.Course;
+import com.example.cdaxVideo.Entity.Module;
+import com.example.cdaxVideo.Entity.Video;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@Import(CatalogGraphLoader.class)
+class CatalogGraphLoaderTest {
+
+    @Autowired private CatalogGraphLoader loader;
+    @Autowired private EntityManager em;
+    @Autowired private EntityManagerFactory emf;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void queryCountDoesNotGrowWithModuleCount() {
+        Long small = persistCourse("Small", 1, 1);
+        Long large = persistCourse("Large", 12, 6);
+
+        long smallQueries = countQueries(() -> loader.load(List.of(small)));
+        long largeQueries = countQueries(() -> loader.load(List.of(large)));
+        long bothQueries = countQueries(() -> loader.load(List.of(small, large)));
+
+        assertEquals(2, smallQueries);
+        assertEquals(smallQueries, largeQueries);
+        assertEquals(smallQueries, bothQueries);
+    }
+
+    @Test
+    void treeIsFullyInitializedAndOrdered() {
+        Long id = persistCourse("Ordered", 3, 4);
+        em.clear();
+
+        Course course = loader.load(id).orElseThrow();
+        em.clear(); // anything still lazy would now fail
+
+        assertEquals(3, course.getModules().size());
+        Long previousModuleId = null;
+        for (Module m : course.getModules()) {
+            if (previousModuleId != null) assertTrue(m.getId() > previousModuleId);
+            previousModuleId = m.getId();
+
+            assertTrue(Hibernate.isInitialized(m.getVideos()));
+            assertEquals(4, m.getVideos().size());
+            for (int i = 0; i < m.getVideos().size(); i++) {
+                assertEquals(i + 1, m.getVideos().get(i).getDisplayOrder());
+            }
+        }
+    }
+
+    @Test
+    void resultFollowsRequestedIdOrder() {
+        Long first = persistCourse("First", 1, 1);
+        Long second = persistCourse("Second", 1, 1);
+        em.clear();
+
+        List<Course> courses = loader.load(List.of(second, first));
+
+        assertEquals(List.of(second, first), courses.stream().map(Course::getId).toList());
+    }
+
+    private long countQueries(Runnable action) {
+        em.flush();
+        em.clear();
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Long persistCourse(String title, int modules, int videosPerModule) {
+        Course course = new Course(title, title + " description", "Instructor");
+        em.persist(course);
+        for (int m = 0; m < modules; m++) {
+            Module module = new Module(title + " module " + m, 600);
+            module.setCourse(course);
+            em.persist(module);
+            // Persist videos in reverse so ordering must come from displayOrder, not insertion
+            for (int v = videosPerModule; v >= 1; v--) {
+                Video video = new Video(title + " video " + v, "https://example.com/" + v, 120, module);
+                video.setDisplayOrder(v);
+                em.persist(video);
+            }
+        }
+        em.flush();
+        return course.getId();
+    }
+}
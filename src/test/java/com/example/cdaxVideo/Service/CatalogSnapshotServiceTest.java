@@ -0,0 +1,93 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Entity.Course;
+import com.example.cdaxVideo.Repository.CourseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Real commits and rollbacks, so no test transaction
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({CatalogSnapshotService.class, CatalogGraphLoader.class, SimpleMeterRegistry.class})
+class CatalogSnapshotServiceTest {
+
+    @Autowired private CatalogSnapshotService catalogSnapshotService;
+    @Autowired private CourseRepository courseRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    void rolledBackWriteIsNeverPublished() {
+        catalogSnapshotService.current();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        Long id = tx.execute(status -> {
+            Long saved = saveCourse("Rolled back");
+            // The writer's own read before commit
+            assertTrue(catalogSnapshotService.current().findCourse(saved).isEmpty());
+            status.setRollbackOnly();
+            return saved;
+        });
+
+        assertTrue(catalogSnapshotService.current().findCourse(id).isEmpty());
+    }
+
+    @Test
+    void commitIsPublishedAfterAReadDuringTheWrite() throws Exception {
+        catalogSnapshotService.current();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            Long id = tx.execute(status -> {
+                Long saved = saveCourse("Committed");
+                try {
+                    // Another thread reads before the commit and must not mark the catalog fresh
+                    assertTrue(reader.submit(() -> catalogSnapshotService.current()).get()
+                            .findCourse(saved).isEmpty());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                return saved;
+            });
+
+            assertTrue(catalogSnapshotService.current().findCourse(id).isPresent());
+        } finally {
+            reader.shutdown();
+        }
+    }
+
+    @Test
+    void versionOnlyMovesOnCommittedWrites() {
+        long before = catalogSnapshotService.current().getVersion();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        tx.executeWithoutResult(status -> {
+            saveCourse("Discarded");
+            status.setRollbackOnly();
+        });
+        assertEquals(before, catalogSnapshotService.current().getVersion());
+
+        tx.executeWithoutResult(status -> saveCourse("Kept"));
+        assertEquals(before + 1, catalogSnapshotService.current().getVersion());
+    }
+
+    private Long saveCourse(String title) {
+        Course course = courseRepository.save(new Course(title, title + " description", "Instructor"));
+        catalogSnapshotService.refresh();
+        return course.getId();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.DTO.CourseProgressCountsDTO;
+import com.example.cdaxVideo.Entity.Course;
+import com.example.cdaxVideo.Entity.Module;
+import com.example.cdaxVideo.Entity.User;
+import com.example.cdaxVideo.Entity.UserCoursePurchase;
+import com.example.cdaxVideo.Entity.UserVideoProgress;
+import com.example.cdaxVideo.Entity.Video;
+import com.example.cdaxVideo.Repository.UserVideoProgressRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+class CourseProgressCountsTest {
+
+    @Autowired private UserVideoProgressRepository userVideoProgressRepository;
+    @Autowired private EntityManager em;
+
+    @Test
+    void courseBoughtTwiceIsCountedOnce() {
+        User user = persistUser();
+        List<Video> twice = persistCourse("Twice", 4);
+        List<Video> once = persistCourse("Once", 2);
+        persistCourse("NotBought", 3);
+        persistPurchase(user, twice.get(0).getModule().getCourse());
+        persistPurchase(user, twice.get(0).getModule().getCourse());
+        persistPurchase(user, once.get(0).getModule().getCourse());
+        persistProgress(user, twice.get(0), true, 120);
+        persistProgress(user, twice.get(1), false, 30);
+
+        List<CourseProgressCountsDTO> counts = counts(user);
+
+        assertEquals(2, counts.size());
+        CourseProgressCountsDTO first = counts.get(0);
+        assertEquals(twice.get(0).getModule().getCourse().getId(), first.getCourseId());
+        assertEquals(4, first.getTotalVideos());
+        assertEquals(1, first.getCompletedVideos());
+        assertEquals(1, first.getInProgressVideos());
+        assertEquals(25, first.getProgressPercent());
+
+        CourseProgressCountsDTO second = counts.get(1);
+        assertEquals(2, second.getTotalVideos());
+        assertEquals(0, second.getCompletedVideos());
+        assertFalse(second.isInProgress());
+    }
+
+    @Test
+    void anotherUsersProgressIsNotCounted() {
+        User user = persistUser();
+        User other = persistUser();
+        List<Video> videos = persistCourse("Shared", 2);
+        persistPurchase(user, videos.get(0).getModule().getCourse());
+        persistPurchase(other, videos.get(0).getModule().getCourse());
+        persistProgress(other, videos.get(0), true, 120);
+
+        List<CourseProgressCountsDTO> counts = counts(user);
+
+        assertEquals(1, counts.size());
+        assertEquals(2, counts.get(0).getTotalVideos());
+        assertEquals(0, counts.get(0).getCompletedVideos());
+    }
+
+    private List<CourseProgressCountsDTO> counts(User user) {
+        em.flush();
+        em.clear();
+        List<CourseProgressCountsDTO> counts = new ArrayList<>();
+        for (Object[] row : userVideoProgressRepository.countProgressByCourseForUser(user.getId())) {
+            counts.add(CourseProgressCountsDTO.fromRow(row));
+        }
+        counts.sort(Comparator.comparing(CourseProgressCountsDTO::getCourseId));
+        return counts;
+    }
+
+    private User persistUser() {
+        User user = new User("Counts", "User", UUID.randomUUID() + "@example.com", "secret");
+        em.persist(user);
+        return user;
+    }
+
+    private List<Video> persistCourse(String title, int videos) {
+        Course course = new Course(title, title + " description", "Instructor");
+        em.persist(course);
+        Module module = new Module(title + " module", 600);
+        module.setCourse(course);
+        em.persist(module);
+        List<Video> persisted = new ArrayList<>();
+        for (int v = 1; v <= videos; v++) {
+            Video video = new Video(title + " video " + v, "https://example.com/" + v, 120, module);
+            video.setDisplayOrder(v);
+            em.persist(video);
+            persisted.add(video);
+        }
+        return persisted;
+    }
+
+    private void persistPurchase(User user, Course course) {
+        UserCoursePurchase purchase = new UserCoursePurchase();
+        purchase.setUser(user);
+        purchase.setCourse(course);
+        em.persist(purchase);
+    }
+
+    private void persistProgress(User user, Video video, boolean completed, int watchedSeconds) {
+        UserVideoProgress progress = new UserVideoProgress();
+        progress.setUser(user);
+        progress.setVideo(video);
+        progress.setUnlocked(true);
+        progress.setCompleted(completed);
+        progress.setWatchedSeconds(watchedSeconds);
+        em.persist(progress);
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Entity.Assessment;
+import com.example.cdaxVideo.Entity.Course;
+import com.example.cdaxVideo.Entity.Module;
+import com.example.cdaxVideo.Entity.Question;
+import com.example.cdaxVideo.Entity.User;
+import com.example.cdaxVideo.Entity.Video;
+import com.example.cdaxVideo.Repository.AssessmentRepository;
+import com.example.cdaxVideo.Repository.CourseRepository;
+import com.example.cdaxVideo.Repository.ModuleRepository;
+import com.example.cdaxVideo.Repository.QuestionRepository;
+import com.example.cdaxVideo.Repository.UserCoursePurchaseRepository;
+import com.example.cdaxVideo.Repository.UserRepository;
+import com.example.cdaxVideo.Repository.VideoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replays the same user actions through CourseService in each unlock mode and
+ * checks that the compiled graph gives identical lock maps after every step.
+ */
+class CourseUnlockModesTest {
+
+    // module sizes; modules 0 and 2 have an assessment, module 1 does not
+    private static final int[] VIDEOS_PER_MODULE = {5, 2, 4, 1};
+    private static final Map<Long, List<Long>> ASSESSMENTS = Map.of(
+            100L, List.of(900L),
+            102L, List.of(902L),
+            103L, List.of(903L));
+
+    private static final Long USER_ID = 7L;
+
+    private Course course;
+    private User user;
+    private final Map<Long, Assessment> assessments = new HashMap<>();
+    private Question question;
+    private CatalogSnapshot snapshot;
+    private CourseUnlockGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        course = new Course("Course", "Description", "Instructor");
+        course.setId(1L);
+        long videoId = 1000;
+        for (int m = 0; m < VIDEOS_PER_MODULE.length; m++) {
+            Module module = new Module("Module " + m, 600);
+            module.setId(100L + m);
+            module.setCourse(course);
+            course.getModules().add(module);
+            // Ids run against display order, so anything ordering by id unlocks the wrong video
+            for (int v = 1; v <= VIDEOS_PER_MODULE[m]; v++) {
+                Video video = new Video("Video " + v, "https://example.com/" + videoId, 120, module);
+                video.setId(videoId + VIDEOS_PER_MODULE[m] - v);
+                video.setDisplayOrder(v);
+                module.getVideos().add(video);
+            }
+            videoId += VIDEOS_PER_MODULE[m];
+            for (Long assessmentId : ASSESSMENTS.getOrDefault(module.getId(), List.of())) {
+                Assessment assessment = new Assessment();
+                assessment.setId(assessmentId);
+                assessment.setModule(module);
+                assessments.put(assessmentId, assessment);
+            }
+        }
+        user = new User("Test", "User", "user@example.com", "secret");
+        user.setId(USER_ID);
+        question = new Question();
+        question.setId(1L);
+        question.setMarks(1);
+        question.setCorrectAnswer("A");
+
+        snapshot = CatalogSnapshot.build(1L, List.of(course), Map.of(), ASSESSMENTS, 0L);
+        graph = CourseUnlockGraph.compile(1L, snapshot.findCourse(1L).orElseThrow());
+    }
+
+    @Test
+    void randomLegalWalksGiveSameLockMapsInBothModes() {
+        for (long seed = 0; seed < 25; seed++) {
+            Random random = new Random(seed);
+            Rows materialized = new Rows(false);
+            Rows derived = new Rows(true);
+            materialized.purchase();
+            derived.purchase();
+            assertSameLocks(materialized, derived, seed, "purchase");
+
+            for (int step = 0; step < 40; step++) {
+                CourseLockState state = graph.evaluate(materialized.bits(), true);
+                List<Runnable[]> moves = legalMoves(state, materialized, derived);
+                if (moves.isEmpty()) break;
+                Runnable[] move = moves.get(random.nextInt(moves.size()));
+                move[0].run();
+                move[1].run();
+                assertSameLocks(materialized, derived, seed, "step " + step);
+            }
+        }
+    }
+
+    @Test
+    void manualOverrideIsKeptInBothModes() {
+        Rows materialized = new Rows(false);
+        Rows derived = new Rows(true);
+        materialized.purchase();
+        derived.purchase();
+
+        int lastVideo = graph.getVideoCount() - 1;
+        materialized.manualUnlock(lastVideo);
+        derived.manualUnlock(lastVideo);
+
+        CourseLockState state = graph.evaluate(derived.bits(), true);
+        assertFalse(state.isVideoLocked(lastVideo));
+        assertEquals(graph.evaluate(materialized.bits(), true), state);
+    }
+
+    @Test
+    void collapsingUnlockOnlyRowsKeepsTheLockMap() {
+        Rows materialized = new Rows(false);
+        materialized.purchase();
+        for (int v = 0; v < VIDEOS_PER_MODULE[0]; v++) {
+            materialized.complete(v);
+        }
+        materialized.pass(0);
+        materialized.complete(graph.getModuleFirstOrdinal(1));
+
+        CourseLockState before = graph.evaluate(materialized.bits(), true);
+        assertEquals(before, graph.evaluate(materialized.bits().withoutUnlockRows(), true));
+    }
+
+    @Test
+    void previewIgnoresProgressRows() {
+        Rows materialized = new Rows(false);
+        materialized.purchase();
+        materialized.complete(0);
+
+        CourseLockState preview = graph.evaluate(materialized.bits(), false);
+        assertEquals(graph.evaluate(null, false), preview);
+        assertFalse(preview.isVideoLocked(0));
+        assertTrue(preview.isVideoLocked(1));
+        assertFalse(preview.isVideoCompleted(0));
+    }
+
+    private List<Runnable[]> legalMoves(CourseLockState state, Rows a, Rows b) {
+        List<Runnable[]> moves = new ArrayList<>();
+        for (int v = 0; v < graph.getVideoCount(); v++) {
+            if (!state.isVideoLocked(v) && !state.isVideoCompleted(v)) {
+                int ordinal = v;
+                moves.add(new Runnable[]{() -> a.complete(ordinal), () -> b.complete(ordinal)});
+            }
+        }
+        for (int m = 0; m < graph.getModuleCount(); m++) {
+            if (!state.isAssessmentLocked(m) && !a.bits().isAssessmentPassed(m)) {
+                int module = m;
+                moves.add(new Runnable[]{() -> a.fail(module), () -> b.fail(module)});
+                moves.add(new Runnable[]{() -> a.pass(module), () -> b.pass(module)});
+            }
+        }
+        return moves;
+    }
+
+    private void assertSameLocks(Rows materialized, Rows derived, long seed, String after) {
+        assertEquals(graph.evaluate(materialized.bits(), true), graph.evaluate(derived.bits(), true),
+                "seed " + seed + ", after " + after);
+    }
+
+    /**
+     * The progress rows one mode persists, written by the real CourseService: the upserts
+     * it issues are applied to in-memory bits the way the bits cache applies them.
+     */
+    private final class Rows {
+        final CourseProgressBits[] state = {CourseProgressBits.empty(1L, graph.getVideoCount(), graph.getModuleCount())};
+        final CourseService courseService = new CourseService();
+
+        Rows(boolean derivedMode) {
+            CatalogSnapshotService catalogSnapshotService = mock(CatalogSnapshotService.class);
+            when(catalogSnapshotService.current()).thenReturn(snapshot);
+            CourseProgressBitsService bitsService = mock(CourseProgressBitsService.class);
+            when(bitsService.get(any(), any(), any())).thenAnswer(invocation -> state[0]);
+            when(bitsService.get(any(), any())).thenAnswer(invocation -> state[0]);
+            EntitlementService entitlementService = mock(EntitlementService.class);
+            when(entitlementService.isPurchased(any(), any())).thenReturn(true);
+            CourseUnlockService unlockService = new CourseUnlockService(catalogSnapshotService, bitsService,
+                    entitlementService, derivedMode ? "derived" : "materialized");
+
+            UserRepository userRepository = mock(UserRepository.class);
+            when(userRepository.findById(USER_ID)).thenReturn(Optional.of(user));
+            CourseRepository courseRepository = mock(CourseRepository.class);
+            when(courseRepository.findById(course.getId())).thenReturn(Optional.of(course));
+            ModuleRepository moduleRepository = mock(ModuleRepository.class);
+            when(moduleRepository.findByCourseId(course.getId())).thenReturn(course.getModules());
+            VideoRepository videoRepository = mock(VideoRepository.class);
+            for (Module module : course.getModules()) {
+                when(moduleRepository.findById(module.getId())).thenReturn(Optional.of(module));
+                // No ORDER BY in the query: rows come back in id order, not display order
+                List<Video> byId = new ArrayList<>(module.getVideos());
+                byId.sort(Comparator.comparing(Video::getId));
+                when(videoRepository.findByModuleId(module.getId())).thenReturn(byId);
+                for (Video video : module.getVideos()) {
+                    when(videoRepository.findById(video.getId())).thenReturn(Optional.of(video));
+                }
+            }
+            AssessmentRepository assessmentRepository = mock(AssessmentRepository.class);
+            QuestionRepository questionRepository = mock(QuestionRepository.class);
+            for (Assessment assessment : assessments.values()) {
+                when(assessmentRepository.findById(assessment.getId())).thenReturn(Optional.of(assessment));
+                when(assessmentRepository.findByModuleId(assessment.getModule().getId())).thenReturn(List.of(assessment));
+                when(questionRepository.findByAssessmentId(assessment.getId())).thenReturn(List.of(question));
+            }
+            UserCoursePurchaseRepository purchaseRepository = mock(UserCoursePurchaseRepository.class);
+
+            ProgressUpsertService upserts = mock(ProgressUpsertService.class);
+            doAnswer(invocation -> raiseModule(invocation.getArgument(1), true, false, false))
+                    .when(upserts).unlockModule(any(), any());
+            doAnswer(invocation -> raiseModule(invocation.getArgument(1), false, true, false))
+                    .when(upserts).passModule(any(), any());
+            doAnswer(invocation -> raiseAssessment(invocation.getArgument(1), false))
+                    .when(upserts).unlockAssessment(any(), any());
+            doAnswer(invocation -> raiseAssessment(invocation.getArgument(1), invocation.getArgument(5)))
+                    .when(upserts).recordAssessmentAttempt(any(), any(), anyInt(), anyInt(), anyDouble(), anyBoolean());
+            doAnswer(invocation -> setVideo(invocation.getArgument(1), false))
+                    .when(upserts).unlockVideo(any(), any());
+            doAnswer(invocation -> setVideo(invocation.getArgument(1), true))
+                    .when(upserts).completeVideo(any(), any());
+
+            ReflectionTestUtils.setField(courseService, "catalogSnapshotService", catalogSnapshotService);
+            ReflectionTestUtils.setField(courseService, "courseProgressBitsService", bitsService);
+            ReflectionTestUtils.setField(courseService, "courseUnlockService", unlockService);
+            ReflectionTestUtils.setField(courseService, "entitlementService", entitlementService);
+            ReflectionTestUtils.setField(courseService, "progressUpsertService", upserts);
+            ReflectionTestUtils.setField(courseService, "userRepository", userRepository);
+            ReflectionTestUtils.setField(courseService, "courseRepository", courseRepository);
+            ReflectionTestUtils.setField(courseService, "moduleRepository", moduleRepository);
+            ReflectionTestUtils.setField(courseService, "videoRepository", videoRepository);
+            ReflectionTestUtils.setField(courseService, "assessmentRepository", assessmentRepository);
+            ReflectionTestUtils.setField(courseService, "questionRepository", questionRepository);
+            ReflectionTestUtils.setField(courseService, "purchaseRepository", purchaseRepository);
+            ReflectionTestUtils.setField(courseService, "courseProgressRollupService",
+                    mock(CourseProgressRollupService.class));
+            ReflectionTestUtils.setField(courseService, "videoProgressBuffer", mock(VideoProgressBuffer.class));
+        }
+
+        CourseProgressBits bits() {
+            return state[0];
+        }
+
+        void purchase() {
+            courseService.purchaseCourse(USER_ID, course.getId());
+        }
+
+        void complete(int ordinal) {
+            CatalogSnapshot.VideoNode video = snapshot.findVideo(graph.getVideoId(ordinal)).orElseThrow();
+            assertTrue(courseService.completeVideoAndUnlockNext(USER_ID, course.getId(), video.getModuleId(),
+                    video.getId()));
+        }
+
+        void fail(int module) {
+            submit(module, "B");
+        }
+
+        void pass(int module) {
+            submit(module, "A");
+        }
+
+        void manualUnlock(int ordinal) {
+            CatalogSnapshot.VideoNode video = snapshot.findVideo(graph.getVideoId(ordinal)).orElseThrow();
+            courseService.unlockVideoForUser(USER_ID, course.getId(), video.getModuleId(), video.getId());
+        }
+
+        private void submit(int module, String answer) {
+            Long assessmentId = ASSESSMENTS.get(graph.getModuleId(module)).get(0);
+            Map<String, Object> result = courseService.submitAssessment(USER_ID, assessmentId,
+                    Map.of(question.getId(), answer));
+            assertEquals(true, result.get("success"), () -> String.valueOf(result.get("error")));
+        }
+
+        private Object raiseModule(Long moduleId, boolean unlocked, boolean passed, boolean assessmentUnlocked) {
+            int index = snapshot.findModule(moduleId).orElseThrow().getIndex();
+            state[0] = state[0].withModuleFlags(index, unlocked, passed, assessmentUnlocked);
+            return null;
+        }
+
+        private Object raiseAssessment(Long assessmentId, boolean passed) {
+            int index = snapshot.findModuleForAssessment(assessmentId).orElseThrow().getIndex();
+            state[0] = state[0].withModuleFlags(index, false, passed, true);
+            return null;
+        }
+
+        private Object setVideo(Long videoId, boolean completed) {
+            int ordinal = snapshot.findVideo(videoId).orElseThrow().getCourseOrdinal();
+            state[0] = state[0].with(ordinal, true, true, completed || state[0].isCompleted(ordinal));
+            return null;
+        }
+    }
+}
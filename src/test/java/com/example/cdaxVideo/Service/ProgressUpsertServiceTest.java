@@ -0,0 +1,205 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.Entity.Assessment;
+import com.example.cdaxVideo.Entity.Course;
+import com.example.cdaxVideo.Entity.Module;
+import com.example.cdaxVideo.Entity.User;
+import com.example.cdaxVideo.Entity.Video;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Real commits from several threads, so no test transaction; H2 runs the MySQL upsert syntax
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:progress-upserts;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.hikari.connection-init-sql=SELECT 1",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ProgressUpsertService.class, UserProgressVersionService.class})
+class ProgressUpsertServiceTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 25;
+
+    @Autowired private ProgressUpsertService upserts;
+    @Autowired private EntityManager em;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @MockitoBean private CourseProgressBitsService courseProgressBitsService;
+    @MockitoBean private StreakCalendarService streakCalendarService;
+
+    @Test
+    void concurrentFirstWritesOfTheSameRowsNeverViolateConstraints() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Ids ids = tx.execute(status -> persistGraph());
+        LocalDate day = LocalDate.of(2026, 1, 15);
+
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            pool.submit(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < ROUNDS; i++) {
+                        tx.executeWithoutResult(status -> {
+                            upserts.unlockModule(ids.userId, ids.moduleId);
+                            upserts.unlockVideo(ids.userId, ids.nextVideoId);
+                            upserts.completeVideo(ids.userId, ids.videoId);
+                            upserts.unlockAssessment(ids.userId, ids.assessmentId);
+                            upserts.recordAssessmentAttempt(ids.userId, ids.assessmentId, 8, 10, 80.0, true);
+                            upserts.passModule(ids.userId, ids.moduleId);
+                            upserts.addStreakActivity(ids.userId, ids.courseId, day, ids.videoId, 10, true, 1000, 4);
+                            upserts.writeCourseRollup(ids.userId, ids.courseId, 1, 1, 1, 10, day.atStartOfDay());
+                        });
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+        assertTrue(failures.isEmpty(), () -> "upserts failed: " + failures);
+
+        int writes = THREADS * ROUNDS;
+        assertEquals(2, count("user_video_progress", ids.userId));
+        assertEquals(1, count("user_module_progress", ids.userId));
+        assertEquals(1, count("user_assessment_progress", ids.userId));
+        assertEquals(1, count("user_streaks", ids.userId));
+        assertEquals(1, count("user_course_progress", ids.userId));
+
+        Map<String, Object> video = jdbcTemplate.queryForMap(
+                "SELECT unlocked, completed, completed_on FROM user_video_progress WHERE user_id = ? AND video_id = ?",
+                ids.userId, ids.videoId);
+        assertEquals(true, video.get("UNLOCKED"));
+        assertEquals(true, video.get("COMPLETED"));
+        assertNotNull(video.get("COMPLETED_ON"));
+
+        Map<String, Object> module = jdbcTemplate.queryForMap(
+                "SELECT unlocked, assessment_passed, completed FROM user_module_progress WHERE user_id = ?", ids.userId);
+        assertEquals(true, module.get("UNLOCKED"));
+        assertEquals(true, module.get("ASSESSMENT_PASSED"));
+        assertEquals(true, module.get("COMPLETED"));
+
+        assertEquals(writes, jdbcTemplate.queryForObject(
+                "SELECT attempts FROM user_assessment_progress WHERE user_id = ?", Integer.class, ids.userId));
+
+        Map<String, Object> streak = jdbcTemplate.queryForMap(
+                "SELECT watched_seconds, completed_videos_count, total_available_seconds, progress_percentage, " +
+                "is_active_day, video_details FROM user_streaks WHERE user_id = ?", ids.userId);
+        assertEquals(writes * 10, ((Number) streak.get("WATCHED_SECONDS")).intValue());
+        assertEquals(writes, ((Number) streak.get("COMPLETED_VIDEOS_COUNT")).intValue());
+        assertEquals(1000, ((Number) streak.get("TOTAL_AVAILABLE_SECONDS")).intValue());
+        assertEquals(writes * 10 * 100.0 / 1000, ((Number) streak.get("PROGRESS_PERCENTAGE")).doubleValue(), 1e-6);
+        assertEquals(true, streak.get("IS_ACTIVE_DAY"));
+        // Every append landed: one folded entry with all the seconds and completions
+        assertEquals(List.of(new StreakVideoDetails.Entry(ids.videoId, writes * 10, writes)),
+                StreakVideoDetails.read((String) streak.get("VIDEO_DETAILS")));
+    }
+
+    @Test
+    void watchStatesInsertThenUpdateWithoutTouchingFlags() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Ids ids = tx.execute(status -> persistGraph());
+
+        tx.executeWithoutResult(status -> upserts.writeWatchStates(List.of(
+                new ProgressUpsertService.WatchState(ids.userId, ids.videoId, 30, 30, 0, new byte[]{0, 30}))));
+        tx.executeWithoutResult(status -> upserts.completeVideo(ids.userId, ids.videoId));
+        tx.executeWithoutResult(status -> upserts.writeWatchStates(List.of(
+                new ProgressUpsertService.WatchState(ids.userId, ids.videoId, 60, 55, 1, new byte[]{0, 60}),
+                new ProgressUpsertService.WatchState(ids.userId, ids.nextVideoId, 5, 5, 0, null))));
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT watched_seconds, last_position_seconds, forward_jumps_count, watched_intervals, completed " +
+                "FROM user_video_progress WHERE user_id = ? AND video_id = ?", ids.userId, ids.videoId);
+        assertEquals(60, ((Number) row.get("WATCHED_SECONDS")).intValue());
+        assertEquals(55, ((Number) row.get("LAST_POSITION_SECONDS")).intValue());
+        assertEquals(1, ((Number) row.get("FORWARD_JUMPS_COUNT")).intValue());
+        assertArrayEquals(new byte[]{0, 60}, (byte[]) row.get("WATCHED_INTERVALS"));
+        assertEquals(true, row.get("COMPLETED"));
+        assertEquals(2, count("user_video_progress", ids.userId));
+    }
+
+    @Test
+    void courseRollupOverwritesCountsAndKeepsTheLatestActivity() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Ids ids = tx.execute(status -> persistGraph());
+        LocalDateTime later = LocalDateTime.of(2026, 2, 1, 10, 0);
+
+        tx.executeWithoutResult(status -> upserts.writeCourseRollup(ids.userId, ids.courseId, 1, 0, 0, 30, null));
+        tx.executeWithoutResult(status -> upserts.writeCourseRollup(ids.userId, ids.courseId, 2, 1, 1, 90, later));
+        tx.executeWithoutResult(status -> upserts.writeCourseRollup(ids.userId, ids.courseId, 2, 1, 1, 90,
+                later.minusDays(3)));
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT completed_videos, completed_modules, passed_assessments, watched_seconds, last_activity_at " +
+                "FROM user_course_progress WHERE user_id = ? AND course_id = ?", ids.userId, ids.courseId);
+        assertEquals(2, ((Number) row.get("COMPLETED_VIDEOS")).intValue());
+        assertEquals(1, ((Number) row.get("COMPLETED_MODULES")).intValue());
+        assertEquals(1, ((Number) row.get("PASSED_ASSESSMENTS")).intValue());
+        assertEquals(90, ((Number) row.get("WATCHED_SECONDS")).intValue());
+        assertEquals(Timestamp.valueOf(later), row.get("LAST_ACTIVITY_AT"));
+        assertEquals(1, count("user_course_progress", ids.userId));
+    }
+
+    private int count(String table, Long userId) {
+        Integer n = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE user_id = ?",
+                Integer.class, userId);
+        return n != null ? n : 0;
+    }
+
+    private record Ids(Long userId, Long courseId, Long moduleId, Long videoId, Long nextVideoId, Long assessmentId) {}
+
+    private Ids persistGraph() {
+        User user = new User("Test", "User", UUID.randomUUID() + "@example.com", "secret");
+        em.persist(user);
+        Course course = new Course("Upserts", "Upserts description", "Instructor");
+        em.persist(course);
+        Module module = new Module("Upserts module", 600);
+        module.setCourse(course);
+        em.persist(module);
+        Video video = new Video("First", "https://example.com/1", 120, module);
+        video.setDisplayOrder(1);
+        em.persist(video);
+        Video next = new Video("Second", "https://example.com/2", 120, module);
+        next.setDisplayOrder(2);
+        em.persist(next);
+        Assessment assessment = new Assessment();
+        assessment.setTitle("Upserts quiz");
+        assessment.setModule(module);
+        em.persist(assessment);
+        em.flush();
+        return new Ids(user.getId(), course.getId(), module.getId(), video.getId(), next.getId(), assessment.getId());
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.cdaxVideo.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Marks random days in a calendar and in a plain boolean array and checks that
+ * both agree on runs, counts and the last active day.
+ */
+class StreakCalendarTest {
+
+    private static final int DAYS = 1500;
+    private static final LocalDate ORIGIN = LocalDate.of(2022, 3, 7);
+
+    @Test
+    void randomCalendarsMatchDayByDayScan() {
+        for (long seed = 0; seed < 50; seed++) {
+            Random random = new Random(seed);
+            boolean[] active = new boolean[DAYS];
+            List<LocalDate> initial = new ArrayList<>();
+            // Dense and sparse stretches, so runs cross word boundaries
+            double density = 0.3 + random.nextDouble() * 0.69;
+            for (int d = 0; d < DAYS / 2; d++) {
+                if (random.nextDouble() < density) {
+                    active[d] = true;
+                    initial.add(ORIGIN.plusDays(d));
+                }
+            }
+            StreakCalendar calendar = StreakCalendar.of(initial);
+            for (int step = 0; step < 300; step++) {
+                int d = random.nextInt(DAYS);
+                calendar = calendar.with(ORIGIN.plusDays(d));
+                active[d] = true;
+
+                String at = "seed " + seed + ", step " + step;
+                int probe = random.nextInt(DAYS);
+                assertEquals(active[probe], calendar.isActive(ORIGIN.plusDays(probe)), at);
+                assertEquals(runEndingAt(active, probe), calendar.runEndingAt(ORIGIN.plusDays(probe)), at);
+                int from = random.nextInt(DAYS);
+                int to = from + random.nextInt(DAYS - from);
+                assertEquals(count(active, from, to),
+                        calendar.activeDays(ORIGIN.plusDays(from), ORIGIN.plusDays(to)), at);
+            }
+            assertEquals(longestRun(active), calendar.longestRun(), "seed " + seed);
+            assertEquals(ORIGIN.plusDays(lastActive(active)), calendar.lastActive(), "seed " + seed);
+        }
+    }
+
+    @Test
+    void fullWordsAndRangesOutsideTheCalendar() {
+        List<LocalDate> days = new ArrayList<>();
+        for (int d = 0; d < 200; d++) days.add(ORIGIN.plusDays(d));
+        StreakCalendar calendar = StreakCalendar.of(days);
+
+        assertEquals(200, calendar.longestRun());
+        assertEquals(200, calendar.runEndingAt(ORIGIN.plusDays(199)));
+        assertEquals(0, calendar.runEndingAt(ORIGIN.plusDays(200)));
+        assertEquals(200, calendar.activeDays(ORIGIN.minusYears(5), ORIGIN.plusYears(5)));
+        assertEquals(0, calendar.activeDays(ORIGIN.plusYears(1), ORIGIN.plusYears(2)));
+    }
+
+    @Test
+    void emptyCalendar() {
+        StreakCalendar empty = StreakCalendar.EMPTY;
+        assertTrue(empty.isEmpty());
+        assertNull(empty.lastActive());
+        assertEquals(0, empty.longestRun());
+        assertEquals(0, empty.runEndingAt(ORIGIN));
+        assertEquals(0, empty.activeDays(ORIGIN.minusYears(60), ORIGIN));
+        assertEquals(1, empty.with(ORIGIN).runEndingAt(ORIGIN));
+    }
+
+    private static int runEndingAt(boolean[] active, int day) {
+        int run = 0;
+        for (int d = day; d >= 0 && active[d]; d--) run++;
+        return run;
+    }
+
+    private static int longestRun(boolean[] active) {
+        int best = 0;
+        int run = 0;
+        for (boolean a : active) {
+            run = a ? run + 1 : 0;
+            best = Math.max(best, run);
+        }
+        return best;
+    }
+
+    private static int count(boolean[] active, int from, int to) {
+        int n = 0;
+        for (int d = from; d <= to; d++) if (active[d]) n++;
+        return n;
+    }
+
+    private static int lastActive(boolean[] active) {
+        for (int d = active.length - 1; d >= 0; d--) if (active[d]) return d;
+        return -1;
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.DTO.StreakDayDTO;
+import com.example.cdaxVideo.DTO.StreakSummaryDTO;
+import com.example.cdaxVideo.Entity.Course;
+import com.example.cdaxVideo.Entity.Module;
+import com.example.cdaxVideo.Entity.User;
+import com.example.cdaxVideo.Entity.UserStreak;
+import com.example.cdaxVideo.Entity.UserVideoProgress;
+import com.example.cdaxVideo.Entity.Video;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@Import({StreakService.class, StreakCalendarService.class})
+class StreakServiceQueryCountTest {
+
+    @Autowired private StreakService streakService;
+    @Autowired private EntityManager em;
+    @Autowired private EntityManagerFactory emf;
+    @MockitoBean private CatalogSnapshotService catalogSnapshotService;
+    @MockitoBean private ProgressUpsertService progressUpsertService;
+
+    private Statistics statistics;
+    private final List<Course> courses = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        when(catalogSnapshotService.current()).thenAnswer(invocation ->
+                CatalogSnapshot.build(1L, courses, Map.of(), Map.of(), 0L));
+    }
+
+    @Test
+    void monthQueryCountDoesNotGrowWithActiveDays() {
+        LocalDate month = LocalDate.now().minusMonths(2).withDayOfMonth(1);
+        Course course = persistCourse("Month", 4);
+        User quiet = persistUser();
+        User busy = persistUser();
+        persistActivity(quiet, course, month, 1);
+        persistActivity(busy, course, month, 20);
+
+        long quietQueries = countQueries(() -> streakService.getCourseStreakForMonth(quiet.getId(), course.getId(), month));
+        long busyQueries = countQueries(() -> streakService.getCourseStreakForMonth(busy.getId(), course.getId(), month));
+
+        // Streak rows, video details, calendar
+        assertEquals(3, quietQueries);
+        assertEquals(quietQueries, busyQueries);
+    }
+
+    @Test
+    void overviewQueryCountDoesNotGrowWithCourses() {
+        LocalDate start = LocalDate.now().minusDays(25);
+        List<Course> many = List.of(persistCourse("A", 3), persistCourse("B", 3), persistCourse("C", 3));
+        User single = persistUser();
+        User multi = persistUser();
+        persistActivity(single, many.get(0), start, 2);
+        for (Course course : many) {
+            persistActivity(multi, course, start, 15);
+        }
+
+        long singleQueries = countQueries(() -> streakService.getUserStreakOverview(single.getId()));
+        long multiQueries = countQueries(() -> streakService.getUserStreakOverview(multi.getId()));
+
+        assertEquals(3, singleQueries);
+        assertEquals(singleQueries, multiQueries);
+    }
+
+    @Test
+    void videoDetailsLandOnTheDayTheyWereWatched() {
+        LocalDate month = LocalDate.now().minusMonths(2).withDayOfMonth(1);
+        Course course = persistCourse("Details", 4);
+        User user = persistUser();
+        persistActivity(user, course, month, 3);
+        em.flush();
+        em.clear();
+
+        StreakSummaryDTO summary = streakService.getCourseStreakForMonth(user.getId(), course.getId(), month);
+
+        for (StreakDayDTO day : summary.getMonthDays()) {
+            int offset = day.getDate().getDayOfMonth() - 1;
+            if (offset < 3) {
+                assertEquals(1, day.getVideoDetails().size(), day.getDate().toString());
+                assertEquals(day.getDate(), day.getVideoDetails().get(0).getWatchedDate());
+            } else {
+                assertTrue(day.getVideoDetails().isEmpty(), day.getDate().toString());
+            }
+        }
+        assertEquals(3, summary.getActiveDaysInMonth());
+        assertEquals(3, summary.getLongestStreakDays());
+    }
+
+    @Test
+    void storedBreakdownNeedsNoProgressQuery() {
+        LocalDate month = LocalDate.now().minusMonths(2).withDayOfMonth(1);
+        Course course = persistCourse("Stored", 2);
+        User user = persistUser();
+        Video first = course.getModules().get(0).getVideos().get(0);
+        Video second = course.getModules().get(0).getVideos().get(1);
+        // The first video is watched on both days and finished on the second
+        persistStoredDay(user, course, month, StreakVideoDetails.record(first.getId(), 40, false)
+                + StreakVideoDetails.record(second.getId(), 120, true));
+        persistStoredDay(user, course, month.plusDays(1), StreakVideoDetails.record(first.getId(), 30, false)
+                + StreakVideoDetails.record(first.getId(), 50, true));
+
+        // Streak rows and calendar only
+        assertEquals(2, countQueries(() -> streakService.getCourseStreakForMonth(user.getId(), course.getId(), month)));
+
+        StreakDayDTO[] day = new StreakDayDTO[1];
+        assertEquals(1, countQueries(() -> day[0] = streakService.getDayDetails(user.getId(), course.getId(),
+                month.plusDays(1))));
+        assertEquals(1, day[0].getVideoDetails().size());
+        assertEquals(first.getId(), day[0].getVideoDetails().get(0).getVideoId());
+        assertEquals(80, day[0].getVideoDetails().get(0).getWatchedSeconds());
+        assertTrue(day[0].getVideoDetails().get(0).getIsCompleted());
+
+        StreakDayDTO firstDay = streakService.getDayDetails(user.getId(), course.getId(), month);
+        assertEquals(List.of(first.getId(), second.getId()),
+                firstDay.getVideoDetails().stream().map(d -> d.getVideoId()).toList());
+        assertFalse(firstDay.getVideoDetails().get(0).getIsCompleted());
+    }
+
+    private long countQueries(Runnable action) {
+        em.flush();
+        em.clear();
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private User persistUser() {
+        User user = new User("Streak", "User", UUID.randomUUID() + "@example.com", "secret");
+        em.persist(user);
+        return user;
+    }
+
+    private Course persistCourse(String title, int videos) {
+        Course course = new Course(title, title + " description", "Instructor");
+        em.persist(course);
+        Module module = new Module(title + " module", 600);
+        module.setCourse(course);
+        em.persist(module);
+        course.getModules().add(module);
+        for (int v = 1; v <= videos; v++) {
+            Video video = new Video(title + " video " + v, "https://example.com/" + v, 120, module);
+            video.setDisplayOrder(v);
+            em.persist(video);
+            module.getVideos().add(video);
+        }
+        courses.add(course);
+        return course;
+    }
+
+    private void persistStoredDay(User user, Course course, LocalDate day, String videoDetails) {
+        UserStreak streak = new UserStreak();
+        streak.setUser(user);
+        streak.setCourse(course);
+        streak.setStreakDate(day);
+        streak.setWatchedSeconds(120);
+        streak.setTotalAvailableSeconds(240);
+        streak.setProgressPercentage(50.0);
+        streak.setIsActiveDay(true);
+        streak.setVideoDetails(videoDetails);
+        em.persist(streak);
+    }
+
+    // One active streak day per day from `first`, each with one video last watched that day
+    private void persistActivity(User user, Course course, LocalDate first, int days) {
+        List<Video> videos = course.getModules().get(0).getVideos();
+        for (int d = 0; d < days; d++) {
+            LocalDate day = first.plusDays(d);
+            UserStreak streak = new UserStreak();
+            streak.setUser(user);
+            streak.setCourse(course);
+            streak.setStreakDate(day);
+            streak.setWatchedSeconds(60);
+            streak.setTotalAvailableSeconds(480);
+            streak.setProgressPercentage(12.5);
+            streak.setIsActiveDay(true);
+            em.persist(streak);
+
+            if (d < videos.size()) {
+                UserVideoProgress progress = new UserVideoProgress();
+                progress.setUser(user);
+                progress.setVideo(videos.get(d));
+                progress.setUnlocked(true);
+                progress.setWatchedSeconds(60);
+                em.persist(progress);
+                em.flush();
+                em.createQuery("UPDATE UserVideoProgress p SET p.lastUpdatedAt = :at WHERE p.id = :id")
+                        .setParameter("at", day.atTime(12, 0))
+                        .setParameter("id", progress.getId())
+                        .executeUpdate();
+            }
+        }
+    }
+}
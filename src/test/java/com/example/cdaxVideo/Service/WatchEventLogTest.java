@@ -0,0 +1,156 @@
+package com.example.cdaxVideo.Service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WatchEventLogTest {
+
+    // [length][CRC32] header, then the payload
+    private static final int RECORD_BYTES = 8 + WatchEventLog.Event.PAYLOAD_BYTES;
+    // Two records per segment, the third starts a new one
+    private static final int TWO_RECORD_SEGMENT = 2 * RECORD_BYTES + 8;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendedRecordsAreRecoveredInOrder() throws IOException {
+        WatchEventLog log = open(4096);
+        List<Long> seqs = log.appendAll(List.of(event(1, 10), event(1, 20), event(2, 30)));
+        assertEquals(List.of(1L, 2L, 3L), seqs);
+
+        // No close: the process died after the appends returned
+        WatchEventLog reopened = open(4096);
+
+        List<WatchEventLog.Event> recovered = reopened.recoveredEvents();
+        assertEquals(List.of(1L, 2L, 3L), recovered.stream().map(WatchEventLog.Event::seq).toList());
+        assertEquals(List.of(10, 20, 30), recovered.stream().map(WatchEventLog.Event::lastPositionSeconds).toList());
+        assertEquals(2L, recovered.get(2).userId());
+    }
+
+    @Test
+    void truncatedTailKeepsOnlyWholeRecords() throws IOException {
+        WatchEventLog log = open(4096);
+        log.appendAll(List.of(event(1, 10), event(1, 20), event(1, 30)));
+
+        // The third record was cut off half way through its payload
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(2L * RECORD_BYTES + RECORD_BYTES / 2);
+        }
+
+        WatchEventLog reopened = open(4096);
+        assertEquals(List.of(1L, 2L), reopened.recoveredEvents().stream().map(WatchEventLog.Event::seq).toList());
+
+        // Appends continue after the last whole record, in a new segment
+        assertEquals(3L, reopened.append(event(1, 40)));
+        WatchEventLog again = open(4096);
+        assertEquals(List.of(10, 20, 40),
+                again.recoveredEvents().stream().map(WatchEventLog.Event::lastPositionSeconds).toList());
+    }
+
+    @Test
+    void corruptedRecordEndsTheSegment() throws IOException {
+        WatchEventLog log = open(4096);
+        log.appendAll(List.of(event(1, 10), event(1, 20), event(1, 30)));
+
+        // Flip one payload byte of the second record: its CRC no longer matches
+        Path segment = onlySegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[RECORD_BYTES + 8 + 20] ^= 0x5A;
+        Files.write(segment, bytes);
+
+        WatchEventLog reopened = open(4096);
+        assertEquals(List.of(1L), reopened.recoveredEvents().stream().map(WatchEventLog.Event::seq).toList());
+    }
+
+    @Test
+    void compactDropsAppliedRecords() throws IOException {
+        WatchEventLog log = open(TWO_RECORD_SEGMENT);
+        List<Long> seqs = log.appendAll(List.of(event(1, 10), event(1, 20), event(1, 30), event(1, 40),
+                event(1, 50)));
+        assertEquals(3, segmentCount());
+
+        // 3 is still pending: only the first segment is covered
+        log.applied(List.of(seqs.get(0), seqs.get(1), seqs.get(3)));
+        assertEquals(2L, log.compact());
+        assertEquals(2, segmentCount());
+        assertEquals(List.of(3L, 4L, 5L), open(TWO_RECORD_SEGMENT).recoveredEvents().stream()
+                .map(WatchEventLog.Event::seq).toList());
+
+        log.applied(seqs.get(2));
+        assertEquals(4L, log.compact());
+        assertEquals(1, segmentCount());
+        assertEquals(List.of(5L), open(TWO_RECORD_SEGMENT).recoveredEvents().stream()
+                .map(WatchEventLog.Event::seq).toList());
+
+        // Nothing pending: the checkpoint reaches the end and nothing is replayed
+        log.applied(seqs.get(4));
+        assertEquals(5L, log.compact());
+        assertTrue(open(TWO_RECORD_SEGMENT).recoveredEvents().isEmpty());
+        assertTrue(Files.exists(dir.resolve("checkpoint")));
+        assertFalse(Files.exists(dir.resolve("checkpoint.tmp")));
+    }
+
+    @Test
+    void recoveredRecordsStayPendingUntilApplied() throws IOException {
+        open(4096).appendAll(List.of(event(1, 10), event(1, 20)));
+
+        WatchEventLog reopened = open(4096);
+        assertEquals(0L, reopened.compact());
+
+        reopened.applied(reopened.recoveredEvents().stream().map(WatchEventLog.Event::seq).toList());
+        assertEquals(2L, reopened.compact());
+        assertTrue(open(4096).recoveredEvents().isEmpty());
+    }
+
+    @Test
+    void disabledLogWritesNothing() throws IOException {
+        WatchEventLog log = new WatchEventLog(false, "", 4096);
+        log.open();
+
+        assertEquals(0L, log.append(event(1, 10)));
+        assertEquals(0L, log.compact());
+        assertTrue(log.recoveredEvents().isEmpty());
+    }
+
+    @Test
+    void enabledLogNeedsAnAbsoluteDirectory() {
+        assertThrows(IllegalStateException.class, () -> new WatchEventLog(true, "data/watch-log", 4096));
+        assertThrows(IllegalStateException.class, () -> new WatchEventLog(true, "", 4096));
+    }
+
+    private WatchEventLog open(int segmentBytes) throws IOException {
+        WatchEventLog log = new WatchEventLog(true, dir.toString(), segmentBytes);
+        log.open();
+        return log;
+    }
+
+    private static WatchEventLog.Event event(long userId, int position) {
+        return WatchEventLog.Event.progress(userId, 7L, 3L, position, position, 0);
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segments = files.filter(p -> p.toString().endsWith(".wlog")).toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".wlog")).count();
+        }
+    }
+}
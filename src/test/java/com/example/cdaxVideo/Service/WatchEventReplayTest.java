@@ -0,0 +1,191 @@
+package com.example.cdaxVideo.Service;
+
+import com.example.cdaxVideo.DTO.VideoProgressDTO;
+import com.example.cdaxVideo.Entity.Course;
+import com.example.cdaxVideo.Entity.Module;
+import com.example.cdaxVideo.Entity.User;
+import com.example.cdaxVideo.Entity.Video;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// The replayed row is compared with one written by the live heartbeat path; real commits, MySQL upsert syntax
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:watch-replay;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({WatchEventReplay.class, VideoService.class, ProgressUpsertService.class, UserProgressVersionService.class,
+        CatalogSnapshotService.class, CatalogGraphLoader.class, SimpleMeterRegistry.class})
+class WatchEventReplayTest {
+
+    private static final int DURATION = 100;
+    private static final int STEP = 2;
+
+    @Autowired private WatchEventReplay replay;
+    @Autowired private VideoService videoService;
+    @Autowired private ProgressUpsertService progressUpsertService;
+    @Autowired private CatalogSnapshotService catalogSnapshotService;
+    @Autowired private EntityManager em;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @MockitoBean private WatchEventLog watchEventLog;
+    @MockitoBean private VideoProgressBuffer videoProgressBuffer;
+    @MockitoBean private CourseService courseService;
+    @MockitoBean private StreakService streakService;
+    @MockitoBean private CourseProgressRollupService courseProgressRollupService;
+    @MockitoBean private CourseProgressBitsService courseProgressBitsService;
+    @MockitoBean private StreakCalendarService streakCalendarService;
+
+    private TransactionTemplate tx;
+    private Long courseId;
+    private Long moduleId;
+    private Long videoId;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Course course = new Course("Replay", "Replay description", "Instructor");
+            em.persist(course);
+            Module module = new Module("Replay module", 600);
+            module.setCourse(course);
+            em.persist(module);
+            Video video = new Video("Replay video", "https://example.com/replay", DURATION, module);
+            video.setDisplayOrder(1);
+            em.persist(video);
+            courseId = course.getId();
+            moduleId = module.getId();
+            videoId = video.getId();
+        });
+        catalogSnapshotService.refresh();
+
+        // The completion flow marks the row as CourseService does
+        doAnswer(invocation -> {
+            progressUpsertService.completeVideo(invocation.getArgument(0), invocation.getArgument(3));
+            return null;
+        }).when(courseService).completeVideoAndUnlockNext(anyLong(), anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void replayedHeartbeatsMatchTheLivePath() {
+        Long live = persistUser();
+        Long replayed = persistUser();
+
+        // Live: the same heartbeats sent to the synchronous path
+        for (int position = 0; position <= DURATION; position += STEP) {
+            VideoProgressDTO dto = new VideoProgressDTO();
+            dto.setUserId(live);
+            dto.setVideoId(videoId);
+            dto.setWatchedSeconds(position);
+            dto.setLastPositionSeconds(position);
+            dto.setForwardJumpsCount(0);
+            videoService.updateVideoProgress(dto);
+        }
+
+        assertEquals(1, replay.replay(heartbeats(replayed, System.currentTimeMillis() - 3_600_000L)));
+
+        Map<String, Object> replayedRow = row(replayed);
+        assertSameState(row(live), replayedRow);
+        assertEquals(true, replayedRow.get("COMPLETED"));
+        // Past the 95% rule
+        assertTrue(WatchedIntervals.coveredSeconds((byte[]) replayedRow.get("WATCHED_INTERVALS"))
+                >= VideoService.completionThreshold(DURATION));
+
+        verify(courseService).completeVideoAndUnlockNext(live, courseId, moduleId, videoId);
+        verify(courseService).completeVideoAndUnlockNext(replayed, courseId, moduleId, videoId);
+        verify(streakService).updateStreakForVideoWatch(eq(replayed), eq(courseId), eq(videoId), eq(DURATION),
+                eq(true), any());
+    }
+
+    @Test
+    void replayingEventsTheDatabaseHasChangesNothing() {
+        Long user = persistUser();
+        List<WatchEventLog.Event> events = heartbeats(user, System.currentTimeMillis() - 3_600_000L);
+
+        replay.replay(events);
+        Map<String, Object> first = row(user);
+        replay.replay(events);
+
+        Map<String, Object> second = row(user);
+        assertSameState(first, second);
+        assertEquals(first.get("LAST_UPDATED_AT"), second.get("LAST_UPDATED_AT"));
+        // Already completed: the completion flow ran once
+        verify(courseService, times(1)).completeVideoAndUnlockNext(user, courseId, moduleId, videoId);
+    }
+
+    @Test
+    void partialWatchIsNotCompleted() {
+        Long user = persistUser();
+        List<WatchEventLog.Event> events = heartbeats(user, System.currentTimeMillis() - 3_600_000L);
+
+        // Heartbeats up to half way
+        replay.replay(events.subList(0, DURATION / STEP / 2 + 1));
+
+        Map<String, Object> row = row(user);
+        assertEquals(false, row.get("COMPLETED"));
+        assertEquals(DURATION / 2, ((Number) row.get("LAST_POSITION_SECONDS")).intValue());
+        verify(courseService, never()).completeVideoAndUnlockNext(eq(user), anyLong(), anyLong(), anyLong());
+        verify(courseProgressRollupService).refresh(user, courseId);
+    }
+
+    // One heartbeat every STEP seconds of playback, from the start to the end of the video
+    private List<WatchEventLog.Event> heartbeats(Long userId, long startMillis) {
+        List<WatchEventLog.Event> events = new ArrayList<>();
+        long seq = 1;
+        for (int position = 0; position <= DURATION; position += STEP) {
+            events.add(new WatchEventLog.Event(WatchEventLog.Event.PROGRESS, seq++, userId, videoId, courseId,
+                    position, position, 0, startMillis + position * 1000L));
+        }
+        return events;
+    }
+
+    private Map<String, Object> row(Long userId) {
+        return jdbcTemplate.queryForMap(
+                "SELECT watched_seconds, last_position_seconds, forward_jumps_count, completed, unlocked, " +
+                "watched_intervals, last_updated_at FROM user_video_progress WHERE user_id = ? AND video_id = ?",
+                userId, videoId);
+    }
+
+    private static void assertSameState(Map<String, Object> expected, Map<String, Object> actual) {
+        for (String column : List.of("WATCHED_SECONDS", "LAST_POSITION_SECONDS", "FORWARD_JUMPS_COUNT",
+                "COMPLETED", "UNLOCKED")) {
+            assertEquals(expected.get(column), actual.get(column), column);
+        }
+        assertArrayEquals((byte[]) expected.get("WATCHED_INTERVALS"), (byte[]) actual.get("WATCHED_INTERVALS"));
+    }
+
+    private Long persistUser() {
+        return tx.execute(status -> {
+            User user = new User("Replay", "User", UUID.randomUUID() + "@example.com", "secret");
+            em.persist(user);
+            return user.getId();
+        });
+    }
+}
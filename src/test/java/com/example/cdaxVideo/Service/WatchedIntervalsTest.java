@@ -0,0 +1,87 @@
+package com.example.cdaxVideo.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Merges random ranges into an encoded set and into a plain boolean array and
+ * checks that both agree on coverage after every step.
+ */
+class WatchedIntervalsTest {
+
+    private static final int DURATION = 3000;
+
+    @Test
+    void randomMergesMatchSecondBySecondCoverage() {
+        for (long seed = 0; seed < 50; seed++) {
+            Random random = new Random(seed);
+            boolean[] played = new boolean[DURATION];
+            byte[] set = null;
+            for (int step = 0; step < 200; step++) {
+                int start = random.nextInt(DURATION);
+                int end = Math.min(DURATION, start + 1 + random.nextInt(random.nextBoolean() ? 20 : 400));
+                set = WatchedIntervals.add(set, start, end);
+                for (int s = start; s < end; s++) played[s] = true;
+
+                assertEquals(count(played), WatchedIntervals.coveredSeconds(set), "seed " + seed + ", step " + step);
+                int probe = random.nextInt(DURATION - 1);
+                assertEquals(played[probe], WatchedIntervals.covers(set, probe, probe + 1),
+                        "seed " + seed + ", second " + probe);
+            }
+        }
+    }
+
+    @Test
+    void coveredRangeReturnsSameArray() {
+        byte[] set = WatchedIntervals.add(null, 10, 100);
+        assertSame(set, WatchedIntervals.add(set, 20, 50));
+        assertSame(set, WatchedIntervals.add(set, 10, 100));
+    }
+
+    @Test
+    void touchingRangesMergeIntoOne() {
+        byte[] set = WatchedIntervals.add(WatchedIntervals.add(null, 0, 10), 20, 30);
+        set = WatchedIntervals.add(set, 10, 20);
+        assertTrue(WatchedIntervals.covers(set, 0, 30));
+        assertEquals(2, set.length);
+    }
+
+    @Test
+    void unionMatchesAddingEachRange() {
+        byte[] a = WatchedIntervals.add(WatchedIntervals.add(null, 0, 50), 300, 400);
+        byte[] b = WatchedIntervals.add(WatchedIntervals.add(null, 40, 120), 500, 501);
+        byte[] union = WatchedIntervals.union(a, b);
+        assertEquals(50 + 70 + 100 + 1, WatchedIntervals.coveredSeconds(union));
+        assertTrue(WatchedIntervals.covers(union, 0, 120));
+    }
+
+    @Test
+    void seeksAreNotCredited() {
+        // 10 seconds of playback in 10 seconds counts
+        byte[] set = WatchedIntervals.recordPlayback(null, 0, 10, 10_000, DURATION);
+        assertEquals(10, WatchedIntervals.coveredSeconds(set));
+        // jumping 500 seconds ahead in 10 seconds does not
+        assertSame(set, WatchedIntervals.recordPlayback(set, 10, 510, 10_000, DURATION));
+        // neither does going backwards
+        assertSame(set, WatchedIntervals.recordPlayback(set, 510, 400, 10_000, DURATION));
+        // nor a long gap after a long pause
+        assertSame(set, WatchedIntervals.recordPlayback(set, 10, 10 + WatchedIntervals.MAX_STEP_SECONDS + 1,
+                3_600_000, DURATION));
+    }
+
+    @Test
+    void legacyRowsStartFromTheirWatchTime() {
+        assertEquals(120, WatchedIntervals.coveredSeconds(WatchedIntervals.orLegacy(null, 120, 600)));
+        assertEquals(600, WatchedIntervals.coveredSeconds(WatchedIntervals.orLegacy(null, 900, 600)));
+        assertNull(WatchedIntervals.orLegacy(null, 0, 600));
+    }
+
+    private static int count(boolean[] played) {
+        int n = 0;
+        for (boolean p : played) if (p) n++;
+        return n;
+    }
+}